@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.commandline;
+
+import tech.pegasys.web3signer.core.config.SignatureCacheParameters;
+
+import picocli.CommandLine.Option;
+
+public class PicoCliSignatureCacheParameters implements SignatureCacheParameters {
+
+  @Option(
+      names = {"--signature-cache-enabled"},
+      description =
+          "Set to true to answer repeated signing requests for the same key and signing root from "
+              + "a cache of recent signatures, skipping the slashing protection check for signing "
+              + "roots it has already permitted (default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  private boolean signatureCacheEnabled = false;
+
+  @Option(
+      names = {"--signature-cache-size"},
+      description = "Maximum number of signatures held in the signature cache (default: ${DEFAULT-VALUE})",
+      paramLabel = "<INTEGER>",
+      arity = "1")
+  private long signatureCacheMaximumSize = 100_000;
+
+  @Option(
+      names = {"--signature-cache-expiry"},
+      description =
+          "Seconds a signature is held in the signature cache after it was computed "
+              + "(default: ${DEFAULT-VALUE}, one epoch)",
+      paramLabel = "<SECONDS>",
+      arity = "1")
+  private long signatureCacheExpirySeconds = 384;
+
+  @Option(
+      names = {"--hash-to-curve-cache-enabled"},
+      description =
+          "Set to false to sign without the blst library and its cache of signing roots hashed to "
+              + "the curve, even where the library is available (default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  private boolean hashToCurveCacheEnabled = true;
+
+  @Override
+  public boolean isSignatureCacheEnabled() {
+    return signatureCacheEnabled;
+  }
+
+  @Override
+  public long getSignatureCacheMaximumSize() {
+    return signatureCacheMaximumSize;
+  }
+
+  @Override
+  public long getSignatureCacheExpirySeconds() {
+    return signatureCacheExpirySeconds;
+  }
+
+  @Override
+  public boolean isHashToCurveCacheEnabled() {
+    return hashToCurveCacheEnabled;
+  }
+}
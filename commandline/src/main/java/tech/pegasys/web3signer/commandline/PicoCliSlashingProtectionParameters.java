@@ -0,0 +1,437 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.commandline;
+
+import tech.pegasys.web3signer.slashingprotection.CircuitBreakingSlashingProtection;
+import tech.pegasys.web3signer.slashingprotection.DbConnection;
+import tech.pegasys.web3signer.slashingprotection.ReactivePgSlashingProtection;
+import tech.pegasys.web3signer.slashingprotection.SlashingProtectionParameters;
+import tech.pegasys.web3signer.slashingprotection.ValidatorLockStrategy;
+
+import picocli.CommandLine.Option;
+
+public class PicoCliSlashingProtectionParameters implements SlashingProtectionParameters {
+
+  @Option(
+      names = {"--slashing-protection-enabled"},
+      description =
+          "Set to true if all Eth2 signing operations should be validated against historic data, "
+              + "prior to responding with signatures"
+              + "(default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  private boolean enabled = true;
+
+  @Option(
+      names = {"--slashing-protection-db-url"},
+      description = "The jdbc url to use to connect to the slashing protection database",
+      paramLabel = "<jdbc url>",
+      arity = "1")
+  private String dbUrl;
+
+  @Option(
+      names = {"--slashing-protection-db-username"},
+      description = "The username to use when connecting to the slashing protection database",
+      paramLabel = "<jdbc user>")
+  private String dbUsername;
+
+  @Option(
+      names = {"--slashing-protection-db-password"},
+      description = "The password to use when connecting to the slashing protection database",
+      paramLabel = "<jdbc password>")
+  private String dbPassword;
+
+  @Option(
+      names = {"--slashing-protection-db-prepare-threshold"},
+      description =
+          "Number of executions of a statement on a database connection before it is prepared on "
+              + "the server and reused. 0 disables server side prepared statements "
+              + "(default: ${DEFAULT-VALUE})",
+      paramLabel = "<INTEGER>",
+      arity = "1")
+  private int dbPrepareThreshold = DbConnection.DEFAULT_PREPARE_THRESHOLD;
+
+  @Option(
+      names = {"--slashing-protection-db-statement-cache-size"},
+      description =
+          "Maximum number of prepared statements cached on each database connection "
+              + "(default: ${DEFAULT-VALUE})",
+      paramLabel = "<INTEGER>",
+      arity = "1")
+  private int dbStatementCacheQueries = DbConnection.DEFAULT_STATEMENT_CACHE_QUERIES;
+
+  @Option(
+      names = {"--slashing-protection-db-pool-size"},
+      description =
+          "Maximum number of connections in the slashing protection database pool "
+              + "(default: ${DEFAULT-VALUE})",
+      paramLabel = "<INTEGER>",
+      arity = "1")
+  private int dbPoolSize = DbConnection.DEFAULT_POOL_SIZE;
+
+  @Option(
+      names = {"--slashing-protection-db-pool-minimum-idle"},
+      description =
+          "Minimum number of idle connections kept in the slashing protection database pool "
+              + "(default: the pool size)",
+      paramLabel = "<INTEGER>",
+      arity = "1")
+  private Integer dbPoolMinimumIdle;
+
+  @Option(
+      names = {"--slashing-protection-db-pool-connection-timeout"},
+      description =
+          "Maximum time in milliseconds to wait for a connection from the slashing protection "
+              + "database pool before failing the request (default: ${DEFAULT-VALUE})",
+      paramLabel = "<MILLISECONDS>",
+      arity = "1")
+  private long dbPoolConnectionTimeoutMillis = DbConnection.DEFAULT_CONNECTION_TIMEOUT_MILLIS;
+
+  @Option(
+      names = {"--slashing-protection-db-pool-validation-timeout"},
+      description =
+          "Maximum time in milliseconds to wait for a slashing protection database connection to "
+              + "be validated as alive. Must be less than the connection timeout "
+              + "(default: ${DEFAULT-VALUE})",
+      paramLabel = "<MILLISECONDS>",
+      arity = "1")
+  private long dbPoolValidationTimeoutMillis = DbConnection.DEFAULT_VALIDATION_TIMEOUT_MILLIS;
+
+  @Option(
+      names = {"--slashing-protection-db-pool-leak-detection-threshold"},
+      description =
+          "Time in milliseconds a slashing protection database connection can be held before a "
+              + "possible leak is logged. 0 disables leak detection (default: ${DEFAULT-VALUE})",
+      paramLabel = "<MILLISECONDS>",
+      arity = "1")
+  private long dbPoolLeakDetectionThresholdMillis =
+      DbConnection.DEFAULT_LEAK_DETECTION_THRESHOLD_MILLIS;
+
+  @Option(
+      names = {"--slashing-protection-block-check-deadline"},
+      description =
+          "Maximum time in milliseconds a block slashing check may take, including waiting for a "
+              + "validator lock and a database connection, before the request fails with 503. "
+              + "0 disables the deadline (default: ${DEFAULT-VALUE})",
+      paramLabel = "<MILLISECONDS>",
+      arity = "1")
+  private long blockCheckDeadlineMillis = 0;
+
+  @Option(
+      names = {"--slashing-protection-attestation-check-deadline"},
+      description =
+          "Maximum time in milliseconds an attestation slashing check may take, including waiting "
+              + "for a validator lock and a database connection, before the request fails with "
+              + "503. 0 disables the deadline (default: ${DEFAULT-VALUE})",
+      paramLabel = "<MILLISECONDS>",
+      arity = "1")
+  private long attestationCheckDeadlineMillis = 0;
+
+  @Option(
+      names = {"--slashing-protection-circuit-breaker-failure-threshold"},
+      description =
+          "Number of consecutive slashing protection database failures after which signing "
+              + "requests are rejected with 503 without querying the database. "
+              + "0 disables the circuit breaker (default: ${DEFAULT-VALUE})",
+      paramLabel = "<INTEGER>",
+      arity = "1")
+  private int circuitBreakerFailureThreshold =
+      CircuitBreakingSlashingProtection.DEFAULT_FAILURE_THRESHOLD;
+
+  @Option(
+      names = {"--slashing-protection-circuit-breaker-open-duration"},
+      description =
+          "Time in milliseconds the slashing protection circuit breaker rejects requests before "
+              + "letting a check through to test the database (default: ${DEFAULT-VALUE})",
+      paramLabel = "<MILLISECONDS>",
+      arity = "1")
+  private long circuitBreakerOpenDurationMillis =
+      CircuitBreakingSlashingProtection.DEFAULT_OPEN_DURATION_MILLIS;
+
+  @Option(
+      names = {"--slashing-protection-parallel-signing-enabled"},
+      description =
+          "Set to true to compute block and attestation signatures while the slashing protection "
+              + "database check is in progress. Signatures are only released if the check passes "
+              + "(default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  private boolean parallelSigningEnabled = false;
+
+  @Option(
+      names = {"--slashing-protection-reactive-client-enabled"},
+      description =
+          "Set to true to run block and attestation slashing checks through a non-blocking "
+              + "database client, pipelining them over a small number of connections. Cannot be "
+              + "used with the IN_PROCESS lock strategy, the circuit breaker, the attestation "
+              + "index or batching (default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  private boolean reactiveClientEnabled = false;
+
+  @Option(
+      names = {"--slashing-protection-reactive-pool-size"},
+      description =
+          "Maximum number of connections used by the non-blocking slashing protection client "
+              + "(default: ${DEFAULT-VALUE})",
+      paramLabel = "<INTEGER>",
+      arity = "1")
+  private int reactivePoolSize = ReactivePgSlashingProtection.DEFAULT_POOL_SIZE;
+
+  @Option(
+      names = {"--slashing-protection-reactive-pipelining-limit"},
+      description =
+          "Maximum number of slashing checks in flight on each connection of the non-blocking "
+              + "slashing protection client (default: ${DEFAULT-VALUE})",
+      paramLabel = "<INTEGER>",
+      arity = "1")
+  private int reactivePipeliningLimit = ReactivePgSlashingProtection.DEFAULT_PIPELINING_LIMIT;
+
+  @Option(
+      names = {"--slashing-protection-attestation-index-enabled"},
+      description =
+          "Set to true to check attestations against an in-memory index of recently signed "
+              + "attestations, only writing to the database. Requires this to be the only "
+              + "Web3Signer instance using the slashing protection database "
+              + "(default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  private boolean attestationSpanIndexEnabled = false;
+
+  @Option(
+      names = {"--slashing-protection-attestation-index-epochs"},
+      description =
+          "Number of recent epochs held per validator in the attestation index. Older attestations "
+              + "are checked against the database (default: ${DEFAULT-VALUE})",
+      paramLabel = "<INTEGER>",
+      arity = "1")
+  private int attestationSpanIndexEpochWindow = 256;
+
+  @Option(
+      names = {"--slashing-protection-batching-enabled"},
+      description =
+          "Set to true to group concurrent attestation slashing checks into a single database "
+              + "statement (default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  private boolean attestationBatchingEnabled = false;
+
+  @Option(
+      names = {"--slashing-protection-batch-window"},
+      description =
+          "Maximum time in microseconds to wait for further attestation slashing checks before "
+              + "sending a batch to the database (default: ${DEFAULT-VALUE})",
+      paramLabel = "<MICROSECONDS>",
+      arity = "1")
+  private long attestationBatchWindowMicros = 500;
+
+  @Option(
+      names = {"--slashing-protection-batch-max-size"},
+      description =
+          "Maximum number of attestation slashing checks in a batch (default: ${DEFAULT-VALUE})",
+      paramLabel = "<INTEGER>",
+      arity = "1")
+  private int attestationBatchMaxSize = 256;
+
+  @Option(
+      names = {"--slashing-protection-pruning-enabled"},
+      description =
+          "Set to true to periodically remove signing history older than the epochs to keep, "
+              + "replacing it with a low watermark below which signing is refused "
+              + "(default: ${DEFAULT-VALUE})",
+      paramLabel = "<BOOL>",
+      arity = "1")
+  private boolean pruningEnabled = false;
+
+  @Option(
+      names = {"--slashing-protection-pruning-epochs-to-keep"},
+      description =
+          "Number of epochs of signing history to keep behind each validator's most recent "
+              + "signing when pruning (default: ${DEFAULT-VALUE})",
+      paramLabel = "<INTEGER>",
+      arity = "1")
+  private long pruningEpochsToKeep = 10_000;
+
+  @Option(
+      names = {"--slashing-protection-pruning-slots-per-epoch"},
+      description =
+          "Number of slots in an epoch, used to determine the block history to keep when pruning "
+              + "(default: ${DEFAULT-VALUE})",
+      paramLabel = "<INTEGER>",
+      arity = "1")
+  private long pruningSlotsPerEpoch = 32;
+
+  @Option(
+      names = {"--slashing-protection-pruning-interval"},
+      description = "Hours between pruning runs (default: ${DEFAULT-VALUE})",
+      paramLabel = "<INTEGER>",
+      arity = "1")
+  private long pruningInterval = 12;
+
+  @Option(
+      names = {"--slashing-protection-lock-strategy"},
+      description =
+          "How slashing checks for a validator are serialised: ADVISORY and ROW use a database "
+              + "advisory lock or validator row lock, IN_PROCESS uses a lock within Web3Signer and "
+              + "requires that no other process, including the prune subcommand, writes to the "
+              + "slashing protection database while it runs. "
+              + "Valid values: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})",
+      paramLabel = "<STRATEGY>",
+      arity = "1")
+  private ValidatorLockStrategy lockStrategy = ValidatorLockStrategy.ADVISORY;
+
+  @Override
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @Override
+  public String getDbUrl() {
+    return dbUrl;
+  }
+
+  @Override
+  public String getDbUsername() {
+    return dbUsername;
+  }
+
+  @Override
+  public String getDbPassword() {
+    return dbPassword;
+  }
+
+  @Override
+  public int getDbPrepareThreshold() {
+    return dbPrepareThreshold;
+  }
+
+  @Override
+  public int getDbStatementCacheQueries() {
+    return dbStatementCacheQueries;
+  }
+
+  @Override
+  public int getDbPoolSize() {
+    return dbPoolSize;
+  }
+
+  @Override
+  public int getDbPoolMinimumIdle() {
+    return dbPoolMinimumIdle == null ? dbPoolSize : dbPoolMinimumIdle;
+  }
+
+  @Override
+  public long getDbPoolConnectionTimeoutMillis() {
+    return dbPoolConnectionTimeoutMillis;
+  }
+
+  @Override
+  public long getDbPoolValidationTimeoutMillis() {
+    return dbPoolValidationTimeoutMillis;
+  }
+
+  @Override
+  public long getDbPoolLeakDetectionThresholdMillis() {
+    return dbPoolLeakDetectionThresholdMillis;
+  }
+
+  @Override
+  public long getBlockCheckDeadlineMillis() {
+    return blockCheckDeadlineMillis;
+  }
+
+  @Override
+  public long getAttestationCheckDeadlineMillis() {
+    return attestationCheckDeadlineMillis;
+  }
+
+  @Override
+  public int getCircuitBreakerFailureThreshold() {
+    return circuitBreakerFailureThreshold;
+  }
+
+  @Override
+  public long getCircuitBreakerOpenDurationMillis() {
+    return circuitBreakerOpenDurationMillis;
+  }
+
+  @Override
+  public boolean isParallelSigningEnabled() {
+    return parallelSigningEnabled;
+  }
+
+  @Override
+  public boolean isReactiveClientEnabled() {
+    return reactiveClientEnabled;
+  }
+
+  @Override
+  public int getReactivePoolSize() {
+    return reactivePoolSize;
+  }
+
+  @Override
+  public int getReactivePipeliningLimit() {
+    return reactivePipeliningLimit;
+  }
+
+  @Override
+  public boolean isAttestationSpanIndexEnabled() {
+    return attestationSpanIndexEnabled;
+  }
+
+  @Override
+  public int getAttestationSpanIndexEpochWindow() {
+    return attestationSpanIndexEpochWindow;
+  }
+
+  @Override
+  public boolean isAttestationBatchingEnabled() {
+    return attestationBatchingEnabled;
+  }
+
+  @Override
+  public long getAttestationBatchWindowMicros() {
+    return attestationBatchWindowMicros;
+  }
+
+  @Override
+  public int getAttestationBatchMaxSize() {
+    return attestationBatchMaxSize;
+  }
+
+  @Override
+  public boolean isPruningEnabled() {
+    return pruningEnabled;
+  }
+
+  @Override
+  public long getPruningEpochsToKeep() {
+    return pruningEpochsToKeep;
+  }
+
+  @Override
+  public long getPruningSlotsPerEpoch() {
+    return pruningSlotsPerEpoch;
+  }
+
+  @Override
+  public long getPruningInterval() {
+    return pruningInterval;
+  }
+
+  @Override
+  public ValidatorLockStrategy getLockStrategy() {
+    return lockStrategy;
+  }
+}
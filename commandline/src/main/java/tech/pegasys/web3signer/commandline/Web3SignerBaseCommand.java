@@ -162,6 +162,36 @@ public class Web3SignerBaseCommand implements Config, Runnable {
       arity = "1")
   private int idleConnectionTimeoutSeconds = 30;
 
+  @Option(
+      names = {"--signing-thread-pool-size"},
+      paramLabel = "<number of threads>",
+      description =
+          "Number of threads computing signatures, separate from the threads making slashing protection database calls (default: the number of available processors)",
+      arity = "1")
+  private int signingThreadPoolSize = Runtime.getRuntime().availableProcessors();
+
+  @Option(
+      names = {"--slashing-protection-thread-pool-size"},
+      paramLabel = "<number of threads>",
+      description =
+          "Number of threads making blocking slashing protection database calls (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  private int slashingProtectionThreadPoolSize = 20;
+
+  @Option(
+      names = {"--signing-batch-max-size"},
+      paramLabel = "<number of requests>",
+      description =
+          "Maximum number of signing requests in a batch signing request, larger batches are rejected (default: ${DEFAULT-VALUE})",
+      arity = "1")
+  private int signingBatchMaxSize = 1024;
+
+  @Option(
+      names = {"--virtual-threads-enabled"},
+      description =
+          "Run each signing request on a virtual thread of its own, which requires Java 21 or later. Concurrent signature computations are bounded by --signing-thread-pool-size (default: ${DEFAULT-VALUE})")
+  private boolean virtualThreadsEnabled = false;
+
   @ArgGroup(exclusive = false)
   private PicoCliTlsServerOptions picoCliTlsServerOptions;
 
@@ -230,6 +260,26 @@ public class Web3SignerBaseCommand implements Config, Runnable {
     return idleConnectionTimeoutSeconds;
   }
 
+  @Override
+  public int getSigningThreadPoolSize() {
+    return signingThreadPoolSize;
+  }
+
+  @Override
+  public int getSlashingProtectionThreadPoolSize() {
+    return slashingProtectionThreadPoolSize;
+  }
+
+  @Override
+  public int getSigningBatchMaxSize() {
+    return signingBatchMaxSize;
+  }
+
+  @Override
+  public boolean isVirtualThreadsEnabled() {
+    return virtualThreadsEnabled;
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
@@ -247,6 +297,10 @@ public class Web3SignerBaseCommand implements Config, Runnable {
         .add("metricsHostAllowList", metricsHostAllowList)
         .add("picoCliTlsServerOptions", picoCliTlsServerOptions)
         .add("idleConnectionTimeoutSeconds", idleConnectionTimeoutSeconds)
+        .add("signingThreadPoolSize", signingThreadPoolSize)
+        .add("slashingProtectionThreadPoolSize", slashingProtectionThreadPoolSize)
+        .add("signingBatchMaxSize", signingBatchMaxSize)
+        .add("virtualThreadsEnabled", virtualThreadsEnabled)
         .toString();
   }
 
@@ -15,13 +15,24 @@ package tech.pegasys.web3signer.commandline.subcommands;
 import static tech.pegasys.web3signer.slashingprotection.SlashingProtectionFactory.createSlashingProtection;
 
 import tech.pegasys.web3signer.commandline.PicoCliAzureKeyVaultParameters;
+import tech.pegasys.web3signer.commandline.PicoCliSignatureCacheParameters;
+import tech.pegasys.web3signer.commandline.PicoCliSlashingProtectionParameters;
 import tech.pegasys.web3signer.core.Eth2Runner;
+import tech.pegasys.web3signer.slashingprotection.AttestationSpanIndex;
 import tech.pegasys.web3signer.slashingprotection.SlashingProtection;
+import tech.pegasys.web3signer.slashingprotection.ValidatorLockStrategy;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import com.google.common.collect.Lists;
 import picocli.CommandLine.Command;
@@ -38,69 +49,130 @@ import picocli.CommandLine.Spec;
 public class Eth2SubCommand extends ModeSubCommand {
 
   public static final String COMMAND_NAME = "eth2";
+  private static final String GZIP_SUFFIX = ".gz";
 
   @Spec CommandSpec spec;
 
-  @Command(name = "export", description = "Export slashing protection db to json file")
+  @Command(
+      name = "export",
+      description =
+          "Export slashing protection db to json file, gzip compressed if the file name ends in "
+              + GZIP_SUFFIX)
   public void exportSlashingDb(@Option(names = "--to") File output) {
     final SlashingProtection slashingProtection =
-        createSlashingProtection(
-            slashingProtectionDbUrl, slashingProtectionDbUsername, slashingProtectionDbPassword);
-    try {
-      slashingProtection.export(new FileOutputStream(output));
-    } catch (final FileNotFoundException e) {
-      throw new RuntimeException("Unable to find output target file", e);
+        createSlashingProtection(slashingProtectionParameters);
+    try (final OutputStream out = createOutputStream(output)) {
+      slashingProtection.export(out);
+    } catch (final IOException e) {
+      throw new RuntimeException("Unable to write export target file", e);
+    }
+  }
+
+  @Command(
+      name = "import",
+      description =
+          "Import json file to slashing protection db, gzip compressed if the file name ends in "
+              + GZIP_SUFFIX)
+  public void importSlashingDb(@Option(names = "--from") File input) {
+    final SlashingProtection slashingProtection =
+        createSlashingProtection(slashingProtectionParameters);
+    try (final InputStream in = createInputStream(input)) {
+      slashingProtection.importData(in);
+    } catch (final IOException e) {
+      throw new RuntimeException("Unable to read import source file", e);
     }
   }
 
-  @Option(
-      names = {"--slashing-protection-enabled"},
+  private static OutputStream createOutputStream(final File file) throws IOException {
+    final OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+    return file.getName().endsWith(GZIP_SUFFIX) ? new GZIPOutputStream(out) : out;
+  }
+
+  private static InputStream createInputStream(final File file) throws IOException {
+    final InputStream in = new BufferedInputStream(new FileInputStream(file));
+    return file.getName().endsWith(GZIP_SUFFIX) ? new GZIPInputStream(in) : in;
+  }
+
+  @Command(
+      name = "prune",
       description =
-          "Set to true if all Eth2 signing operations should be validated against historic data, "
-              + "prior to responding with signatures"
-              + "(default: ${DEFAULT-VALUE})",
-      paramLabel = "<BOOL>",
-      arity = "1")
-  private boolean slashingProtectionEnabled = true;
-
-  @Option(
-      names = {"--slashing-protection-db-url"},
-      description = "The jdbc url to use to connect to the slashing protection database",
-      paramLabel = "<jdbc url>",
-      arity = "1")
-  private String slashingProtectionDbUrl;
-
-  @Option(
-      names = {"--slashing-protection-db-username"},
-      description = "The username to use when connecting to the slashing protection database",
-      paramLabel = "<jdbc user>")
-  private String slashingProtectionDbUsername;
-
-  @Option(
-      names = {"--slashing-protection-db-password"},
-      description = "The password to use when connecting to the slashing protection database",
-      paramLabel = "<jdbc password>")
-  private String slashingProtectionDbPassword;
+          "Remove slashing protection history older than the epochs to keep, replacing it with a "
+              + "low watermark")
+  public void pruneSlashingDb() {
+    createSlashingProtection(slashingProtectionParameters).prune();
+  }
+
+  @Mixin public PicoCliSlashingProtectionParameters slashingProtectionParameters;
 
   @Mixin public PicoCliAzureKeyVaultParameters azureKeyVaultParameters;
 
+  @Mixin public PicoCliSignatureCacheParameters signatureCacheParameters;
+
   @Override
   public Eth2Runner createRunner() {
     validateArgs();
     return new Eth2Runner(
-        config,
-        slashingProtectionEnabled,
-        slashingProtectionDbUrl,
-        slashingProtectionDbUsername,
-        slashingProtectionDbPassword,
-        azureKeyVaultParameters);
+        config, slashingProtectionParameters, azureKeyVaultParameters, signatureCacheParameters);
   }
 
   private void validateArgs() {
-    if (slashingProtectionEnabled && slashingProtectionDbUrl == null) {
+    if (slashingProtectionParameters.isEnabled()
+        && slashingProtectionParameters.getDbUrl() == null) {
       throw new ParameterException(spec.commandLine(), "Missing slashing protection database url");
     }
 
+    if (slashingProtectionParameters.getDbPrepareThreshold() < 0
+        || slashingProtectionParameters.getDbStatementCacheQueries() < 0) {
+      throw new ParameterException(
+          spec.commandLine(),
+          "Slashing protection database prepare threshold and statement cache size must not be negative");
+    }
+
+    if (config.getSigningThreadPoolSize() < 1
+        || config.getSlashingProtectionThreadPoolSize() < 1) {
+      throw new ParameterException(
+          spec.commandLine(), "Signing and slashing protection thread pool sizes must be positive");
+    }
+
+    if (config.getSigningBatchMaxSize() < 1) {
+      throw new ParameterException(
+          spec.commandLine(), "Signing batch maximum size must be positive");
+    }
+
+    validatePoolArgs();
+    validateCheckDeadlineArgs();
+    validateReactiveClientArgs();
+
+    if (signatureCacheParameters.getSignatureCacheMaximumSize() < 1
+        || signatureCacheParameters.getSignatureCacheExpirySeconds() < 1) {
+      throw new ParameterException(
+          spec.commandLine(), "Signature cache size and expiry must be positive");
+    }
+
+    final int epochWindow = slashingProtectionParameters.getAttestationSpanIndexEpochWindow();
+    if (epochWindow < 1 || epochWindow > AttestationSpanIndex.MAX_EPOCH_WINDOW) {
+      throw new ParameterException(
+          spec.commandLine(),
+          String.format(
+              "Attestation index epochs must be between 1 and %d",
+              AttestationSpanIndex.MAX_EPOCH_WINDOW));
+    }
+
+    if (slashingProtectionParameters.getAttestationBatchWindowMicros() < 0
+        || slashingProtectionParameters.getAttestationBatchMaxSize() < 1) {
+      throw new ParameterException(
+          spec.commandLine(),
+          "Slashing protection batch window must not be negative and batch max size must be positive");
+    }
+
+    if (slashingProtectionParameters.getPruningEpochsToKeep() < 1
+        || slashingProtectionParameters.getPruningSlotsPerEpoch() < 1
+        || slashingProtectionParameters.getPruningInterval() < 1) {
+      throw new ParameterException(
+          spec.commandLine(),
+          "Slashing protection pruning epochs to keep, slots per epoch and interval must be positive");
+    }
+
     if (azureKeyVaultParameters.isAzureKeyVaultEnabled()) {
 
       List<String> missingAzureFields = Lists.newArrayList();
@@ -130,6 +202,86 @@ public class Eth2SubCommand extends ModeSubCommand {
     }
   }
 
+  // HikariCP's own limits, which it would otherwise silently replace with its defaults
+  private void validatePoolArgs() {
+    if (slashingProtectionParameters.getDbPoolSize() < 1
+        || slashingProtectionParameters.getDbPoolMinimumIdle() < 0
+        || slashingProtectionParameters.getDbPoolMinimumIdle()
+            > slashingProtectionParameters.getDbPoolSize()) {
+      throw new ParameterException(
+          spec.commandLine(),
+          "Slashing protection database pool size must be positive and minimum idle must be between 0 and the pool size");
+    }
+
+    if (slashingProtectionParameters.getDbPoolConnectionTimeoutMillis() < 250
+        || slashingProtectionParameters.getDbPoolValidationTimeoutMillis() < 250
+        || slashingProtectionParameters.getDbPoolValidationTimeoutMillis()
+            >= slashingProtectionParameters.getDbPoolConnectionTimeoutMillis()) {
+      throw new ParameterException(
+          spec.commandLine(),
+          "Slashing protection database pool connection and validation timeouts must be at least 250 milliseconds and the validation timeout less than the connection timeout");
+    }
+
+    final long leakDetectionThreshold =
+        slashingProtectionParameters.getDbPoolLeakDetectionThresholdMillis();
+    if (leakDetectionThreshold != 0 && leakDetectionThreshold < 2000) {
+      throw new ParameterException(
+          spec.commandLine(),
+          "Slashing protection database pool leak detection threshold must be 0 or at least 2000 milliseconds");
+    }
+  }
+
+  private void validateCheckDeadlineArgs() {
+    // a deadline also caps the pool connection timeout, which HikariCP requires to be 250ms or more
+    final long blockDeadline = slashingProtectionParameters.getBlockCheckDeadlineMillis();
+    final long attestationDeadline =
+        slashingProtectionParameters.getAttestationCheckDeadlineMillis();
+    if ((blockDeadline != 0 && blockDeadline < 250)
+        || (attestationDeadline != 0 && attestationDeadline < 250)) {
+      throw new ParameterException(
+          spec.commandLine(),
+          "Slashing protection block and attestation check deadlines must be 0 or at least 250 milliseconds");
+    }
+
+    if (slashingProtectionParameters.getCircuitBreakerFailureThreshold() < 0
+        || slashingProtectionParameters.getCircuitBreakerOpenDurationMillis() < 1) {
+      throw new ParameterException(
+          spec.commandLine(),
+          "Slashing protection circuit breaker failure threshold must not be negative and open duration must be positive");
+    }
+  }
+
+  private void validateReactiveClientArgs() {
+    if (slashingProtectionParameters.getReactivePoolSize() < 1
+        || slashingProtectionParameters.getReactivePipeliningLimit() < 1) {
+      throw new ParameterException(
+          spec.commandLine(),
+          "Slashing protection reactive pool size and pipelining limit must be positive");
+    }
+
+    if (!slashingProtectionParameters.isReactiveClientEnabled()) {
+      return;
+    }
+    // the reactive client relies on the database functions to serialise checks per validator
+    if (slashingProtectionParameters.getLockStrategy() == ValidatorLockStrategy.IN_PROCESS) {
+      throw new ParameterException(
+          spec.commandLine(),
+          "Slashing protection reactive client cannot be used with the IN_PROCESS lock strategy");
+    }
+    // none of these are applied to the reactive checks, so enabling them would only mislead
+    if (slashingProtectionParameters.getCircuitBreakerFailureThreshold() != 0) {
+      throw new ParameterException(
+          spec.commandLine(),
+          "Slashing protection reactive client cannot be used with the circuit breaker, set its failure threshold to 0");
+    }
+    if (slashingProtectionParameters.isAttestationSpanIndexEnabled()
+        || slashingProtectionParameters.isAttestationBatchingEnabled()) {
+      throw new ParameterException(
+          spec.commandLine(),
+          "Slashing protection reactive client cannot be used with the attestation index or batching");
+    }
+  }
+
   @Override
   public String getCommandName() {
     return COMMAND_NAME;
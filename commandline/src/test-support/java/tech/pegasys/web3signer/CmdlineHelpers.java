@@ -21,6 +21,8 @@ public class CmdlineHelpers {
         + "--http-listen-host=localhost "
         + "--key-store-path=./keys "
         + "--idle-connection-timeout-seconds=45 "
+        + "--signing-thread-pool-size=3 "
+        + "--slashing-protection-thread-pool-size=7 "
         + "--logging=INFO ";
   }
 
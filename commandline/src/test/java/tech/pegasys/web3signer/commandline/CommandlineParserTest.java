@@ -61,6 +61,8 @@ class CommandlineParserTest {
     assertThat(config.getHttpListenHost()).isEqualTo("localhost");
     assertThat(config.getHttpListenPort()).isEqualTo(5001);
     assertThat(config.getIdleConnectionTimeoutSeconds()).isEqualTo(45);
+    assertThat(config.getSigningThreadPoolSize()).isEqualTo(3);
+    assertThat(config.getSlashingProtectionThreadPoolSize()).isEqualTo(7);
   }
 
   @Test
@@ -104,6 +106,66 @@ class CommandlineParserTest {
         "idle-connection-timeout-seconds", config::getIdleConnectionTimeoutSeconds, 30);
   }
 
+  @Test
+  void missingSigningThreadPoolSizeDefaultsToAvailableProcessors() {
+    missingOptionalParameterIsValidAndMeetsDefault(
+        "signing-thread-pool-size",
+        config::getSigningThreadPoolSize,
+        Runtime.getRuntime().availableProcessors());
+  }
+
+  @Test
+  void virtualThreadsAreDisabledByDefault() {
+    final int result = parser.parseCommandLine(validBaseCommandOptions().split(" "));
+
+    assertThat(result).isZero();
+    assertThat(config.isVirtualThreadsEnabled()).isFalse();
+  }
+
+  @Test
+  void virtualThreadsCanBeEnabled() {
+    final String cmdline = validBaseCommandOptions() + "--virtual-threads-enabled";
+
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+
+    assertThat(result).isZero();
+    assertThat(config.isVirtualThreadsEnabled()).isTrue();
+  }
+
+  @Test
+  void eth2SubcommandRejectsEmptySigningThreadPool() {
+    String cmdline = validBaseCommandOptions();
+    cmdline =
+        removeFieldFrom(cmdline, "signing-thread-pool-size")
+            + "--signing-thread-pool-size=0 eth2 --slashing-protection-enabled=false";
+
+    parser.registerSubCommands(new MockEth2SubCommand());
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isNotZero();
+    assertThat(commandError.toString())
+        .contains("Signing and slashing protection thread pool sizes must be positive");
+  }
+
+  @Test
+  void missingSigningBatchMaxSizeDefaultsTo1024() {
+    final int result = parser.parseCommandLine(validBaseCommandOptions().split(" "));
+
+    assertThat(result).isZero();
+    assertThat(config.getSigningBatchMaxSize()).isEqualTo(1024);
+  }
+
+  @Test
+  void eth2SubcommandRejectsEmptySigningBatch() {
+    final String cmdline =
+        validBaseCommandOptions()
+            + "--signing-batch-max-size=0 eth2 --slashing-protection-enabled=false";
+
+    parser.registerSubCommands(new MockEth2SubCommand());
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isNotZero();
+    assertThat(commandError.toString()).contains("Signing batch maximum size must be positive");
+  }
+
   @Test
   void eth2SubcommandRequiresSlashingDatabaseUrlWhenSlashingEnabled() {
     String cmdline = validBaseCommandOptions();
@@ -115,6 +177,22 @@ class CommandlineParserTest {
     assertThat(commandError.toString()).contains("Missing slashing protection database url");
   }
 
+  @Test
+  void eth2SubcommandRejectsReactiveClientWithCircuitBreaker() {
+    String cmdline = validBaseCommandOptions();
+    cmdline =
+        cmdline
+            + "eth2 --slashing-protection-enabled=false "
+            + "--slashing-protection-reactive-client-enabled=true "
+            + "--slashing-protection-circuit-breaker-failure-threshold=5";
+
+    parser.registerSubCommands(new MockEth2SubCommand());
+    final int result = parser.parseCommandLine(cmdline.split(" "));
+    assertThat(result).isNotZero();
+    assertThat(commandError.toString())
+        .contains("Slashing protection reactive client cannot be used with the circuit breaker");
+  }
+
   @Test
   void missingAzureKeyVaultParamsProducesSuitableError() {
     String cmdline = validBaseCommandOptions();
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers;
+
+import tech.pegasys.teku.bls.BLSKeyPair;
+import tech.pegasys.web3signer.core.multikey.BoundedArtifactSignerProvider;
+import tech.pegasys.web3signer.core.multikey.DefaultArtifactSignerProvider;
+import tech.pegasys.web3signer.core.signing.ArtifactSignature;
+import tech.pegasys.web3signer.core.signing.ArtifactSigner;
+import tech.pegasys.web3signer.core.signing.BlsArtifactSigner;
+import tech.pegasys.web3signer.core.util.VirtualThreads;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the throughput and latency percentiles of signing requests dispatched to a fixed worker
+ * pool, sized like the Vert.x default, against a virtual thread per request. Each benchmark thread
+ * is a connection with one request in flight, and each request waits on a simulated slashing
+ * database round trip before signing. Signing is bounded to the available processors in both
+ * modes.
+ *
+ * <p>The VIRTUAL_THREADS dispatch needs Java 21 or later.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(256)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class VirtualThreadDispatchBenchmark {
+
+  private static final int WORKER_POOL_SIZE = 20;
+
+  public enum Dispatch {
+    WORKER_POOL,
+    VIRTUAL_THREADS
+  }
+
+  @Param({"WORKER_POOL", "VIRTUAL_THREADS"})
+  public Dispatch dispatch;
+
+  @Param({"1", "5"})
+  public long databaseLatencyMillis;
+
+  private ExecutorService executor;
+  private ArtifactSigner signer;
+  private Bytes32 signingRoot;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    executor =
+        dispatch == Dispatch.VIRTUAL_THREADS
+            ? VirtualThreads.newVirtualThreadPerTaskExecutor()
+            : Executors.newFixedThreadPool(WORKER_POOL_SIZE);
+    final ArtifactSigner blsSigner = new BlsArtifactSigner(BLSKeyPair.random(1));
+    signer =
+        new BoundedArtifactSignerProvider(
+                DefaultArtifactSignerProvider.create(List.of(blsSigner)),
+                Runtime.getRuntime().availableProcessors(),
+                new NoOpMetricsSystem())
+            .getSigner(blsSigner.getIdentifier())
+            .orElseThrow();
+    signingRoot = Bytes32.random(new Random(1));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public ArtifactSignature signRequest() {
+    return CompletableFuture.supplyAsync(this::handleRequest, executor).join();
+  }
+
+  private ArtifactSignature handleRequest() {
+    // stands in for the blocking slashing protection database check
+    Uninterruptibles.sleepUninterruptibly(databaseLatencyMillis, TimeUnit.MILLISECONDS);
+    return signer.sign(signingRoot);
+  }
+}
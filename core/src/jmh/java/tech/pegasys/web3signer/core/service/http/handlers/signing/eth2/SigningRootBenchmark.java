@@ -0,0 +1,220 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
+
+import static java.util.Collections.emptyList;
+import static tech.pegasys.teku.datastructures.util.BeaconStateUtil.compute_domain;
+import static tech.pegasys.teku.datastructures.util.BeaconStateUtil.compute_signing_root;
+import static tech.pegasys.teku.util.config.Constants.DOMAIN_DEPOSIT;
+
+import tech.pegasys.teku.api.schema.AggregateAndProof;
+import tech.pegasys.teku.api.schema.Attestation;
+import tech.pegasys.teku.api.schema.AttestationData;
+import tech.pegasys.teku.api.schema.BLSPubKey;
+import tech.pegasys.teku.api.schema.BLSSignature;
+import tech.pegasys.teku.api.schema.BeaconBlock;
+import tech.pegasys.teku.api.schema.BeaconBlockBody;
+import tech.pegasys.teku.api.schema.Checkpoint;
+import tech.pegasys.teku.api.schema.Eth1Data;
+import tech.pegasys.teku.api.schema.Fork;
+import tech.pegasys.teku.api.schema.VoluntaryExit;
+import tech.pegasys.teku.core.signatures.SigningRootUtil;
+import tech.pegasys.teku.infrastructure.unsigned.UInt64;
+import tech.pegasys.teku.ssz.SSZTypes.Bitlist;
+import tech.pegasys.teku.ssz.SSZTypes.Bytes4;
+import tech.pegasys.web3signer.core.service.http.ArtifactType;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the signing root computation of each artifact type using cached signing domains against
+ * converting the fork info and computing the domain with Teku for every request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@org.openjdk.jmh.annotations.Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SigningRootBenchmark {
+
+  private static final Bytes32 ROOT =
+      Bytes32.fromHexString("0xb2eedb01adbd02c828d5eec09b4c70cbba12ffffba525ebf48aca33028e8ad89");
+  private static final BLSSignature SIGNATURE =
+      BLSSignature.fromHexString(
+          "0xa63f73a03f1f42b1fd0a988b614d511eb346d0a91c809694ef76df5ae021f0f144d64e612d735bc8820950cf6f7f84cd0ae194bfe3d4242fe79688f83462e3f69d9d33de71aab0721b7dab9d6960875e5fdfd26b171a75fb51af822043820c47");
+
+  @Param({
+    "BLOCK",
+    "ATTESTATION",
+    "AGGREGATE_AND_PROOF",
+    "AGGREGATION_SLOT",
+    "RANDAO_REVEAL",
+    "VOLUNTARY_EXIT",
+    "DEPOSIT"
+  })
+  public ArtifactType artifactType;
+
+  private final SigningDomains signingDomains = new SigningDomains();
+  private Eth2SigningRequestBody body;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    body = createRequest(artifactType);
+  }
+
+  @Benchmark
+  public Bytes cachedSigningDomains() {
+    return Eth2SignForIdentifierHandler.computeSigningRoot(body, signingDomains);
+  }
+
+  @Benchmark
+  public Bytes tekuSigningRootUtil() {
+    switch (body.getType()) {
+      case BLOCK:
+        return SigningRootUtil.signingRootForSignBlock(
+            body.getBlock().asInternalBeaconBlock(), body.getForkInfo().asInternalForkInfo());
+      case ATTESTATION:
+        return SigningRootUtil.signingRootForSignAttestationData(
+            body.getAttestation().asInternalAttestationData(),
+            body.getForkInfo().asInternalForkInfo());
+      case AGGREGATE_AND_PROOF:
+        return SigningRootUtil.signingRootForSignAggregateAndProof(
+            body.getAggregateAndProof().asInternalAggregateAndProof(),
+            body.getForkInfo().asInternalForkInfo());
+      case AGGREGATION_SLOT:
+        return SigningRootUtil.signingRootForSignAggregationSlot(
+            body.getAggregationSlot().getSlot(), body.getForkInfo().asInternalForkInfo());
+      case RANDAO_REVEAL:
+        return SigningRootUtil.signingRootForRandaoReveal(
+            body.getRandaoReveal().getEpoch(), body.getForkInfo().asInternalForkInfo());
+      case VOLUNTARY_EXIT:
+        return SigningRootUtil.signingRootForSignVoluntaryExit(
+            body.getVoluntaryExit().asInternalVoluntaryExit(),
+            body.getForkInfo().asInternalForkInfo());
+      case DEPOSIT:
+        return compute_signing_root(
+            body.getDeposit().asInternalDepositMessage(), compute_domain(DOMAIN_DEPOSIT));
+      default:
+        throw new IllegalStateException("Signing root unimplemented for type " + body.getType());
+    }
+  }
+
+  private static Eth2SigningRequestBody createRequest(final ArtifactType type) {
+    final ForkInfo forkInfo =
+        new ForkInfo(
+            new Fork(
+                Bytes4.fromHexString("0x00000001"),
+                Bytes4.fromHexString("0x00000002"),
+                UInt64.valueOf(1)),
+            Bytes32.fromHexString(
+                "0x270d43e74ce340de4bca2b1936beca0f4f5408d9e78aec4850920baf659d5b69"));
+    final AttestationData attestationData =
+        new AttestationData(
+            UInt64.valueOf(32),
+            UInt64.valueOf(5),
+            ROOT,
+            new Checkpoint(UInt64.valueOf(3), Bytes32.ZERO),
+            new Checkpoint(UInt64.valueOf(4), ROOT));
+    switch (type) {
+      case BLOCK:
+        return request(type, forkInfo, createBlock(), null, null, null, null, null, null);
+      case ATTESTATION:
+        return request(type, forkInfo, null, attestationData, null, null, null, null, null);
+      case AGGREGATE_AND_PROOF:
+        final AggregateAndProof aggregateAndProof =
+            new AggregateAndProof(
+                UInt64.ONE,
+                new Attestation(
+                    Bitlist.fromBytes(Bytes.fromHexString("0x03"), 2048L),
+                    attestationData,
+                    SIGNATURE),
+                SIGNATURE);
+        return request(type, forkInfo, null, null, null, aggregateAndProof, null, null, null);
+      case AGGREGATION_SLOT:
+        final AggregationSlot aggregationSlot = new AggregationSlot(UInt64.valueOf(119));
+        return request(type, forkInfo, null, null, aggregationSlot, null, null, null, null);
+      case RANDAO_REVEAL:
+        final RandaoReveal randaoReveal = new RandaoReveal(UInt64.valueOf(3));
+        return request(type, forkInfo, null, null, null, null, null, randaoReveal, null);
+      case VOLUNTARY_EXIT:
+        final VoluntaryExit voluntaryExit = new VoluntaryExit(UInt64.valueOf(119), UInt64.ZERO);
+        return request(type, forkInfo, null, null, null, null, voluntaryExit, null, null);
+      case DEPOSIT:
+        final DepositMessage depositMessage =
+            new DepositMessage(
+                BLSPubKey.fromHexString(
+                    "0x8f82597c919c056571a05dfe83e6a7d32acf9ad8931be04d11384e95468cd68b40129864ae12745f774654bbac09b057"),
+                Bytes32.random(new Random(2)),
+                UInt64.valueOf(32));
+        return request(type, null, null, null, null, null, null, null, depositMessage);
+      default:
+        throw new IllegalStateException("Unknown eth2 signing type " + type);
+    }
+  }
+
+  private static BeaconBlock createBlock() {
+    return new BeaconBlock(
+        UInt64.valueOf(40),
+        UInt64.valueOf(5),
+        ROOT,
+        ROOT,
+        new BeaconBlockBody(
+            SIGNATURE,
+            new Eth1Data(ROOT, UInt64.valueOf(8), ROOT),
+            Bytes32.ZERO,
+            emptyList(),
+            emptyList(),
+            emptyList(),
+            emptyList(),
+            emptyList()));
+  }
+
+  private static Eth2SigningRequestBody request(
+      final ArtifactType type,
+      final ForkInfo forkInfo,
+      final BeaconBlock block,
+      final AttestationData attestation,
+      final AggregationSlot aggregationSlot,
+      final AggregateAndProof aggregateAndProof,
+      final VoluntaryExit voluntaryExit,
+      final RandaoReveal randaoReveal,
+      final DepositMessage deposit) {
+    return new Eth2SigningRequestBody(
+        type,
+        null,
+        forkInfo,
+        block,
+        attestation,
+        aggregationSlot,
+        aggregateAndProof,
+        voluntaryExit,
+        randaoReveal,
+        deposit);
+  }
+}
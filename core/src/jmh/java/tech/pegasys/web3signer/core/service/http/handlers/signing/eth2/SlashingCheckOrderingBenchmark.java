@@ -0,0 +1,284 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
+
+import tech.pegasys.teku.api.schema.AttestationData;
+import tech.pegasys.teku.api.schema.Checkpoint;
+import tech.pegasys.teku.api.schema.Fork;
+import tech.pegasys.teku.bls.BLSKeyPair;
+import tech.pegasys.teku.infrastructure.unsigned.UInt64;
+import tech.pegasys.teku.ssz.SSZTypes.Bytes4;
+import tech.pegasys.web3signer.core.metrics.SlashingProtectionMetrics;
+import tech.pegasys.web3signer.core.multikey.DefaultArtifactSignerProvider;
+import tech.pegasys.web3signer.core.service.http.ArtifactType;
+import tech.pegasys.web3signer.core.service.http.SigningJsonModule;
+import tech.pegasys.web3signer.core.service.http.handlers.signing.SignerForIdentifier;
+import tech.pegasys.web3signer.core.service.http.metrics.HttpApiMetrics;
+import tech.pegasys.web3signer.core.signing.ArtifactSigner;
+import tech.pegasys.web3signer.core.signing.BlsArtifactSignature;
+import tech.pegasys.web3signer.core.signing.BlsArtifactSigner;
+import tech.pegasys.web3signer.core.signing.KeyType;
+import tech.pegasys.web3signer.core.util.IdentifierUtils;
+import tech.pegasys.web3signer.slashingprotection.SlashingProtection;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.api.RequestParameter;
+import io.vertx.ext.web.api.RequestParameters;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the eth2 signing handler answering attestation requests through the blocking path, for
+ * a range of slashing protection rejection ratios and database latencies. SIGN_THEN_CHECK is the
+ * original ordering as a baseline, signing every request before checking it with slashing
+ * protection. CHECK_THEN_SIGN only signs requests slashing protection permits, SIGN_IN_PARALLEL
+ * signs every request on a parallel signing executor while the check is running and discards the
+ * signatures of rejected requests.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@org.openjdk.jmh.annotations.Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SlashingCheckOrderingBenchmark {
+
+  private static final int VERDICT_COUNT = 1024;
+
+  public enum Ordering {
+    SIGN_THEN_CHECK,
+    CHECK_THEN_SIGN,
+    SIGN_IN_PARALLEL
+  }
+
+  @Param({"SIGN_THEN_CHECK", "CHECK_THEN_SIGN", "SIGN_IN_PARALLEL"})
+  public Ordering ordering;
+
+  @Param({"0.0", "0.5", "0.9", "0.99"})
+  public double rejectionRatio;
+
+  @Param({"0", "500"})
+  public long checkLatencyMicros;
+
+  private final boolean[] verdicts = new boolean[VERDICT_COUNT];
+  private int index;
+  private ExecutorService parallelSigningExecutor;
+  private SimulatedSlashingProtection slashingProtection;
+  private Eth2SignForIdentifierHandler handler;
+  private RoutingContext routingContext;
+  private Object outcome;
+
+  @Setup(Level.Trial)
+  public void setup() throws JsonProcessingException {
+    final Random random = new Random(1);
+    for (int i = 0; i < VERDICT_COUNT; i++) {
+      verdicts[i] = random.nextDouble() >= rejectionRatio;
+    }
+
+    final ArtifactSigner signer = new BlsArtifactSigner(BLSKeyPair.random(1));
+    final SignerForIdentifier<BlsArtifactSignature> signerForIdentifier =
+        new SignerForIdentifier<>(
+            DefaultArtifactSignerProvider.create(List.of(signer)),
+            signature -> signature.getSignatureData().toString(),
+            KeyType.BLS);
+    final ObjectMapper objectMapper =
+        new ObjectMapper()
+            .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .registerModule(new SigningJsonModule());
+    parallelSigningExecutor = Executors.newSingleThreadExecutor();
+    slashingProtection = new SimulatedSlashingProtection();
+    // the baseline signs with a handler that has no slashing protection and checks afterwards
+    handler =
+        Eth2SignForIdentifierHandler.builder(
+                signerForIdentifier,
+                new HttpApiMetrics(new NoOpMetricsSystem(), KeyType.BLS),
+                new SlashingProtectionMetrics(new NoOpMetricsSystem()),
+                objectMapper)
+            .slashingProtection(
+                ordering == Ordering.SIGN_THEN_CHECK
+                    ? Optional.empty()
+                    : Optional.of(slashingProtection))
+            .parallelSigningExecutor(
+                ordering == Ordering.SIGN_IN_PARALLEL
+                    ? Optional.of(parallelSigningExecutor)
+                    : Optional.empty())
+            .build();
+    routingContext =
+        routingContext(
+            IdentifierUtils.normaliseIdentifier(signer.getIdentifier()),
+            objectMapper.writeValueAsString(attestationRequest()));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    parallelSigningExecutor.shutdownNow();
+  }
+
+  @Benchmark
+  public Object signAttestation() {
+    handler.handle(routingContext);
+    if (ordering == Ordering.SIGN_THEN_CHECK && !slashingProtection.maySign()) {
+      outcome = 403;
+    }
+    return outcome;
+  }
+
+  private RoutingContext routingContext(final String identifier, final String body) {
+    final RequestParameter identifierParameter =
+        stub(RequestParameter.class, toStringReturning(identifier));
+    final RequestParameter bodyParameter = stub(RequestParameter.class, toStringReturning(body));
+    final RequestParameters params =
+        stub(
+            RequestParameters.class,
+            (proxy, method, args) ->
+                method.getName().equals("pathParameter") ? identifierParameter : bodyParameter);
+    final HttpServerResponse response =
+        stub(
+            HttpServerResponse.class,
+            (proxy, method, args) -> {
+              if (method.getName().equals("end")) {
+                outcome = args[0];
+              }
+              return proxy;
+            });
+    return stub(
+        RoutingContext.class,
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "get":
+              return params;
+            case "response":
+              return response;
+            case "fail":
+              outcome = args[0];
+              return null;
+            default:
+              return null;
+          }
+        });
+  }
+
+  private static InvocationHandler toStringReturning(final String value) {
+    return (proxy, method, args) -> method.getName().equals("toString") ? value : null;
+  }
+
+  private static <T> T stub(final Class<T> type, final InvocationHandler handler) {
+    return type.cast(
+        Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+  }
+
+  private static Eth2SigningRequestBody attestationRequest() {
+    final ForkInfo forkInfo =
+        new ForkInfo(
+            new Fork(
+                Bytes4.fromHexString("0x00000001"),
+                Bytes4.fromHexString("0x00000001"),
+                UInt64.valueOf(1)),
+            Bytes32.fromHexString(
+                "0x270d43e74ce340de4bca2b1936beca0f4f5408d9e78aec4850920baf659d5b69"));
+    final AttestationData attestationData =
+        new AttestationData(
+            UInt64.valueOf(32),
+            UInt64.ZERO,
+            Bytes32.fromHexString(
+                "0xb2eedb01adbd02c828d5eec09b4c70cbba12ffffba525ebf48aca33028e8ad89"),
+            new Checkpoint(UInt64.valueOf(2), Bytes32.ZERO),
+            new Checkpoint(UInt64.valueOf(3), Bytes32.ZERO));
+    return new Eth2SigningRequestBody(
+        ArtifactType.ATTESTATION,
+        null,
+        forkInfo,
+        null,
+        attestationData,
+        null,
+        null,
+        null,
+        null,
+        null);
+  }
+
+  /** Stands in for the slashing database, answering with the precomputed verdicts. */
+  private class SimulatedSlashingProtection implements SlashingProtection {
+
+    @Override
+    public boolean maySignAttestation(
+        final Bytes publicKey,
+        final Bytes signingRoot,
+        final org.apache.tuweni.units.bigints.UInt64 sourceEpoch,
+        final org.apache.tuweni.units.bigints.UInt64 targetEpoch) {
+      return maySign();
+    }
+
+    @Override
+    public boolean maySignBlock(
+        final Bytes publicKey,
+        final Bytes signingRoot,
+        final org.apache.tuweni.units.bigints.UInt64 blockSlot) {
+      return maySign();
+    }
+
+    private boolean maySign() {
+      if (checkLatencyMicros > 0) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(checkLatencyMicros));
+      }
+      index = (index + 1) & (VERDICT_COUNT - 1);
+      return verdicts[index];
+    }
+
+    @Override
+    public void registerValidators(final List<Bytes> validators) {}
+
+    @Override
+    public void export(final OutputStream output) {}
+
+    @Override
+    public void importData(final InputStream input) {}
+
+    @Override
+    public void prune() {}
+
+    @Override
+    public void start() {}
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.signing;
+
+import tech.pegasys.teku.bls.BLSKeyPair;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the time per signature of keys sharing a signing root, as a committee does, with the
+ * root hashed to the curve once through the cache against hashing it for every key. Each group of
+ * keys signs a fresh root, so the first key of a group always pays for the hash.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HashToG2CacheBenchmark {
+
+  private static final int KEY_COUNT = 64;
+
+  @Param({"1", "8", "64"})
+  public int keysPerRoot;
+
+  private ArtifactSigner[] cachingSigners;
+  private ArtifactSigner[] uncachedSigners;
+  private Random random;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    if (!HashToG2Cache.isSupported()) {
+      throw new IllegalStateException("The blst library is not available");
+    }
+    final HashToG2Cache cache =
+        new HashToG2Cache(HashToG2Cache.DEFAULT_MAXIMUM_SIZE, new NoOpMetricsSystem());
+    cachingSigners = new ArtifactSigner[KEY_COUNT];
+    uncachedSigners = new ArtifactSigner[KEY_COUNT];
+    for (int i = 0; i < KEY_COUNT; i++) {
+      final BLSKeyPair keyPair = BLSKeyPair.random(i);
+      cachingSigners[i] = new BlsArtifactSigner(keyPair, Optional.of(cache));
+      uncachedSigners[i] = new BlsArtifactSigner(keyPair);
+    }
+    random = new Random(1);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(KEY_COUNT)
+  public void cachedHashToG2(final Blackhole blackhole) {
+    signRoots(cachingSigners, blackhole);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(KEY_COUNT)
+  public void hashToG2PerSignature(final Blackhole blackhole) {
+    signRoots(uncachedSigners, blackhole);
+  }
+
+  private void signRoots(final ArtifactSigner[] signers, final Blackhole blackhole) {
+    // every key signs once, in groups of keysPerRoot sharing a signing root
+    Bytes32 signingRoot = null;
+    for (int i = 0; i < KEY_COUNT; i++) {
+      if (i % keysPerRoot == 0) {
+        signingRoot = Bytes32.random(random);
+      }
+      blackhole.consume(signers[i].sign(signingRoot));
+    }
+  }
+}
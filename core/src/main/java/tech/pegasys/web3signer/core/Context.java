@@ -14,6 +14,9 @@ package tech.pegasys.web3signer.core;
 
 import tech.pegasys.web3signer.core.service.http.handlers.LogErrorHandler;
 
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
 import io.vertx.core.Vertx;
 import io.vertx.ext.web.api.contract.openapi3.OpenAPI3RouterFactory;
 import org.hyperledger.besu.plugin.services.MetricsSystem;
@@ -23,16 +26,19 @@ public class Context {
   private final MetricsSystem metricsSystem;
   private final LogErrorHandler errorHandler;
   private final Vertx vertx;
+  private final Optional<Executor> virtualThreadExecutor;
 
   public Context(
       final OpenAPI3RouterFactory routerFactory,
       final MetricsSystem metricsSystem,
       final LogErrorHandler errorHandler,
-      final Vertx vertx) {
+      final Vertx vertx,
+      final Optional<Executor> virtualThreadExecutor) {
     this.routerFactory = routerFactory;
     this.metricsSystem = metricsSystem;
     this.errorHandler = errorHandler;
     this.vertx = vertx;
+    this.virtualThreadExecutor = virtualThreadExecutor;
   }
 
   public OpenAPI3RouterFactory getRouterFactory() {
@@ -50,4 +56,9 @@ public class Context {
   public Vertx getVertx() {
     return vertx;
   }
+
+  /** The executor running blocking signing handlers on a virtual thread each, when enabled. */
+  public Optional<Executor> getVirtualThreadExecutor() {
+    return virtualThreadExecutor;
+  }
 }
@@ -40,7 +40,6 @@ import java.util.List;
 import io.vertx.core.Vertx;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.api.contract.openapi3.OpenAPI3RouterFactory;
-import io.vertx.ext.web.impl.BlockingHandlerDecorator;
 
 public class Eth1Runner extends Runner {
 
@@ -55,7 +54,8 @@ public class Eth1Runner extends Runner {
 
   @Override
   protected Router populateRouter(final Context context) {
-    final ArtifactSignerProvider signerProvider = loadSigners(config, context.getVertx());
+    final ArtifactSignerProvider signerProvider =
+        boundSigning(loadSigners(config, context.getVertx()), context);
     incSignerLoadCount(context.getMetricsSystem(), signerProvider.availableIdentifiers().size());
 
     final OpenAPI3RouterFactory routerFactory = context.getRouterFactory();
@@ -71,10 +71,10 @@ public class Eth1Runner extends Runner {
         new SignerForIdentifier<>(signerProvider, this::formatSecpSignature, SECP256K1);
     routerFactory.addHandlerByOperationId(
         ETH1_SIGN.name(),
-        new BlockingHandlerDecorator(
+        blockingSigningHandler(
             new Eth1SignForIdentifierHandler(
                 secpSigner, new HttpApiMetrics(context.getMetricsSystem(), SECP256K1)),
-            false));
+            context));
     routerFactory.addFailureHandlerByOperationId(ETH1_SIGN.name(), errorHandler);
 
     return context.getRouterFactory().getRouter();
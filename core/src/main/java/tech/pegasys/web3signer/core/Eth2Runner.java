@@ -12,10 +12,13 @@
  */
 package tech.pegasys.web3signer.core;
 
+import static tech.pegasys.web3signer.core.metrics.Web3SignerMetricCategory.SIGNING;
 import static tech.pegasys.web3signer.core.service.http.OpenApiOperationsId.ETH2_LIST;
 import static tech.pegasys.web3signer.core.service.http.OpenApiOperationsId.ETH2_SIGN;
+import static tech.pegasys.web3signer.core.service.http.OpenApiOperationsId.ETH2_SIGN_BATCH;
 import static tech.pegasys.web3signer.core.service.http.metrics.HttpApiMetrics.incSignerLoadCount;
 import static tech.pegasys.web3signer.core.signing.KeyType.BLS;
+import static tech.pegasys.web3signer.slashingprotection.SlashingMetricCategory.ETH2_SLASHING_PROTECTION;
 
 import tech.pegasys.signers.azure.AzureKeyVault;
 import tech.pegasys.signers.hashicorp.HashicorpConnectionFactory;
@@ -23,6 +26,7 @@ import tech.pegasys.teku.bls.BLSKeyPair;
 import tech.pegasys.teku.bls.BLSSecretKey;
 import tech.pegasys.web3signer.core.config.AzureKeyVaultParameters;
 import tech.pegasys.web3signer.core.config.Config;
+import tech.pegasys.web3signer.core.config.SignatureCacheParameters;
 import tech.pegasys.web3signer.core.metrics.SlashingProtectionMetrics;
 import tech.pegasys.web3signer.core.multikey.DefaultArtifactSignerProvider;
 import tech.pegasys.web3signer.core.multikey.SignerLoader;
@@ -32,19 +36,28 @@ import tech.pegasys.web3signer.core.multikey.metadata.interlock.InterlockKeyProv
 import tech.pegasys.web3signer.core.multikey.metadata.parser.YamlSignerParser;
 import tech.pegasys.web3signer.core.service.http.SigningJsonModule;
 import tech.pegasys.web3signer.core.service.http.handlers.LogErrorHandler;
+import tech.pegasys.web3signer.core.service.http.handlers.signing.SignatureCache;
 import tech.pegasys.web3signer.core.service.http.handlers.signing.SignerForIdentifier;
+import tech.pegasys.web3signer.core.service.http.handlers.signing.eth2.Eth2SignBatchHandler;
 import tech.pegasys.web3signer.core.service.http.handlers.signing.eth2.Eth2SignForIdentifierHandler;
 import tech.pegasys.web3signer.core.service.http.metrics.HttpApiMetrics;
 import tech.pegasys.web3signer.core.signing.ArtifactSigner;
 import tech.pegasys.web3signer.core.signing.ArtifactSignerProvider;
 import tech.pegasys.web3signer.core.signing.BlsArtifactSignature;
 import tech.pegasys.web3signer.core.signing.BlsArtifactSigner;
+import tech.pegasys.web3signer.core.signing.HashToG2Cache;
+import tech.pegasys.web3signer.core.util.MonitoredExecutor;
+import tech.pegasys.web3signer.slashingprotection.AsyncSlashingProtection;
+import tech.pegasys.web3signer.slashingprotection.ExecutorSlashingProtection;
 import tech.pegasys.web3signer.slashingprotection.SlashingProtection;
 import tech.pegasys.web3signer.slashingprotection.SlashingProtectionFactory;
+import tech.pegasys.web3signer.slashingprotection.SlashingProtectionParameters;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
@@ -54,7 +67,6 @@ import com.google.common.collect.Lists;
 import io.vertx.core.Vertx;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.api.contract.openapi3.OpenAPI3RouterFactory;
-import io.vertx.ext.web.impl.BlockingHandlerDecorator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes;
@@ -63,40 +75,58 @@ import org.hyperledger.besu.plugin.services.MetricsSystem;
 
 public class Eth2Runner extends Runner {
 
-  private final Optional<SlashingProtection> slashingProtection;
   private final AzureKeyVaultParameters azureKeyVaultParameters;
+  private final SlashingProtectionParameters slashingProtectionParameters;
+  private final SignatureCacheParameters signatureCacheParameters;
 
   private static final Logger LOG = LogManager.getLogger();
 
   public Eth2Runner(
       final Config config,
-      final boolean slashingProtectionEnabled,
-      final String slashingProtectionDbUrl,
-      final String slashingProtectionDbUser,
-      final String slashingProtectionDbPassword,
-      final AzureKeyVaultParameters azureKeyVaultParameters) {
+      final SlashingProtectionParameters slashingProtectionParameters,
+      final AzureKeyVaultParameters azureKeyVaultParameters,
+      final SignatureCacheParameters signatureCacheParameters) {
     super(config);
-    this.slashingProtection =
-        createSlashingProtection(
-            slashingProtectionEnabled,
-            slashingProtectionDbUrl,
-            slashingProtectionDbUser,
-            slashingProtectionDbPassword);
     this.azureKeyVaultParameters = azureKeyVaultParameters;
+    this.slashingProtectionParameters = slashingProtectionParameters;
+    this.signatureCacheParameters = signatureCacheParameters;
   }
 
   private Optional<SlashingProtection> createSlashingProtection(
-      final boolean slashingProtectionEnabled,
-      final String slashingProtectionDbUrl,
-      final String slashingProtectionDbUser,
-      final String slashingProtectionDbPassword) {
-    if (slashingProtectionEnabled) {
-      return Optional.of(
-          SlashingProtectionFactory.createSlashingProtection(
-              slashingProtectionDbUrl, slashingProtectionDbUser, slashingProtectionDbPassword));
-    } else {
+      final MetricsSystem metricsSystem, final Vertx vertx) {
+    if (!slashingProtectionParameters.isEnabled()) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        SlashingProtectionFactory.createSlashingProtection(
+            slashingProtectionParameters, metricsSystem, vertx));
+  }
+
+  private AsyncSlashingProtection asyncSlashingProtection(
+      final SlashingProtection slashingProtection, final Optional<Executor> slashingCheckExecutor) {
+    if (slashingProtection instanceof AsyncSlashingProtection) {
+      return (AsyncSlashingProtection) slashingProtection;
+    }
+    return new ExecutorSlashingProtection(slashingProtection, slashingCheckExecutor.orElseThrow());
+  }
+
+  // blocking database calls get threads of their own, so they never hold up signing
+  private Optional<Executor> slashingCheckExecutor(
+      final Optional<SlashingProtection> slashingProtection, final Context context) {
+    if (slashingProtection.isEmpty()
+        || slashingProtection.get() instanceof AsyncSlashingProtection) {
       return Optional.empty();
     }
+    return Optional.of(
+        context
+            .getVirtualThreadExecutor()
+            .orElseGet(
+                () ->
+                    new MonitoredExecutor(
+                        "slashing_check",
+                        config.getSlashingProtectionThreadPoolSize(),
+                        context.getMetricsSystem(),
+                        ETH2_SLASHING_PROTECTION)));
   }
 
   @Override
@@ -106,26 +136,34 @@ public class Eth2Runner extends Runner {
 
   @Override
   public Router populateRouter(final Context context) {
+    final Optional<SlashingProtection> slashingProtection =
+        createSlashingProtection(context.getMetricsSystem(), context.getVertx());
     final ArtifactSignerProvider signerProvider =
-        loadSigners(config, context.getVertx(), context.getMetricsSystem());
+        boundSigning(
+            loadSigners(
+                config, context.getVertx(), context.getMetricsSystem(), slashingProtection),
+            context);
     incSignerLoadCount(context.getMetricsSystem(), signerProvider.availableIdentifiers().size());
+    // batching and pruning run only while serving requests, not for the eth2 subcommands
+    slashingProtection.ifPresent(SlashingProtection::start);
 
-    registerEth2Routes(
-        context.getRouterFactory(),
-        signerProvider,
-        context.getErrorHandler(),
-        context.getMetricsSystem(),
-        slashingProtection);
+    registerEth2Routes(context, signerProvider, slashingProtection);
 
     return context.getRouterFactory().getRouter();
   }
 
   private void registerEth2Routes(
-      final OpenAPI3RouterFactory routerFactory,
+      final Context context,
       final ArtifactSignerProvider blsSignerProvider,
-      final LogErrorHandler errorHandler,
-      final MetricsSystem metricsSystem,
       final Optional<SlashingProtection> slashingProtection) {
+    final OpenAPI3RouterFactory routerFactory = context.getRouterFactory();
+    final LogErrorHandler errorHandler = context.getErrorHandler();
+    final MetricsSystem metricsSystem = context.getMetricsSystem();
+    final Optional<Executor> slashingCheckExecutor =
+        slashingCheckExecutor(slashingProtection, context);
+    final Optional<AsyncSlashingProtection> asyncSlashingProtection =
+        slashingProtection.map(
+            protection -> asyncSlashingProtection(protection, slashingCheckExecutor));
     final ObjectMapper objectMapper =
         new ObjectMapper()
             .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
@@ -137,25 +175,87 @@ public class Eth2Runner extends Runner {
 
     final SignerForIdentifier<BlsArtifactSignature> blsSigner =
         new SignerForIdentifier<>(blsSignerProvider, this::formatBlsSignature, BLS);
-    routerFactory.addHandlerByOperationId(
-        ETH2_SIGN.name(),
-        new BlockingHandlerDecorator(
-            new Eth2SignForIdentifierHandler(
-                blsSigner,
-                new HttpApiMetrics(metricsSystem, BLS),
-                new SlashingProtectionMetrics(metricsSystem),
-                slashingProtection,
-                objectMapper),
-            false));
+    final HttpApiMetrics httpMetrics = new HttpApiMetrics(metricsSystem, BLS);
+    final SlashingProtectionMetrics slashingMetrics = new SlashingProtectionMetrics(metricsSystem);
+    final Optional<SignatureCache> signatureCache = createSignatureCache(metricsSystem);
+    // signatures are computed on threads of their own rather than the Vert.x worker pool, so the
+    // handlers never block and run on the event loop
+    final Executor signingExecutor =
+        new MonitoredExecutor(
+            "eth2_signing", config.getSigningThreadPoolSize(), metricsSystem, SIGNING);
+    final Optional<Executor> parallelSigningExecutor =
+        parallelSigningExecutor(slashingProtection, signingExecutor);
+    if (context.getVirtualThreadExecutor().isPresent()) {
+      // a virtual thread per request can wait on the database itself, so use the blocking path
+      routerFactory.addHandlerByOperationId(
+          ETH2_SIGN.name(),
+          blockingSigningHandler(
+              Eth2SignForIdentifierHandler.builder(
+                      blsSigner, httpMetrics, slashingMetrics, objectMapper)
+                  .slashingProtection(slashingProtection)
+                  .parallelSigningExecutor(parallelSigningExecutor)
+                  .slashingCheckExecutor(slashingCheckExecutor)
+                  .signatureCache(signatureCache)
+                  .build(),
+              context));
+    } else {
+      routerFactory.addHandlerByOperationId(
+          ETH2_SIGN.name(),
+          Eth2SignForIdentifierHandler.builder(
+                  blsSigner, httpMetrics, slashingMetrics, objectMapper)
+              .slashingProtection(asyncSlashingProtection.map(SlashingProtection.class::cast))
+              .parallelSigningExecutor(parallelSigningExecutor)
+              .signatureCache(signatureCache)
+              .signingExecutor(Optional.of(signingExecutor))
+              .build());
+    }
     routerFactory.addFailureHandlerByOperationId(ETH2_SIGN.name(), errorHandler);
+
+    routerFactory.addHandlerByOperationId(
+        ETH2_SIGN_BATCH.name(),
+        new Eth2SignBatchHandler(
+            blsSigner,
+            httpMetrics,
+            slashingMetrics,
+            asyncSlashingProtection,
+            objectMapper,
+            signingExecutor,
+            signatureCache,
+            config.getSigningBatchMaxSize(),
+            metricsSystem));
+    routerFactory.addFailureHandlerByOperationId(ETH2_SIGN_BATCH.name(), errorHandler);
+  }
+
+  private Optional<Executor> parallelSigningExecutor(
+      final Optional<SlashingProtection> slashingProtection, final Executor signingExecutor) {
+    if (!slashingProtectionParameters.isParallelSigningEnabled() || slashingProtection.isEmpty()) {
+      return Optional.empty();
+    }
+    LOG.info("Signing in parallel with slashing protection checks");
+    return Optional.of(signingExecutor);
+  }
+
+  private Optional<SignatureCache> createSignatureCache(final MetricsSystem metricsSystem) {
+    if (!signatureCacheParameters.isSignatureCacheEnabled()) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        new SignatureCache(
+            signatureCacheParameters.getSignatureCacheMaximumSize(),
+            Duration.ofSeconds(signatureCacheParameters.getSignatureCacheExpirySeconds()),
+            metricsSystem));
   }
 
   private ArtifactSignerProvider loadSigners(
-      final Config config, final Vertx vertx, final MetricsSystem metricsSystem) {
+      final Config config,
+      final Vertx vertx,
+      final MetricsSystem metricsSystem,
+      final Optional<SlashingProtection> slashingProtection) {
 
     final List<ArtifactSigner> signers = Lists.newArrayList();
     final HashicorpConnectionFactory hashicorpConnectionFactory =
         new HashicorpConnectionFactory(vertx);
+    final Optional<HashToG2Cache> hashToG2Cache = createHashToG2Cache(metricsSystem);
 
     try (final InterlockKeyProvider interlockKeyProvider = new InterlockKeyProvider(vertx)) {
       final AbstractArtifactSignerFactory artifactSignerFactory =
@@ -164,7 +264,7 @@ public class Eth2Runner extends Runner {
               metricsSystem,
               hashicorpConnectionFactory,
               interlockKeyProvider,
-              BlsArtifactSigner::new);
+              keyPair -> new BlsArtifactSigner(keyPair, hashToG2Cache));
 
       signers.addAll(
           SignerLoader.load(
@@ -174,7 +274,7 @@ public class Eth2Runner extends Runner {
     }
 
     if (azureKeyVaultParameters.isAzureKeyVaultEnabled()) {
-      signers.addAll(loadAzureSigners());
+      signers.addAll(loadAzureSigners(hashToG2Cache));
     }
 
     final List<Bytes> validators =
@@ -182,13 +282,24 @@ public class Eth2Runner extends Runner {
             .map(ArtifactSigner::getIdentifier)
             .map(Bytes::fromHexString)
             .collect(Collectors.toList());
-    slashingProtection.ifPresent(
-        slashingProtection -> slashingProtection.registerValidators(validators));
+    slashingProtection.ifPresent(protection -> protection.registerValidators(validators));
 
     return DefaultArtifactSignerProvider.create(signers);
   }
 
-  final Collection<ArtifactSigner> loadAzureSigners() {
+  private Optional<HashToG2Cache> createHashToG2Cache(final MetricsSystem metricsSystem) {
+    if (!signatureCacheParameters.isHashToCurveCacheEnabled()) {
+      LOG.info("Hash to curve cache disabled, messages are hashed to the curve per signature");
+      return Optional.empty();
+    }
+    if (!HashToG2Cache.isSupported()) {
+      LOG.warn("The blst library is not available, messages are hashed to the curve per signature");
+      return Optional.empty();
+    }
+    return Optional.of(new HashToG2Cache(HashToG2Cache.DEFAULT_MAXIMUM_SIZE, metricsSystem));
+  }
+
+  final Collection<ArtifactSigner> loadAzureSigners(final Optional<HashToG2Cache> hashToG2Cache) {
     final AzureKeyVault keyVault =
         new AzureKeyVault(
             azureKeyVaultParameters.getClientlId(),
@@ -202,7 +313,7 @@ public class Eth2Runner extends Runner {
             final Bytes privateKeyBytes = Bytes.fromHexString(value);
             final BLSKeyPair keyPair =
                 new BLSKeyPair(BLSSecretKey.fromBytes(Bytes32.wrap(privateKeyBytes)));
-            return new BlsArtifactSigner(keyPair);
+            return new BlsArtifactSigner(keyPair, hashToG2Cache);
           } catch (final Exception e) {
             LOG.error("Failed to load secret named {} from azure key vault.", name);
             return null;
@@ -42,7 +42,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.arteam.simplejsonrpc.server.JsonRpcServer;
 import io.vertx.core.Vertx;
 import io.vertx.ext.web.Router;
-import io.vertx.ext.web.api.contract.openapi3.OpenAPI3RouterFactory;
 import io.vertx.ext.web.handler.BodyHandler;
 import org.hyperledger.besu.plugin.services.MetricsSystem;
 
@@ -64,19 +63,17 @@ public class FilecoinRunner extends Runner {
   @Override
   protected Router populateRouter(final Context context) {
     final ArtifactSignerProvider signerProvider =
-        loadSigners(config, context.getVertx(), context.getMetricsSystem());
+        boundSigning(loadSigners(config, context.getVertx(), context.getMetricsSystem()), context);
     incSignerLoadCount(context.getMetricsSystem(), signerProvider.availableIdentifiers().size());
 
-    return registerFilecoinJsonRpcRoute(
-        context.getRouterFactory(), context.getMetricsSystem(), signerProvider);
+    return registerFilecoinJsonRpcRoute(context, signerProvider);
   }
 
   private Router registerFilecoinJsonRpcRoute(
-      final OpenAPI3RouterFactory routerFactory,
-      final MetricsSystem metricsSystem,
-      final ArtifactSignerProvider fcSigners) {
+      final Context context, final ArtifactSignerProvider fcSigners) {
 
-    final Router router = routerFactory.getRouter();
+    final Router router = context.getRouterFactory().getRouter();
+    final MetricsSystem metricsSystem = context.getMetricsSystem();
 
     final FcJsonRpcMetrics fcJsonRpcMetrics = new FcJsonRpcMetrics(metricsSystem);
     final FcJsonRpc fileCoinJsonRpc = new FcJsonRpc(fcSigners, fcJsonRpcMetrics);
@@ -87,13 +84,17 @@ public class FilecoinRunner extends Runner {
         .post(FC_JSON_RPC_PATH)
         .handler(fcJsonRpcMetrics::incTotalFilecoinRequests)
         .handler(BodyHandler.create())
-        .blockingHandler(
-            routingContext -> {
-              final String body = routingContext.getBodyAsString();
-              final String jsonRpcResponse = jsonRpcServer.handle(body, fileCoinJsonRpc);
-              routingContext.response().putHeader(CONTENT_TYPE, JSON_UTF_8).end(jsonRpcResponse);
-            },
-            false);
+        .handler(
+            blockingSigningHandler(
+                routingContext -> {
+                  final String body = routingContext.getBodyAsString();
+                  final String jsonRpcResponse = jsonRpcServer.handle(body, fileCoinJsonRpc);
+                  routingContext
+                      .response()
+                      .putHeader(CONTENT_TYPE, JSON_UTF_8)
+                      .end(jsonRpcResponse);
+                },
+                context));
 
     return router;
   }
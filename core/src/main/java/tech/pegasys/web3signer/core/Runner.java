@@ -18,11 +18,15 @@ import tech.pegasys.web3signer.core.config.ClientAuthConstraints;
 import tech.pegasys.web3signer.core.config.Config;
 import tech.pegasys.web3signer.core.config.TlsOptions;
 import tech.pegasys.web3signer.core.metrics.MetricsEndpoint;
+import tech.pegasys.web3signer.core.multikey.BoundedArtifactSignerProvider;
 import tech.pegasys.web3signer.core.service.http.HostAllowListHandler;
+import tech.pegasys.web3signer.core.service.http.handlers.ExecutorHandlerDecorator;
 import tech.pegasys.web3signer.core.service.http.handlers.LogErrorHandler;
 import tech.pegasys.web3signer.core.service.http.handlers.PublicKeysListHandler;
 import tech.pegasys.web3signer.core.service.http.handlers.UpcheckHandler;
+import tech.pegasys.web3signer.core.signing.ArtifactSignerProvider;
 import tech.pegasys.web3signer.core.util.FileUtil;
+import tech.pegasys.web3signer.core.util.VirtualThreads;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -35,6 +39,7 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Charsets;
@@ -48,6 +53,7 @@ import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.net.PfxOptions;
 import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.api.contract.openapi3.OpenAPI3RouterFactory;
 import io.vertx.ext.web.handler.ResponseContentTypeHandler;
 import io.vertx.ext.web.impl.BlockingHandlerDecorator;
@@ -102,7 +108,9 @@ public abstract class Runner implements Runnable {
       registerUpcheckRoute(routerFactory, errorHandler);
       registerHttpHostAllowListHandler(routerFactory);
 
-      final Context context = new Context(routerFactory, metricsSystem, errorHandler, vertx);
+      final Context context =
+          new Context(
+              routerFactory, metricsSystem, errorHandler, vertx, createVirtualThreadExecutor());
       final Router router = populateRouter(context);
       registerSwaggerUIRoute(router); // serve static openapi spec
 
@@ -124,6 +132,47 @@ public abstract class Runner implements Runnable {
 
   protected abstract Router populateRouter(final Context context);
 
+  private Optional<Executor> createVirtualThreadExecutor() {
+    if (!config.isVirtualThreadsEnabled()) {
+      return Optional.empty();
+    }
+    if (!VirtualThreads.isSupported()) {
+      throw new InitializationException(
+          "Virtual threads are not supported by Java "
+              + Runtime.version()
+              + ", use Java 21 or later");
+    }
+    LOG.info(
+        "Running signing handlers on virtual threads, computing at most {} signatures at once",
+        config.getSigningThreadPoolSize());
+    return Optional.of(VirtualThreads.newVirtualThreadPerTaskExecutor());
+  }
+
+  /**
+   * Runs a blocking signing handler on a virtual thread of its own when they are enabled, and on
+   * the Vert.x worker pool otherwise.
+   */
+  protected Handler<RoutingContext> blockingSigningHandler(
+      final Handler<RoutingContext> handler, final Context context) {
+    return context
+        .getVirtualThreadExecutor()
+        .<Handler<RoutingContext>>map(executor -> new ExecutorHandlerDecorator(handler, executor))
+        .orElseGet(() -> new BlockingHandlerDecorator(handler, false));
+  }
+
+  /**
+   * Bounds the number of signatures computed at once when signing handlers run on virtual threads,
+   * which are otherwise only bounded by the number of requests.
+   */
+  protected ArtifactSignerProvider boundSigning(
+      final ArtifactSignerProvider signerProvider, final Context context) {
+    if (context.getVirtualThreadExecutor().isEmpty()) {
+      return signerProvider;
+    }
+    return new BoundedArtifactSignerProvider(
+        signerProvider, config.getSigningThreadPoolSize(), context.getMetricsSystem());
+  }
+
   protected abstract String getOpenApiSpecResource();
 
   private OpenAPI3RouterFactory getOpenAPI3RouterFactory(final Vertx vertx)
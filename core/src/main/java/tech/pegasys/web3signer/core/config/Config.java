@@ -47,4 +47,12 @@ public interface Config {
   Optional<TlsOptions> getTlsOptions();
 
   int getIdleConnectionTimeoutSeconds();
+
+  int getSigningThreadPoolSize();
+
+  int getSlashingProtectionThreadPoolSize();
+
+  int getSigningBatchMaxSize();
+
+  boolean isVirtualThreadsEnabled();
 }
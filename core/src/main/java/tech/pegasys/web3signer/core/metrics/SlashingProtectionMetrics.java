@@ -16,11 +16,14 @@ import static tech.pegasys.web3signer.slashingprotection.SlashingMetricCategory.
 
 import org.hyperledger.besu.plugin.services.MetricsSystem;
 import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
 
 public class SlashingProtectionMetrics {
 
   private final Counter preventedSignings;
   private final Counter permittedSignings;
+  private final Counter avoidedSignatures;
+  private final OperationTimer slashingCheckTimer;
 
   public SlashingProtectionMetrics(final MetricsSystem metricsSystem) {
     this.permittedSignings =
@@ -34,6 +37,18 @@ public class SlashingProtectionMetrics {
             ETH2_SLASHING_PROTECTION,
             "prevented_signings",
             "The number of slashing checks which have been prevented due violation of slashing conditions.");
+
+    this.avoidedSignatures =
+        metricsSystem.createCounter(
+            ETH2_SLASHING_PROTECTION,
+            "avoided_signature_computations",
+            "The number of signature computations skipped because slashing protection rejected the request.");
+
+    this.slashingCheckTimer =
+        metricsSystem.createTimer(
+            ETH2_SLASHING_PROTECTION,
+            "slashing_check_duration",
+            "Duration of the slashing protection check within a signing event");
   }
 
   public void incrementSigningsPrevented() {
@@ -43,4 +58,12 @@ public class SlashingProtectionMetrics {
   public void incrementSigningsPermitted() {
     permittedSignings.inc();
   }
+
+  public void incrementSignaturesAvoided() {
+    avoidedSignatures.inc();
+  }
+
+  public OperationTimer getSlashingCheckTimer() {
+    return slashingCheckTimer;
+  }
 }
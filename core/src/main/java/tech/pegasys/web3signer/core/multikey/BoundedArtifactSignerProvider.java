@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.multikey;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.web3signer.core.metrics.Web3SignerMetricCategory;
+import tech.pegasys.web3signer.core.signing.ArtifactSignature;
+import tech.pegasys.web3signer.core.signing.ArtifactSigner;
+import tech.pegasys.web3signer.core.signing.ArtifactSignerProvider;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+
+/**
+ * Limits the number of signatures computed at once, so that handlers running on a virtual thread
+ * per request still compute no more signatures in parallel than there are threads for them.
+ */
+public class BoundedArtifactSignerProvider implements ArtifactSignerProvider {
+
+  private final ArtifactSignerProvider delegate;
+  private final Semaphore signingPermits;
+
+  public BoundedArtifactSignerProvider(
+      final ArtifactSignerProvider delegate,
+      final int maxConcurrentSignings,
+      final MetricsSystem metricsSystem) {
+    checkArgument(maxConcurrentSignings > 0, "Maximum concurrent signings must be positive");
+    this.delegate = delegate;
+    this.signingPermits = new Semaphore(maxConcurrentSignings);
+    metricsSystem.createLongGauge(
+        Web3SignerMetricCategory.SIGNING,
+        "signing_permit_waiters",
+        "Number of signing requests waiting for a signing permit",
+        signingPermits::getQueueLength);
+  }
+
+  @Override
+  public Optional<ArtifactSigner> getSigner(final String identifier) {
+    return delegate.getSigner(identifier).map(BoundedArtifactSigner::new);
+  }
+
+  @Override
+  public Set<String> availableIdentifiers() {
+    return delegate.availableIdentifiers();
+  }
+
+  private class BoundedArtifactSigner implements ArtifactSigner {
+    private final ArtifactSigner signer;
+
+    private BoundedArtifactSigner(final ArtifactSigner signer) {
+      this.signer = signer;
+    }
+
+    @Override
+    public String getIdentifier() {
+      return signer.getIdentifier();
+    }
+
+    @Override
+    public ArtifactSignature sign(final Bytes message) {
+      signingPermits.acquireUninterruptibly();
+      try {
+        return signer.sign(message);
+      } finally {
+        signingPermits.release();
+      }
+    }
+  }
+}
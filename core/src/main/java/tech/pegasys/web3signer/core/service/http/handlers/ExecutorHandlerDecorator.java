@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers;
+
+import java.util.concurrent.Executor;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.ext.web.Route;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.impl.RoutingContextDecorator;
+
+/**
+ * Runs a blocking handler on an executor in the way {@link
+ * io.vertx.ext.web.impl.BlockingHandlerDecorator} runs it on the Vert.x worker pool. With an
+ * executor starting a virtual thread per task, the number of requests that can wait on I/O at once
+ * is no longer capped by the size of the worker pool.
+ */
+public class ExecutorHandlerDecorator implements Handler<RoutingContext> {
+
+  private final Handler<RoutingContext> decoratedHandler;
+  private final Executor executor;
+
+  public ExecutorHandlerDecorator(
+      final Handler<RoutingContext> decoratedHandler, final Executor executor) {
+    this.decoratedHandler = decoratedHandler;
+    this.executor = executor;
+  }
+
+  @Override
+  public void handle(final RoutingContext routingContext) {
+    final Route currentRoute = routingContext.currentRoute();
+    final Context context = routingContext.vertx().getOrCreateContext();
+    executor.execute(
+        () -> {
+          try {
+            decoratedHandler.handle(new RoutingContextDecorator(currentRoute, routingContext));
+          } catch (final RuntimeException e) {
+            context.runOnContext(v -> routingContext.fail(e));
+          }
+        });
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.web3signer.core.metrics.Web3SignerMetricCategory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+
+/**
+ * Remembers recently computed signatures by signer identifier and signing root. BLS signatures are
+ * deterministic so a repeated request can be answered without signing again, and concurrent
+ * requests for the same identifier and signing root wait for a single computation.
+ *
+ * <p>An entry also records whether slashing protection has permitted signing that signing root, so
+ * that a resent block or attestation can skip the slashing database check. Only a signing root
+ * that was itself permitted is answered this way, as the database would permit it again.
+ */
+public class SignatureCache {
+
+  private final Cache<Key, Entry> cache;
+  private final Counter hitCounter;
+  private final Counter missCounter;
+  private final Counter skippedSlashingCheckCounter;
+
+  public SignatureCache(
+      final long maximumSize, final Duration expiry, final MetricsSystem metricsSystem) {
+    checkArgument(maximumSize > 0, "Maximum size must be positive");
+    checkArgument(!expiry.isNegative() && !expiry.isZero(), "Expiry must be positive");
+    this.cache =
+        CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(expiry).build();
+    this.hitCounter =
+        metricsSystem.createCounter(
+            Web3SignerMetricCategory.SIGNING,
+            "signature_cache_hits",
+            "Number of signing requests answered from the signature cache");
+    this.missCounter =
+        metricsSystem.createCounter(
+            Web3SignerMetricCategory.SIGNING,
+            "signature_cache_misses",
+            "Number of signing requests that computed a signature for the signature cache");
+    this.skippedSlashingCheckCounter =
+        metricsSystem.createCounter(
+            Web3SignerMetricCategory.SIGNING,
+            "signature_cache_skipped_slashing_checks",
+            "Number of slashing database checks skipped because the same signing root was already permitted");
+  }
+
+  /**
+   * Returns the cached signature for a signing root that slashing protection has already permitted
+   * for this identifier, or empty if the request must be checked.
+   */
+  public Optional<String> getPermittedSignature(final String identifier, final Bytes signingRoot) {
+    final Entry entry = cache.getIfPresent(new Key(identifier, signingRoot));
+    if (entry == null || !entry.slashingPermitted) {
+      return Optional.empty();
+    }
+    hitCounter.inc();
+    skippedSlashingCheckCounter.inc();
+    return entry.signature;
+  }
+
+  /**
+   * Returns the cached signature, computing it with the signer if it is not cached. Callers that
+   * arrive while the signature is being computed wait for that computation.
+   */
+  public Optional<String> sign(
+      final String identifier, final Bytes signingRoot, final Supplier<Optional<String>> signer) {
+    final Key key = new Key(identifier, signingRoot);
+    final SignatureLoader loader = new SignatureLoader(signer);
+    final Entry entry;
+    try {
+      entry = cache.get(key, loader);
+    } catch (final ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException("Failed to compute signature", e.getCause());
+    }
+    if (loader.loaded) {
+      missCounter.inc();
+    } else {
+      hitCounter.inc();
+    }
+    if (entry.signature.isEmpty()) {
+      // the signer is not available, which is not worth remembering
+      cache.invalidate(key);
+    }
+    return entry.signature;
+  }
+
+  /** Records that slashing protection permitted signing the signing root for this identifier. */
+  public void slashingPermitted(final String identifier, final Bytes signingRoot) {
+    final Entry entry = cache.getIfPresent(new Key(identifier, signingRoot));
+    if (entry != null) {
+      entry.slashingPermitted = true;
+    }
+  }
+
+  private static class SignatureLoader implements Callable<Entry> {
+    private final Supplier<Optional<String>> signer;
+    private boolean loaded;
+
+    private SignatureLoader(final Supplier<Optional<String>> signer) {
+      this.signer = signer;
+    }
+
+    @Override
+    public Entry call() {
+      // only ever called on the thread that requested the signature
+      loaded = true;
+      return new Entry(signer.get());
+    }
+  }
+
+  private static class Entry {
+    private final Optional<String> signature;
+    private volatile boolean slashingPermitted;
+
+    private Entry(final Optional<String> signature) {
+      this.signature = signature;
+    }
+  }
+
+  private static class Key {
+    private final String identifier;
+    private final Bytes signingRoot;
+
+    private Key(final String identifier, final Bytes signingRoot) {
+      this.identifier = identifier;
+      this.signingRoot = signingRoot;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final Key key = (Key) o;
+      return identifier.equals(key.identifier) && signingRoot.equals(key.signingRoot);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(identifier, signingRoot);
+    }
+  }
+}
@@ -0,0 +1,430 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.vertx.core.http.HttpHeaders.CONTENT_TYPE;
+import static tech.pegasys.web3signer.core.service.http.handlers.ContentTypes.JSON_UTF_8;
+import static tech.pegasys.web3signer.core.service.http.handlers.signing.eth2.Eth2SignForIdentifierHandler.computeSigningRoot;
+import static tech.pegasys.web3signer.core.service.http.handlers.signing.eth2.Eth2SignForIdentifierHandler.requiresSlashingDatabaseCheck;
+import static tech.pegasys.web3signer.core.service.http.handlers.signing.eth2.Eth2SignForIdentifierHandler.toUInt64;
+import static tech.pegasys.web3signer.core.util.IdentifierUtils.normaliseIdentifier;
+
+import tech.pegasys.teku.api.schema.AttestationData;
+import tech.pegasys.web3signer.core.metrics.SlashingProtectionMetrics;
+import tech.pegasys.web3signer.core.metrics.Web3SignerMetricCategory;
+import tech.pegasys.web3signer.core.service.http.handlers.signing.SignatureCache;
+import tech.pegasys.web3signer.core.service.http.handlers.signing.SignerForIdentifier;
+import tech.pegasys.web3signer.core.service.http.metrics.HttpApiMetrics;
+import tech.pegasys.web3signer.slashingprotection.AsyncSlashingProtection;
+import tech.pegasys.web3signer.slashingprotection.SlashingCheck;
+import tech.pegasys.web3signer.slashingprotection.SlashingProtectionUnavailableException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.api.RequestParameters;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer.TimingContext;
+
+/**
+ * Signs a batch of eth2 signing requests, each for its own identifier. The slashing checks of the
+ * blocks and attestations in the batch are made with a single call to slashing protection and the
+ * signatures of the permitted requests are computed in parallel on the signing executor. The result
+ * of each request is returned in the order of the requests, with the HTTP status that request
+ * would have received from the single signing endpoint.
+ *
+ * <p>The handler never blocks and is registered to run on the event loop. The requests are parsed
+ * and their signing roots computed on the signing executor.
+ */
+public class Eth2SignBatchHandler implements Handler<RoutingContext> {
+
+  private static final Logger LOG = LogManager.getLogger();
+  private static final int[] BATCH_SIZE_BUCKETS = {1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024};
+
+  private final SignerForIdentifier<?> signerForIdentifier;
+  private final HttpApiMetrics httpMetrics;
+  private final SlashingProtectionMetrics slashingMetrics;
+  private final Optional<AsyncSlashingProtection> slashingProtection;
+  private final ObjectMapper objectMapper;
+  private final Executor signingExecutor;
+  private final Optional<SignatureCache> signatureCache;
+  private final int maxBatchSize;
+  private final LabelledMetric<OperationTimer> batchSigningTimer;
+
+  public Eth2SignBatchHandler(
+      final SignerForIdentifier<?> signerForIdentifier,
+      final HttpApiMetrics httpMetrics,
+      final SlashingProtectionMetrics slashingMetrics,
+      final Optional<AsyncSlashingProtection> slashingProtection,
+      final ObjectMapper objectMapper,
+      final Executor signingExecutor,
+      final Optional<SignatureCache> signatureCache,
+      final int maxBatchSize,
+      final MetricsSystem metricsSystem) {
+    checkArgument(maxBatchSize > 0, "Maximum batch size must be positive");
+    this.signerForIdentifier = signerForIdentifier;
+    this.httpMetrics = httpMetrics;
+    this.slashingMetrics = slashingMetrics;
+    this.slashingProtection = slashingProtection;
+    this.objectMapper = objectMapper;
+    this.signingExecutor = signingExecutor;
+    this.signatureCache = signatureCache;
+    this.maxBatchSize = maxBatchSize;
+    this.batchSigningTimer =
+        metricsSystem.createLabelledTimer(
+            Web3SignerMetricCategory.SIGNING,
+            "eth2_batch_signing_duration",
+            "Duration of a batch signing request by its number of requests rounded up to a power of two",
+            "size_bucket");
+  }
+
+  @Override
+  public void handle(final RoutingContext routingContext) {
+    final RequestParameters params = routingContext.get("parsedParameters");
+    final JsonNode batch;
+    try {
+      batch = objectMapper.readTree(params.body().toString());
+      checkArgument(batch.isArray(), "Batch signing request must be an array");
+      checkArgument(
+          batch.size() <= maxBatchSize,
+          "Batch signing request of %s requests exceeds the maximum of %s",
+          batch.size(),
+          maxBatchSize);
+    } catch (final IllegalArgumentException | JsonProcessingException e) {
+      httpMetrics.getMalformedRequestCounter().inc();
+      LOG.debug("Invalid batch signing request - " + routingContext.getBodyAsString(), e);
+      routingContext.fail(400);
+      return;
+    }
+
+    final TimingContext batchTimer =
+        batchSigningTimer.labels(batchSizeBucket(batch.size())).startTimer();
+    routingContext.addBodyEndHandler(v -> batchTimer.stopTimer());
+    final BatchSigningResult[] results = new BatchSigningResult[batch.size()];
+    final Context context = routingContext.vertx().getOrCreateContext();
+    CompletableFuture.supplyAsync(() -> parseRequests(batch, results), signingExecutor)
+        .thenCompose(requests -> checkSlashingProtection(requests, results))
+        .thenCompose(toSign -> signAll(toSign, results))
+        .whenComplete(
+            (v, error) ->
+                context.runOnContext(
+                    ignored -> {
+                      if (error != null) {
+                        routingContext.fail(
+                            error instanceof CompletionException ? error.getCause() : error);
+                      } else {
+                        respondWithResults(routingContext, results);
+                      }
+                    }));
+  }
+
+  /**
+   * Sorts the requests into those requiring a slashing check and those that may be signed,
+   * recording a result for the others.
+   */
+  private PendingRequests parseRequests(final JsonNode batch, final BatchSigningResult[] results) {
+    final PendingRequests requests = new PendingRequests();
+    for (int i = 0; i < batch.size(); i++) {
+      final PendingSigning pendingSigning;
+      try {
+        pendingSigning = parseRequest(i, batch.get(i));
+      } catch (final IllegalArgumentException | JsonProcessingException e) {
+        httpMetrics.getMalformedRequestCounter().inc();
+        LOG.debug("Invalid signing request at index {} of batch", i, e);
+        results[i] = BatchSigningResult.failure(400);
+        continue;
+      }
+      if (!signerForIdentifier.isSignerAvailable(pendingSigning.normalisedIdentifier)) {
+        httpMetrics.getMissingSignerCounter().inc();
+        results[i] = BatchSigningResult.failure(404);
+      } else if (slashingProtection.isPresent() && pendingSigning.slashingCheck.isPresent()) {
+        final Optional<String> permittedSignature =
+            signatureCache.flatMap(
+                cache ->
+                    cache.getPermittedSignature(
+                        pendingSigning.normalisedIdentifier, pendingSigning.signingRoot));
+        if (permittedSignature.isPresent()) {
+          results[i] = BatchSigningResult.signed(permittedSignature.get());
+        } else {
+          requests.toCheck.add(pendingSigning);
+        }
+      } else {
+        requests.toSign.add(pendingSigning);
+      }
+    }
+    return requests;
+  }
+
+  private PendingSigning parseRequest(final int index, final JsonNode item)
+      throws JsonProcessingException {
+    checkArgument(
+        item.hasNonNull("identifier") && item.hasNonNull("request"),
+        "Batch item must have an identifier and request");
+    final String identifier = item.get("identifier").asText();
+    final Eth2SigningRequestBody body =
+        objectMapper.treeToValue(item.get("request"), Eth2SigningRequestBody.class);
+    final Bytes signingRoot = computeSigningRoot(body);
+    if (body.getSigningRoot() != null) {
+      checkArgument(
+          body.getSigningRoot().equals(signingRoot),
+          "Signing root %s must match signing computed signing root %s from data",
+          body.getSigningRoot(),
+          signingRoot);
+    }
+    final Optional<SlashingCheck> slashingCheck =
+        requiresSlashingDatabaseCheck(body)
+            ? Optional.of(slashingCheck(Bytes.fromHexString(identifier), signingRoot, body))
+            : Optional.empty();
+    return new PendingSigning(index, normaliseIdentifier(identifier), signingRoot, slashingCheck);
+  }
+
+  private static SlashingCheck slashingCheck(
+      final Bytes publicKey, final Bytes signingRoot, final Eth2SigningRequestBody body) {
+    switch (body.getType()) {
+      case BLOCK:
+        return SlashingCheck.block(
+            publicKey, signingRoot, UInt64.valueOf(body.getBlock().slot.bigIntegerValue()));
+      case ATTESTATION:
+        final AttestationData attestation = body.getAttestation();
+        return SlashingCheck.attestation(
+            publicKey,
+            signingRoot,
+            toUInt64(attestation.source.epoch),
+            toUInt64(attestation.target.epoch));
+      default:
+        throw new IllegalStateException("No slashing check for type " + body.getType());
+    }
+  }
+
+  /**
+   * Completes with the requests that may be signed, including those permitted by slashing
+   * protection, recording a result for the others.
+   */
+  private CompletableFuture<List<PendingSigning>> checkSlashingProtection(
+      final PendingRequests requests, final BatchSigningResult[] results) {
+    if (requests.toCheck.isEmpty()) {
+      return CompletableFuture.completedFuture(requests.toSign);
+    }
+    final TimingContext slashingCheckTimer = slashingMetrics.getSlashingCheckTimer().startTimer();
+    return slashingProtection
+        .get()
+        .maySignBatchAsync(
+            requests.toCheck.stream()
+                .map(pendingSigning -> pendingSigning.slashingCheck.get())
+                .collect(Collectors.toList()))
+        .handle(
+            (permitted, error) -> {
+              slashingCheckTimer.stopTimer();
+              if (error != null) {
+                handleSlashingCheckFailure(
+                    requests.toCheck,
+                    error instanceof CompletionException ? error.getCause() : error,
+                    results);
+              } else {
+                requests.toSign.addAll(permittedRequests(requests.toCheck, permitted, results));
+              }
+              return requests.toSign;
+            });
+  }
+
+  private void handleSlashingCheckFailure(
+      final List<PendingSigning> toCheck,
+      final Throwable error,
+      final BatchSigningResult[] results) {
+    final int status;
+    if (error instanceof IllegalArgumentException) {
+      httpMetrics.getMalformedRequestCounter().inc();
+      LOG.debug("Invalid signing request in batch", error);
+      status = 400;
+    } else if (error instanceof SlashingProtectionUnavailableException) {
+      LOG.warn(
+          "Unable to check batch signing request with slashing protection: {}",
+          error.getMessage());
+      status = 503;
+    } else {
+      throw new CompletionException(error);
+    }
+    toCheck.forEach(
+        pendingSigning -> results[pendingSigning.index] = BatchSigningResult.failure(status));
+  }
+
+  private List<PendingSigning> permittedRequests(
+      final List<PendingSigning> toCheck,
+      final List<Boolean> permitted,
+      final BatchSigningResult[] results) {
+    final List<PendingSigning> toSign = new ArrayList<>(toCheck.size());
+    for (int i = 0; i < toCheck.size(); i++) {
+      final PendingSigning pendingSigning = toCheck.get(i);
+      if (permitted.get(i)) {
+        slashingMetrics.incrementSigningsPermitted();
+        toSign.add(pendingSigning);
+      } else {
+        slashingMetrics.incrementSigningsPrevented();
+        slashingMetrics.incrementSignaturesAvoided();
+        results[pendingSigning.index] = BatchSigningResult.failure(403);
+      }
+    }
+    return toSign;
+  }
+
+  private CompletableFuture<Void> signAll(
+      final List<PendingSigning> toSign, final BatchSigningResult[] results) {
+    final CompletableFuture<?>[] signings = new CompletableFuture<?>[toSign.size()];
+    for (int i = 0; i < toSign.size(); i++) {
+      final PendingSigning pendingSigning = toSign.get(i);
+      signings[i] =
+          CompletableFuture.supplyAsync(
+                  () -> sign(pendingSigning.normalisedIdentifier, pendingSigning.signingRoot),
+                  signingExecutor)
+              .handle(
+                  (signature, error) -> {
+                    results[pendingSigning.index] = signingResult(pendingSigning, signature, error);
+                    return null;
+                  });
+    }
+    return CompletableFuture.allOf(signings);
+  }
+
+  private BatchSigningResult signingResult(
+      final PendingSigning pendingSigning,
+      final Optional<String> signature,
+      final Throwable error) {
+    if (error != null) {
+      LOG.error("Failed to sign request at index {} of batch", pendingSigning.index, error);
+      return BatchSigningResult.failure(500);
+    }
+    if (signature.isEmpty()) {
+      httpMetrics.getMissingSignerCounter().inc();
+      return BatchSigningResult.failure(404);
+    }
+    if (pendingSigning.slashingCheck.isPresent()) {
+      signatureCache.ifPresent(
+          cache ->
+              cache.slashingPermitted(
+                  pendingSigning.normalisedIdentifier, pendingSigning.signingRoot));
+    }
+    return BatchSigningResult.signed(signature.get());
+  }
+
+  private Optional<String> sign(final String normalisedIdentifier, final Bytes signingRoot) {
+    if (signatureCache.isPresent()) {
+      return signatureCache
+          .get()
+          .sign(
+              normalisedIdentifier,
+              signingRoot,
+              () -> computeSignature(normalisedIdentifier, signingRoot));
+    }
+    return computeSignature(normalisedIdentifier, signingRoot);
+  }
+
+  private Optional<String> computeSignature(
+      final String normalisedIdentifier, final Bytes signingRoot) {
+    try (final TimingContext ignored = httpMetrics.getSignatureComputationTimer().startTimer()) {
+      return signerForIdentifier.sign(normalisedIdentifier, signingRoot);
+    }
+  }
+
+  private void respondWithResults(
+      final RoutingContext routingContext, final BatchSigningResult[] results) {
+    final String body;
+    try {
+      body = objectMapper.writeValueAsString(results);
+    } catch (final JsonProcessingException e) {
+      routingContext.fail(e);
+      return;
+    }
+    routingContext.response().putHeader(CONTENT_TYPE, JSON_UTF_8).end(body);
+  }
+
+  private static String batchSizeBucket(final int batchSize) {
+    for (final int bucket : BATCH_SIZE_BUCKETS) {
+      if (batchSize <= bucket) {
+        return Integer.toString(bucket);
+      }
+    }
+    return "over_" + BATCH_SIZE_BUCKETS[BATCH_SIZE_BUCKETS.length - 1];
+  }
+
+  private static class PendingRequests {
+    private final List<PendingSigning> toCheck = new ArrayList<>();
+    private final List<PendingSigning> toSign = new ArrayList<>();
+  }
+
+  private static class PendingSigning {
+    private final int index;
+    private final String normalisedIdentifier;
+    private final Bytes signingRoot;
+    private final Optional<SlashingCheck> slashingCheck;
+
+    private PendingSigning(
+        final int index,
+        final String normalisedIdentifier,
+        final Bytes signingRoot,
+        final Optional<SlashingCheck> slashingCheck) {
+      this.index = index;
+      this.normalisedIdentifier = normalisedIdentifier;
+      this.signingRoot = signingRoot;
+      this.slashingCheck = slashingCheck;
+    }
+  }
+
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public static class BatchSigningResult {
+    private final int status;
+    private final String signature;
+
+    private BatchSigningResult(final int status, final String signature) {
+      this.status = status;
+      this.signature = signature;
+    }
+
+    static BatchSigningResult signed(final String signature) {
+      return new BatchSigningResult(200, signature);
+    }
+
+    static BatchSigningResult failure(final int status) {
+      return new BatchSigningResult(status, null);
+    }
+
+    @JsonProperty("status")
+    public int getStatus() {
+      return status;
+    }
+
+    @JsonProperty("signature")
+    public String getSignature() {
+      return signature;
+    }
+  }
+}
@@ -14,25 +14,38 @@ package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static io.vertx.core.http.HttpHeaders.CONTENT_TYPE;
-import static tech.pegasys.teku.datastructures.util.BeaconStateUtil.compute_domain;
+import static tech.pegasys.teku.datastructures.util.BeaconStateUtil.compute_epoch_at_slot;
 import static tech.pegasys.teku.datastructures.util.BeaconStateUtil.compute_signing_root;
-import static tech.pegasys.teku.util.config.Constants.DOMAIN_DEPOSIT;
+import static tech.pegasys.teku.util.config.Constants.DOMAIN_AGGREGATE_AND_PROOF;
+import static tech.pegasys.teku.util.config.Constants.DOMAIN_BEACON_ATTESTER;
+import static tech.pegasys.teku.util.config.Constants.DOMAIN_BEACON_PROPOSER;
+import static tech.pegasys.teku.util.config.Constants.DOMAIN_RANDAO;
+import static tech.pegasys.teku.util.config.Constants.DOMAIN_SELECTION_PROOF;
+import static tech.pegasys.teku.util.config.Constants.DOMAIN_VOLUNTARY_EXIT;
 import static tech.pegasys.web3signer.core.service.http.handlers.ContentTypes.TEXT_PLAIN_UTF_8;
 import static tech.pegasys.web3signer.core.util.IdentifierUtils.normaliseIdentifier;
 
 import tech.pegasys.teku.api.schema.AttestationData;
 import tech.pegasys.teku.api.schema.BeaconBlock;
-import tech.pegasys.teku.core.signatures.SigningRootUtil;
 import tech.pegasys.web3signer.core.metrics.SlashingProtectionMetrics;
+import tech.pegasys.web3signer.core.service.http.ArtifactType;
+import tech.pegasys.web3signer.core.service.http.handlers.signing.SignatureCache;
 import tech.pegasys.web3signer.core.service.http.handlers.signing.SignerForIdentifier;
 import tech.pegasys.web3signer.core.service.http.metrics.HttpApiMetrics;
+import tech.pegasys.web3signer.slashingprotection.AsyncSlashingProtection;
 import tech.pegasys.web3signer.slashingprotection.SlashingProtection;
+import tech.pegasys.web3signer.slashingprotection.SlashingProtectionUnavailableException;
 
 import java.util.Optional;
-import java.util.function.Consumer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Throwables;
+import io.vertx.core.Context;
 import io.vertx.core.Handler;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.api.RequestParameters;
@@ -45,99 +58,445 @@ import org.hyperledger.besu.plugin.services.metrics.OperationTimer.TimingContext
 public class Eth2SignForIdentifierHandler implements Handler<RoutingContext> {
 
   private static final Logger LOG = LogManager.getLogger();
+  private static final SigningDomains SIGNING_DOMAINS = new SigningDomains();
   private final SignerForIdentifier<?> signerForIdentifier;
   private final HttpApiMetrics httpMetrics;
   private final SlashingProtectionMetrics slashingMetrics;
   private final Optional<SlashingProtection> slashingProtection;
+  private final Optional<AsyncSlashingProtection> asyncSlashingProtection;
   private final ObjectMapper objectMapper;
+  private final Optional<Executor> parallelSigningExecutor;
+  private final Optional<Executor> slashingCheckExecutor;
+  private final Optional<SignatureCache> signatureCache;
+  private final Optional<Executor> signingExecutor;
+  private final boolean nonBlocking;
 
-  public Eth2SignForIdentifierHandler(
+  public static Builder builder(
       final SignerForIdentifier<?> signerForIdentifier,
       final HttpApiMetrics httpMetrics,
       final SlashingProtectionMetrics slashingMetrics,
-      final Optional<SlashingProtection> slashingProtection,
       final ObjectMapper objectMapper) {
+    return new Builder(signerForIdentifier, httpMetrics, slashingMetrics, objectMapper);
+  }
+
+  /**
+   * When the slashing protection is an {@link AsyncSlashingProtection}, or there is none and a
+   * signing executor is given, the handler never blocks and is registered to run on the event loop.
+   * Only routing and the response are then handled on the event loop. Requests are parsed and their
+   * signing roots computed on the signing executor, or on a Vert.x worker thread without one, and
+   * their signatures computed there once the check completes. With a parallel signing executor the
+   * signature is instead computed on that executor while the check is running, and a blocking
+   * handler then runs the check on the slashing check executor when one is given.
+   */
+  private Eth2SignForIdentifierHandler(
+      final SignerForIdentifier<?> signerForIdentifier,
+      final HttpApiMetrics httpMetrics,
+      final SlashingProtectionMetrics slashingMetrics,
+      final Optional<SlashingProtection> slashingProtection,
+      final ObjectMapper objectMapper,
+      final Optional<Executor> parallelSigningExecutor,
+      final Optional<Executor> slashingCheckExecutor,
+      final Optional<SignatureCache> signatureCache,
+      final Optional<Executor> signingExecutor) {
+    checkArgument(
+        signingExecutor.isEmpty()
+            || slashingProtection.isEmpty()
+            || slashingProtection.get() instanceof AsyncSlashingProtection,
+        "A signing executor requires asynchronous slashing protection");
     this.signerForIdentifier = signerForIdentifier;
     this.httpMetrics = httpMetrics;
     this.slashingMetrics = slashingMetrics;
     this.slashingProtection = slashingProtection;
+    this.asyncSlashingProtection =
+        slashingProtection
+            .filter(AsyncSlashingProtection.class::isInstance)
+            .map(AsyncSlashingProtection.class::cast);
     this.objectMapper = objectMapper;
+    this.parallelSigningExecutor = parallelSigningExecutor;
+    this.slashingCheckExecutor = slashingCheckExecutor;
+    this.signatureCache = signatureCache;
+    this.signingExecutor = signingExecutor;
+    this.nonBlocking = asyncSlashingProtection.isPresent() || signingExecutor.isPresent();
   }
 
   @Override
   public void handle(final RoutingContext routingContext) {
-    try (final TimingContext ignored = httpMetrics.getSigningTimer().startTimer()) {
-      LOG.debug("{} || {}", routingContext.normalisedPath(), routingContext.getBody());
-      final RequestParameters params = routingContext.get("parsedParameters");
-      final String identifier = params.pathParameter("identifier").toString();
-      final Eth2SigningRequestBody eth2SigningRequestBody;
-      try {
-        eth2SigningRequestBody = getSigningRequest(params);
-      } catch (final IllegalArgumentException | JsonProcessingException e) {
-        handleInvalidRequest(routingContext, e);
-        return;
+    if (nonBlocking) {
+      // the request is answered after this returns, once the check and signing have completed
+      final TimingContext signingTimer = httpMetrics.getSigningTimer().startTimer();
+      routingContext.addBodyEndHandler(v -> signingTimer.stopTimer());
+      handleSigningRequest(routingContext);
+    } else {
+      try (final TimingContext ignored = httpMetrics.getSigningTimer().startTimer()) {
+        handleSigningRequest(routingContext);
       }
+    }
+  }
 
-      final Bytes signingRoot = computeSigningRoot(eth2SigningRequestBody);
-      if (eth2SigningRequestBody.getSigningRoot() != null) {
-        checkArgument(
-            eth2SigningRequestBody.getSigningRoot().equals(signingRoot),
-            "Signing root %s must match signing computed signing root %s from data",
-            eth2SigningRequestBody.getSigningRoot(),
-            signingRoot);
-      }
+  private void handleSigningRequest(final RoutingContext routingContext) {
+    LOG.debug("{} || {}", routingContext.normalisedPath(), routingContext.getBody());
+    final RequestParameters params = routingContext.get("parsedParameters");
+    final String identifier = params.pathParameter("identifier").toString();
+    if (nonBlocking) {
+      parseAndCheckSigningRootAsync(routingContext, identifier, params);
+      return;
+    }
 
-      final String normalisedIdentifier = normaliseIdentifier(identifier);
-      if (slashingProtection.isPresent()) {
-        handleSigning(
+    final Eth2SigningRequestBody eth2SigningRequestBody;
+    try {
+      eth2SigningRequestBody = getSigningRequest(params);
+    } catch (final IllegalArgumentException | JsonProcessingException e) {
+      handleInvalidRequest(routingContext, e);
+      return;
+    }
+    handleSigningRequest(
+        routingContext,
+        identifier,
+        eth2SigningRequestBody,
+        computeAndCheckSigningRoot(eth2SigningRequestBody));
+  }
+
+  private void parseAndCheckSigningRootAsync(
+      final RoutingContext routingContext,
+      final String identifier,
+      final RequestParameters params) {
+    final CompletableFuture<ParsedSigningRequest> request =
+        supplyOffEventLoop(
             routingContext,
-            signingRoot,
-            normalisedIdentifier,
-            signature ->
-                signWithSlashingProtection(
-                    routingContext, identifier, eth2SigningRequestBody, signingRoot, signature));
-      } else {
-        handleSigning(
+            () -> {
+              final Eth2SigningRequestBody eth2SigningRequestBody;
+              try {
+                eth2SigningRequestBody = getSigningRequest(params);
+              } catch (final IllegalArgumentException | JsonProcessingException e) {
+                throw new InvalidSigningRequestException(e);
+              }
+              return new ParsedSigningRequest(
+                  eth2SigningRequestBody, computeAndCheckSigningRoot(eth2SigningRequestBody));
+            });
+    final Context context = routingContext.vertx().getOrCreateContext();
+    request.whenComplete(
+        (parsed, error) ->
+            context.runOnContext(
+                v -> {
+                  if (error == null) {
+                    handleSigningRequest(
+                        routingContext, identifier, parsed.body, parsed.signingRoot);
+                  } else if (unwrap(error) instanceof InvalidSigningRequestException) {
+                    handleInvalidRequest(routingContext, (Exception) unwrap(error).getCause());
+                  } else {
+                    routingContext.fail(unwrap(error));
+                  }
+                }));
+  }
+
+  private static Bytes computeAndCheckSigningRoot(
+      final Eth2SigningRequestBody eth2SigningRequestBody) {
+    final Bytes signingRoot = computeSigningRoot(eth2SigningRequestBody);
+    if (eth2SigningRequestBody.getSigningRoot() != null) {
+      checkArgument(
+          eth2SigningRequestBody.getSigningRoot().equals(signingRoot),
+          "Signing root %s must match signing computed signing root %s from data",
+          eth2SigningRequestBody.getSigningRoot(),
+          signingRoot);
+    }
+    return signingRoot;
+  }
+
+  private void handleSigningRequest(
+      final RoutingContext routingContext,
+      final String identifier,
+      final Eth2SigningRequestBody eth2SigningRequestBody,
+      final Bytes signingRoot) {
+    final String normalisedIdentifier = normaliseIdentifier(identifier);
+    if (!signerForIdentifier.isSignerAvailable(normalisedIdentifier)) {
+      httpMetrics.getMissingSignerCounter().inc();
+      routingContext.fail(404);
+      return;
+    }
+
+    if (slashingProtection.isPresent() && requiresSlashingDatabaseCheck(eth2SigningRequestBody)) {
+      final Optional<String> permittedSignature =
+          signatureCache.flatMap(
+              cache -> cache.getPermittedSignature(normalisedIdentifier, signingRoot));
+      if (permittedSignature.isPresent()) {
+        respondWithSignature(routingContext, permittedSignature);
+        return;
+      }
+    }
+
+    if (nonBlocking) {
+      signAfterAsyncSlashingCheck(
+          routingContext, identifier, normalisedIdentifier, eth2SigningRequestBody, signingRoot);
+      return;
+    }
+
+    if (slashingProtection.isPresent()
+        && parallelSigningExecutor.isPresent()
+        && requiresSlashingDatabaseCheck(eth2SigningRequestBody)) {
+      signInParallelWithSlashingProtection(
+          routingContext, identifier, normalisedIdentifier, eth2SigningRequestBody, signingRoot);
+      return;
+    }
+
+    // slashing protection is checked before signing so that rejected requests never pay for a
+    // signature computation
+    if (slashingProtection.isPresent()
+        && !isPermittedBySlashingProtection(
             routingContext,
+            identifier,
+            eth2SigningRequestBody,
             signingRoot,
-            normalisedIdentifier,
-            signature -> respondWithSignature(routingContext, signature));
-      }
+            Optional.empty(),
+            slashingMetrics::incrementSignaturesAvoided)) {
+      return;
+    }
+
+    final Optional<String> signature = sign(normalisedIdentifier, signingRoot);
+    if (slashingProtection.isPresent() && requiresSlashingDatabaseCheck(eth2SigningRequestBody)) {
+      recordSlashingPermitted(normalisedIdentifier, signingRoot);
     }
+    respondWithSignature(routingContext, signature);
   }
 
-  private void handleSigning(
+  private void signAfterAsyncSlashingCheck(
       final RoutingContext routingContext,
-      final Bytes signingRoot,
+      final String identifier,
       final String normalisedIdentifier,
-      final Consumer<String> signatureConsumer) {
-    signerForIdentifier
-        .sign(normalisedIdentifier, signingRoot)
-        .ifPresentOrElse(
-            signatureConsumer,
-            () -> {
-              httpMetrics.getMissingSignerCounter().inc();
-              routingContext.fail(404);
+      final Eth2SigningRequestBody eth2SigningRequestBody,
+      final Bytes signingRoot) {
+    if (asyncSlashingProtection.isEmpty()
+        || !requiresSlashingDatabaseCheck(eth2SigningRequestBody)) {
+      respondWhenSigned(
+          routingContext,
+          signAsync(routingContext, normalisedIdentifier, signingRoot),
+          normalisedIdentifier,
+          signingRoot,
+          false);
+      return;
+    }
+
+    final CompletableFuture<Boolean> check;
+    final TimingContext slashingCheckTimer = slashingMetrics.getSlashingCheckTimer().startTimer();
+    try {
+      check = maySignAsync(Bytes.fromHexString(identifier), signingRoot, eth2SigningRequestBody);
+    } catch (final IllegalArgumentException e) {
+      handleInvalidRequest(routingContext, e);
+      return;
+    }
+    final Optional<CompletableFuture<Optional<String>>> parallelSignature =
+        parallelSigningExecutor.map(
+            executor ->
+                CompletableFuture.supplyAsync(
+                    () -> sign(normalisedIdentifier, signingRoot), executor));
+    // the check may complete on another event loop, the request is continued on its own
+    final Context context = routingContext.vertx().getOrCreateContext();
+    check.whenComplete(
+        (maySign, error) ->
+            context.runOnContext(
+                v -> {
+                  slashingCheckTimer.stopTimer();
+                  if (error == null && maySign) {
+                    slashingMetrics.incrementSigningsPermitted();
+                    respondWhenSigned(
+                        routingContext,
+                        parallelSignature.orElseGet(
+                            () -> signAsync(routingContext, normalisedIdentifier, signingRoot)),
+                        normalisedIdentifier,
+                        signingRoot,
+                        true);
+                    return;
+                  }
+                  // a parallel signature must never be released, cancelling only saves work if it
+                  // has not started
+                  final boolean signatureAvoided =
+                      parallelSignature.map(signature -> signature.cancel(false)).orElse(true);
+                  if (error != null) {
+                    handleAsyncSlashingCheckFailure(routingContext, unwrap(error));
+                  } else {
+                    slashingMetrics.incrementSigningsPrevented();
+                    if (signatureAvoided) {
+                      slashingMetrics.incrementSignaturesAvoided();
+                    }
+                    LOG.debug("Signing not allowed due to slashing protection rules failing");
+                    routingContext.fail(403);
+                  }
+                }));
+  }
+
+  private void handleAsyncSlashingCheckFailure(
+      final RoutingContext routingContext, final Throwable error) {
+    if (error instanceof IllegalArgumentException) {
+      handleInvalidRequest(routingContext, (IllegalArgumentException) error);
+    } else if (error instanceof SlashingProtectionUnavailableException) {
+      LOG.warn("Unable to check signing request with slashing protection: {}", error.getMessage());
+      routingContext.fail(503);
+    } else {
+      routingContext.fail(error);
+    }
+  }
+
+  private CompletableFuture<Optional<String>> signAsync(
+      final RoutingContext routingContext,
+      final String normalisedIdentifier,
+      final Bytes signingRoot) {
+    return supplyOffEventLoop(routingContext, () -> sign(normalisedIdentifier, signingRoot));
+  }
+
+  private <T> CompletableFuture<T> supplyOffEventLoop(
+      final RoutingContext routingContext, final Supplier<T> supplier) {
+    if (signingExecutor.isPresent()) {
+      return CompletableFuture.supplyAsync(supplier, signingExecutor.get());
+    }
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    routingContext
+        .vertx()
+        .<T>executeBlocking(
+            promise -> promise.complete(supplier.get()),
+            false,
+            result -> {
+              if (result.succeeded()) {
+                future.complete(result.result());
+              } else {
+                future.completeExceptionally(result.cause());
+              }
             });
+    return future;
+  }
+
+  private void respondWhenSigned(
+      final RoutingContext routingContext,
+      final CompletableFuture<Optional<String>> signatureFuture,
+      final String normalisedIdentifier,
+      final Bytes signingRoot,
+      final boolean slashingChecked) {
+    final Context context = routingContext.vertx().getOrCreateContext();
+    signatureFuture.whenComplete(
+        (signature, error) ->
+            context.runOnContext(
+                v -> {
+                  if (error != null) {
+                    routingContext.fail(unwrap(error));
+                    return;
+                  }
+                  if (slashingChecked) {
+                    recordSlashingPermitted(normalisedIdentifier, signingRoot);
+                  }
+                  respondWithSignature(routingContext, signature);
+                }));
+  }
+
+  private static Throwable unwrap(final Throwable error) {
+    return error instanceof CompletionException ? error.getCause() : error;
+  }
+
+  private static boolean join(final CompletableFuture<Boolean> check) {
+    try {
+      return check.join();
+    } catch (final CompletionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw e;
+    }
   }
 
-  private void signWithSlashingProtection(
+  private void signInParallelWithSlashingProtection(
+      final RoutingContext routingContext,
+      final String identifier,
+      final String normalisedIdentifier,
+      final Eth2SigningRequestBody eth2SigningRequestBody,
+      final Bytes signingRoot) {
+    final CompletableFuture<Optional<String>> signatureFuture =
+        CompletableFuture.supplyAsync(
+            () -> sign(normalisedIdentifier, signingRoot), parallelSigningExecutor.get());
+
+    if (!isPermittedBySlashingProtection(
+        routingContext,
+        identifier,
+        eth2SigningRequestBody,
+        signingRoot,
+        slashingCheckExecutor,
+        () -> {
+          if (signatureFuture.cancel(false)) {
+            slashingMetrics.incrementSignaturesAvoided();
+          }
+        })) {
+      // the signature must never be released, cancelling only saves work if it has not started
+      signatureFuture.cancel(false);
+      return;
+    }
+
+    final Optional<String> signature = signatureFuture.join();
+    recordSlashingPermitted(normalisedIdentifier, signingRoot);
+    respondWithSignature(routingContext, signature);
+  }
+
+  private Optional<String> sign(final String normalisedIdentifier, final Bytes signingRoot) {
+    if (signatureCache.isPresent()) {
+      return signatureCache
+          .get()
+          .sign(
+              normalisedIdentifier,
+              signingRoot,
+              () -> computeSignature(normalisedIdentifier, signingRoot));
+    }
+    return computeSignature(normalisedIdentifier, signingRoot);
+  }
+
+  private Optional<String> computeSignature(
+      final String normalisedIdentifier, final Bytes signingRoot) {
+    try (final TimingContext ignored = httpMetrics.getSignatureComputationTimer().startTimer()) {
+      return signerForIdentifier.sign(normalisedIdentifier, signingRoot);
+    }
+  }
+
+  private void recordSlashingPermitted(final String normalisedIdentifier, final Bytes signingRoot) {
+    signatureCache.ifPresent(cache -> cache.slashingPermitted(normalisedIdentifier, signingRoot));
+  }
+
+  static boolean requiresSlashingDatabaseCheck(final Eth2SigningRequestBody body) {
+    return body.getType() == ArtifactType.BLOCK || body.getType() == ArtifactType.ATTESTATION;
+  }
+
+  /**
+   * Fails the request with 403 when slashing protection refuses it, or with 400 or 503 when it
+   * cannot be checked. Only a refusal by the slashing rules runs onRefusal. The check runs on the
+   * check executor when one is given, with the calling thread waiting for its result.
+   */
+  private boolean isPermittedBySlashingProtection(
       final RoutingContext routingContext,
       final String identifier,
       final Eth2SigningRequestBody eth2SigningRequestBody,
       final Bytes signingRoot,
-      final String signature) {
+      final Optional<Executor> checkExecutor,
+      final Runnable onRefusal) {
     try {
-      if (maySign(Bytes.fromHexString(identifier), signingRoot, eth2SigningRequestBody)) {
+      final boolean maySign;
+      try (final TimingContext ignored = slashingMetrics.getSlashingCheckTimer().startTimer()) {
+        final Bytes publicKey = Bytes.fromHexString(identifier);
+        maySign =
+            checkExecutor.isPresent()
+                ? join(
+                    CompletableFuture.supplyAsync(
+                        () -> maySign(publicKey, signingRoot, eth2SigningRequestBody),
+                        checkExecutor.get()))
+                : maySign(publicKey, signingRoot, eth2SigningRequestBody);
+      }
+      if (maySign) {
         slashingMetrics.incrementSigningsPermitted();
-        respondWithSignature(routingContext, signature);
+        return true;
       } else {
         slashingMetrics.incrementSigningsPrevented();
+        onRefusal.run();
         LOG.debug("Signing not allowed due to slashing protection rules failing");
         routingContext.fail(403);
+        return false;
       }
     } catch (final IllegalArgumentException e) {
       handleInvalidRequest(routingContext, e);
+      return false;
+    } catch (final SlashingProtectionUnavailableException e) {
+      LOG.warn("Unable to check signing request with slashing protection: {}", e.getMessage());
+      routingContext.fail(503);
+      return false;
     }
   }
 
@@ -170,50 +529,98 @@ public class Eth2SignForIdentifierHandler implements Handler<RoutingContext> {
     }
   }
 
-  private Bytes computeSigningRoot(final Eth2SigningRequestBody body) {
+  private CompletableFuture<Boolean> maySignAsync(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final Eth2SigningRequestBody eth2SigningRequestBody) {
+    switch (eth2SigningRequestBody.getType()) {
+      case BLOCK:
+        final BeaconBlock beaconBlock = eth2SigningRequestBody.getBlock();
+        final UInt64 blockSlot = UInt64.valueOf(beaconBlock.slot.bigIntegerValue());
+        return asyncSlashingProtection.get().maySignBlockAsync(publicKey, signingRoot, blockSlot);
+      case ATTESTATION:
+        final AttestationData attestation = eth2SigningRequestBody.getAttestation();
+        return asyncSlashingProtection
+            .get()
+            .maySignAttestationAsync(
+                publicKey,
+                signingRoot,
+                toUInt64(attestation.source.epoch),
+                toUInt64(attestation.target.epoch));
+      default:
+        return CompletableFuture.completedFuture(true);
+    }
+  }
+
+  static Bytes computeSigningRoot(final Eth2SigningRequestBody body) {
+    return computeSigningRoot(body, SIGNING_DOMAINS);
+  }
+
+  static Bytes computeSigningRoot(
+      final Eth2SigningRequestBody body, final SigningDomains signingDomains) {
+    final ForkInfo forkInfo = body.getForkInfo();
     switch (body.getType()) {
       case BLOCK:
         checkArgument(body.getBlock() != null, "block must be specified");
-        return SigningRootUtil.signingRootForSignBlock(
-            body.getBlock().asInternalBeaconBlock(), body.getForkInfo().asInternalForkInfo());
+        return compute_signing_root(
+            body.getBlock().asInternalBeaconBlock(),
+            signingDomains.getDomain(
+                DOMAIN_BEACON_PROPOSER, compute_epoch_at_slot(body.getBlock().slot), forkInfo));
       case ATTESTATION:
         checkArgument(body.getAttestation() != null, "attestation must be specified");
-        return SigningRootUtil.signingRootForSignAttestationData(
+        return compute_signing_root(
             body.getAttestation().asInternalAttestationData(),
-            body.getForkInfo().asInternalForkInfo());
+            signingDomains.getDomain(
+                DOMAIN_BEACON_ATTESTER, body.getAttestation().target.epoch, forkInfo));
       case AGGREGATE_AND_PROOF:
         checkArgument(body.getAggregateAndProof() != null, "aggregateAndProof must be specified");
-        return SigningRootUtil.signingRootForSignAggregateAndProof(
+        return compute_signing_root(
             body.getAggregateAndProof().asInternalAggregateAndProof(),
-            body.getForkInfo().asInternalForkInfo());
+            signingDomains.getDomain(
+                DOMAIN_AGGREGATE_AND_PROOF,
+                compute_epoch_at_slot(body.getAggregateAndProof().aggregate.data.slot),
+                forkInfo));
       case AGGREGATION_SLOT:
         checkArgument(body.getAggregationSlot() != null, "aggregationSlot must be specified");
-        return SigningRootUtil.signingRootForSignAggregationSlot(
-            body.getAggregationSlot().getSlot(), body.getForkInfo().asInternalForkInfo());
+        final tech.pegasys.teku.infrastructure.unsigned.UInt64 slot =
+            body.getAggregationSlot().getSlot();
+        return compute_signing_root(
+            slot.longValue(),
+            signingDomains.getDomain(
+                DOMAIN_SELECTION_PROOF, compute_epoch_at_slot(slot), forkInfo));
       case RANDAO_REVEAL:
         checkArgument(body.getRandaoReveal() != null, "randaoReveal must be specified");
-        return SigningRootUtil.signingRootForRandaoReveal(
-            body.getRandaoReveal().getEpoch(), body.getForkInfo().asInternalForkInfo());
+        final tech.pegasys.teku.infrastructure.unsigned.UInt64 epoch =
+            body.getRandaoReveal().getEpoch();
+        return compute_signing_root(
+            epoch.longValue(), signingDomains.getDomain(DOMAIN_RANDAO, epoch, forkInfo));
       case VOLUNTARY_EXIT:
         checkArgument(body.getVoluntaryExit() != null, "voluntaryExit must be specified");
-        return SigningRootUtil.signingRootForSignVoluntaryExit(
+        return compute_signing_root(
             body.getVoluntaryExit().asInternalVoluntaryExit(),
-            body.getForkInfo().asInternalForkInfo());
+            signingDomains.getDomain(
+                DOMAIN_VOLUNTARY_EXIT, body.getVoluntaryExit().epoch, forkInfo));
       case DEPOSIT:
         checkArgument(body.getDeposit() != null, "deposit must be specified");
         return compute_signing_root(
-            body.getDeposit().asInternalDepositMessage(), compute_domain(DOMAIN_DEPOSIT));
+            body.getDeposit().asInternalDepositMessage(), signingDomains.getDepositDomain());
       default:
         throw new IllegalStateException("Signing root unimplemented for type " + body.getType());
     }
   }
 
-  private UInt64 toUInt64(final tech.pegasys.teku.infrastructure.unsigned.UInt64 uInt64) {
+  static UInt64 toUInt64(final tech.pegasys.teku.infrastructure.unsigned.UInt64 uInt64) {
     return UInt64.valueOf(uInt64.bigIntegerValue());
   }
 
-  private void respondWithSignature(final RoutingContext routingContext, final String signature) {
-    routingContext.response().putHeader(CONTENT_TYPE, TEXT_PLAIN_UTF_8).end(signature);
+  private void respondWithSignature(
+      final RoutingContext routingContext, final Optional<String> signature) {
+    signature.ifPresentOrElse(
+        value -> routingContext.response().putHeader(CONTENT_TYPE, TEXT_PLAIN_UTF_8).end(value),
+        () -> {
+          httpMetrics.getMissingSignerCounter().inc();
+          routingContext.fail(404);
+        });
   }
 
   private Eth2SigningRequestBody getSigningRequest(final RequestParameters params)
@@ -221,4 +628,101 @@ public class Eth2SignForIdentifierHandler implements Handler<RoutingContext> {
     final String body = params.body().toString();
     return objectMapper.readValue(body, Eth2SigningRequestBody.class);
   }
+
+  private static class ParsedSigningRequest {
+    private final Eth2SigningRequestBody body;
+    private final Bytes signingRoot;
+
+    private ParsedSigningRequest(final Eth2SigningRequestBody body, final Bytes signingRoot) {
+      this.body = body;
+      this.signingRoot = signingRoot;
+    }
+  }
+
+  /** Marks a request body that could not be read, which is answered with a 400. */
+  private static class InvalidSigningRequestException extends RuntimeException {
+    private InvalidSigningRequestException(final Exception cause) {
+      super(cause);
+    }
+  }
+
+  public static class Builder {
+    private final SignerForIdentifier<?> signerForIdentifier;
+    private final HttpApiMetrics httpMetrics;
+    private final SlashingProtectionMetrics slashingMetrics;
+    private final ObjectMapper objectMapper;
+    private Optional<SlashingProtection> slashingProtection = Optional.empty();
+    private Optional<Executor> parallelSigningExecutor = Optional.empty();
+    private Optional<Executor> slashingCheckExecutor = Optional.empty();
+    private Optional<SignatureCache> signatureCache = Optional.empty();
+    private Optional<Executor> signingExecutor = Optional.empty();
+
+    private Builder(
+        final SignerForIdentifier<?> signerForIdentifier,
+        final HttpApiMetrics httpMetrics,
+        final SlashingProtectionMetrics slashingMetrics,
+        final ObjectMapper objectMapper) {
+      this.signerForIdentifier = signerForIdentifier;
+      this.httpMetrics = httpMetrics;
+      this.slashingMetrics = slashingMetrics;
+      this.objectMapper = objectMapper;
+    }
+
+    public Builder slashingProtection(final Optional<SlashingProtection> slashingProtection) {
+      this.slashingProtection = slashingProtection;
+      return this;
+    }
+
+    /**
+     * @param parallelSigningExecutor when present, signatures for artifacts requiring a slashing
+     *     database check (blocks and attestations) are computed on this executor while the check
+     *     is running, and are discarded if the check fails.
+     */
+    public Builder parallelSigningExecutor(final Optional<Executor> parallelSigningExecutor) {
+      this.parallelSigningExecutor = parallelSigningExecutor;
+      return this;
+    }
+
+    /**
+     * @param slashingCheckExecutor when present with a parallel signing executor, the executor a
+     *     blocking handler runs the slashing database check on while the signature is computed,
+     *     rather than the request thread.
+     */
+    public Builder slashingCheckExecutor(final Optional<Executor> slashingCheckExecutor) {
+      this.slashingCheckExecutor = slashingCheckExecutor;
+      return this;
+    }
+
+    /**
+     * @param signatureCache when present, signatures are taken from and added to this cache, and a
+     *     block or attestation whose signing root slashing protection has already permitted for
+     *     the key is answered from the cache without another slashing database check.
+     */
+    public Builder signatureCache(final Optional<SignatureCache> signatureCache) {
+      this.signatureCache = signatureCache;
+      return this;
+    }
+
+    /**
+     * @param signingExecutor when present, the executor computing the signatures of a non-blocking
+     *     handler, which requires any slashing protection to be an {@link AsyncSlashingProtection}.
+     */
+    public Builder signingExecutor(final Optional<Executor> signingExecutor) {
+      this.signingExecutor = signingExecutor;
+      return this;
+    }
+
+    public Eth2SignForIdentifierHandler build() {
+      return new Eth2SignForIdentifierHandler(
+          signerForIdentifier,
+          httpMetrics,
+          slashingMetrics,
+          slashingProtection,
+          objectMapper,
+          parallelSigningExecutor,
+          slashingCheckExecutor,
+          signatureCache,
+          signingExecutor);
+    }
+  }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
+
+import static tech.pegasys.teku.datastructures.util.BeaconStateUtil.compute_domain;
+
+import tech.pegasys.teku.api.schema.Fork;
+import tech.pegasys.teku.infrastructure.unsigned.UInt64;
+import tech.pegasys.teku.ssz.SSZTypes.Bytes4;
+import tech.pegasys.teku.util.config.Constants;
+
+import java.util.Objects;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.tuweni.bytes.Bytes32;
+
+/**
+ * Remembers computed signing domains by domain type, fork version and genesis validators root.
+ * Computing a domain hashes the fork data root, yet a network changes fork version only at a fork,
+ * so almost every request asks for a domain that has already been computed.
+ *
+ * <p>The fork version is read from the request's fork directly, so no Teku fork info is built
+ * either.
+ */
+public class SigningDomains {
+
+  // a handful of domain types for each fork version and genesis root in use
+  private static final long MAXIMUM_SIZE = 256;
+
+  private final Cache<Key, Bytes32> domains =
+      CacheBuilder.newBuilder().maximumSize(MAXIMUM_SIZE).build();
+
+  /** Returns the domain of the given type for an epoch under the request's fork. */
+  public Bytes32 getDomain(final Bytes4 domainType, final UInt64 epoch, final ForkInfo forkInfo) {
+    final Fork fork = forkInfo.getFork();
+    final Bytes4 forkVersion =
+        epoch.compareTo(fork.epoch) < 0 ? fork.previous_version : fork.current_version;
+    return getDomain(domainType, forkVersion, forkInfo.getGenesisValidatorsRoot());
+  }
+
+  /** Returns the deposit domain, which is always computed for the genesis fork version. */
+  public Bytes32 getDepositDomain() {
+    return getDomain(Constants.DOMAIN_DEPOSIT, Constants.GENESIS_FORK_VERSION, Bytes32.ZERO);
+  }
+
+  private Bytes32 getDomain(
+      final Bytes4 domainType, final Bytes4 forkVersion, final Bytes32 genesisValidatorsRoot) {
+    final Key key = new Key(domainType, forkVersion, genesisValidatorsRoot);
+    final Bytes32 domain = domains.getIfPresent(key);
+    if (domain != null) {
+      return domain;
+    }
+    // computing a domain twice under contention is cheaper than making callers wait for each other
+    final Bytes32 computed = compute_domain(domainType, forkVersion, genesisValidatorsRoot);
+    domains.put(key, computed);
+    return computed;
+  }
+
+  private static class Key {
+    private final Bytes4 domainType;
+    private final Bytes4 forkVersion;
+    private final Bytes32 genesisValidatorsRoot;
+
+    private Key(
+        final Bytes4 domainType, final Bytes4 forkVersion, final Bytes32 genesisValidatorsRoot) {
+      this.domainType = domainType;
+      this.forkVersion = forkVersion;
+      this.genesisValidatorsRoot = genesisValidatorsRoot;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final Key key = (Key) o;
+      return domainType.equals(key.domainType)
+          && forkVersion.equals(key.forkVersion)
+          && genesisValidatorsRoot.equals(key.genesisValidatorsRoot);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(domainType, forkVersion, genesisValidatorsRoot);
+    }
+  }
+}
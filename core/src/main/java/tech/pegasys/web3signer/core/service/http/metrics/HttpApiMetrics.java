@@ -24,6 +24,7 @@ public class HttpApiMetrics {
 
   private final Counter malformedRequestCounter;
   private final OperationTimer signingTimer;
+  private final OperationTimer signatureComputationTimer;
   private final Counter missingSignerCounter;
 
   public HttpApiMetrics(final MetricsSystem metricsSystem, final KeyType keyType) {
@@ -38,6 +39,11 @@ public class HttpApiMetrics {
             Web3SignerMetricCategory.SIGNING,
             keyType.name().toLowerCase() + "_signing_duration",
             "Duration of a signing event");
+    signatureComputationTimer =
+        metricsSystem.createTimer(
+            Web3SignerMetricCategory.SIGNING,
+            keyType.name().toLowerCase() + "_signature_computation_duration",
+            "Duration of the signature computation within a signing event");
     missingSignerCounter =
         metricsSystem.createCounter(
             Web3SignerMetricCategory.SIGNING,
@@ -53,6 +59,10 @@ public class HttpApiMetrics {
     return signingTimer;
   }
 
+  public OperationTimer getSignatureComputationTimer() {
+    return signatureComputationTimer;
+  }
+
   public Counter getMissingSignerCounter() {
     return missingSignerCounter;
   }
@@ -16,15 +16,28 @@ import static tech.pegasys.web3signer.core.util.IdentifierUtils.normaliseIdentif
 
 import tech.pegasys.teku.bls.BLS;
 import tech.pegasys.teku.bls.BLSKeyPair;
+import tech.pegasys.teku.bls.BLSSignature;
+
+import java.util.Optional;
+import java.util.function.Function;
 
 import org.apache.tuweni.bytes.Bytes;
 
 public class BlsArtifactSigner implements ArtifactSigner {
 
   private final BLSKeyPair keyPair;
+  private final Function<Bytes, BLSSignature> signer;
 
   public BlsArtifactSigner(final BLSKeyPair keyPair) {
+    this(keyPair, Optional.empty());
+  }
+
+  public BlsArtifactSigner(final BLSKeyPair keyPair, final Optional<HashToG2Cache> hashToG2Cache) {
     this.keyPair = keyPair;
+    this.signer =
+        hashToG2Cache
+            .map(cache -> cache.createSigner(keyPair.getSecretKey()))
+            .orElse(message -> BLS.sign(keyPair.getSecretKey(), message));
   }
 
   @Override
@@ -34,6 +47,6 @@ public class BlsArtifactSigner implements ArtifactSigner {
 
   @Override
   public BlsArtifactSignature sign(final Bytes data) {
-    return new BlsArtifactSignature(BLS.sign(keyPair.getSecretKey(), data));
+    return new BlsArtifactSignature(signer.apply(data));
   }
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.signing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.teku.bls.BLSSecretKey;
+import tech.pegasys.teku.bls.BLSSignature;
+import tech.pegasys.web3signer.core.metrics.Web3SignerMetricCategory;
+
+import java.lang.ref.Reference;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import supranational.blst.blst;
+import supranational.blst.p2;
+import supranational.blst.scalar;
+
+/**
+ * Signs eth2 messages with blst directly, remembering recent messages hashed to G2. Validators in
+ * the same committee sign the same attestation data, so a signing root is often signed by many
+ * keys in a slot; each of them then only pays for the multiplication by its secret key instead of
+ * hashing the message to the curve again.
+ */
+public class HashToG2Cache {
+
+  public static final long DEFAULT_MAXIMUM_SIZE = 256;
+
+  private static final Logger LOG = LogManager.getLogger();
+  private static final byte[] ETH2_DST =
+      "BLS_SIG_BLS12381G2_XMD:SHA-256_SSWU_RO_POP_".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] NO_AUGMENTATION = new byte[0];
+  private static final int SIGNATURE_SIZE = 96;
+  private static final boolean SUPPORTED = loadBlst();
+
+  private final Cache<Bytes, p2> hashedMessages;
+  private final Counter hitCounter;
+  private final Counter missCounter;
+
+  public HashToG2Cache(final long maximumSize, final MetricsSystem metricsSystem) {
+    checkArgument(maximumSize > 0, "Maximum size must be positive");
+    checkArgument(isSupported(), "The blst library is not available");
+    // evicted points are freed by their finalizer rather than explicitly, as a signer may still be
+    // using one
+    this.hashedMessages = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    this.hitCounter =
+        metricsSystem.createCounter(
+            Web3SignerMetricCategory.SIGNING,
+            "hash_to_curve_cache_hits",
+            "Number of BLS signatures that reused a message already hashed to the curve");
+    this.missCounter =
+        metricsSystem.createCounter(
+            Web3SignerMetricCategory.SIGNING,
+            "hash_to_curve_cache_misses",
+            "Number of BLS signatures that hashed their message to the curve");
+  }
+
+  /** Whether the native blst library could be loaded on this platform. */
+  public static boolean isSupported() {
+    return SUPPORTED;
+  }
+
+  /** Returns a function signing messages with the secret key, hashing them through this cache. */
+  public Function<Bytes, BLSSignature> createSigner(final BLSSecretKey secretKey) {
+    final scalar secretScalar = new scalar();
+    blst.scalar_from_bendian(secretScalar, secretKey.toBytes().toArray());
+    return message -> sign(secretScalar, message);
+  }
+
+  private BLSSignature sign(final scalar secretScalar, final Bytes message) {
+    final p2 hash = hashToG2(message);
+    final p2 signature = new p2();
+    try {
+      // the hashed point is only read when signing, so it is shared between threads
+      blst.sign_pk_in_g1(signature, hash, secretScalar);
+      final byte[] compressed = new byte[SIGNATURE_SIZE];
+      blst.p2_compress(compressed, signature);
+      return BLSSignature.fromBytesCompressed(Bytes.wrap(compressed));
+    } finally {
+      signature.delete();
+      // an evicted point must not be finalized while it is still being signed with
+      Reference.reachabilityFence(hash);
+    }
+  }
+
+  private p2 hashToG2(final Bytes message) {
+    final p2 cached = hashedMessages.getIfPresent(message);
+    if (cached != null) {
+      hitCounter.inc();
+      return cached;
+    }
+    final HashLoader loader = new HashLoader(message);
+    final p2 hash;
+    try {
+      // callers signing the same message at once wait for a single hash
+      hash = hashedMessages.get(message.copy(), loader);
+    } catch (final ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException("Failed to hash message to curve", e.getCause());
+    }
+    if (loader.loaded) {
+      missCounter.inc();
+    } else {
+      hitCounter.inc();
+    }
+    return hash;
+  }
+
+  private static boolean loadBlst() {
+    try {
+      new scalar().delete();
+      return true;
+    } catch (final UnsatisfiedLinkError
+        | NoClassDefFoundError
+        | ExceptionInInitializerError e) {
+      LOG.debug("The blst library is not available", e);
+      return false;
+    }
+  }
+
+  private static class HashLoader implements Callable<p2> {
+    private final Bytes message;
+    private boolean loaded;
+
+    private HashLoader(final Bytes message) {
+      this.message = message;
+    }
+
+    @Override
+    public p2 call() {
+      // only ever called on the thread that requested the hash
+      loaded = true;
+      final p2 hash = new p2();
+      blst.hash_to_g2(hash, message.toArrayUnsafe(), ETH2_DST, NO_AUGMENTATION);
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.MetricCategory;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer.TimingContext;
+
+/**
+ * A fixed size pool of daemon threads reporting the number of queued tasks, the number of busy
+ * threads and the time tasks wait in the queue, so that a pool too small for its work shows up as
+ * queueing rather than as slow requests.
+ *
+ * <p>The metrics are named after the pool, so that {@code eth2_signing} reports {@code
+ * eth2_signing_executor_queue_depth}, {@code eth2_signing_executor_active_threads} and {@code
+ * eth2_signing_executor_queue_wait_duration}, and its threads are named {@code eth2-signing-N}.
+ */
+public class MonitoredExecutor implements Executor {
+
+  private final ThreadPoolExecutor executor;
+  private final OperationTimer queueWaitTimer;
+
+  public MonitoredExecutor(
+      final String name,
+      final int threads,
+      final MetricsSystem metricsSystem,
+      final MetricCategory category) {
+    checkArgument(threads > 0, "Number of %s threads must be positive", name);
+    this.executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder()
+                .setNameFormat(name.replace('_', '-') + "-%d")
+                .setDaemon(true)
+                .build());
+    metricsSystem.createLongGauge(
+        category,
+        name + "_executor_queue_depth",
+        "Number of tasks waiting for a thread of the " + name + " executor",
+        () -> executor.getQueue().size());
+    metricsSystem.createLongGauge(
+        category,
+        name + "_executor_active_threads",
+        "Number of threads of the " + name + " executor running a task",
+        executor::getActiveCount);
+    this.queueWaitTimer =
+        metricsSystem.createTimer(
+            category,
+            name + "_executor_queue_wait_duration",
+            "Time tasks waited for a thread of the " + name + " executor");
+  }
+
+  @Override
+  public void execute(final Runnable command) {
+    final TimingContext queueWait = queueWaitTimer.startTimer();
+    executor.execute(
+        () -> {
+          queueWait.stopTimer();
+          command.run();
+        });
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.util;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors running each task on a new virtual thread. Virtual threads are only available
+ * from Java 21 and are reached reflectively, so that Web3Signer still builds and runs on Java 11.
+ */
+public class VirtualThreads {
+
+  private static final Optional<Method> NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR =
+      findNewVirtualThreadPerTaskExecutor();
+
+  private VirtualThreads() {}
+
+  /** Whether the running Java supports virtual threads. */
+  public static boolean isSupported() {
+    return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.isPresent();
+  }
+
+  /**
+   * Returns an executor starting a new virtual thread for each task.
+   *
+   * @throws IllegalStateException if the running Java does not support virtual threads
+   */
+  public static ExecutorService newVirtualThreadPerTaskExecutor() {
+    if (!isSupported()) {
+      throw new IllegalStateException(
+          "Virtual threads are not supported by Java " + Runtime.version());
+    }
+    try {
+      return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.get().invoke(null);
+    } catch (final ReflectiveOperationException e) {
+      // a Java with virtual threads as a preview feature that has not been enabled
+      throw new IllegalStateException("Unable to create a virtual thread executor", e);
+    }
+  }
+
+  private static Optional<Method> findNewVirtualThreadPerTaskExecutor() {
+    try {
+      return Optional.of(Executors.class.getMethod("newVirtualThreadPerTaskExecutor"));
+    } catch (final NoSuchMethodException e) {
+      return Optional.empty();
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.multikey;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import tech.pegasys.web3signer.core.metrics.Web3SignerMetricCategory;
+import tech.pegasys.web3signer.core.signing.ArtifactSignature;
+import tech.pegasys.web3signer.core.signing.ArtifactSigner;
+import tech.pegasys.web3signer.core.signing.ArtifactSignerProvider;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class BoundedArtifactSignerProviderTest {
+
+  private static final String IDENTIFIER = "0x1234";
+
+  private final MetricsSystem metricsSystem = mock(MetricsSystem.class);
+  private final ArtifactSignerProvider delegate = mock(ArtifactSignerProvider.class);
+  private final ArtifactSigner signer = mock(ArtifactSigner.class);
+  private final ArtifactSignature signature = mock(ArtifactSignature.class);
+
+  @Test
+  void signsWithTheDelegateSigner() {
+    when(delegate.getSigner(IDENTIFIER)).thenReturn(Optional.of(signer));
+    when(signer.sign(Bytes.of(1))).thenReturn(signature);
+    final BoundedArtifactSignerProvider provider =
+        new BoundedArtifactSignerProvider(delegate, 1, metricsSystem);
+
+    assertThat(provider.getSigner(IDENTIFIER).orElseThrow().sign(Bytes.of(1)))
+        .isSameAs(signature);
+    assertThat(provider.getSigner("0x5678")).isEmpty();
+  }
+
+  @Test
+  void signingWaitsForAPermitOnceTheLimitIsReached() throws InterruptedException {
+    final CountDownLatch signing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    when(delegate.getSigner(IDENTIFIER)).thenReturn(Optional.of(signer));
+    when(signer.sign(Bytes.of(1)))
+        .thenAnswer(
+            invocation -> {
+              signing.countDown();
+              Uninterruptibles.awaitUninterruptibly(release);
+              return signature;
+            });
+    final BoundedArtifactSignerProvider provider =
+        new BoundedArtifactSignerProvider(delegate, 1, metricsSystem);
+    final ArtifactSigner boundedSigner = provider.getSigner(IDENTIFIER).orElseThrow();
+    final LongSupplier waiters = waitersGauge();
+
+    final CompletableFuture<ArtifactSignature> first =
+        CompletableFuture.supplyAsync(() -> boundedSigner.sign(Bytes.of(1)));
+    assertThat(signing.await(1, TimeUnit.SECONDS)).isTrue();
+    final CompletableFuture<ArtifactSignature> second =
+        CompletableFuture.supplyAsync(() -> boundedSigner.sign(Bytes.of(1)));
+    while (waiters.getAsLong() == 0) {
+      Thread.sleep(10);
+    }
+    assertThat(second).isNotDone();
+
+    release.countDown();
+    assertThat(first.join()).isSameAs(signature);
+    assertThat(second.join()).isSameAs(signature);
+    assertThat(waiters.getAsLong()).isZero();
+  }
+
+  private LongSupplier waitersGauge() {
+    final ArgumentCaptor<LongSupplier> gauge = ArgumentCaptor.forClass(LongSupplier.class);
+    verify(metricsSystem)
+        .createLongGauge(
+            eq(Web3SignerMetricCategory.SIGNING),
+            eq("signing_permit_waiters"),
+            anyString(),
+            gauge.capture());
+    return gauge.getValue();
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class SignatureCacheTest {
+
+  private static final String IDENTIFIER = "0x01";
+  private static final Bytes SIGNING_ROOT = Bytes.fromHexString("0x02");
+  private static final Optional<String> SIGNATURE = Optional.of("0x03");
+
+  private final SignatureCache signatureCache =
+      new SignatureCache(100, Duration.ofMinutes(1), new NoOpMetricsSystem());
+  private final AtomicInteger signings = new AtomicInteger();
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  @AfterEach
+  void cleanup() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void repeatedRequestIsSignedOnce() {
+    assertThat(signatureCache.sign(IDENTIFIER, SIGNING_ROOT, this::sign)).isEqualTo(SIGNATURE);
+    assertThat(signatureCache.sign(IDENTIFIER, SIGNING_ROOT, this::sign)).isEqualTo(SIGNATURE);
+
+    assertThat(signings).hasValue(1);
+  }
+
+  @Test
+  void differentSigningRootsAreSignedSeparately() {
+    signatureCache.sign(IDENTIFIER, SIGNING_ROOT, this::sign);
+    signatureCache.sign(IDENTIFIER, Bytes.fromHexString("0x04"), this::sign);
+    signatureCache.sign("0x05", SIGNING_ROOT, this::sign);
+
+    assertThat(signings).hasValue(3);
+  }
+
+  @Test
+  void concurrentRequestWaitsForTheSignatureInProgress() throws Exception {
+    final CountDownLatch signing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Future<Optional<String>> first =
+        executor.submit(
+            () ->
+                signatureCache.sign(
+                    IDENTIFIER,
+                    SIGNING_ROOT,
+                    () -> {
+                      signing.countDown();
+                      Uninterruptibles.awaitUninterruptibly(release);
+                      return sign();
+                    }));
+    assertThat(signing.await(1, TimeUnit.SECONDS)).isTrue();
+
+    final Thread releaser =
+        new Thread(
+            () -> {
+              Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+              release.countDown();
+            });
+    releaser.start();
+    assertThat(signatureCache.sign(IDENTIFIER, SIGNING_ROOT, this::sign)).isEqualTo(SIGNATURE);
+
+    assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo(SIGNATURE);
+    assertThat(signings).hasValue(1);
+  }
+
+  @Test
+  void signatureIsOnlyPermittedOnceSlashingProtectionPermittedIt() {
+    signatureCache.sign(IDENTIFIER, SIGNING_ROOT, this::sign);
+    assertThat(signatureCache.getPermittedSignature(IDENTIFIER, SIGNING_ROOT)).isEmpty();
+
+    signatureCache.slashingPermitted(IDENTIFIER, SIGNING_ROOT);
+
+    assertThat(signatureCache.getPermittedSignature(IDENTIFIER, SIGNING_ROOT))
+        .isEqualTo(SIGNATURE);
+    assertThat(signatureCache.getPermittedSignature(IDENTIFIER, Bytes.fromHexString("0x04")))
+        .isEmpty();
+  }
+
+  @Test
+  void missingSignerIsNotCached() {
+    assertThat(signatureCache.sign(IDENTIFIER, SIGNING_ROOT, Optional::empty)).isEmpty();
+
+    assertThat(signatureCache.sign(IDENTIFIER, SIGNING_ROOT, this::sign)).isEqualTo(SIGNATURE);
+    assertThat(signings).hasValue(1);
+  }
+
+  private Optional<String> sign() {
+    signings.incrementAndGet();
+    return SIGNATURE;
+  }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import tech.pegasys.teku.api.schema.AttestationData;
+import tech.pegasys.teku.api.schema.Checkpoint;
+import tech.pegasys.teku.api.schema.Fork;
+import tech.pegasys.teku.infrastructure.unsigned.UInt64;
+import tech.pegasys.teku.ssz.SSZTypes.Bytes4;
+import tech.pegasys.web3signer.core.metrics.SlashingProtectionMetrics;
+import tech.pegasys.web3signer.core.service.http.ArtifactType;
+import tech.pegasys.web3signer.core.service.http.SigningJsonModule;
+import tech.pegasys.web3signer.core.service.http.handlers.signing.SignatureCache;
+import tech.pegasys.web3signer.core.service.http.handlers.signing.SignerForIdentifier;
+import tech.pegasys.web3signer.core.service.http.metrics.HttpApiMetrics;
+import tech.pegasys.web3signer.core.signing.BlsArtifactSignature;
+import tech.pegasys.web3signer.core.signing.KeyType;
+import tech.pegasys.web3signer.slashingprotection.AsyncSlashingProtection;
+import tech.pegasys.web3signer.slashingprotection.SlashingCheck;
+import tech.pegasys.web3signer.slashingprotection.SlashingProtectionUnavailableException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.api.RequestParameter;
+import io.vertx.ext.web.api.RequestParameters;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class Eth2SignBatchHandlerTest {
+
+  private static final String IDENTIFIER = "0x" + "ab".repeat(48);
+  private static final String MISSING_IDENTIFIER = "0x" + "ef".repeat(48);
+  private static final String SIGNATURE = "0x" + "cd".repeat(96);
+  private static final ObjectMapper OBJECT_MAPPER =
+      new ObjectMapper()
+          .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+          .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+          .registerModule(new SigningJsonModule());
+  private static final ForkInfo FORK_INFO =
+      new ForkInfo(
+          new Fork(
+              Bytes4.fromHexString("0x00000001"),
+              Bytes4.fromHexString("0x00000001"),
+              UInt64.valueOf(1)),
+          Bytes32.fromHexString(
+              "0x270d43e74ce340de4bca2b1936beca0f4f5408d9e78aec4850920baf659d5b69"));
+
+  @Mock private SignerForIdentifier<BlsArtifactSignature> signerForIdentifier;
+  @Mock private AsyncSlashingProtection slashingProtection;
+  @Mock private RoutingContext routingContext;
+  @Mock private RequestParameters params;
+  @Mock private RequestParameter bodyParameter;
+  @Mock private Vertx vertx;
+  @Mock private Context context;
+  @Mock private HttpServerResponse response;
+  @Captor private ArgumentCaptor<List<SlashingCheck>> checks;
+  @Captor private ArgumentCaptor<String> responseBody;
+
+  private final HttpApiMetrics httpMetrics =
+      new HttpApiMetrics(new NoOpMetricsSystem(), KeyType.BLS);
+  private final SlashingProtectionMetrics slashingMetrics =
+      new SlashingProtectionMetrics(new NoOpMetricsSystem());
+  private final SignatureCache signatureCache =
+      new SignatureCache(100, Duration.ofMinutes(1), new NoOpMetricsSystem());
+  private final ArrayNode batch = OBJECT_MAPPER.createArrayNode();
+
+  @BeforeEach
+  void setup() {
+    doReturn(params).when(routingContext).get("parsedParameters");
+    when(params.body()).thenReturn(bodyParameter);
+    when(bodyParameter.toString())
+        .thenAnswer(invocation -> OBJECT_MAPPER.writeValueAsString(batch));
+    // batches rejected as a whole fail the request without responding on the context
+    lenient().when(routingContext.vertx()).thenReturn(vertx);
+    lenient().when(vertx.getOrCreateContext()).thenReturn(context);
+    lenient()
+        .doAnswer(
+            invocation -> {
+              invocation.<Handler<Void>>getArgument(0).handle(null);
+              return null;
+            })
+        .when(context)
+        .runOnContext(any());
+    lenient().when(routingContext.response()).thenReturn(response);
+    lenient()
+        .when(response.putHeader(any(CharSequence.class), any(CharSequence.class)))
+        .thenReturn(response);
+  }
+
+  @Test
+  void eachRequestIsAnsweredWithItsOwnStatusInRequestOrder() throws JsonProcessingException {
+    final Eth2SigningRequestBody rejected = attestationRequest(2, 3);
+    final Eth2SigningRequestBody permitted = attestationRequest(3, 4);
+    final Eth2SigningRequestBody unchecked = randaoRevealRequest();
+    batch.addObject().put("identifier", IDENTIFIER);
+    addRequest(MISSING_IDENTIFIER, permitted);
+    addRequest(IDENTIFIER, rejected);
+    addRequest(IDENTIFIER, permitted);
+    addRequest(IDENTIFIER, unchecked);
+    when(signerForIdentifier.isSignerAvailable(IDENTIFIER)).thenReturn(true);
+    when(signerForIdentifier.isSignerAvailable(MISSING_IDENTIFIER)).thenReturn(false);
+    when(slashingProtection.maySignBatchAsync(checks.capture()))
+        .thenReturn(CompletableFuture.completedFuture(List.of(false, true)));
+    when(signerForIdentifier.sign(anyString(), any())).thenReturn(Optional.of(SIGNATURE));
+
+    handler(Optional.empty()).handle(routingContext);
+
+    assertThat(statuses()).containsExactly(400, 404, 403, 200, 200);
+    assertThat(checks.getValue())
+        .extracting(SlashingCheck::getSigningRoot)
+        .containsExactly(signingRoot(rejected), signingRoot(permitted));
+    verify(signerForIdentifier, never()).sign(IDENTIFIER, signingRoot(rejected));
+    verify(signerForIdentifier).sign(IDENTIFIER, signingRoot(permitted));
+    verify(signerForIdentifier).sign(IDENTIFIER, signingRoot(unchecked));
+  }
+
+  @Test
+  void unavailableSlashingProtectionFailsOnlyTheCheckedRequests() throws JsonProcessingException {
+    addRequest(IDENTIFIER, attestationRequest(2, 3));
+    addRequest(IDENTIFIER, randaoRevealRequest());
+    addRequest(MISSING_IDENTIFIER, attestationRequest(2, 3));
+    when(signerForIdentifier.isSignerAvailable(IDENTIFIER)).thenReturn(true);
+    when(signerForIdentifier.isSignerAvailable(MISSING_IDENTIFIER)).thenReturn(false);
+    when(slashingProtection.maySignBatchAsync(any()))
+        .thenReturn(
+            CompletableFuture.failedFuture(
+                new SlashingProtectionUnavailableException("database unavailable")));
+    when(signerForIdentifier.sign(anyString(), any())).thenReturn(Optional.of(SIGNATURE));
+
+    handler(Optional.empty()).handle(routingContext);
+
+    assertThat(statuses()).containsExactly(503, 200, 404);
+    verify(signerForIdentifier).sign(IDENTIFIER, signingRoot(randaoRevealRequest()));
+    verify(signerForIdentifier, never()).sign(IDENTIFIER, signingRoot(attestationRequest(2, 3)));
+  }
+
+  @Test
+  void repeatedRequestsForTheSameValidatorAreCheckedSeparately() throws JsonProcessingException {
+    final Eth2SigningRequestBody attestation = attestationRequest(2, 3);
+    addRequest(IDENTIFIER, attestation);
+    addRequest(IDENTIFIER, attestation);
+    when(signerForIdentifier.isSignerAvailable(IDENTIFIER)).thenReturn(true);
+    when(slashingProtection.maySignBatchAsync(checks.capture()))
+        .thenReturn(CompletableFuture.completedFuture(List.of(true, false)));
+    when(signerForIdentifier.sign(IDENTIFIER, signingRoot(attestation)))
+        .thenReturn(Optional.of(SIGNATURE));
+
+    handler(Optional.empty()).handle(routingContext);
+
+    assertThat(statuses()).containsExactly(200, 403);
+    assertThat(checks.getValue()).hasSize(2);
+  }
+
+  @Test
+  void permittedSignatureIsAnsweredFromCacheWithoutSlashingCheck() throws JsonProcessingException {
+    final Eth2SigningRequestBody attestation = attestationRequest(2, 3);
+    final Bytes signingRoot = signingRoot(attestation);
+    signatureCache.sign(IDENTIFIER, signingRoot, () -> Optional.of(SIGNATURE));
+    signatureCache.slashingPermitted(IDENTIFIER, signingRoot);
+    addRequest(IDENTIFIER, attestation);
+    when(signerForIdentifier.isSignerAvailable(IDENTIFIER)).thenReturn(true);
+
+    handler(Optional.of(signatureCache)).handle(routingContext);
+
+    assertThat(statuses()).containsExactly(200);
+    assertThat(OBJECT_MAPPER.readTree(responseBody.getValue()).get(0).get("signature").asText())
+        .isEqualTo(SIGNATURE);
+    verifyNoInteractions(slashingProtection);
+    verify(signerForIdentifier, never()).sign(anyString(), any());
+  }
+
+  @Test
+  void batchLargerThanMaximumSizeIsRejectedWithoutSigning() {
+    addRequest(IDENTIFIER, attestationRequest(2, 3));
+    addRequest(IDENTIFIER, attestationRequest(3, 4));
+    addRequest(IDENTIFIER, randaoRevealRequest());
+
+    handler(Optional.empty(), 2).handle(routingContext);
+
+    verify(routingContext).fail(400);
+    verifyNoInteractions(slashingProtection, signerForIdentifier, response);
+  }
+
+  @Test
+  void batchOfMaximumSizeIsSigned() throws JsonProcessingException {
+    addRequest(IDENTIFIER, randaoRevealRequest());
+    addRequest(IDENTIFIER, randaoRevealRequest());
+    when(signerForIdentifier.isSignerAvailable(IDENTIFIER)).thenReturn(true);
+    when(signerForIdentifier.sign(anyString(), any())).thenReturn(Optional.of(SIGNATURE));
+
+    handler(Optional.empty(), 2).handle(routingContext);
+
+    assertThat(statuses()).containsExactly(200, 200);
+  }
+
+  private Eth2SignBatchHandler handler(final Optional<SignatureCache> signatureCache) {
+    return handler(signatureCache, 1024);
+  }
+
+  private Eth2SignBatchHandler handler(
+      final Optional<SignatureCache> signatureCache, final int maxBatchSize) {
+    return new Eth2SignBatchHandler(
+        signerForIdentifier,
+        httpMetrics,
+        slashingMetrics,
+        Optional.of(slashingProtection),
+        OBJECT_MAPPER,
+        Runnable::run,
+        signatureCache,
+        maxBatchSize,
+        new NoOpMetricsSystem());
+  }
+
+  private void addRequest(final String identifier, final Eth2SigningRequestBody body) {
+    batch
+        .addObject()
+        .put("identifier", identifier)
+        .set("request", OBJECT_MAPPER.valueToTree(body));
+  }
+
+  private List<Integer> statuses() throws JsonProcessingException {
+    verify(response).end(responseBody.capture());
+    final List<Integer> statuses = new ArrayList<>();
+    OBJECT_MAPPER
+        .readTree(responseBody.getValue())
+        .forEach(result -> statuses.add(result.get("status").asInt()));
+    return statuses;
+  }
+
+  private static Bytes signingRoot(final Eth2SigningRequestBody body) {
+    return Eth2SignForIdentifierHandler.computeSigningRoot(body);
+  }
+
+  private static Eth2SigningRequestBody attestationRequest(
+      final int sourceEpoch, final int targetEpoch) {
+    final AttestationData attestationData =
+        new AttestationData(
+            UInt64.valueOf(32),
+            UInt64.ZERO,
+            Bytes32.fromHexString(
+                "0xb2eedb01adbd02c828d5eec09b4c70cbba12ffffba525ebf48aca33028e8ad89"),
+            new Checkpoint(UInt64.valueOf(sourceEpoch), Bytes32.ZERO),
+            new Checkpoint(UInt64.valueOf(targetEpoch), Bytes32.ZERO));
+    return new Eth2SigningRequestBody(
+        ArtifactType.ATTESTATION,
+        null,
+        FORK_INFO,
+        null,
+        attestationData,
+        null,
+        null,
+        null,
+        null,
+        null);
+  }
+
+  private static Eth2SigningRequestBody randaoRevealRequest() {
+    return new Eth2SigningRequestBody(
+        ArtifactType.RANDAO_REVEAL,
+        null,
+        FORK_INFO,
+        null,
+        null,
+        null,
+        null,
+        null,
+        new RandaoReveal(UInt64.valueOf(3)),
+        null);
+  }
+}
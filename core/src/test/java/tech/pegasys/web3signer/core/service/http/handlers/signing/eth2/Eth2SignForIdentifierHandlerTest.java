@@ -0,0 +1,303 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import tech.pegasys.teku.api.schema.AttestationData;
+import tech.pegasys.teku.api.schema.Checkpoint;
+import tech.pegasys.teku.api.schema.Fork;
+import tech.pegasys.teku.infrastructure.unsigned.UInt64;
+import tech.pegasys.teku.ssz.SSZTypes.Bytes4;
+import tech.pegasys.web3signer.core.metrics.SlashingProtectionMetrics;
+import tech.pegasys.web3signer.core.service.http.ArtifactType;
+import tech.pegasys.web3signer.core.service.http.SigningJsonModule;
+import tech.pegasys.web3signer.core.service.http.handlers.signing.SignatureCache;
+import tech.pegasys.web3signer.core.service.http.handlers.signing.SignerForIdentifier;
+import tech.pegasys.web3signer.core.service.http.metrics.HttpApiMetrics;
+import tech.pegasys.web3signer.core.signing.BlsArtifactSignature;
+import tech.pegasys.web3signer.core.signing.KeyType;
+import tech.pegasys.web3signer.slashingprotection.SlashingProtection;
+import tech.pegasys.web3signer.slashingprotection.SlashingProtectionUnavailableException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.api.RequestParameter;
+import io.vertx.ext.web.api.RequestParameters;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class Eth2SignForIdentifierHandlerTest {
+
+  private static final String IDENTIFIER = "0x" + "ab".repeat(48);
+  private static final String SIGNATURE = "0x" + "cd".repeat(96);
+  private static final ObjectMapper OBJECT_MAPPER =
+      new ObjectMapper()
+          .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+          .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+          .registerModule(new SigningJsonModule());
+
+  @Mock private SignerForIdentifier<BlsArtifactSignature> signerForIdentifier;
+  @Mock private SlashingProtection slashingProtection;
+  @Mock private RoutingContext routingContext;
+  @Mock private RequestParameters params;
+  @Mock private RequestParameter identifierParameter;
+  @Mock private RequestParameter bodyParameter;
+  @Mock private HttpServerResponse response;
+
+  private final HttpApiMetrics httpMetrics =
+      new HttpApiMetrics(new NoOpMetricsSystem(), KeyType.BLS);
+  private final SlashingProtectionMetrics slashingMetrics =
+      spy(new SlashingProtectionMetrics(new NoOpMetricsSystem()));
+  private final SignatureCache signatureCache =
+      new SignatureCache(100, Duration.ofMinutes(1), new NoOpMetricsSystem());
+  private final Eth2SigningRequestBody attestation = attestationRequest(2, 3);
+  private final Bytes signingRoot = Eth2SignForIdentifierHandler.computeSigningRoot(attestation);
+
+  @BeforeEach
+  void setup() throws JsonProcessingException {
+    doReturn(params).when(routingContext).get("parsedParameters");
+    when(params.pathParameter("identifier")).thenReturn(identifierParameter);
+    when(identifierParameter.toString()).thenReturn(IDENTIFIER);
+    when(params.body()).thenReturn(bodyParameter);
+    when(bodyParameter.toString()).thenReturn(OBJECT_MAPPER.writeValueAsString(attestation));
+  }
+
+  @Test
+  void missingSignerIsRejectedBeforeSlashingCheck() {
+    when(signerForIdentifier.isSignerAvailable(IDENTIFIER)).thenReturn(false);
+
+    handler().handle(routingContext);
+
+    verify(routingContext).fail(404);
+    verifyNoInteractions(slashingProtection);
+    verify(signerForIdentifier, never()).sign(anyString(), any());
+  }
+
+  @Test
+  void requestRejectedBySlashingProtectionIsNeverSigned() {
+    when(signerForIdentifier.isSignerAvailable(IDENTIFIER)).thenReturn(true);
+    when(slashingProtection.maySignAttestation(
+            eq(Bytes.fromHexString(IDENTIFIER)), eq(signingRoot), any(), any()))
+        .thenReturn(false);
+
+    handler().handle(routingContext);
+
+    verify(routingContext).fail(403);
+    verify(signerForIdentifier, never()).sign(anyString(), any());
+    verify(routingContext, never()).response();
+    verify(slashingMetrics).incrementSignaturesAvoided();
+  }
+
+  @Test
+  void requestThatCannotBeCheckedIsNotCountedAsAvoidedSignature() {
+    when(signerForIdentifier.isSignerAvailable(IDENTIFIER)).thenReturn(true);
+    when(slashingProtection.maySignAttestation(any(), any(), any(), any()))
+        .thenThrow(new SlashingProtectionUnavailableException("database unavailable"));
+
+    handler().handle(routingContext);
+
+    verify(routingContext).fail(503);
+    verify(signerForIdentifier, never()).sign(anyString(), any());
+    verify(slashingMetrics, never()).incrementSignaturesAvoided();
+  }
+
+  @Test
+  void requestPermittedBySlashingProtectionIsSignedAfterTheCheck() {
+    when(signerForIdentifier.isSignerAvailable(IDENTIFIER)).thenReturn(true);
+    when(slashingProtection.maySignAttestation(any(), any(), any(), any())).thenReturn(true);
+    when(signerForIdentifier.sign(IDENTIFIER, signingRoot)).thenReturn(Optional.of(SIGNATURE));
+    givenResponse();
+
+    handler().handle(routingContext);
+
+    final InOrder inOrder = inOrder(slashingProtection, signerForIdentifier);
+    inOrder.verify(slashingProtection).maySignAttestation(any(), any(), any(), any());
+    inOrder.verify(signerForIdentifier).sign(IDENTIFIER, signingRoot);
+    verify(response).end(SIGNATURE);
+  }
+
+  @Test
+  void rootRejectedBySlashingProtectionIsNotServedFromCacheLater() {
+    when(signerForIdentifier.isSignerAvailable(IDENTIFIER)).thenReturn(true);
+    when(slashingProtection.maySignAttestation(any(), any(), any(), any())).thenReturn(false);
+    when(signerForIdentifier.sign(IDENTIFIER, signingRoot)).thenReturn(Optional.of(SIGNATURE));
+    final Eth2SignForIdentifierHandler handler = cachingHandler(Optional.of(Runnable::run));
+
+    handler.handle(routingContext);
+    handler.handle(routingContext);
+
+    verify(slashingProtection, times(2)).maySignAttestation(any(), any(), any(), any());
+    verify(routingContext, times(2)).fail(403);
+    verify(routingContext, never()).response();
+  }
+
+  @Test
+  void parallelSignatureRejectedBySlashingProtectionIsNotMarkedPermitted() {
+    when(signerForIdentifier.isSignerAvailable(IDENTIFIER)).thenReturn(true);
+    when(slashingProtection.maySignAttestation(any(), any(), any(), any())).thenReturn(false);
+    when(signerForIdentifier.sign(IDENTIFIER, signingRoot)).thenReturn(Optional.of(SIGNATURE));
+
+    cachingHandler(Optional.of(Runnable::run)).handle(routingContext);
+
+    verify(signerForIdentifier).sign(IDENTIFIER, signingRoot);
+    verify(routingContext).fail(403);
+    assertThat(signatureCache.getPermittedSignature(IDENTIFIER, signingRoot)).isEmpty();
+  }
+
+  @Test
+  void parallelSignatureNotYetStartedIsCancelledWhenSlashingProtectionRefuses() {
+    when(signerForIdentifier.isSignerAvailable(IDENTIFIER)).thenReturn(true);
+    when(slashingProtection.maySignAttestation(any(), any(), any(), any())).thenReturn(false);
+    final List<Runnable> pendingSignatures = new ArrayList<>();
+
+    parallelHandler(pendingSignatures::add, Runnable::run).handle(routingContext);
+    pendingSignatures.forEach(Runnable::run);
+
+    verify(routingContext).fail(403);
+    verify(signerForIdentifier, never()).sign(anyString(), any());
+    verify(routingContext, never()).response();
+    verify(slashingMetrics).incrementSignaturesAvoided();
+  }
+
+  @Test
+  void parallelSignatureIsReleasedOnceCheckOnCheckExecutorPermits() {
+    when(signerForIdentifier.isSignerAvailable(IDENTIFIER)).thenReturn(true);
+    when(slashingProtection.maySignAttestation(any(), any(), any(), any())).thenReturn(true);
+    when(signerForIdentifier.sign(IDENTIFIER, signingRoot)).thenReturn(Optional.of(SIGNATURE));
+    givenResponse();
+    final AtomicInteger checksOnCheckExecutor = new AtomicInteger();
+
+    parallelHandler(
+            Runnable::run,
+            command -> {
+              checksOnCheckExecutor.incrementAndGet();
+              command.run();
+            })
+        .handle(routingContext);
+
+    assertThat(checksOnCheckExecutor).hasValue(1);
+    verify(slashingProtection).maySignAttestation(any(), any(), any(), any());
+    verify(response).end(SIGNATURE);
+  }
+
+  @Test
+  void rootPermittedBySlashingProtectionSkipsLaterChecks() {
+    when(signerForIdentifier.isSignerAvailable(IDENTIFIER)).thenReturn(true);
+    when(slashingProtection.maySignAttestation(any(), any(), any(), any())).thenReturn(true);
+    when(signerForIdentifier.sign(IDENTIFIER, signingRoot)).thenReturn(Optional.of(SIGNATURE));
+    givenResponse();
+    final Eth2SignForIdentifierHandler handler = cachingHandler(Optional.empty());
+
+    handler.handle(routingContext);
+    handler.handle(routingContext);
+
+    verify(slashingProtection).maySignAttestation(any(), any(), any(), any());
+    verify(signerForIdentifier).sign(IDENTIFIER, signingRoot);
+    verify(response, times(2)).end(SIGNATURE);
+  }
+
+  private Eth2SignForIdentifierHandler handler() {
+    return Eth2SignForIdentifierHandler.builder(
+            signerForIdentifier, httpMetrics, slashingMetrics, OBJECT_MAPPER)
+        .slashingProtection(Optional.of(slashingProtection))
+        .build();
+  }
+
+  private Eth2SignForIdentifierHandler cachingHandler(
+      final Optional<Executor> parallelSigningExecutor) {
+    return Eth2SignForIdentifierHandler.builder(
+            signerForIdentifier, httpMetrics, slashingMetrics, OBJECT_MAPPER)
+        .slashingProtection(Optional.of(slashingProtection))
+        .parallelSigningExecutor(parallelSigningExecutor)
+        .signatureCache(Optional.of(signatureCache))
+        .build();
+  }
+
+  private Eth2SignForIdentifierHandler parallelHandler(
+      final Executor parallelSigningExecutor, final Executor slashingCheckExecutor) {
+    return Eth2SignForIdentifierHandler.builder(
+            signerForIdentifier, httpMetrics, slashingMetrics, OBJECT_MAPPER)
+        .slashingProtection(Optional.of(slashingProtection))
+        .parallelSigningExecutor(Optional.of(parallelSigningExecutor))
+        .slashingCheckExecutor(Optional.of(slashingCheckExecutor))
+        .build();
+  }
+
+  private void givenResponse() {
+    when(routingContext.response()).thenReturn(response);
+    when(response.putHeader(any(CharSequence.class), any(CharSequence.class)))
+        .thenReturn(response);
+  }
+
+  private static Eth2SigningRequestBody attestationRequest(
+      final int sourceEpoch, final int targetEpoch) {
+    final ForkInfo forkInfo =
+        new ForkInfo(
+            new Fork(
+                Bytes4.fromHexString("0x00000001"),
+                Bytes4.fromHexString("0x00000001"),
+                UInt64.valueOf(1)),
+            Bytes32.fromHexString(
+                "0x270d43e74ce340de4bca2b1936beca0f4f5408d9e78aec4850920baf659d5b69"));
+    final AttestationData attestationData =
+        new AttestationData(
+            UInt64.valueOf(32),
+            UInt64.ZERO,
+            Bytes32.fromHexString(
+                "0xb2eedb01adbd02c828d5eec09b4c70cbba12ffffba525ebf48aca33028e8ad89"),
+            new Checkpoint(UInt64.valueOf(sourceEpoch), Bytes32.ZERO),
+            new Checkpoint(UInt64.valueOf(targetEpoch), Bytes32.ZERO));
+    return new Eth2SigningRequestBody(
+        ArtifactType.ATTESTATION,
+        null,
+        forkInfo,
+        null,
+        attestationData,
+        null,
+        null,
+        null,
+        null,
+        null);
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.service.http.handlers.signing.eth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tech.pegasys.teku.datastructures.util.BeaconStateUtil.compute_domain;
+import static tech.pegasys.teku.datastructures.util.BeaconStateUtil.get_domain;
+import static tech.pegasys.teku.util.config.Constants.DOMAIN_BEACON_ATTESTER;
+import static tech.pegasys.teku.util.config.Constants.DOMAIN_DEPOSIT;
+import static tech.pegasys.teku.util.config.Constants.DOMAIN_RANDAO;
+
+import tech.pegasys.teku.api.schema.Fork;
+import tech.pegasys.teku.core.signatures.SigningRootUtil;
+import tech.pegasys.teku.infrastructure.unsigned.UInt64;
+import tech.pegasys.teku.ssz.SSZTypes.Bytes4;
+import tech.pegasys.web3signer.core.service.http.ArtifactType;
+
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+
+class SigningDomainsTest {
+
+  private static final ForkInfo FORK_INFO =
+      new ForkInfo(
+          new Fork(
+              Bytes4.fromHexString("0x00000001"),
+              Bytes4.fromHexString("0x00000002"),
+              UInt64.valueOf(10)),
+          Bytes32.fromHexString(
+              "0x270d43e74ce340de4bca2b1936beca0f4f5408d9e78aec4850920baf659d5b69"));
+
+  private final SigningDomains signingDomains = new SigningDomains();
+
+  @Test
+  void domainUsesPreviousForkVersionBeforeForkEpoch() {
+    assertDomainMatchesTeku(UInt64.valueOf(9));
+  }
+
+  @Test
+  void domainUsesCurrentForkVersionFromForkEpoch() {
+    assertDomainMatchesTeku(UInt64.valueOf(10));
+    assertDomainMatchesTeku(UInt64.valueOf(11));
+  }
+
+  @Test
+  void repeatedDomainIsAnsweredFromTheCache() {
+    final Bytes32 first = signingDomains.getDomain(DOMAIN_RANDAO, UInt64.valueOf(11), FORK_INFO);
+    final Bytes32 second = signingDomains.getDomain(DOMAIN_RANDAO, UInt64.valueOf(12), FORK_INFO);
+
+    assertThat(second).isSameAs(first);
+    assertThat(signingDomains.getDomain(DOMAIN_BEACON_ATTESTER, UInt64.valueOf(12), FORK_INFO))
+        .isNotEqualTo(first);
+  }
+
+  @Test
+  void depositDomainMatchesTeku() {
+    assertThat(signingDomains.getDepositDomain()).isEqualTo(compute_domain(DOMAIN_DEPOSIT));
+  }
+
+  @Test
+  void randaoRevealSigningRootMatchesTeku() {
+    final UInt64 epoch = UInt64.valueOf(9);
+    final Eth2SigningRequestBody body =
+        new Eth2SigningRequestBody(
+            ArtifactType.RANDAO_REVEAL,
+            null,
+            FORK_INFO,
+            null,
+            null,
+            null,
+            null,
+            null,
+            new RandaoReveal(epoch),
+            null);
+
+    assertThat(Eth2SignForIdentifierHandler.computeSigningRoot(body, signingDomains))
+        .isEqualTo(
+            SigningRootUtil.signingRootForRandaoReveal(epoch, FORK_INFO.asInternalForkInfo()));
+  }
+
+  @Test
+  void aggregationSlotSigningRootMatchesTeku() {
+    final UInt64 slot = UInt64.valueOf(400);
+    final Eth2SigningRequestBody body =
+        new Eth2SigningRequestBody(
+            ArtifactType.AGGREGATION_SLOT,
+            null,
+            FORK_INFO,
+            null,
+            null,
+            new AggregationSlot(slot),
+            null,
+            null,
+            null,
+            null);
+
+    assertThat(Eth2SignForIdentifierHandler.computeSigningRoot(body, signingDomains))
+        .isEqualTo(
+            SigningRootUtil.signingRootForSignAggregationSlot(
+                slot, FORK_INFO.asInternalForkInfo()));
+  }
+
+  private void assertDomainMatchesTeku(final UInt64 epoch) {
+    assertThat(signingDomains.getDomain(DOMAIN_RANDAO, epoch, FORK_INFO))
+        .isEqualTo(
+            get_domain(
+                DOMAIN_RANDAO,
+                epoch,
+                FORK_INFO.getFork().asInternalFork(),
+                FORK_INFO.getGenesisValidatorsRoot()));
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.signing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import tech.pegasys.teku.bls.BLS;
+import tech.pegasys.teku.bls.BLSKeyPair;
+
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HashToG2CacheTest {
+
+  private static final Bytes SIGNING_ROOT = Bytes32.fromHexString("0x01");
+  private static final List<BLSKeyPair> KEY_PAIRS =
+      List.of(BLSKeyPair.random(1), BLSKeyPair.random(2), BLSKeyPair.random(3));
+
+  private final MetricsSystem metricsSystem = mock(MetricsSystem.class);
+  private final Counter hitCounter = mock(Counter.class);
+  private final Counter missCounter = mock(Counter.class);
+
+  @BeforeEach
+  void setup() {
+    assumeTrue(HashToG2Cache.isSupported(), "blst is not available on this platform");
+    when(metricsSystem.createCounter(any(), eq("hash_to_curve_cache_hits"), anyString()))
+        .thenReturn(hitCounter);
+    when(metricsSystem.createCounter(any(), eq("hash_to_curve_cache_misses"), anyString()))
+        .thenReturn(missCounter);
+  }
+
+  @Test
+  void keysSigningTheSameMessageMatchTekuSignatures() {
+    final HashToG2Cache cache = new HashToG2Cache(10, metricsSystem);
+
+    for (final BLSKeyPair keyPair : KEY_PAIRS) {
+      assertThat(cache.createSigner(keyPair.getSecretKey()).apply(SIGNING_ROOT))
+          .isEqualTo(BLS.sign(keyPair.getSecretKey(), SIGNING_ROOT));
+    }
+
+    verify(missCounter).inc();
+    verify(hitCounter, times(2)).inc();
+  }
+
+  @Test
+  void differentMessagesAreHashedSeparately() {
+    final HashToG2Cache cache = new HashToG2Cache(10, metricsSystem);
+    final BLSKeyPair keyPair = KEY_PAIRS.get(0);
+    final Bytes otherRoot = Bytes32.fromHexString("0x02");
+
+    assertThat(cache.createSigner(keyPair.getSecretKey()).apply(SIGNING_ROOT))
+        .isEqualTo(BLS.sign(keyPair.getSecretKey(), SIGNING_ROOT));
+    assertThat(cache.createSigner(keyPair.getSecretKey()).apply(otherRoot))
+        .isEqualTo(BLS.sign(keyPair.getSecretKey(), otherRoot));
+
+    verify(missCounter, times(2)).inc();
+  }
+
+  @Test
+  void evictedMessagesAreHashedAgain() {
+    final HashToG2Cache cache = new HashToG2Cache(1, metricsSystem);
+    final BLSKeyPair keyPair = KEY_PAIRS.get(0);
+
+    cache.createSigner(keyPair.getSecretKey()).apply(SIGNING_ROOT);
+    cache.createSigner(keyPair.getSecretKey()).apply(Bytes32.fromHexString("0x02"));
+    assertThat(cache.createSigner(keyPair.getSecretKey()).apply(SIGNING_ROOT))
+        .isEqualTo(BLS.sign(keyPair.getSecretKey(), SIGNING_ROOT));
+
+    verify(missCounter, times(3)).inc();
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.core.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import tech.pegasys.web3signer.core.metrics.Web3SignerMetricCategory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class MonitoredExecutorTest {
+
+  private final MetricsSystem metricsSystem = mock(MetricsSystem.class);
+  private final OperationTimer queueWaitTimer = mock(OperationTimer.class);
+  private final OperationTimer.TimingContext queueWait = mock(OperationTimer.TimingContext.class);
+
+  @Test
+  void tasksRunOnThreadsNamedAfterTheExecutor() {
+    final MonitoredExecutor executor = createExecutor(1);
+
+    final String threadName =
+        CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), executor).join();
+
+    assertThat(threadName).isEqualTo("eth2-signing-0");
+  }
+
+  @Test
+  void gaugesReportQueuedTasksAndActiveThreads() throws InterruptedException {
+    final MonitoredExecutor executor = createExecutor(1);
+    final LongSupplier queueDepth = gauge("eth2_signing_executor_queue_depth");
+    final LongSupplier activeThreads = gauge("eth2_signing_executor_active_threads");
+    final CountDownLatch running = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    executor.execute(
+        () -> {
+          running.countDown();
+          Uninterruptibles.awaitUninterruptibly(release);
+        });
+    assertThat(running.await(1, TimeUnit.SECONDS)).isTrue();
+    final CompletableFuture<Void> queued = CompletableFuture.runAsync(() -> {}, executor);
+
+    assertThat(activeThreads.getAsLong()).isEqualTo(1);
+    assertThat(queueDepth.getAsLong()).isEqualTo(1);
+
+    release.countDown();
+    queued.join();
+    assertThat(queueDepth.getAsLong()).isZero();
+  }
+
+  @Test
+  void queueWaitIsTimedUntilTheTaskStarts() {
+    final MonitoredExecutor executor = createExecutor(2);
+
+    CompletableFuture.runAsync(() -> verify(queueWait).stopTimer(), executor).join();
+  }
+
+  private MonitoredExecutor createExecutor(final int threads) {
+    when(metricsSystem.createTimer(any(), anyString(), anyString())).thenReturn(queueWaitTimer);
+    when(queueWaitTimer.startTimer()).thenReturn(queueWait);
+    return new MonitoredExecutor(
+        "eth2_signing", threads, metricsSystem, Web3SignerMetricCategory.SIGNING);
+  }
+
+  private LongSupplier gauge(final String name) {
+    final ArgumentCaptor<LongSupplier> gauge = ArgumentCaptor.forClass(LongSupplier.class);
+    verify(metricsSystem)
+        .createLongGauge(
+            eq(Web3SignerMetricCategory.SIGNING), eq(name), anyString(), gauge.capture());
+    return gauge.getValue();
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.google.common.io.Resources;
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.jupiter.api.Test;
+
+public class BigintMigrationIntegrationTest {
+
+  @Test
+  void migrationFailsNamingTheBackfillUntilExistingRowsAreBackfilled()
+      throws IOException, URISyntaxException {
+    final EmbeddedPostgres db = EmbeddedPostgres.start();
+    final Jdbi jdbi = Jdbi.create(db.getPostgresDatabase());
+    migrate(db, "5");
+    jdbi.useHandle(
+        h -> {
+          h.execute("INSERT INTO validators (public_key) VALUES ('\\x01')");
+          h.execute("INSERT INTO signed_blocks (validator_id, slot) VALUES (1, 2)");
+          h.execute(
+              "INSERT INTO signed_attestations (validator_id, source_epoch, target_epoch) "
+                  + "VALUES (1, 2, 3)");
+        });
+    migrate(db, "6");
+
+    assertThatThrownBy(() -> migrate(db, "latest"))
+        .isInstanceOf(FlywayException.class)
+        .hasMessageContaining("CALL backfill_bigint_slot_and_epoch_columns(10000)");
+
+    jdbi.useHandle(h -> h.execute("CALL backfill_bigint_slot_and_epoch_columns(1)"));
+    migrate(db, "latest");
+
+    assertThat(
+            jdbi.withHandle(
+                h ->
+                    h.createQuery("SELECT decode_uint64(slot) FROM signed_blocks")
+                        .mapTo(Long.class)
+                        .one()))
+        .isEqualTo(2L);
+  }
+
+  private void migrate(final EmbeddedPostgres db, final String target) throws URISyntaxException {
+    final String migrationsFile = Path.of("migrations", "postgresql", "V1__initial.sql").toString();
+    final Path migrationPath = Paths.get(Resources.getResource(migrationsFile).toURI()).getParent();
+    Flyway.configure()
+        .locations("filesystem:" + migrationPath.toString())
+        .dataSource(db.getPostgresDatabase())
+        .target(target)
+        .load()
+        .migrate();
+  }
+}
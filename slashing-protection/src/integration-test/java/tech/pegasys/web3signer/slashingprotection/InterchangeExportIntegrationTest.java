@@ -13,7 +13,11 @@
 package tech.pegasys.web3signer.slashingprotection;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
+import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
+import tech.pegasys.web3signer.slashingprotection.dao.MetadataDao;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
@@ -21,13 +25,17 @@ import tech.pegasys.web3signer.slashingprotection.dao.SignedBlocksDao;
 import tech.pegasys.web3signer.slashingprotection.dao.ValidatorsDao;
 import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeModule;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.io.Resources;
@@ -35,6 +43,7 @@ import com.opentable.db.postgres.embedded.EmbeddedPostgres;
 import dsl.InterchangeV5Format;
 import dsl.SignedArtifacts;
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
 import org.apache.tuweni.units.bigints.UInt64;
 import org.flywaydb.core.Flyway;
 import org.jdbi.v3.core.Jdbi;
@@ -45,6 +54,8 @@ public class InterchangeExportIntegrationTest {
   private final SignedBlocksDao signedBlocks = new SignedBlocksDao();
   private final SignedAttestationsDao signedAttestations = new SignedAttestationsDao();
   private final ValidatorsDao validators = new ValidatorsDao();
+  private final LowWatermarkDao lowWatermarks = new LowWatermarkDao();
+  private final MetadataDao metadata = new MetadataDao();
 
   private EmbeddedPostgres setup() throws IOException, URISyntaxException {
     final EmbeddedPostgres slashingDatabase = EmbeddedPostgres.start();
@@ -142,4 +153,110 @@ public class InterchangeExportIntegrationTest {
       }
     }
   }
+
+  @Test
+  void lowWatermarksAreExportedAsEntriesWithoutSigningRootAndImportedAgain()
+      throws IOException, URISyntaxException {
+    final EmbeddedPostgres exportDb = setup();
+    final String exportDatabaseUrl =
+        String.format("jdbc:postgresql://localhost:%d/postgres", exportDb.getPort());
+    final Jdbi exportJdbi =
+        DbConnection.createConnection(exportDatabaseUrl, "postgres", "postgres");
+    final Bytes genesisValidatorsRoot =
+        Bytes.fromHexString("0x04700007fabc8282644aed6d1c7c9e21d38a03a0c4ba193f3afe428824b3a673");
+    exportJdbi.useTransaction(
+        h -> {
+          metadata.findOrInsertGenesisValidatorsRoot(h, genesisValidatorsRoot);
+          validators.registerValidators(h, List.of(Bytes.of(1)));
+          for (int i = 1; i <= 5; i++) {
+            signedBlocks.insertBlockProposal(h, new SignedBlock(1, UInt64.valueOf(i), Bytes.of(i)));
+            signedAttestations.insertAttestation(
+                h, new SignedAttestation(1, UInt64.valueOf(i - 1), UInt64.valueOf(i), Bytes.of(i)));
+          }
+        });
+    // prunes slots 1 and 2 and target epochs 1 and 2 into the low watermark
+    exportJdbi.useTransaction(
+        h -> {
+          assertThat(lowWatermarks.pruneBlocks(h, 1, 2, 100)).isEqualTo(2);
+          assertThat(lowWatermarks.pruneAttestations(h, 1, 2, 100)).isEqualTo(2);
+        });
+
+    final ByteArrayOutputStream exportOutput = new ByteArrayOutputStream();
+    SlashingProtectionFactory.createSlashingProtection(exportDatabaseUrl, "postgres", "postgres")
+        .export(exportOutput);
+
+    final ObjectMapper mapper = new ObjectMapper().registerModule(new InterchangeModule());
+    final InterchangeV5Format outputObject =
+        mapper.readValue(exportOutput.toString(), InterchangeV5Format.class);
+    assertThat(outputObject.getMetadata().getGenesisValidatorsRoot())
+        .isEqualTo(genesisValidatorsRoot);
+    assertThat(outputObject.getSignedArtifacts()).hasSize(1);
+    final SignedArtifacts signedArtifact = outputObject.getSignedArtifacts().get(0);
+    assertThat(signedArtifact.getSignedBlocks())
+        .extracting(block -> block.getSlot().toLong(), block -> block.getSigningRoot())
+        .containsExactly(
+            tuple(2L, null),
+            tuple(3L, Bytes.of(3)),
+            tuple(4L, Bytes.of(4)),
+            tuple(5L, Bytes.of(5)));
+    assertThat(signedArtifact.getSignedAttestations())
+        .extracting(
+            attestation -> attestation.getSourceEpoch().toLong(),
+            attestation -> attestation.getTargetEpoch().toLong(),
+            attestation -> attestation.getSigningRoot())
+        .containsExactly(
+            tuple(1L, 2L, null),
+            tuple(2L, 3L, Bytes.of(3)),
+            tuple(3L, 4L, Bytes.of(4)),
+            tuple(4L, 5L, Bytes.of(5)));
+
+    final EmbeddedPostgres importDb = setup();
+    final String importDatabaseUrl =
+        String.format("jdbc:postgresql://localhost:%d/postgres", importDb.getPort());
+    SlashingProtectionFactory.createSlashingProtection(importDatabaseUrl, "postgres", "postgres")
+        .importData(new ByteArrayInputStream(exportOutput.toByteArray()));
+
+    final Jdbi importJdbi =
+        DbConnection.createConnection(importDatabaseUrl, "postgres", "postgres");
+    importJdbi.useHandle(
+        h -> {
+          assertThat(metadata.findGenesisValidatorsRoot(h)).contains(genesisValidatorsRoot);
+          final int validatorId =
+              validators.retrieveValidators(h, List.of(Bytes.of(1))).get(0).getId();
+          assertThat(signedBlocks.findExistingBlock(h, validatorId, UInt64.valueOf(2)))
+              .hasValueSatisfying(block -> assertThat(block.getSigningRoot()).isEmpty());
+          try (final Stream<SignedAttestation> attestations =
+              signedAttestations.findAllAttestationsSignedBy(h, validatorId)) {
+            assertThat(
+                    attestations
+                        .map(attestation -> attestation.getTargetEpoch().toLong())
+                        .collect(Collectors.toList()))
+                .containsExactlyInAnyOrder(2L, 3L, 4L, 5L);
+          }
+        });
+  }
+
+  @Test
+  void importOfAnotherChainIsRejectedBeforeApplyingItsLowWatermarks()
+      throws IOException, URISyntaxException {
+    final EmbeddedPostgres db = setup();
+    final String databaseUrl =
+        String.format("jdbc:postgresql://localhost:%d/postgres", db.getPort());
+    final Jdbi jdbi = DbConnection.createConnection(databaseUrl, "postgres", "postgres");
+    jdbi.useTransaction(h -> metadata.findOrInsertGenesisValidatorsRoot(h, Bytes32.ZERO));
+
+    final String interchange =
+        "{\"metadata\":{\"interchange_format_version\":\"5\","
+            + "\"genesis_validators_root\":\"0x04700007fabc8282644aed6d1c7c9e21d38a03a0c4ba193f3afe428824b3a673\"},"
+            + "\"data\":[{\"pubkey\":\"0x01\",\"signed_blocks\":[{\"slot\":\"1000\"}]}]}";
+    final SlashingProtection slashingProtection =
+        SlashingProtectionFactory.createSlashingProtection(databaseUrl, "postgres", "postgres");
+
+    assertThatThrownBy(
+            () ->
+                slashingProtection.importData(
+                    new ByteArrayInputStream(interchange.getBytes(StandardCharsets.UTF_8))))
+        .hasMessageContaining("does not match the slashing protection database");
+    assertThat(jdbi.withHandle(h -> validators.findAllValidators(h).count())).isZero();
+  }
 }
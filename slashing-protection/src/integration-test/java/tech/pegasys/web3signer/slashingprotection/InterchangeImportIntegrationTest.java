@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedBlocksDao;
+import tech.pegasys.web3signer.slashingprotection.dao.Validator;
+import tech.pegasys.web3signer.slashingprotection.dao.ValidatorsDao;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.io.Resources;
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.flywaydb.core.Flyway;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.jupiter.api.Test;
+
+public class InterchangeImportIntegrationTest {
+
+  private final SignedBlocksDao signedBlocks = new SignedBlocksDao();
+  private final SignedAttestationsDao signedAttestations = new SignedAttestationsDao();
+  private final ValidatorsDao validators = new ValidatorsDao();
+
+  private EmbeddedPostgres setup() throws IOException, URISyntaxException {
+    final EmbeddedPostgres slashingDatabase = EmbeddedPostgres.start();
+
+    final String migrationsFile = Path.of("migrations", "postgresql", "V1__initial.sql").toString();
+
+    final Path schemaPath = Paths.get(Resources.getResource(migrationsFile).toURI());
+
+    final Path migrationPath = schemaPath.getParent();
+
+    final Flyway flyway =
+        Flyway.configure()
+            .locations("filesystem:" + migrationPath.toString())
+            .dataSource(slashingDatabase.getPostgresDatabase())
+            .load();
+    flyway.migrate();
+
+    return slashingDatabase;
+  }
+
+  @Test
+  void importsValidatorsBlocksAndAttestations() throws IOException, URISyntaxException {
+    final EmbeddedPostgres db = setup();
+    final String databaseUrl =
+        String.format("jdbc:postgresql://localhost:%d/postgres", db.getPort());
+    final Jdbi jdbi = DbConnection.createConnection(databaseUrl, "postgres", "postgres");
+    jdbi.useTransaction(h -> validators.registerValidators(h, List.of(Bytes.of(2))));
+    jdbi.useTransaction(
+        h ->
+            signedBlocks.insertBlockProposal(
+                h, new SignedBlock(1, UInt64.valueOf(3), Bytes.of(9))));
+
+    final String interchange =
+        "{\"metadata\":{\"interchange_format_version\":\"5\","
+            + "\"genesis_validators_root\":\"0x04700007fabc8282644aed6d1c7c9e21d38a03a0c4ba193f3afe428824b3a673\"},"
+            + "\"data\":["
+            + "{\"pubkey\":\"0x01\","
+            + "\"signed_blocks\":[{\"slot\":\"1\",\"signing_root\":\"0x01\"},{\"slot\":\"2\"}],"
+            + "\"signed_attestations\":["
+            + "{\"source_epoch\":\"1\",\"target_epoch\":\"2\",\"signing_root\":\"0x01\"},"
+            + "{\"source_epoch\":\"2\",\"target_epoch\":\"3\",\"signing_root\":\"0x02\"},"
+            + "{\"source_epoch\":\"1\",\"target_epoch\":\"3\",\"signing_root\":\"0x02\"}]},"
+            + "{\"signed_blocks\":[{\"slot\":\"3\",\"signing_root\":\"0x03\"}],"
+            + "\"pubkey\":\"0x02\"}"
+            + "]}";
+
+    final SlashingProtection slashingProtection =
+        SlashingProtectionFactory.createSlashingProtection(databaseUrl, "postgres", "postgres");
+    slashingProtection.importData(
+        new ByteArrayInputStream(interchange.getBytes(StandardCharsets.UTF_8)));
+
+    final List<Validator> importedValidators =
+        jdbi.withHandle(h -> validators.retrieveValidators(h, List.of(Bytes.of(1), Bytes.of(2))));
+    assertThat(
+            importedValidators.stream()
+                .map(Validator::getPublicKey)
+                .collect(Collectors.toList()))
+        .containsExactly(Bytes.of(2), Bytes.of(1));
+    final int firstValidatorId = importedValidators.get(1).getId();
+
+    jdbi.useHandle(
+        h -> {
+          assertThat(signingRoot(h, firstValidatorId, 1)).contains(Bytes.of(1));
+          assertThat(signingRoot(h, firstValidatorId, 2)).isEmpty();
+          // differs from the block already in the database so is stored without a signing root
+          assertThat(signingRoot(h, 1, 3)).isEmpty();
+
+          assertThat(attestation(h, firstValidatorId, 2).getSigningRoot()).contains(Bytes.of(1));
+          // conflicting attestations for the same target keep the lowest source and no root
+          final SignedAttestation conflicting = attestation(h, firstValidatorId, 3);
+          assertThat(conflicting.getSourceEpoch()).isEqualTo(UInt64.valueOf(1));
+          assertThat(conflicting.getSigningRoot()).isEmpty();
+        });
+  }
+
+  private Optional<Bytes> signingRoot(final Handle h, final int validatorId, final int slot) {
+    return signedBlocks
+        .findExistingBlock(h, validatorId, UInt64.valueOf(slot))
+        .orElseThrow()
+        .getSigningRoot();
+  }
+
+  private SignedAttestation attestation(
+      final Handle h, final int validatorId, final int targetEpoch) {
+    try (final Stream<SignedAttestation> attestations =
+        signedAttestations.findAllAttestationsSignedBy(h, validatorId)) {
+      return attestations
+          .filter(attestation -> attestation.getTargetEpoch().equals(UInt64.valueOf(targetEpoch)))
+          .findFirst()
+          .orElseThrow();
+    }
+  }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.google.common.io.Resources;
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+import io.vertx.core.Vertx;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PoolOptions;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.flywaydb.core.Flyway;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class ReactivePgSlashingProtectionIntegrationTest {
+
+  private static final Bytes PUBLIC_KEY = Bytes.of(1);
+  private static final Bytes UNREGISTERED_PUBLIC_KEY = Bytes.of(2);
+  private static final Bytes32 ROOT_A = Bytes32.fromHexStringLenient("0xa");
+  private static final Bytes32 ROOT_B = Bytes32.fromHexStringLenient("0xb");
+
+  private EmbeddedPostgres db;
+  private Vertx vertx;
+  private PgPool pool;
+
+  @BeforeEach
+  public void setup() throws IOException, URISyntaxException {
+    db = EmbeddedPostgres.start();
+    final String migrationsFile = Path.of("migrations", "postgresql", "V1__initial.sql").toString();
+    final Path migrationPath = Paths.get(Resources.getResource(migrationsFile).toURI()).getParent();
+    Flyway.configure()
+        .locations("filesystem:" + migrationPath.toString())
+        .dataSource(db.getPostgresDatabase())
+        .load()
+        .migrate();
+    vertx = Vertx.vertx();
+  }
+
+  @AfterEach
+  public void cleanup() throws IOException {
+    if (pool != null) {
+      pool.close();
+    }
+    vertx.close();
+    if (db != null) {
+      db.close();
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {false, true})
+  void blockChecksMatchForBothClients(final boolean reactive) {
+    final SlashingProtection slashingProtection = createSlashingProtection(reactive);
+
+    assertThat(slashingProtection.maySignBlock(PUBLIC_KEY, ROOT_A, UInt64.valueOf(10))).isTrue();
+    // repeating a signed block is permitted
+    assertThat(slashingProtection.maySignBlock(PUBLIC_KEY, ROOT_A, UInt64.valueOf(10))).isTrue();
+    assertThat(slashingProtection.maySignBlock(PUBLIC_KEY, ROOT_B, UInt64.valueOf(10))).isFalse();
+    assertThat(slashingProtection.maySignBlock(PUBLIC_KEY, ROOT_B, UInt64.valueOf(11))).isTrue();
+    assertThat(slashingProtection.maySignBlock(PUBLIC_KEY, ROOT_B, UInt64.valueOf(9))).isFalse();
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {false, true})
+  void attestationChecksMatchForBothClients(final boolean reactive) {
+    final SlashingProtection slashingProtection = createSlashingProtection(reactive);
+
+    assertThat(maySignAttestation(slashingProtection, ROOT_A, 2, 3)).isTrue();
+    // repeating a signed attestation is permitted
+    assertThat(maySignAttestation(slashingProtection, ROOT_A, 2, 3)).isTrue();
+    assertThat(maySignAttestation(slashingProtection, ROOT_B, 2, 3)).isFalse();
+    assertThat(maySignAttestation(slashingProtection, ROOT_B, 5, 6)).isTrue();
+    // surrounds 5 -> 6
+    assertThat(maySignAttestation(slashingProtection, ROOT_B, 4, 7)).isFalse();
+    assertThat(maySignAttestation(slashingProtection, ROOT_B, 5, 9)).isTrue();
+    // surrounded by 5 -> 9
+    assertThat(maySignAttestation(slashingProtection, ROOT_B, 6, 8)).isFalse();
+    assertThat(maySignAttestation(slashingProtection, ROOT_B, 8, 7)).isFalse();
+    // below the lowest signed source epoch
+    assertThat(maySignAttestation(slashingProtection, ROOT_B, 1, 2)).isFalse();
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {false, true})
+  void unregisteredValidatorIsRejectedByBothClients(final boolean reactive) {
+    final SlashingProtection slashingProtection = createSlashingProtection(reactive);
+
+    assertThatThrownBy(
+            () -> slashingProtection.maySignBlock(UNREGISTERED_PUBLIC_KEY, ROOT_A, UInt64.ONE))
+        .isInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(
+            () ->
+                slashingProtection.maySignAttestation(
+                    UNREGISTERED_PUBLIC_KEY, ROOT_A, UInt64.ONE, UInt64.ONE))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void onlyOneOfConcurrentConflictingAttestationsIsPermitted() throws Exception {
+    final AsyncSlashingProtection slashingProtection =
+        (AsyncSlashingProtection) createSlashingProtection(true);
+
+    final List<CompletableFuture<Boolean>> checks =
+        IntStream.range(0, 100)
+            .mapToObj(
+                i ->
+                    slashingProtection.maySignAttestationAsync(
+                        PUBLIC_KEY,
+                        Bytes32.leftPad(Bytes.ofUnsignedInt(i)),
+                        UInt64.valueOf(1),
+                        UInt64.valueOf(2)))
+            .collect(Collectors.toList());
+    CompletableFuture.allOf(checks.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+    assertThat(checks.stream().filter(CompletableFuture::join).count()).isEqualTo(1);
+  }
+
+  @Test
+  void unavailableDatabaseFailsCheck() throws IOException {
+    final SlashingProtection slashingProtection = createSlashingProtection(true);
+    db.close();
+    db = null;
+
+    assertThatThrownBy(() -> slashingProtection.maySignBlock(PUBLIC_KEY, ROOT_A, UInt64.ONE))
+        .isInstanceOf(SlashingProtectionUnavailableException.class);
+  }
+
+  @Test
+  void checkPastItsDeadlineIsAbandonedByTheDatabase() throws Exception {
+    final SlashingProtection slashingProtection = createSlashingProtection(true, 200);
+    assertThat(maySignAttestation(slashingProtection, ROOT_A, 2, 3)).isTrue();
+    assertThat(slashingProtection.maySignBlock(PUBLIC_KEY, ROOT_A, UInt64.ONE)).isTrue();
+
+    final Jdbi jdbi = jdbi();
+    try (final Handle lockHolder = jdbi.open()) {
+      lockHolder.begin();
+      lockHolder
+          .createQuery("SELECT 1 FROM pg_advisory_xact_lock(1, 1)")
+          .mapTo(Integer.class)
+          .one();
+
+      assertThatThrownBy(() -> maySignAttestation(slashingProtection, ROOT_A, 3, 4))
+          .isInstanceOf(SlashingCheckDeadlineExceededException.class);
+      // the check has timed out in the database rather than still waiting for the lock
+      final long giveUp = System.currentTimeMillis() + 5_000;
+      while (countChecksWaitingForLock(lockHolder) > 0 && System.currentTimeMillis() < giveUp) {
+        Thread.sleep(50);
+      }
+      assertThat(countChecksWaitingForLock(lockHolder)).isZero();
+      // a check of the other artifact does not wait for the attestation lock
+      assertThat(slashingProtection.maySignBlock(PUBLIC_KEY, ROOT_A, UInt64.valueOf(2))).isTrue();
+
+      lockHolder.rollback();
+    }
+
+    try (final Handle handle = jdbi.open()) {
+      assertThat(
+              handle
+                  .createQuery("SELECT COUNT(*) FROM signed_attestations")
+                  .mapTo(Integer.class)
+                  .one())
+          .isEqualTo(1);
+    }
+  }
+
+  private int countChecksWaitingForLock(final Handle handle) {
+    return handle
+        .createQuery(
+            "SELECT COUNT(*) FROM pg_stat_activity "
+                + "WHERE wait_event = 'advisory' AND query LIKE '%check_and_insert%'")
+        .mapTo(Integer.class)
+        .one();
+  }
+
+  private boolean maySignAttestation(
+      final SlashingProtection slashingProtection,
+      final Bytes signingRoot,
+      final int sourceEpoch,
+      final int targetEpoch) {
+    return slashingProtection.maySignAttestation(
+        PUBLIC_KEY, signingRoot, UInt64.valueOf(sourceEpoch), UInt64.valueOf(targetEpoch));
+  }
+
+  private SlashingProtection createSlashingProtection(final boolean reactive) {
+    return createSlashingProtection(reactive, 0);
+  }
+
+  private SlashingProtection createSlashingProtection(
+      final boolean reactive, final long checkDeadlineMillis) {
+    final Jdbi jdbi = jdbi();
+    final ValidatorRegistry validatorRegistry = new ValidatorRegistry();
+    final WatermarkCache watermarkCache = new WatermarkCache();
+    final DbSlashingProtection dbSlashingProtection =
+        DbSlashingProtection.builder(jdbi)
+            .validatorRegistry(validatorRegistry)
+            .watermarkCache(watermarkCache)
+            .build();
+    final SlashingProtection slashingProtection =
+        reactive
+            ? new ReactivePgSlashingProtection(
+                vertx,
+                createPool(checkDeadlineMillis),
+                dbSlashingProtection,
+                validatorRegistry,
+                watermarkCache,
+                checkDeadlineMillis,
+                checkDeadlineMillis)
+            : dbSlashingProtection;
+    slashingProtection.registerValidators(List.of(PUBLIC_KEY));
+    return slashingProtection;
+  }
+
+  private PgPool createPool(final long statementTimeoutMillis) {
+    // the timeout is set on each connection as the slashing protection factory sets it
+    pool =
+        PgPool.pool(
+            vertx,
+            new PgConnectOptions()
+                .setHost("localhost")
+                .setPort(db.getPort())
+                .setDatabase("postgres")
+                .setUser("postgres")
+                .setPassword("postgres")
+                .addProperty("statement_timeout", Long.toString(statementTimeoutMillis)),
+            new PoolOptions().setMaxSize(2));
+    return pool;
+  }
+
+  private Jdbi jdbi() {
+    final String databaseUrl =
+        String.format("jdbc:postgresql://localhost:%d/postgres", db.getPort());
+    return DbConnection.createConnection(databaseUrl, "postgres", "postgres");
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+import org.apache.tuweni.bytes.Bytes;
+import org.flywaydb.core.Flyway;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Starts a migrated embedded database and fills it with the signing history of a number of
+ * validators, for the benchmarks that run the slashing checks end to end.
+ */
+final class BenchmarkDatabase {
+
+  static final int SLOTS_PER_EPOCH = 32;
+
+  private BenchmarkDatabase() {}
+
+  static EmbeddedPostgres start() throws IOException {
+    final EmbeddedPostgres database = EmbeddedPostgres.start();
+    Flyway.configure()
+        .locations("classpath:migrations/postgresql")
+        .dataSource(database.getPostgresDatabase())
+        .load()
+        .migrate();
+    return database;
+  }
+
+  static Jdbi connect(final EmbeddedPostgres database) {
+    return DbConnection.createConnection(
+        database.getJdbcUrl("postgres", "postgres"), "postgres", "postgres");
+  }
+
+  /** The public key of the validator with the given database id, as inserted by populate. */
+  static Bytes publicKey(final int validatorId) {
+    return Bytes.ofUnsignedInt(validatorId);
+  }
+
+  static List<Bytes> publicKeys(final int validatorCount) {
+    return IntStream.rangeClosed(1, validatorCount)
+        .mapToObj(BenchmarkDatabase::publicKey)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Inserts validators with ids 1 to validatorCount, each with an attestation (e, e + 1) for every
+   * epoch e below historyEpochs and a block in the first slot of each of those epochs. Generating
+   * the rows in the database keeps the setup of a large history to a few statements.
+   */
+  static void populate(final Jdbi jdbi, final int validatorCount, final int historyEpochs) {
+    jdbi.useHandle(
+        h -> {
+          h.execute(
+              "INSERT INTO validators (public_key) "
+                  + "SELECT int4send(v) FROM generate_series(1, ?) v ORDER BY v",
+              validatorCount);
+          h.execute(
+              "INSERT INTO signed_attestations "
+                  + "(validator_id, source_epoch, target_epoch, signing_root) "
+                  + "SELECT v, encode_uint64(e), encode_uint64(e + 1), "
+                  + "decode(md5(v || ':' || e) || md5(e || ':' || v), 'hex') "
+                  + "FROM generate_series(1, ?) v, generate_series(0, ?) e",
+              validatorCount,
+              historyEpochs - 1);
+          h.execute(
+              "INSERT INTO signed_blocks (validator_id, slot, signing_root) "
+                  + "SELECT v, encode_uint64(e * ?), decode(md5(v || '/' || e), 'hex') "
+                  + "FROM generate_series(1, ?) v, generate_series(0, ?) e",
+              SLOTS_PER_EPOCH,
+              validatorCount,
+              historyEpochs - 1);
+          h.execute("ANALYZE");
+        });
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SlashingCheckResult;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.flywaydb.core.Flyway;
+import org.jdbi.v3.core.Jdbi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the latency of checkAndInsertAttestation against an embedded database for a range of
+ * server side prepare thresholds, with epochs in the lower half of the unsigned range and epochs
+ * above the signed long range. Run with the JMH gc profiler to compare the allocation per check.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class CheckAndInsertAttestationBenchmark {
+
+  private static final int VALIDATOR_ID = 1;
+
+  @Param({"0", "1", "5"})
+  public int prepareThreshold;
+
+  @Param({"0", "9223372036854775808"})
+  public String firstEpoch;
+
+  private final SignedAttestationsDao signedAttestationsDao = new SignedAttestationsDao();
+  private final Bytes32 signingRoot = Bytes32.random();
+  private EmbeddedPostgres database;
+  private Jdbi jdbi;
+  private UInt64 targetEpoch;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    database = EmbeddedPostgres.start();
+    Flyway.configure()
+        .locations("classpath:migrations/postgresql")
+        .dataSource(database.getPostgresDatabase())
+        .load()
+        .migrate();
+    jdbi =
+        DbConnection.createConnection(
+            database.getJdbcUrl("postgres", "postgres"),
+            "postgres",
+            "postgres",
+            ValidatorLockStrategy.ADVISORY,
+            prepareThreshold,
+            DbConnection.DEFAULT_STATEMENT_CACHE_QUERIES);
+    jdbi.useHandle(h -> h.execute("INSERT INTO validators (public_key) VALUES (?)", Bytes.of(1)));
+    targetEpoch = UInt64.valueOf(new BigInteger(firstEpoch)).add(1);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    database.close();
+  }
+
+  @Benchmark
+  public SlashingCheckResult checkAndInsertAttestation() {
+    final UInt64 sourceEpoch = targetEpoch;
+    targetEpoch = targetEpoch.add(1);
+    final SignedAttestation attestation =
+        new SignedAttestation(VALIDATOR_ID, sourceEpoch, targetEpoch, signingRoot);
+    return jdbi.withHandle(h -> signedAttestationsDao.checkAndInsertAttestation(h, attestation));
+  }
+}
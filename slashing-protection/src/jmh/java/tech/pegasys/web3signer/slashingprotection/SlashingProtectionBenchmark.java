@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.jdbi.v3.core.Jdbi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput and latency distribution of maySignAttestation and maySignBlock through
+ * DbSlashingProtection against an embedded database holding the signing history of every
+ * validator, from a single thread and from many threads signing for different validators. Each
+ * check is for the next epoch or slot after a validator's history, so every check is permitted and
+ * inserts a row, as for a validator signing its duties.
+ *
+ * <p>The largest history is 100 million attestations, which takes a long time and a lot of disk to
+ * generate; select the sizes of interest with -p validatorCount=1000 -p historyEpochs=100.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class SlashingProtectionBenchmark {
+
+  private static final int CONCURRENT_THREADS = 32;
+
+  @Param({"1000", "10000", "100000"})
+  public int validatorCount;
+
+  @Param({"10", "100", "1000"})
+  public int historyEpochs;
+
+  private final Bytes32 signingRoot = Bytes32.random();
+  private final AtomicLong attestationSequence = new AtomicLong();
+  private final AtomicLong blockSequence = new AtomicLong();
+  private EmbeddedPostgres database;
+  private SlashingProtection slashingProtection;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    database = BenchmarkDatabase.start();
+    final Jdbi jdbi = BenchmarkDatabase.connect(database);
+    BenchmarkDatabase.populate(jdbi, validatorCount, historyEpochs);
+    slashingProtection = DbSlashingProtection.builder(jdbi).build();
+    slashingProtection.registerValidators(BenchmarkDatabase.publicKeys(validatorCount));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    database.close();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public boolean maySignAttestation() {
+    return signNextAttestation();
+  }
+
+  @Benchmark
+  @Threads(CONCURRENT_THREADS)
+  public boolean maySignAttestationConcurrently() {
+    return signNextAttestation();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public boolean maySignBlock() {
+    return signNextBlock();
+  }
+
+  @Benchmark
+  @Threads(CONCURRENT_THREADS)
+  public boolean maySignBlockConcurrently() {
+    return signNextBlock();
+  }
+
+  private boolean signNextAttestation() {
+    // consecutive checks go to different validators, each moving on one epoch per round
+    final long sequence = attestationSequence.getAndIncrement();
+    final long targetEpoch = historyEpochs + sequence / validatorCount + 1;
+    return slashingProtection.maySignAttestation(
+        validator(sequence),
+        signingRoot,
+        UInt64.valueOf(targetEpoch - 1),
+        UInt64.valueOf(targetEpoch));
+  }
+
+  private boolean signNextBlock() {
+    final long sequence = blockSequence.getAndIncrement();
+    final long slot =
+        (long) historyEpochs * BenchmarkDatabase.SLOTS_PER_EPOCH + sequence / validatorCount;
+    return slashingProtection.maySignBlock(validator(sequence), signingRoot, UInt64.valueOf(slot));
+  }
+
+  private Bytes validator(final long sequence) {
+    return BenchmarkDatabase.publicKey((int) (sequence % validatorCount) + 1);
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import tech.pegasys.web3signer.slashingprotection.dao.UInt64Encoding;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the latency of the surrounding and surrounded attestation queries made by
+ * check_and_insert_attestation on NUMERIC(20) epoch columns, as created by V1, against the
+ * encoded BIGINT columns that replace them, and against the epoch range containment probes on the
+ * GiST index. Every validator has attestations (e, e + 1) for consecutive epochs, so the epoch
+ * comparisons scan the index from the probed epoch to the end of the validator's history without
+ * finding a match.
+ *
+ * <p>The default table size keeps the setup short; run with -p rows=50000000 to measure a table
+ * of the size seen by long running deployments.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class SurroundQueryBenchmark {
+
+  private static final String SURROUNDING_QUERY =
+      "SELECT EXISTS (SELECT 1 FROM %s WHERE validator_id = ? "
+          + "AND source_epoch < ? AND target_epoch > ?)";
+  private static final String SURROUNDED_QUERY =
+      "SELECT EXISTS (SELECT 1 FROM %s WHERE validator_id = ? "
+          + "AND source_epoch > ? AND target_epoch < ?)";
+  private static final String SURROUNDING_RANGE_QUERY =
+      "SELECT EXISTS (SELECT 1 FROM signed_attestations WHERE validator_id = ? "
+          + "AND source_epoch <= target_epoch AND epoch_range(source_epoch, target_epoch) "
+          + "@> epoch_range(?, ?) AND source_epoch < ? AND target_epoch > ?)";
+  private static final String SURROUNDED_RANGE_QUERY =
+      "SELECT EXISTS (SELECT 1 FROM signed_attestations WHERE validator_id = ? "
+          + "AND source_epoch <= target_epoch AND epoch_range(source_epoch, target_epoch) "
+          + "<@ epoch_range(?, ?) AND source_epoch > ? AND target_epoch < ?)";
+
+  @Param({"numeric", "bigint", "range"})
+  public String columnType;
+
+  @Param({"1000000"})
+  public int rows;
+
+  @Param({"1000"})
+  public int validators;
+
+  private final Random random = new Random(1);
+  private EmbeddedPostgres database;
+  private Connection connection;
+  private PreparedStatement surroundingQuery;
+  private PreparedStatement surroundedQuery;
+  private int epochsPerValidator;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, SQLException {
+    database = EmbeddedPostgres.start();
+    Flyway.configure()
+        .locations("classpath:migrations/postgresql")
+        .dataSource(database.getPostgresDatabase())
+        .load()
+        .migrate();
+    connection = database.getPostgresDatabase().getConnection();
+    epochsPerValidator = rows / validators;
+
+    final String table;
+    try (final Statement statement = connection.createStatement()) {
+      if (columnType.equals("numeric")) {
+        table = "numeric_attestations";
+        statement.execute(
+            "CREATE TABLE numeric_attestations (validator_id INTEGER NOT NULL, "
+                + "source_epoch NUMERIC(20) NOT NULL, target_epoch NUMERIC(20) NOT NULL, "
+                + "signing_root BYTEA, UNIQUE (validator_id, target_epoch))");
+        statement.execute(
+            "INSERT INTO numeric_attestations (validator_id, source_epoch, target_epoch) "
+                + String.format(
+                    "SELECT v, e, e + 1 FROM generate_series(1, %d) v, generate_series(0, %d) e",
+                    validators, epochsPerValidator - 1));
+      } else {
+        table = "signed_attestations";
+        statement.execute(
+            String.format(
+                "INSERT INTO validators (public_key) "
+                    + "SELECT int4send(v) FROM generate_series(1, %d) v",
+                validators));
+        statement.execute(
+            "INSERT INTO signed_attestations (validator_id, source_epoch, target_epoch) "
+                + String.format(
+                    "SELECT v, encode_uint64(e), encode_uint64(e + 1) "
+                        + "FROM generate_series(1, %d) v, generate_series(0, %d) e",
+                    validators, epochsPerValidator - 1));
+      }
+      statement.execute("VACUUM ANALYZE " + table);
+    }
+    if (columnType.equals("range")) {
+      surroundingQuery = connection.prepareStatement(SURROUNDING_RANGE_QUERY);
+      surroundedQuery = connection.prepareStatement(SURROUNDED_RANGE_QUERY);
+    } else {
+      surroundingQuery = connection.prepareStatement(String.format(SURROUNDING_QUERY, table));
+      surroundedQuery = connection.prepareStatement(String.format(SURROUNDED_QUERY, table));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException, SQLException {
+    connection.close();
+    database.close();
+  }
+
+  @Benchmark
+  public boolean surroundingAttestationExists() throws SQLException {
+    return exists(surroundingQuery);
+  }
+
+  @Benchmark
+  public boolean surroundedAttestationExists() throws SQLException {
+    return exists(surroundedQuery);
+  }
+
+  private boolean exists(final PreparedStatement query) throws SQLException {
+    final long sourceEpoch = random.nextInt(epochsPerValidator);
+    query.setInt(1, 1 + random.nextInt(validators));
+    bindEpoch(query, 2, sourceEpoch);
+    bindEpoch(query, 3, sourceEpoch + 2);
+    if (columnType.equals("range")) {
+      bindEpoch(query, 4, sourceEpoch);
+      bindEpoch(query, 5, sourceEpoch + 2);
+    }
+    try (final ResultSet resultSet = query.executeQuery()) {
+      resultSet.next();
+      return resultSet.getBoolean(1);
+    }
+  }
+
+  private void bindEpoch(final PreparedStatement query, final int index, final long epoch)
+      throws SQLException {
+    if (columnType.equals("numeric")) {
+      query.setBigDecimal(index, BigDecimal.valueOf(epoch));
+    } else {
+      query.setLong(index, UInt64Encoding.encode(UInt64.valueOf(epoch)));
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.flywaydb.core.Flyway;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.jdbi.v3.core.Jdbi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the throughput of block and attestation slashing checks against an embedded database
+ * for each validator lock strategy, with all threads signing for a few validators so that the
+ * locks are contended, or for many validators so that they rarely are.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ValidatorLockStrategyBenchmark {
+
+  @Param({"ADVISORY", "ROW", "IN_PROCESS"})
+  public ValidatorLockStrategy lockStrategy;
+
+  @Param({"1", "64"})
+  public int validatorCount;
+
+  private EmbeddedPostgres database;
+  private SlashingProtection slashingProtection;
+  private List<Bytes> validators;
+  private final AtomicLong slot = new AtomicLong();
+  private final AtomicLong epoch = new AtomicLong(1);
+  private final Bytes32 signingRoot = Bytes32.random();
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    database = EmbeddedPostgres.start();
+    Flyway.configure()
+        .locations("classpath:migrations/postgresql")
+        .dataSource(database.getPostgresDatabase())
+        .load()
+        .migrate();
+    final Jdbi jdbi =
+        DbConnection.createConnection(
+            database.getJdbcUrl("postgres", "postgres"), "postgres", "postgres", lockStrategy);
+    slashingProtection =
+        DbSlashingProtection.builder(jdbi)
+            .validatorLocks(new ValidatorLocks(lockStrategy, new NoOpMetricsSystem()))
+            .build();
+    validators =
+        IntStream.range(0, validatorCount)
+            .mapToObj(i -> Bytes.ofUnsignedInt(i))
+            .collect(Collectors.toList());
+    slashingProtection.registerValidators(validators);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    database.close();
+  }
+
+  @Benchmark
+  public boolean maySignBlock() {
+    final long nextSlot = slot.incrementAndGet();
+    return slashingProtection.maySignBlock(
+        validator(nextSlot), signingRoot, UInt64.valueOf(nextSlot));
+  }
+
+  @Benchmark
+  public boolean maySignAttestation() {
+    final long targetEpoch = epoch.incrementAndGet();
+    return slashingProtection.maySignAttestation(
+        validator(targetEpoch),
+        signingRoot,
+        UInt64.valueOf(targetEpoch - 1),
+        UInt64.valueOf(targetEpoch));
+  }
+
+  private Bytes validator(final long sequence) {
+    return validators.get((int) (sequence % validatorCount));
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+
+/**
+ * Slashing protection whose checks complete asynchronously, so that no thread is held while the
+ * database is queried. A check fails with an IllegalStateException for an unregistered validator
+ * and with a {@link SlashingProtectionUnavailableException} when the database cannot answer it.
+ */
+public interface AsyncSlashingProtection extends SlashingProtection {
+
+  CompletableFuture<Boolean> maySignAttestationAsync(
+      Bytes publicKey, Bytes signingRoot, UInt64 sourceEpoch, UInt64 targetEpoch);
+
+  CompletableFuture<Boolean> maySignBlockAsync(
+      Bytes publicKey, Bytes signingRoot, UInt64 blockSlot);
+
+  /**
+   * Completes with whether each of the blocks and attestations may be signed, in the order of the
+   * checks, or fails if any of the checks fails.
+   */
+  CompletableFuture<List<Boolean>> maySignBatchAsync(List<SlashingCheck> checks);
+}
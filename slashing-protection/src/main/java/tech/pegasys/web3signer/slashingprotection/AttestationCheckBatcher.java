@@ -0,0 +1,247 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static tech.pegasys.web3signer.slashingprotection.SlashingMetricCategory.ETH2_SLASHING_PROTECTION;
+
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SlashingCheckResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer.TimingContext;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.StatementException;
+
+/**
+ * Collects attestation slashing checks arriving concurrently from many validators and evaluates
+ * them together in a single database statement. A batch is executed once it reaches the maximum
+ * size or the batch window has elapsed since its first check arrived. Callers block until the
+ * result of their own check is available. When the batch statement fails, its checks are run one
+ * at a time so that a failure is only reported to the check that caused it.
+ *
+ * <p>Batch sizes are recorded as cumulative bucket counters labelled with their upper bound,
+ * following the Prometheus histogram convention as the connection pool metrics do.
+ */
+public class AttestationCheckBatcher {
+
+  private static final Logger LOG = LogManager.getLogger();
+  private static final int[] BATCH_SIZE_BUCKETS = {1, 2, 4, 8, 16, 32, 64, 128, 256, 512};
+
+  private final Jdbi jdbi;
+  private final SignedAttestationsDao signedAttestationsDao;
+  private final long batchWindowNanos;
+  private final int maxBatchSize;
+  private final BlockingQueue<PendingCheck> pendingChecks = new LinkedBlockingQueue<>();
+  private final OperationTimer batchWaitTimer;
+  private final Counter[] batchSizeBuckets = new Counter[BATCH_SIZE_BUCKETS.length + 1];
+  private volatile boolean running;
+
+  public AttestationCheckBatcher(
+      final Jdbi jdbi,
+      final SignedAttestationsDao signedAttestationsDao,
+      final long batchWindowMicros,
+      final int maxBatchSize,
+      final MetricsSystem metricsSystem) {
+    checkArgument(batchWindowMicros >= 0, "Batch window must not be negative");
+    checkArgument(maxBatchSize > 0, "Maximum batch size must be positive");
+    this.jdbi = jdbi;
+    this.signedAttestationsDao = signedAttestationsDao;
+    this.batchWindowNanos = TimeUnit.MICROSECONDS.toNanos(batchWindowMicros);
+    this.maxBatchSize = maxBatchSize;
+    this.batchWaitTimer =
+        metricsSystem.createTimer(
+            ETH2_SLASHING_PROTECTION,
+            "attestation_batch_wait_duration",
+            "Time an attestation slashing check waited for its batch to be sent to the database");
+    final LabelledMetric<Counter> batchSizeCounters =
+        metricsSystem.createLabelledCounter(
+            ETH2_SLASHING_PROTECTION,
+            "attestation_batch_size_bucket",
+            "Number of attestation slashing check batches of at most le checks",
+            "le");
+    for (int i = 0; i < BATCH_SIZE_BUCKETS.length; i++) {
+      batchSizeBuckets[i] = batchSizeCounters.labels(Integer.toString(BATCH_SIZE_BUCKETS[i]));
+    }
+    batchSizeBuckets[BATCH_SIZE_BUCKETS.length] = batchSizeCounters.labels("+Inf");
+  }
+
+  public synchronized void start() {
+    checkState(!running, "Attestation check batcher is already running");
+    running = true;
+    new ThreadFactoryBuilder()
+        .setNameFormat("slashing-protection-batcher-%d")
+        .setDaemon(true)
+        .build()
+        .newThread(this::processBatches)
+        .start();
+  }
+
+  public SlashingCheckResult checkAndInsert(final SignedAttestation signedAttestation) {
+    return checkAndInsert(signedAttestation, CheckDeadline.NONE);
+  }
+
+  /**
+   * Waits at most until the deadline for the result of the check. A batch runs with the latest
+   * deadline of its checks, so a check that gives up waiting may still be recorded as signed, which
+   * only ever refuses a later signing.
+   */
+  SlashingCheckResult checkAndInsert(
+      final SignedAttestation signedAttestation, final CheckDeadline deadline) {
+    // nothing would ever take the check from the queue
+    checkState(running, "Attestation check batcher is not running");
+    final PendingCheck pendingCheck =
+        new PendingCheck(signedAttestation, deadline, batchWaitTimer.startTimer());
+    pendingChecks.add(pendingCheck);
+    try {
+      return deadline == CheckDeadline.NONE
+          ? pendingCheck.result.get()
+          : pendingCheck.result.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SlashingProtectionUnavailableException(
+          "Interrupted waiting for slashing protection check", e);
+    } catch (final TimeoutException e) {
+      throw new SlashingCheckDeadlineExceededException(
+          "Slashing check deadline expired waiting for the attestation batch");
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof SlashingCheckDeadlineExceededException) {
+        throw new SlashingCheckDeadlineExceededException(
+            "Batched slashing protection check did not complete within its deadline",
+            e.getCause());
+      }
+      throw new SlashingProtectionUnavailableException(
+          "Batched slashing protection check failed", e.getCause());
+    }
+  }
+
+  private void processBatches() {
+    final List<PendingCheck> batch = new ArrayList<>(maxBatchSize);
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        collectBatch(batch);
+        executeBatch(batch);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        batch.clear();
+      }
+    }
+    running = false;
+    final List<PendingCheck> abandoned = new ArrayList<>();
+    pendingChecks.drainTo(abandoned);
+    abandoned.forEach(
+        pendingCheck ->
+            pendingCheck.result.completeExceptionally(
+                new SlashingProtectionUnavailableException(
+                    "Attestation check batcher stopped before the check was made")));
+  }
+
+  private void collectBatch(final List<PendingCheck> batch) throws InterruptedException {
+    batch.add(pendingChecks.take());
+    final long deadline = System.nanoTime() + batchWindowNanos;
+    while (batch.size() < maxBatchSize) {
+      final long remainingNanos = deadline - System.nanoTime();
+      if (remainingNanos <= 0) {
+        pendingChecks.drainTo(batch, maxBatchSize - batch.size());
+        return;
+      }
+      final PendingCheck pendingCheck = pendingChecks.poll(remainingNanos, TimeUnit.NANOSECONDS);
+      if (pendingCheck == null) {
+        return;
+      }
+      batch.add(pendingCheck);
+    }
+  }
+
+  private void executeBatch(final List<PendingCheck> batch) {
+    batch.forEach(pendingCheck -> pendingCheck.waitTimer.stopTimer());
+    recordBatchSize(batch.size());
+    final List<SignedAttestation> attestations =
+        batch.stream().map(pendingCheck -> pendingCheck.attestation).collect(Collectors.toList());
+    final CheckDeadline deadline =
+        batch.stream()
+            .map(pendingCheck -> pendingCheck.deadline)
+            .reduce(CheckDeadline::latest)
+            .orElse(CheckDeadline.NONE);
+    try {
+      final List<SlashingCheckResult> results =
+          deadline.withHandle(
+              jdbi, h -> signedAttestationsDao.checkAndInsertAttestations(h, attestations));
+      for (int i = 0; i < batch.size(); i++) {
+        batch.get(i).result.complete(results.get(i));
+      }
+    } catch (final StatementException e) {
+      // the statement rolled back as a whole, so each check can be run again on its own
+      LOG.warn("Failed to check batch of {} attestations, checking each", batch.size(), e);
+      batch.forEach(this::executeCheck);
+    } catch (final RuntimeException e) {
+      LOG.error("Failed to check batch of {} attestations", batch.size(), e);
+      batch.forEach(pendingCheck -> pendingCheck.result.completeExceptionally(e));
+    }
+  }
+
+  private void executeCheck(final PendingCheck pendingCheck) {
+    try {
+      pendingCheck.result.complete(
+          pendingCheck.deadline.withHandle(
+              jdbi,
+              h -> signedAttestationsDao.checkAndInsertAttestation(h, pendingCheck.attestation)));
+    } catch (final RuntimeException e) {
+      LOG.error("Failed to check attestation {}", pendingCheck.attestation, e);
+      pendingCheck.result.completeExceptionally(e);
+    }
+  }
+
+  private void recordBatchSize(final int batchSize) {
+    // buckets are cumulative so every bucket from the first that covers the size is counted
+    for (int i = BATCH_SIZE_BUCKETS.length - 1; i >= 0 && batchSize <= BATCH_SIZE_BUCKETS[i]; i--) {
+      batchSizeBuckets[i].inc();
+    }
+    batchSizeBuckets[BATCH_SIZE_BUCKETS.length].inc();
+  }
+
+  private static class PendingCheck {
+    private final SignedAttestation attestation;
+    private final CheckDeadline deadline;
+    private final TimingContext waitTimer;
+    private final CompletableFuture<SlashingCheckResult> result = new CompletableFuture<>();
+
+    private PendingCheck(
+        final SignedAttestation attestation,
+        final CheckDeadline deadline,
+        final TimingContext waitTimer) {
+      this.attestation = attestation;
+      this.deadline = deadline;
+      this.waitTimer = waitTimer;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+
+/**
+ * In-memory index of signed attestations that answers double vote and surround vote checks without
+ * querying the database. Each validator's history is held over a sliding window of recent epochs;
+ * checks that reach outside of the window are answered with {@link Verdict#UNKNOWN} so that the
+ * caller can fall back to the database.
+ *
+ * <p>The index is only correct if this process is the sole writer of signed attestations to the
+ * database. Checking an attestation and recording it must be done while synchronized on {@link
+ * #lockFor(int)} for the validator.
+ */
+public class AttestationSpanIndex {
+
+  public static final int MAX_EPOCH_WINDOW = Character.MAX_VALUE - 1;
+
+  public enum Verdict {
+    /** The attestation is not slashable against anything in the index. */
+    SAFE,
+    /** The same attestation has already been signed. */
+    REPEAT,
+    /** The attestation is a double vote, surround vote or below the minimum epochs. */
+    REJECT,
+    /** The attestation falls outside of the indexed window and must be checked in the database. */
+    UNKNOWN
+  }
+
+  private final Map<Integer, ValidatorAttestationSpans> validatorSpans = new ConcurrentHashMap<>();
+  private final int maxEpochWindow;
+
+  public AttestationSpanIndex(final int maxEpochWindow) {
+    checkArgument(
+        maxEpochWindow > 0 && maxEpochWindow <= MAX_EPOCH_WINDOW,
+        "Epoch window must be between 1 and %s",
+        MAX_EPOCH_WINDOW);
+    this.maxEpochWindow = maxEpochWindow;
+  }
+
+  public Object lockFor(final int validatorId) {
+    return spansFor(validatorId);
+  }
+
+  public Verdict check(
+      final int validatorId,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch,
+      final Bytes signingRoot) {
+    return spansFor(validatorId).check(epoch(sourceEpoch), epoch(targetEpoch), signingRoot);
+  }
+
+  public void record(
+      final int validatorId,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch,
+      final Bytes signingRoot) {
+    spansFor(validatorId).record(epoch(sourceEpoch), epoch(targetEpoch), signingRoot);
+  }
+
+  /**
+   * Sizes the window for a validator whose history is about to be loaded so that it spans the
+   * most recent epochs of that history.
+   */
+  public void prepareForHistory(
+      final int validatorId, final UInt64 minSourceEpoch, final UInt64 maxTargetEpoch) {
+    final ValidatorAttestationSpans spans = new ValidatorAttestationSpans(maxEpochWindow);
+    spans.initialiseWindow(epoch(minSourceEpoch), epoch(maxTargetEpoch));
+    validatorSpans.put(validatorId, spans);
+  }
+
+  public void load(final SignedAttestation attestation) {
+    final ValidatorAttestationSpans spans = spansFor(attestation.getValidatorId());
+    synchronized (spans) {
+      spans.record(
+          epoch(attestation.getSourceEpoch()),
+          epoch(attestation.getTargetEpoch()),
+          attestation.getSigningRoot().orElse(null));
+    }
+  }
+
+  private ValidatorAttestationSpans spansFor(final int validatorId) {
+    return validatorSpans.computeIfAbsent(
+        validatorId, id -> new ValidatorAttestationSpans(maxEpochWindow));
+  }
+
+  private static long epoch(final UInt64 epoch) {
+    return epoch.toBytes().toLong();
+  }
+}
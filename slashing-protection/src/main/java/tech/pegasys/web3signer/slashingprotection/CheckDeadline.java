@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.base.Throwables;
+import org.jdbi.v3.core.HandleCallback;
+import org.jdbi.v3.core.HandleConsumer;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.JdbiException;
+
+/**
+ * The point in time by which a single slashing check must complete. The remaining time bounds the
+ * wait for an in-process validator lock. The database is bounded by the statement timeout set once
+ * on each pooled connection from the longest configured deadline, so that a check costs no extra
+ * round trip, and a statement cancelled by it fails the check rather than holding the signing
+ * thread. The pool acquisition timeout is likewise capped at the configured deadlines when the
+ * connection pool is created.
+ */
+final class CheckDeadline {
+
+  static final CheckDeadline NONE = new CheckDeadline(0);
+
+  private static final String QUERY_CANCELED = "57014";
+  private static final String LOCK_NOT_AVAILABLE = "55P03";
+
+  private final long expiresAtNanos;
+
+  private CheckDeadline(final long expiresAtNanos) {
+    this.expiresAtNanos = expiresAtNanos;
+  }
+
+  /** Starts a deadline of the given number of milliseconds, where 0 means no deadline. */
+  static CheckDeadline start(final long budgetMillis) {
+    return budgetMillis == 0
+        ? NONE
+        : new CheckDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis));
+  }
+
+  /** Returns whichever of the two deadlines expires last, where no deadline is the latest. */
+  static CheckDeadline latest(final CheckDeadline first, final CheckDeadline second) {
+    if (first == NONE || second == NONE) {
+      return NONE;
+    }
+    return first.expiresAtNanos - second.expiresAtNanos >= 0 ? first : second;
+  }
+
+  long remainingNanos() {
+    return this == NONE ? Long.MAX_VALUE : expiresAtNanos - System.nanoTime();
+  }
+
+  void lock(final ReentrantLock lock) {
+    if (this == NONE) {
+      lock.lock();
+      return;
+    }
+    try {
+      if (!lock.tryLock(remainingNanos(), TimeUnit.NANOSECONDS)) {
+        throw new SlashingCheckDeadlineExceededException(
+            "Slashing check deadline expired waiting for the validator lock");
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted waiting for the validator lock", e);
+    }
+  }
+
+  <T> T withHandle(final Jdbi jdbi, final HandleCallback<T, RuntimeException> callback) {
+    if (this == NONE) {
+      return jdbi.withHandle(callback);
+    }
+    try {
+      return jdbi.withHandle(
+          h -> {
+            // the pool may have taken the whole budget to hand out the connection
+            if (remainingNanos() <= 0) {
+              throw new SlashingCheckDeadlineExceededException(
+                  "Slashing check deadline expired waiting for a database connection");
+            }
+            return callback.withHandle(h);
+          });
+    } catch (final JdbiException e) {
+      if (isTimeout(e)) {
+        throw new SlashingCheckDeadlineExceededException(
+            "Slashing check did not complete within its deadline", e);
+      }
+      throw e;
+    }
+  }
+
+  void useHandle(final Jdbi jdbi, final HandleConsumer<RuntimeException> consumer) {
+    withHandle(
+        jdbi,
+        h -> {
+          consumer.useHandle(h);
+          return null;
+        });
+  }
+
+  private static boolean isTimeout(final JdbiException e) {
+    return Throwables.getCausalChain(e).stream()
+        .anyMatch(
+            cause ->
+                cause instanceof SQLTransientConnectionException
+                    || (cause instanceof SQLException
+                        && (QUERY_CANCELED.equals(((SQLException) cause).getSQLState())
+                            || LOCK_NOT_AVAILABLE.equals(((SQLException) cause).getSQLState()))));
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static tech.pegasys.web3signer.slashingprotection.SlashingMetricCategory.ETH2_SLASHING_PROTECTION;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import com.google.common.base.Throwables;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer.TimingContext;
+import org.jdbi.v3.core.JdbiException;
+
+/**
+ * Stops sending slashing checks to a database that keeps failing them. After the configured number
+ * of consecutive database failures the breaker opens and every check is rejected with a {@link
+ * SlashingProtectionUnavailableException} without touching the database. Once the open duration
+ * has passed a single check is let through, closing the breaker if it succeeds and opening it again
+ * if it fails. Registration, import, export and pruning are passed straight through.
+ */
+public class CircuitBreakingSlashingProtection implements SlashingProtection {
+
+  public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+  public static final long DEFAULT_OPEN_DURATION_MILLIS = 5_000;
+
+  private static final Logger LOG = LogManager.getLogger();
+
+  enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final SlashingProtection delegate;
+  private final int failureThreshold;
+  private final long openDurationNanos;
+  private final LongSupplier nanoClock;
+  private final LabelledMetric<OperationTimer> checkTimer;
+  private final LabelledMetric<Counter> deadlineExceededCounter;
+  private final Counter tripCounter;
+  private final Counter rejectionCounter;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openedAtNanos;
+
+  public CircuitBreakingSlashingProtection(
+      final SlashingProtection delegate,
+      final int failureThreshold,
+      final long openDurationMillis,
+      final MetricsSystem metricsSystem) {
+    this(delegate, failureThreshold, openDurationMillis, metricsSystem, System::nanoTime);
+  }
+
+  CircuitBreakingSlashingProtection(
+      final SlashingProtection delegate,
+      final int failureThreshold,
+      final long openDurationMillis,
+      final MetricsSystem metricsSystem,
+      final LongSupplier nanoClock) {
+    checkArgument(failureThreshold > 0, "Failure threshold must be positive");
+    checkArgument(openDurationMillis > 0, "Open duration must be positive");
+    this.delegate = delegate;
+    this.failureThreshold = failureThreshold;
+    this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+    this.nanoClock = nanoClock;
+    this.checkTimer =
+        metricsSystem.createLabelledTimer(
+            ETH2_SLASHING_PROTECTION,
+            "database_check_duration",
+            "Time taken by slashing checks that reached the database, by artifact type",
+            "artifact");
+    this.deadlineExceededCounter =
+        metricsSystem.createLabelledCounter(
+            ETH2_SLASHING_PROTECTION,
+            "check_deadline_exceeded",
+            "Number of slashing checks that failed to complete within their deadline",
+            "artifact");
+    this.tripCounter =
+        metricsSystem.createCounter(
+            ETH2_SLASHING_PROTECTION,
+            "circuit_breaker_trips",
+            "Number of times the slashing protection circuit breaker opened");
+    this.rejectionCounter =
+        metricsSystem.createCounter(
+            ETH2_SLASHING_PROTECTION,
+            "circuit_breaker_rejections",
+            "Number of slashing checks rejected without a database query while the breaker was open");
+    metricsSystem.createLongGauge(
+        ETH2_SLASHING_PROTECTION,
+        "circuit_breaker_state",
+        "State of the slashing protection circuit breaker, 0 closed, 1 open and 2 half open",
+        () -> getState().ordinal());
+  }
+
+  @Override
+  public boolean maySignAttestation(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch) {
+    return check(
+        "attestation",
+        () -> delegate.maySignAttestation(publicKey, signingRoot, sourceEpoch, targetEpoch));
+  }
+
+  @Override
+  public boolean maySignBlock(
+      final Bytes publicKey, final Bytes signingRoot, final UInt64 blockSlot) {
+    return check("block", () -> delegate.maySignBlock(publicKey, signingRoot, blockSlot));
+  }
+
+  @Override
+  public List<Boolean> maySignBatch(final List<SlashingCheck> checks) {
+    return check("batch", () -> delegate.maySignBatch(checks));
+  }
+
+  @Override
+  public void registerValidators(final List<Bytes> validators) {
+    delegate.registerValidators(validators);
+  }
+
+  @Override
+  public void export(final OutputStream output) {
+    delegate.export(output);
+  }
+
+  @Override
+  public void importData(final InputStream input) {
+    delegate.importData(input);
+  }
+
+  @Override
+  public void prune() {
+    delegate.prune();
+  }
+
+  @Override
+  public void start() {
+    delegate.start();
+  }
+
+  synchronized State getState() {
+    return state;
+  }
+
+  private <T> T check(final String artifact, final Supplier<T> slashingCheck) {
+    if (!tryAcquirePermission()) {
+      rejectionCounter.inc();
+      throw new SlashingProtectionUnavailableException(
+          "Slashing protection database is unavailable");
+    }
+    final TimingContext timingContext = checkTimer.labels(artifact).startTimer();
+    try {
+      final T result = slashingCheck.get();
+      onSuccess();
+      return result;
+    } catch (final RuntimeException e) {
+      final List<Throwable> causes = Throwables.getCausalChain(e);
+      if (causes.stream().anyMatch(SlashingCheckDeadlineExceededException.class::isInstance)) {
+        deadlineExceededCounter.labels(artifact).inc();
+      }
+      if (causes.stream().noneMatch(CircuitBreakingSlashingProtection::isDatabaseFailure)) {
+        // a failure such as an unregistered validator says nothing about the database
+        onIgnored();
+        throw e;
+      }
+      onFailure();
+      throw new SlashingProtectionUnavailableException("Slashing protection check failed", e);
+    } finally {
+      timingContext.stopTimer();
+    }
+  }
+
+  private synchronized boolean tryAcquirePermission() {
+    switch (state) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        if (nanoClock.getAsLong() - openedAtNanos < openDurationNanos) {
+          return false;
+        }
+        // this check is the trial that decides whether the database has recovered
+        state = State.HALF_OPEN;
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private synchronized void onSuccess() {
+    consecutiveFailures = 0;
+    if (state != State.CLOSED) {
+      LOG.info("Slashing protection database has recovered, closing circuit breaker");
+      state = State.CLOSED;
+    }
+  }
+
+  private synchronized void onFailure() {
+    consecutiveFailures++;
+    if (state == State.HALF_OPEN
+        || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+      LOG.warn(
+          "Opening slashing protection circuit breaker after {} consecutive database failures",
+          consecutiveFailures);
+      state = State.OPEN;
+      openedAtNanos = nanoClock.getAsLong();
+      tripCounter.inc();
+    }
+  }
+
+  private synchronized void onIgnored() {
+    if (state == State.HALF_OPEN) {
+      // the trial did not reach a verdict on the database so let the next check try
+      state = State.OPEN;
+    }
+  }
+
+  private static boolean isDatabaseFailure(final Throwable cause) {
+    return cause instanceof JdbiException
+        || cause instanceof SlashingProtectionUnavailableException;
+  }
+}
@@ -12,6 +12,8 @@
  */
 package tech.pegasys.web3signer.slashingprotection;
 
+import tech.pegasys.web3signer.slashingprotection.dao.UInt64Encoding;
+
 import java.lang.reflect.Type;
 import java.util.Optional;
 
@@ -49,10 +51,10 @@ public class ColumnMappers {
 
       return Optional.of(
           (ColumnMapper<UInt64>)
-              (r, columnNumber, ctx) ->
-                  r.getBigDecimal(columnNumber) == null
-                      ? null
-                      : UInt64.valueOf(r.getBigDecimal(columnNumber).toBigInteger()));
+              (r, columnNumber, ctx) -> {
+                final long value = r.getLong(columnNumber);
+                return r.wasNull() ? null : UInt64Encoding.decode(value);
+              });
     }
   }
 }
@@ -20,6 +20,8 @@ import tech.pegasys.web3signer.slashingprotection.ColumnMappers.UInt64ColumnMapp
 import javax.sql.DataSource;
 
 import com.zaxxer.hikari.HikariDataSource;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.Jdbi;
 import org.jdbi.v3.core.argument.Arguments;
 import org.jdbi.v3.core.mapper.ColumnMappers;
@@ -27,14 +29,131 @@ import org.jdbi.v3.core.transaction.SerializableTransactionRunner;
 
 public class DbConnection {
 
+  // the pgjdbc defaults
+  public static final int DEFAULT_PREPARE_THRESHOLD = 5;
+  public static final int DEFAULT_STATEMENT_CACHE_QUERIES = 256;
+  // the HikariCP defaults
+  public static final int DEFAULT_POOL_SIZE = 10;
+  public static final long DEFAULT_CONNECTION_TIMEOUT_MILLIS = 30_000;
+  public static final long DEFAULT_VALIDATION_TIMEOUT_MILLIS = 5_000;
+  public static final long DEFAULT_LEAK_DETECTION_THRESHOLD_MILLIS = 0;
+
   public static Jdbi createConnection(
       final String jdbcUrl, final String username, final String password) {
-    final DataSource datasource = createDataSource(jdbcUrl, username, password);
+    return createConnection(jdbcUrl, username, password, ValidatorLockStrategy.ADVISORY);
+  }
+
+  public static Jdbi createConnection(
+      final String jdbcUrl,
+      final String username,
+      final String password,
+      final ValidatorLockStrategy lockStrategy) {
+    return createConnection(
+        jdbcUrl,
+        username,
+        password,
+        lockStrategy,
+        DEFAULT_PREPARE_THRESHOLD,
+        DEFAULT_STATEMENT_CACHE_QUERIES);
+  }
+
+  /**
+   * Creates a pooled connection where each connection uses a server side prepared statement once a
+   * statement has been executed prepareThreshold times, keeping up to statementCacheQueries of them
+   * prepared for reuse by later executions of the same SQL on that connection.
+   */
+  public static Jdbi createConnection(
+      final String jdbcUrl,
+      final String username,
+      final String password,
+      final ValidatorLockStrategy lockStrategy,
+      final int prepareThreshold,
+      final int statementCacheQueries) {
+    final DataSource datasource =
+        createDataSource(
+            jdbcUrl, username, password, lockStrategy, prepareThreshold, statementCacheQueries, 0);
     final Jdbi jdbi = Jdbi.create(datasource);
     configureJdbi(jdbi);
     return jdbi;
   }
 
+  /**
+   * Creates a pooled connection with the pool sized and timed out as configured by the slashing
+   * protection parameters, reporting the pool statistics to the metrics system. The connection
+   * timeout is capped at the longest slashing check deadline so that a check never waits for a
+   * connection beyond its own deadline, and each connection's statement timeout is set once to the
+   * longest deadline so that the database gives up on a check that has been abandoned.
+   */
+  public static Jdbi createConnection(
+      final SlashingProtectionParameters parameters, final MetricsSystem metricsSystem) {
+    final HikariDataSource dataSource =
+        createDataSource(
+            parameters.getDbUrl(),
+            parameters.getDbUsername(),
+            parameters.getDbPassword(),
+            parameters.getLockStrategy(),
+            parameters.getDbPrepareThreshold(),
+            parameters.getDbStatementCacheQueries(),
+            statementTimeoutMillis(parameters));
+    dataSource.setMaximumPoolSize(parameters.getDbPoolSize());
+    dataSource.setMinimumIdle(parameters.getDbPoolMinimumIdle());
+    final long connectionTimeout = poolConnectionTimeoutMillis(parameters);
+    dataSource.setConnectionTimeout(connectionTimeout);
+    dataSource.setValidationTimeout(
+        Math.min(parameters.getDbPoolValidationTimeoutMillis(), connectionTimeout));
+    dataSource.setLeakDetectionThreshold(parameters.getDbPoolLeakDetectionThresholdMillis());
+    dataSource.setMetricsTrackerFactory(new DbPoolMetrics(metricsSystem));
+    final Jdbi jdbi = Jdbi.create(dataSource);
+    configureJdbi(jdbi);
+    return jdbi;
+  }
+
+  /**
+   * Creates a connection without a pool, where each handle opens a database connection of its own
+   * that is closed with the handle, for work that must not compete with the slashing checks for
+   * pooled connections.
+   */
+  public static Jdbi createUnpooledConnection(
+      final String jdbcUrl, final String username, final String password) {
+    final Jdbi jdbi = Jdbi.create(jdbcUrl, username, password);
+    configureJdbi(jdbi);
+    return jdbi;
+  }
+
+  /**
+   * The statement timeout of the connections running slashing checks, the longest of the configured
+   * deadlines so that no check is cancelled before its own deadline, where 0 is no timeout. With
+   * only one deadline configured, checks of the other artifact are bounded by it too, so that no
+   * check abandoned at its deadline keeps holding the validator lock.
+   */
+  public static long statementTimeoutMillis(final SlashingProtectionParameters parameters) {
+    return Math.max(
+        parameters.getBlockCheckDeadlineMillis(), parameters.getAttestationCheckDeadlineMillis());
+  }
+
+  /**
+   * Lifts the statement timeout for the rest of the handle's transaction, for work sharing the pool
+   * with the slashing checks that may take longer than any check, such as loading or pruning the
+   * history and interchange.
+   */
+  public static void liftStatementTimeout(final Handle handle) {
+    handle.execute("SET LOCAL statement_timeout = 0");
+  }
+
+  static long poolConnectionTimeoutMillis(final SlashingProtectionParameters parameters) {
+    final long connectionTimeout = parameters.getDbPoolConnectionTimeoutMillis();
+    if (parameters.getBlockCheckDeadlineMillis() == 0
+        || parameters.getAttestationCheckDeadlineMillis() == 0) {
+      // a check without a deadline may wait as long as the pool allows
+      return connectionTimeout;
+    }
+    return Math.min(
+        connectionTimeout,
+        Math.max(
+            parameters.getBlockCheckDeadlineMillis(),
+            parameters.getAttestationCheckDeadlineMillis()));
+  }
+
   public static void configureJdbi(final Jdbi jdbi) {
     jdbi.getConfig(Arguments.class)
         .register(new BytesArgumentFactory())
@@ -45,12 +164,26 @@ public class DbConnection {
     jdbi.setTransactionHandler(new SerializableTransactionRunner());
   }
 
-  private static DataSource createDataSource(
-      final String jdbcUrl, final String username, final String password) {
+  private static HikariDataSource createDataSource(
+      final String jdbcUrl,
+      final String username,
+      final String password,
+      final ValidatorLockStrategy lockStrategy,
+      final int prepareThreshold,
+      final int statementCacheQueries,
+      final long statementTimeoutMillis) {
     final HikariDataSource dataSource = new HikariDataSource();
     dataSource.setJdbcUrl(jdbcUrl);
     dataSource.setUsername(username);
     dataSource.setPassword(password);
+    dataSource.addDataSourceProperty("prepareThreshold", prepareThreshold);
+    dataSource.addDataSourceProperty("preparedStatementCacheQueries", statementCacheQueries);
+    // set once per connection so that the lock and the timeout cost no round trip per check
+    dataSource.setConnectionInitSql(
+        "SET web3signer.validator_lock = '"
+            + lockStrategy.getDatabaseSetting()
+            + "'; SET statement_timeout = "
+            + statementTimeoutMillis);
     return dataSource;
   }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static tech.pegasys.web3signer.slashingprotection.SlashingMetricCategory.ETH2_SLASHING_PROTECTION;
+
+import java.util.concurrent.TimeUnit;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+
+/**
+ * Reports the statistics of the slashing protection connection pool to the metrics system, so that
+ * slow signing caused by waiting for a database connection can be told apart from slow queries.
+ *
+ * <p>The metrics system has no histogram, so the time taken to acquire a connection is recorded as
+ * cumulative bucket counters labelled with their upper bound in milliseconds, following the
+ * Prometheus histogram convention, together with the total wait in microseconds.
+ */
+public class DbPoolMetrics implements MetricsTrackerFactory {
+
+  private static final long[] WAIT_BUCKETS_MILLIS = {1, 5, 10, 25, 50, 100, 250, 500, 1000, 5000};
+
+  private final MetricsSystem metricsSystem;
+
+  public DbPoolMetrics(final MetricsSystem metricsSystem) {
+    this.metricsSystem = metricsSystem;
+  }
+
+  @Override
+  public IMetricsTracker create(final String poolName, final PoolStats poolStats) {
+    metricsSystem.createLongGauge(
+        ETH2_SLASHING_PROTECTION,
+        "db_pool_active_connections",
+        "Number of slashing protection database connections in use",
+        poolStats::getActiveConnections);
+    metricsSystem.createLongGauge(
+        ETH2_SLASHING_PROTECTION,
+        "db_pool_idle_connections",
+        "Number of idle slashing protection database connections",
+        poolStats::getIdleConnections);
+    metricsSystem.createLongGauge(
+        ETH2_SLASHING_PROTECTION,
+        "db_pool_total_connections",
+        "Number of open slashing protection database connections",
+        poolStats::getTotalConnections);
+    metricsSystem.createLongGauge(
+        ETH2_SLASHING_PROTECTION,
+        "db_pool_max_connections",
+        "Maximum number of slashing protection database connections",
+        poolStats::getMaxConnections);
+    metricsSystem.createLongGauge(
+        ETH2_SLASHING_PROTECTION,
+        "db_pool_pending_threads",
+        "Number of threads waiting for a slashing protection database connection",
+        poolStats::getPendingThreads);
+    return new Tracker();
+  }
+
+  private class Tracker implements IMetricsTracker {
+
+    private final Counter[] waitBuckets = new Counter[WAIT_BUCKETS_MILLIS.length + 1];
+    private final Counter waitMicros;
+    private final Counter timeouts;
+
+    Tracker() {
+      final LabelledMetric<Counter> waitBucketCounters =
+          metricsSystem.createLabelledCounter(
+              ETH2_SLASHING_PROTECTION,
+              "db_pool_connection_wait_bucket",
+              "Number of slashing protection database connections acquired within le milliseconds",
+              "le");
+      for (int i = 0; i < WAIT_BUCKETS_MILLIS.length; i++) {
+        waitBuckets[i] = waitBucketCounters.labels(Long.toString(WAIT_BUCKETS_MILLIS[i]));
+      }
+      waitBuckets[WAIT_BUCKETS_MILLIS.length] = waitBucketCounters.labels("+Inf");
+      waitMicros =
+          metricsSystem.createCounter(
+              ETH2_SLASHING_PROTECTION,
+              "db_pool_connection_wait_microseconds",
+              "Total time spent waiting for slashing protection database connections");
+      timeouts =
+          metricsSystem.createCounter(
+              ETH2_SLASHING_PROTECTION,
+              "db_pool_connection_timeouts",
+              "Number of slashing protection database connection requests that timed out");
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(final long elapsedAcquiredNanos) {
+      waitMicros.inc(TimeUnit.NANOSECONDS.toMicros(elapsedAcquiredNanos));
+      // buckets are cumulative so every bucket from the first that covers the wait is counted
+      for (int i = WAIT_BUCKETS_MILLIS.length - 1;
+          i >= 0 && elapsedAcquiredNanos <= TimeUnit.MILLISECONDS.toNanos(WAIT_BUCKETS_MILLIS[i]);
+          i--) {
+        waitBuckets[i].inc();
+      }
+      waitBuckets[WAIT_BUCKETS_MILLIS.length].inc();
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+      timeouts.inc();
+    }
+  }
+}
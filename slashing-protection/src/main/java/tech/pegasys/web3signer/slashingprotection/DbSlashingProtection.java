@@ -13,77 +13,140 @@
 package tech.pegasys.web3signer.slashingprotection;
 
 import static com.fasterxml.jackson.databind.SerializationFeature.FLUSH_AFTER_WRITE_VALUE;
+import static com.google.common.base.Preconditions.checkArgument;
 import static org.jdbi.v3.core.transaction.TransactionIsolationLevel.READ_COMMITTED;
-import static org.jdbi.v3.core.transaction.TransactionIsolationLevel.SERIALIZABLE;
+import static tech.pegasys.web3signer.slashingprotection.SlashingMetricCategory.ETH2_SLASHING_PROTECTION;
 
+import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
+import tech.pegasys.web3signer.slashingprotection.dao.MetadataDao;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedBlocksDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SigningChecksDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SlashingCheckResult;
 import tech.pegasys.web3signer.slashingprotection.dao.Validator;
+import tech.pegasys.web3signer.slashingprotection.dao.ValidatorWatermark;
 import tech.pegasys.web3signer.slashingprotection.dao.ValidatorsDao;
 import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeManager;
 import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeModule;
 import tech.pegasys.web3signer.slashingprotection.interchange.InterchangeV5Manager;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.Streams;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.units.bigints.UInt64;
-import org.jdbi.v3.core.Handle;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer.TimingContext;
 import org.jdbi.v3.core.Jdbi;
 
 public class DbSlashingProtection implements SlashingProtection {
 
   private static final Logger LOG = LogManager.getLogger();
+  private static final int ATTESTATION_LOAD_FETCH_SIZE = 10_000;
+  private static final int REGISTRATION_CHUNK_SIZE = 5_000;
+  private static final int REGISTRATION_THREADS = 4;
   private final Jdbi jdbi;
   private final ValidatorsDao validatorsDao;
   private final SignedBlocksDao signedBlocksDao;
   private final SignedAttestationsDao signedAttestationsDao;
-  private final Map<Bytes, Integer> registeredValidators;
+  private final SigningChecksDao signingChecksDao = new SigningChecksDao();
+  private final ValidatorRegistry registeredValidators;
   private final InterchangeManager interchangeManager;
+  private final WatermarkCache watermarkCache;
+  private final Optional<AttestationSpanIndex> attestationSpanIndex;
+  private final Optional<AttestationCheckBatcher> attestationCheckBatcher;
+  private final Optional<SlashingProtectionPruner> pruner;
+  private final Optional<ValidatorLockWaiterSampler> lockWaiterSampler;
+  private final ValidatorLocks validatorLocks;
+  private final long blockCheckDeadlineMillis;
+  private final long attestationCheckDeadlineMillis;
+  private final long pruningIntervalHours;
+  private final OperationTimer registrationTimer;
+  private final Counter newValidatorsCounter;
 
-  private enum LockType {
-    BLOCK,
-    ATTESTATION
+  public static Builder builder(final Jdbi jdbi) {
+    return new Builder(jdbi);
   }
 
-  public DbSlashingProtection(
-      final Jdbi jdbi,
-      final ValidatorsDao validatorsDao,
-      final SignedBlocksDao signedBlocksDao,
-      final SignedAttestationsDao signedAttestationsDao) {
-    this(jdbi, validatorsDao, signedBlocksDao, signedAttestationsDao, new HashMap<>());
-  }
-
-  public DbSlashingProtection(
+  private DbSlashingProtection(
       final Jdbi jdbi,
       final ValidatorsDao validatorsDao,
       final SignedBlocksDao signedBlocksDao,
       final SignedAttestationsDao signedAttestationsDao,
-      final Map<Bytes, Integer> registeredValidators) {
+      final ValidatorRegistry registeredValidators,
+      final WatermarkCache watermarkCache,
+      final Optional<AttestationSpanIndex> attestationSpanIndex,
+      final Optional<AttestationCheckBatcher> attestationCheckBatcher,
+      final Optional<SlashingProtectionPruner> pruner,
+      final ValidatorLocks validatorLocks,
+      final Optional<ValidatorLockWaiterSampler> lockWaiterSampler,
+      final MetricsSystem metricsSystem,
+      final long blockCheckDeadlineMillis,
+      final long attestationCheckDeadlineMillis,
+      final long pruningIntervalHours) {
+    checkArgument(blockCheckDeadlineMillis >= 0, "Block check deadline must not be negative");
+    checkArgument(
+        attestationCheckDeadlineMillis >= 0, "Attestation check deadline must not be negative");
+    checkArgument(pruningIntervalHours >= 0, "Pruning interval must not be negative");
+    checkArgument(
+        pruningIntervalHours == 0 || pruner.isPresent(),
+        "Pruning on an interval requires a pruner");
     this.jdbi = jdbi;
     this.validatorsDao = validatorsDao;
     this.signedBlocksDao = signedBlocksDao;
     this.signedAttestationsDao = signedAttestationsDao;
     this.registeredValidators = registeredValidators;
+    this.watermarkCache = watermarkCache;
+    this.attestationSpanIndex = attestationSpanIndex;
+    this.attestationCheckBatcher = attestationCheckBatcher;
+    this.pruner = pruner;
+    this.validatorLocks = validatorLocks;
+    this.lockWaiterSampler = lockWaiterSampler;
+    this.blockCheckDeadlineMillis = blockCheckDeadlineMillis;
+    this.attestationCheckDeadlineMillis = attestationCheckDeadlineMillis;
+    this.pruningIntervalHours = pruningIntervalHours;
+    this.registrationTimer =
+        metricsSystem.createTimer(
+            ETH2_SLASHING_PROTECTION,
+            "validator_registration_time",
+            "Time taken to register the validators and load their signing history at startup");
+    this.newValidatorsCounter =
+        metricsSystem.createCounter(
+            ETH2_SLASHING_PROTECTION,
+            "newly_registered_validators",
+            "Number of validators added to the slashing protection database");
     this.interchangeManager =
         new InterchangeV5Manager(
             jdbi,
             validatorsDao,
             signedBlocksDao,
             signedAttestationsDao,
+            new LowWatermarkDao(),
+            new MetadataDao(),
             new ObjectMapper()
                 .registerModule(new InterchangeModule())
                 .configure(FLUSH_AFTER_WRITE_VALUE, true));
@@ -100,12 +163,41 @@ public class DbSlashingProtection implements SlashingProtection {
     }
   }
 
+  @Override
+  public void importData(final InputStream input) {
+    try {
+      LOG.info("Importing slashing protection database");
+      interchangeManager.importData(input);
+      LOG.info("Import complete");
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to import database content", e);
+    }
+  }
+
+  @Override
+  public void prune() {
+    pruner
+        .orElseThrow(
+            () -> new IllegalStateException("Slashing protection pruning is not configured"))
+        .prune();
+  }
+
+  @Override
+  public void start() {
+    attestationCheckBatcher.ifPresent(AttestationCheckBatcher::start);
+    if (pruningIntervalHours > 0) {
+      pruner.ifPresent(p -> p.start(pruningIntervalHours));
+    }
+    lockWaiterSampler.ifPresent(ValidatorLockWaiterSampler::start);
+  }
+
   @Override
   public boolean maySignAttestation(
       final Bytes publicKey,
       final Bytes signingRoot,
       final UInt64 sourceEpoch,
       final UInt64 targetEpoch) {
+    final CheckDeadline deadline = CheckDeadline.start(attestationCheckDeadlineMillis);
     final int validatorId = validatorId(publicKey);
 
     if (sourceEpoch.compareTo(targetEpoch) > 0) {
@@ -117,178 +209,528 @@ public class DbSlashingProtection implements SlashingProtection {
       return false;
     }
 
-    return jdbi.inTransaction(
-        READ_COMMITTED,
-        handle -> {
-          lockForValidator(handle, LockType.ATTESTATION, validatorId);
-          return checkAndInsertAttestation(
-              handle, publicKey, signingRoot, sourceEpoch, targetEpoch, validatorId);
-        });
+    if (watermarkCache.isAttestationBelowWatermark(validatorId, sourceEpoch, targetEpoch)) {
+      LOG.warn(
+          "Attestation source epoch {} or target epoch {} is below the signed attestation watermark for {}",
+          sourceEpoch,
+          targetEpoch,
+          publicKey);
+      return false;
+    }
+
+    final boolean maySign =
+        attestationSpanIndex.isPresent()
+            ? maySignIndexedAttestation(
+                attestationSpanIndex.get(),
+                publicKey,
+                signingRoot,
+                sourceEpoch,
+                targetEpoch,
+                validatorId,
+                deadline)
+            : checkAttestationInDatabase(
+                    publicKey, signingRoot, sourceEpoch, targetEpoch, validatorId, deadline)
+                != AttestationSpanIndex.Verdict.REJECT;
+    if (maySign) {
+      watermarkCache.attestationSigned(validatorId, sourceEpoch, targetEpoch);
+    }
+    return maySign;
   }
 
-  private boolean checkAndInsertAttestation(
-      final Handle h,
+  private boolean maySignIndexedAttestation(
+      final AttestationSpanIndex index,
       final Bytes publicKey,
       final Bytes signingRoot,
       final UInt64 sourceEpoch,
       final UInt64 targetEpoch,
-      final int validatorId) {
-    final Optional<SignedAttestation> existingAttestation =
-        signedAttestationsDao.findExistingAttestation(h, validatorId, targetEpoch);
-    if (existingAttestation.isPresent()) {
-      if (existingAttestation.get().getSigningRoot().isEmpty()) {
-        LOG.warn(
-            "Existing signed attestation ({}, {}, {}) exists with no signing root",
-            publicKey,
-            existingAttestation.get().getSourceEpoch(),
-            existingAttestation.get().getTargetEpoch());
-        return false;
+      final int validatorId,
+      final CheckDeadline deadline) {
+    synchronized (index.lockFor(validatorId)) {
+      switch (index.check(validatorId, sourceEpoch, targetEpoch, signingRoot)) {
+        case REPEAT:
+          // same target epoch and signing_root is allowed for broadcasting previous attestation
+          return true;
+        case REJECT:
+          LOG.warn(
+              "Detected slashable attestation signingRoot={} sourceEpoch={} targetEpoch={} publicKey={}",
+              signingRoot,
+              sourceEpoch,
+              targetEpoch,
+              publicKey);
+          return false;
+        case SAFE:
+          final SignedAttestation signedAttestation =
+              new SignedAttestation(validatorId, sourceEpoch, targetEpoch, signingRoot);
+          deadline.useHandle(
+              jdbi, h -> signedAttestationsDao.insertAttestation(h, signedAttestation));
+          break;
+        default:
+          // only an attestation newly inserted into the database is added to the index
+          final AttestationSpanIndex.Verdict verdict =
+              checkAttestationInDatabase(
+                  publicKey, signingRoot, sourceEpoch, targetEpoch, validatorId, deadline);
+          if (verdict != AttestationSpanIndex.Verdict.SAFE) {
+            return verdict == AttestationSpanIndex.Verdict.REPEAT;
+          }
       }
-      if (!existingAttestation.get().getSigningRoot().get().equals(signingRoot)) {
-        LOG.warn(
-            "Detected double signed attestation {} for {}", existingAttestation.get(), publicKey);
-        return false;
-      } else {
-        // same slot and signing_root is allowed for broadcasting previous attestation
-        return true;
-      }
-    }
-
-    final Optional<UInt64> minimumSourceEpoch =
-        signedAttestationsDao.minimumSourceEpoch(h, validatorId);
-    if (minimumSourceEpoch.map(minEpoch -> sourceEpoch.compareTo(minEpoch) < 0).orElse(false)) {
-      LOG.warn(
-          "Attestation source epoch {} is below minimum existing attestation source epoch {}",
-          sourceEpoch,
-          minimumSourceEpoch.get());
-      return false;
+      index.record(validatorId, sourceEpoch, targetEpoch, signingRoot);
+      return true;
     }
+  }
 
-    final Optional<UInt64> minimumTargetEpoch =
-        signedAttestationsDao.minimumTargetEpoch(h, validatorId);
-    if (minimumTargetEpoch.map(minEpoch -> targetEpoch.compareTo(minEpoch) <= 0).orElse(false)) {
-      LOG.warn(
-          "Attestation target epoch {} is below minimum existing attestation target epoch {}",
-          targetEpoch,
-          minimumTargetEpoch.get());
-      return false;
+  private AttestationSpanIndex.Verdict checkAttestationInDatabase(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch,
+      final int validatorId,
+      final CheckDeadline deadline) {
+    final SignedAttestation signedAttestation =
+        new SignedAttestation(validatorId, sourceEpoch, targetEpoch, signingRoot);
+    // the batcher only completes this check once the batch statement has run, so an in-process
+    // lock is held until then
+    final SlashingCheckResult result =
+        validatorLocks.withAttestationLock(
+            validatorId,
+            deadline,
+            () ->
+                attestationCheckBatcher.isPresent()
+                    ? attestationCheckBatcher.get().checkAndInsert(signedAttestation, deadline)
+                    : deadline.withHandle(
+                        jdbi,
+                        h ->
+                            signedAttestationsDao.checkAndInsertAttestation(
+                                h, signedAttestation)));
+    switch (result) {
+      case SIGNED:
+        return AttestationSpanIndex.Verdict.SAFE;
+      case ALREADY_SIGNED:
+        // same target epoch and signing_root is allowed for broadcasting previous attestation
+        return AttestationSpanIndex.Verdict.REPEAT;
+      default:
+        LOG.warn(
+            "Attestation signingRoot={} sourceEpoch={} targetEpoch={} publicKey={} rejected by slashing protection: {}",
+            signingRoot,
+            sourceEpoch,
+            targetEpoch,
+            publicKey,
+            result);
+        return AttestationSpanIndex.Verdict.REJECT;
     }
+  }
 
-    // check that no previous vote is surrounding the attestation
-    final Optional<SignedAttestation> surroundingAttestation =
-        signedAttestationsDao.findSurroundingAttestation(h, validatorId, sourceEpoch, targetEpoch);
-    if (surroundingAttestation.isPresent()) {
-      LOG.warn(
-          "Detected surrounding attestation {} for attestation signingRoot={} sourceEpoch={} targetEpoch={} publicKey={}",
-          surroundingAttestation.get(),
-          signingRoot,
-          sourceEpoch,
-          targetEpoch,
-          publicKey);
+  @Override
+  public boolean maySignBlock(
+      final Bytes publicKey, final Bytes signingRoot, final UInt64 blockSlot) {
+    final CheckDeadline deadline = CheckDeadline.start(blockCheckDeadlineMillis);
+    final int validatorId = validatorId(publicKey);
+    if (watermarkCache.isBlockBelowWatermark(validatorId, blockSlot)) {
+      LOG.warn("Block slot {} is below the signed block watermark for {}", blockSlot, publicKey);
       return false;
     }
 
-    // check that no previous vote is surrounded by attestation
-    final Optional<SignedAttestation> surroundedAttestation =
-        signedAttestationsDao.findSurroundedAttestation(h, validatorId, sourceEpoch, targetEpoch);
-    if (surroundedAttestation.isPresent()) {
+    final SignedBlock signedBlock = new SignedBlock(validatorId, blockSlot, signingRoot);
+    final SlashingCheckResult result =
+        validatorLocks.withBlockLock(
+            validatorId,
+            deadline,
+            () ->
+                deadline.withHandle(
+                    jdbi, h -> signedBlocksDao.checkAndInsertBlock(h, signedBlock)));
+    if (!result.isPermitted()) {
       LOG.warn(
-          "Detected surrounded attestation {} for attestation signingRoot={} sourceEpoch={} targetEpoch={} publicKey={}",
-          surroundedAttestation.get(),
+          "Block signingRoot={} slot={} publicKey={} rejected by slashing protection: {}",
           signingRoot,
-          sourceEpoch,
-          targetEpoch,
-          publicKey);
+          blockSlot,
+          publicKey,
+          result);
       return false;
     }
-
-    final SignedAttestation signedAttestation =
-        new SignedAttestation(validatorId, sourceEpoch, targetEpoch, signingRoot);
-    signedAttestationsDao.insertAttestation(h, signedAttestation);
+    watermarkCache.blockSigned(validatorId, blockSlot);
     return true;
   }
 
+  /**
+   * Checks the blocks and attestations that are not refused by their watermark in a single
+   * statement, holding the locks of all of their validators. With the attestation index the checks
+   * are made one at a time as most attestations are answered without the database.
+   */
   @Override
-  public boolean maySignBlock(
-      final Bytes publicKey, final Bytes signingRoot, final UInt64 blockSlot) {
-    final int validatorId = validatorId(publicKey);
-    return jdbi.inTransaction(
-        READ_COMMITTED,
-        h -> {
-          lockForValidator(h, LockType.BLOCK, validatorId);
-          return checkAndInsertBlock(h, publicKey, signingRoot, blockSlot, validatorId);
-        });
-  }
-
-  private boolean checkAndInsertBlock(
-      final Handle handle,
-      final Bytes publicKey,
-      final Bytes signingRoot,
-      final UInt64 blockSlot,
-      final int validatorId) {
-    final Optional<SignedBlock> existingBlock =
-        signedBlocksDao.findExistingBlock(handle, validatorId, blockSlot);
-    if (existingBlock.isPresent()) {
-      if (existingBlock.get().getSigningRoot().isEmpty()) {
+  public List<Boolean> maySignBatch(final List<SlashingCheck> checks) {
+    if (attestationSpanIndex.isPresent()) {
+      return SlashingProtection.super.maySignBatch(checks);
+    }
+    final CheckDeadline deadline =
+        CheckDeadline.latest(
+            CheckDeadline.start(blockCheckDeadlineMillis),
+            CheckDeadline.start(attestationCheckDeadlineMillis));
+    final Boolean[] results = new Boolean[checks.size()];
+    final List<Integer> blockIndexes = new ArrayList<>();
+    final List<SignedBlock> signedBlocks = new ArrayList<>();
+    final List<Integer> attestationIndexes = new ArrayList<>();
+    final List<SignedAttestation> signedAttestations = new ArrayList<>();
+    for (int i = 0; i < checks.size(); i++) {
+      final SlashingCheck check = checks.get(i);
+      final int validatorId = validatorId(check.getPublicKey());
+      if (check.getArtifactType() == SlashingCheck.ArtifactType.BLOCK) {
+        if (watermarkCache.isBlockBelowWatermark(validatorId, check.getBlockSlot())) {
+          LOG.warn(
+              "Block slot {} is below the signed block watermark for {}",
+              check.getBlockSlot(),
+              check.getPublicKey());
+          results[i] = false;
+        } else {
+          blockIndexes.add(i);
+          signedBlocks.add(
+              new SignedBlock(validatorId, check.getBlockSlot(), check.getSigningRoot()));
+        }
+      } else if (check.getSourceEpoch().compareTo(check.getTargetEpoch()) > 0) {
         LOG.warn(
-            "Signed block ({}, {}) exists with no signing root",
-            publicKey,
-            existingBlock.get().getSlot());
-        return false;
-      } else if (existingBlock.get().getSigningRoot().get().equals(signingRoot)) {
-        // same slot and signing_root is allowed for broadcasting previously signed block
-        return true;
+            "Detected sourceEpoch {} greater than targetEpoch {} for {}",
+            check.getSourceEpoch(),
+            check.getTargetEpoch(),
+            check.getPublicKey());
+        results[i] = false;
+      } else if (watermarkCache.isAttestationBelowWatermark(
+          validatorId, check.getSourceEpoch(), check.getTargetEpoch())) {
+        LOG.warn(
+            "Attestation source epoch {} or target epoch {} is below the signed attestation watermark for {}",
+            check.getSourceEpoch(),
+            check.getTargetEpoch(),
+            check.getPublicKey());
+        results[i] = false;
       } else {
-        LOG.warn("Detected double signed block {} for {}", existingBlock.get(), publicKey);
-        return false;
+        attestationIndexes.add(i);
+        signedAttestations.add(
+            new SignedAttestation(
+                validatorId,
+                check.getSourceEpoch(),
+                check.getTargetEpoch(),
+                check.getSigningRoot()));
       }
     }
+    if (signedBlocks.isEmpty() && signedAttestations.isEmpty()) {
+      return Arrays.asList(results);
+    }
 
-    final Optional<UInt64> minimumSlot = signedBlocksDao.minimumSlot(handle, validatorId);
-    if (minimumSlot.map(slot -> blockSlot.compareTo(slot) <= 0).orElse(false)) {
-      LOG.warn(
-          "Block slot {} is below minimum existing block slot {}", blockSlot, minimumSlot.get());
-      return false;
+    final List<SlashingCheckResult> checkResults =
+        validatorLocks.withLocks(
+            signedBlocks.stream().map(SignedBlock::getValidatorId).collect(Collectors.toList()),
+            signedAttestations.stream()
+                .map(SignedAttestation::getValidatorId)
+                .collect(Collectors.toList()),
+            deadline,
+            () ->
+                deadline.withHandle(
+                    jdbi,
+                    h ->
+                        signingChecksDao.checkAndInsertSignings(
+                            h, signedBlocks, signedAttestations)));
+    for (int i = 0; i < signedBlocks.size(); i++) {
+      final int index = blockIndexes.get(i);
+      final SignedBlock signedBlock = signedBlocks.get(i);
+      results[index] = isPermitted(checks.get(index), checkResults.get(i));
+      if (results[index]) {
+        watermarkCache.blockSigned(signedBlock.getValidatorId(), signedBlock.getSlot());
+      }
     }
+    for (int i = 0; i < signedAttestations.size(); i++) {
+      final int index = attestationIndexes.get(i);
+      final SignedAttestation signedAttestation = signedAttestations.get(i);
+      results[index] = isPermitted(checks.get(index), checkResults.get(signedBlocks.size() + i));
+      if (results[index]) {
+        watermarkCache.attestationSigned(
+            signedAttestation.getValidatorId(),
+            signedAttestation.getSourceEpoch(),
+            signedAttestation.getTargetEpoch());
+      }
+    }
+    return Arrays.asList(results);
+  }
 
-    final SignedBlock signedBlock = new SignedBlock(validatorId, blockSlot, signingRoot);
-    signedBlocksDao.insertBlockProposal(handle, signedBlock);
-    return true;
+  private boolean isPermitted(final SlashingCheck check, final SlashingCheckResult result) {
+    if (result.isPermitted()) {
+      return true;
+    }
+    if (check.getArtifactType() == SlashingCheck.ArtifactType.BLOCK) {
+      LOG.warn(
+          "Block signingRoot={} slot={} publicKey={} rejected by slashing protection: {}",
+          check.getSigningRoot(),
+          check.getBlockSlot(),
+          check.getPublicKey(),
+          result);
+    } else {
+      LOG.warn(
+          "Attestation signingRoot={} sourceEpoch={} targetEpoch={} publicKey={} rejected by slashing protection: {}",
+          check.getSigningRoot(),
+          check.getSourceEpoch(),
+          check.getTargetEpoch(),
+          check.getPublicKey(),
+          result);
+    }
+    return false;
   }
 
   @Override
   public void registerValidators(final List<Bytes> validators) {
-    jdbi.useTransaction(
-        SERIALIZABLE,
+    final TimingContext registrationTime = registrationTimer.startTimer();
+    final List<List<Bytes>> chunks =
+        Lists.partition(List.copyOf(new LinkedHashSet<>(validators)), REGISTRATION_CHUNK_SIZE);
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.max(1, Math.min(chunks.size(), REGISTRATION_THREADS)),
+            new ThreadFactoryBuilder().setNameFormat("validator-registration-%d").build());
+    try {
+      final List<Future<Integer>> registrations =
+          chunks.stream()
+              .map(chunk -> executor.submit(() -> registerValidatorChunk(chunk)))
+              .collect(Collectors.toList());
+      int newValidators = 0;
+      for (final Future<Integer> registration : registrations) {
+        newValidators += waitForRegistration(registration);
+      }
+      LOG.info(
+          "Registered {} validators in {} chunks, {} of which were new",
+          registeredValidators.size(),
+          chunks.size(),
+          newValidators);
+    } finally {
+      executor.shutdownNow();
+    }
+    loadWatermarks();
+    final double registrationSeconds = registrationTime.stopTimer();
+    LOG.info("Validator registration took {} ms", Math.round(registrationSeconds * 1000));
+  }
+
+  private int registerValidatorChunk(final List<Bytes> validators) {
+    return jdbi.inTransaction(
+        READ_COMMITTED,
         h -> {
-          final List<Validator> existingRegisteredValidators =
+          DbConnection.liftStatementTimeout(h);
+          final List<Validator> existingValidators =
               validatorsDao.retrieveValidators(h, validators);
-          final List<Bytes> existingValidatorsPublicKeys =
-              existingRegisteredValidators.stream()
-                  .map(Validator::getPublicKey)
+          existingValidators.forEach(v -> registeredValidators.put(v.getPublicKey(), v.getId()));
+          final Set<Bytes> existingPublicKeys =
+              existingValidators.stream().map(Validator::getPublicKey).collect(Collectors.toSet());
+          final List<Bytes> missingValidators =
+              validators.stream()
+                  .filter(publicKey -> !existingPublicKeys.contains(publicKey))
                   .collect(Collectors.toList());
+          if (missingValidators.isEmpty()) {
+            return 0;
+          }
 
-          final List<Bytes> validatorsMissingFromDb = new ArrayList<>(validators);
-          validatorsMissingFromDb.removeAll(existingValidatorsPublicKeys);
+          final List<Validator> newValidators =
+              validatorsDao.registerMissingValidators(h, missingValidators);
+          newValidators.forEach(v -> registeredValidators.put(v.getPublicKey(), v.getId()));
+          if (newValidators.size() < missingValidators.size()) {
+            // another process registered some of these since they were looked up
+            validatorsDao
+                .retrieveValidators(h, missingValidators)
+                .forEach(v -> registeredValidators.put(v.getPublicKey(), v.getId()));
+          }
+          newValidatorsCounter.inc(newValidators.size());
+          return newValidators.size();
+        });
+  }
 
-          final List<Validator> newlyRegisteredValidators =
-              validatorsDao.registerValidators(h, validatorsMissingFromDb);
+  private int waitForRegistration(final Future<Integer> registration) {
+    try {
+      return registration.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while registering validators", e);
+    } catch (final ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException("Failed to register validators", e.getCause());
+    }
+  }
 
-          Streams.concat(existingRegisteredValidators.stream(), newlyRegisteredValidators.stream())
-              .forEach(v -> registeredValidators.put(v.getPublicKey(), v.getId()));
+  private void loadWatermarks() {
+    final Set<Integer> validatorIds = registeredValidators.validatorIds();
+    final List<ValidatorWatermark> watermarks =
+        jdbi.inTransaction(
+            READ_COMMITTED,
+            h -> {
+              DbConnection.liftStatementTimeout(h);
+              return validatorsDao.findAllWatermarks(h);
+            });
+    watermarks.stream()
+        .filter(watermark -> validatorIds.contains(watermark.getValidatorId()))
+        .forEach(watermarkCache::load);
+    LOG.info("Loaded signing watermarks for {} validators", validatorIds.size());
+    attestationSpanIndex.ifPresent(
+        index -> loadAttestationSpanIndex(index, validatorIds, watermarks));
+  }
+
+  private void loadAttestationSpanIndex(
+      final AttestationSpanIndex index,
+      final Set<Integer> validatorIds,
+      final List<ValidatorWatermark> watermarks) {
+    watermarks.stream()
+        .filter(watermark -> validatorIds.contains(watermark.getValidatorId()))
+        .filter(watermark -> watermark.getMinSourceEpoch() != null)
+        .forEach(
+            watermark ->
+                index.prepareForHistory(
+                    watermark.getValidatorId(),
+                    watermark.getMinSourceEpoch(),
+                    watermark.getMaxTargetEpoch()));
+    // pruned history is indexed as an attestation at the low watermark without a signing root,
+    // which rejects anything that the database rejects as below the watermark
+    watermarks.stream()
+        .filter(watermark -> validatorIds.contains(watermark.getValidatorId()))
+        .filter(watermark -> watermark.getLowWatermarkSourceEpoch() != null)
+        .forEach(
+            watermark ->
+                index.load(
+                    new SignedAttestation(
+                        watermark.getValidatorId(),
+                        watermark.getLowWatermarkSourceEpoch(),
+                        watermark.getLowWatermarkTargetEpoch(),
+                        null)));
+    jdbi.useTransaction(
+        READ_COMMITTED,
+        h -> {
+          DbConnection.liftStatementTimeout(h);
+          try (final Stream<SignedAttestation> attestations =
+              signedAttestationsDao.findAllAttestations(h, ATTESTATION_LOAD_FETCH_SIZE)) {
+            attestations
+                .filter(attestation -> validatorIds.contains(attestation.getValidatorId()))
+                .forEach(index::load);
+          }
         });
+    LOG.info("Loaded attestation span index for {} validators", validatorIds.size());
   }
 
   private int validatorId(final Bytes publicKey) {
-    final Integer validatorId = registeredValidators.get(publicKey);
-    if (validatorId == null) {
+    final int validatorId = registeredValidators.get(publicKey);
+    if (validatorId == ValidatorRegistry.NOT_REGISTERED) {
       throw new IllegalStateException("Unregistered validator for " + publicKey);
     }
     return validatorId;
   }
 
-  private void lockForValidator(
-      final Handle handle, final LockType lockType, final int validatorId) {
-    handle.execute("SELECT pg_advisory_xact_lock(?, ?)", lockType.ordinal(), validatorId);
+  /**
+   * Builds slashing protection on a database. Only the database is required; every other part
+   * defaults to a fresh instance, or is absent when optional, and check deadlines default to 0,
+   * meaning a check may take as long as the database does.
+   */
+  public static class Builder {
+    private final Jdbi jdbi;
+    private ValidatorsDao validatorsDao = new ValidatorsDao();
+    private SignedBlocksDao signedBlocksDao = new SignedBlocksDao();
+    private SignedAttestationsDao signedAttestationsDao = new SignedAttestationsDao();
+    private ValidatorRegistry validatorRegistry = new ValidatorRegistry();
+    private WatermarkCache watermarkCache = new WatermarkCache();
+    private Optional<AttestationSpanIndex> attestationSpanIndex = Optional.empty();
+    private Optional<AttestationCheckBatcher> attestationCheckBatcher = Optional.empty();
+    private Optional<SlashingProtectionPruner> pruner = Optional.empty();
+    private Optional<ValidatorLocks> validatorLocks = Optional.empty();
+    private Optional<ValidatorLockWaiterSampler> lockWaiterSampler = Optional.empty();
+    private MetricsSystem metricsSystem = new NoOpMetricsSystem();
+    private long blockCheckDeadlineMillis;
+    private long attestationCheckDeadlineMillis;
+    private long pruningIntervalHours;
+
+    private Builder(final Jdbi jdbi) {
+      this.jdbi = jdbi;
+    }
+
+    public Builder validatorsDao(final ValidatorsDao validatorsDao) {
+      this.validatorsDao = validatorsDao;
+      return this;
+    }
+
+    public Builder signedBlocksDao(final SignedBlocksDao signedBlocksDao) {
+      this.signedBlocksDao = signedBlocksDao;
+      return this;
+    }
+
+    public Builder signedAttestationsDao(final SignedAttestationsDao signedAttestationsDao) {
+      this.signedAttestationsDao = signedAttestationsDao;
+      return this;
+    }
+
+    public Builder validatorRegistry(final ValidatorRegistry validatorRegistry) {
+      this.validatorRegistry = validatorRegistry;
+      return this;
+    }
+
+    public Builder watermarkCache(final WatermarkCache watermarkCache) {
+      this.watermarkCache = watermarkCache;
+      return this;
+    }
+
+    public Builder attestationSpanIndex(final Optional<AttestationSpanIndex> attestationSpanIndex) {
+      this.attestationSpanIndex = attestationSpanIndex;
+      return this;
+    }
+
+    public Builder attestationCheckBatcher(
+        final Optional<AttestationCheckBatcher> attestationCheckBatcher) {
+      this.attestationCheckBatcher = attestationCheckBatcher;
+      return this;
+    }
+
+    public Builder pruner(final Optional<SlashingProtectionPruner> pruner) {
+      this.pruner = pruner;
+      return this;
+    }
+
+    /** Defaults to database advisory locks. */
+    public Builder validatorLocks(final ValidatorLocks validatorLocks) {
+      this.validatorLocks = Optional.of(validatorLocks);
+      return this;
+    }
+
+    /** Samples the waiters for the database validator locks once started. */
+    public Builder lockWaiterSampler(final Optional<ValidatorLockWaiterSampler> lockWaiterSampler) {
+      this.lockWaiterSampler = lockWaiterSampler;
+      return this;
+    }
+
+    public Builder metricsSystem(final MetricsSystem metricsSystem) {
+      this.metricsSystem = metricsSystem;
+      return this;
+    }
+
+    /**
+     * Bounds how long a single check may take in milliseconds, including waiting for a validator
+     * lock and a database connection, where 0 means a check may take as long as the database
+     * does.
+     */
+    public Builder checkDeadlines(
+        final long blockCheckDeadlineMillis, final long attestationCheckDeadlineMillis) {
+      this.blockCheckDeadlineMillis = blockCheckDeadlineMillis;
+      this.attestationCheckDeadlineMillis = attestationCheckDeadlineMillis;
+      return this;
+    }
+
+    /** Prunes every interval once started, where 0 means pruning only when asked to. */
+    public Builder pruningInterval(final long pruningIntervalHours) {
+      this.pruningIntervalHours = pruningIntervalHours;
+      return this;
+    }
+
+    public DbSlashingProtection build() {
+      return new DbSlashingProtection(
+          jdbi,
+          validatorsDao,
+          signedBlocksDao,
+          signedAttestationsDao,
+          validatorRegistry,
+          watermarkCache,
+          attestationSpanIndex,
+          attestationCheckBatcher,
+          pruner,
+          validatorLocks.orElseGet(
+              () -> new ValidatorLocks(ValidatorLockStrategy.ADVISORY, metricsSystem)),
+          lockWaiterSampler,
+          metricsSystem,
+          blockCheckDeadlineMillis,
+          attestationCheckDeadlineMillis,
+          pruningIntervalHours);
+    }
   }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+
+/**
+ * Runs the checks of a blocking slashing protection on an executor reserved for them, so that the
+ * threads waiting on the database are never those computing signatures or serving requests.
+ * Registration, import, export and pruning are not on the signing path and run on the caller.
+ */
+public class ExecutorSlashingProtection implements AsyncSlashingProtection {
+
+  private final SlashingProtection delegate;
+  private final Executor executor;
+
+  public ExecutorSlashingProtection(final SlashingProtection delegate, final Executor executor) {
+    this.delegate = delegate;
+    this.executor = executor;
+  }
+
+  @Override
+  public CompletableFuture<Boolean> maySignAttestationAsync(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch) {
+    return CompletableFuture.supplyAsync(
+        () -> delegate.maySignAttestation(publicKey, signingRoot, sourceEpoch, targetEpoch),
+        executor);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> maySignBlockAsync(
+      final Bytes publicKey, final Bytes signingRoot, final UInt64 blockSlot) {
+    return CompletableFuture.supplyAsync(
+        () -> delegate.maySignBlock(publicKey, signingRoot, blockSlot), executor);
+  }
+
+  @Override
+  public CompletableFuture<List<Boolean>> maySignBatchAsync(final List<SlashingCheck> checks) {
+    return CompletableFuture.supplyAsync(() -> delegate.maySignBatch(checks), executor);
+  }
+
+  @Override
+  public boolean maySignAttestation(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch) {
+    return delegate.maySignAttestation(publicKey, signingRoot, sourceEpoch, targetEpoch);
+  }
+
+  @Override
+  public boolean maySignBlock(
+      final Bytes publicKey, final Bytes signingRoot, final UInt64 blockSlot) {
+    return delegate.maySignBlock(publicKey, signingRoot, blockSlot);
+  }
+
+  @Override
+  public List<Boolean> maySignBatch(final List<SlashingCheck> checks) {
+    return delegate.maySignBatch(checks);
+  }
+
+  @Override
+  public void registerValidators(final List<Bytes> validators) {
+    delegate.registerValidators(validators);
+  }
+
+  @Override
+  public void export(final OutputStream output) {
+    delegate.export(output);
+  }
+
+  @Override
+  public void importData(final InputStream input) {
+    delegate.importData(input);
+  }
+
+  @Override
+  public void prune() {
+    delegate.prune();
+  }
+
+  @Override
+  public void start() {
+    delegate.start();
+  }
+}
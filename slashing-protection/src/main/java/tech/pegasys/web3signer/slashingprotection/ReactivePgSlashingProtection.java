@@ -0,0 +1,350 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import tech.pegasys.web3signer.slashingprotection.dao.SlashingCheckResult;
+import tech.pegasys.web3signer.slashingprotection.dao.UInt64Encoding;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+import com.google.common.base.Throwables;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgException;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Tuple;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+
+/**
+ * Runs the slashing checks through the Vert.x reactive PostgreSQL client, so that a check holds no
+ * thread while it waits for the database. Checks are pipelined over a small pool of connections
+ * and complete on the Vert.x event loop. Each connection has its statement timeout set when it is
+ * opened, as the blocking implementation's pool does, so that a check abandoned at its deadline
+ * does not keep running in the database.
+ *
+ * <p>Registration, import, export and pruning are not on the signing path and are delegated to the
+ * blocking implementation, which must share this instance's validator registry and watermark cache.
+ * The validator lock is always taken by the check_and_insert functions, so the in-process lock
+ * strategy is not supported.
+ */
+public class ReactivePgSlashingProtection implements AsyncSlashingProtection {
+
+  public static final int DEFAULT_POOL_SIZE = 4;
+  public static final int DEFAULT_PIPELINING_LIMIT = 256;
+
+  private static final Logger LOG = LogManager.getLogger();
+  private static final String CHECK_ATTESTATION_SQL =
+      "SELECT check_and_insert_attestation($1, $2, $3, $4)";
+  private static final String CHECK_BLOCK_SQL = "SELECT check_and_insert_block($1, $2, $3)";
+  private static final String QUERY_CANCELED = "57014";
+  private static final String LOCK_NOT_AVAILABLE = "55P03";
+
+  private final Vertx vertx;
+  private final PgPool pool;
+  private final SlashingProtection delegate;
+  private final ValidatorRegistry registeredValidators;
+  private final WatermarkCache watermarkCache;
+  private final long blockCheckDeadlineMillis;
+  private final long attestationCheckDeadlineMillis;
+
+  public ReactivePgSlashingProtection(
+      final Vertx vertx,
+      final PgPool pool,
+      final SlashingProtection delegate,
+      final ValidatorRegistry registeredValidators,
+      final WatermarkCache watermarkCache,
+      final long blockCheckDeadlineMillis,
+      final long attestationCheckDeadlineMillis) {
+    checkArgument(blockCheckDeadlineMillis >= 0, "Block check deadline must not be negative");
+    checkArgument(
+        attestationCheckDeadlineMillis >= 0, "Attestation check deadline must not be negative");
+    this.vertx = vertx;
+    this.pool = pool;
+    this.delegate = delegate;
+    this.registeredValidators = registeredValidators;
+    this.watermarkCache = watermarkCache;
+    this.blockCheckDeadlineMillis = blockCheckDeadlineMillis;
+    this.attestationCheckDeadlineMillis = attestationCheckDeadlineMillis;
+  }
+
+  /**
+   * Creates a pool of at most poolSize connections, each with up to pipeliningLimit checks in
+   * flight.
+   */
+  public static PgPool createPool(
+      final Vertx vertx,
+      final SlashingProtectionParameters parameters,
+      final int poolSize,
+      final int pipeliningLimit) {
+    checkArgument(poolSize > 0, "Reactive pool size must be positive");
+    checkArgument(pipeliningLimit > 0, "Reactive pipelining limit must be positive");
+    checkArgument(
+        parameters.getLockStrategy() != ValidatorLockStrategy.IN_PROCESS,
+        "The reactive client does not support the in-process validator lock strategy");
+    final String dbUrl = parameters.getDbUrl();
+    final PgConnectOptions connectOptions =
+        PgConnectOptions.fromUri(dbUrl.startsWith("jdbc:") ? dbUrl.substring(5) : dbUrl)
+            .setUser(parameters.getDbUsername())
+            .setPassword(parameters.getDbPassword())
+            .setPipeliningLimit(pipeliningLimit)
+            .addProperty(
+                "web3signer.validator_lock", parameters.getLockStrategy().getDatabaseSetting())
+            .addProperty(
+                "statement_timeout",
+                Long.toString(DbConnection.statementTimeoutMillis(parameters)));
+    return PgPool.pool(vertx, connectOptions, new PoolOptions().setMaxSize(poolSize));
+  }
+
+  @Override
+  public boolean maySignAttestation(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch) {
+    return join(maySignAttestationAsync(publicKey, signingRoot, sourceEpoch, targetEpoch));
+  }
+
+  @Override
+  public boolean maySignBlock(
+      final Bytes publicKey, final Bytes signingRoot, final UInt64 blockSlot) {
+    return join(maySignBlockAsync(publicKey, signingRoot, blockSlot));
+  }
+
+  /** Pipelines the checks rather than evaluating them in a single statement. */
+  @Override
+  public List<Boolean> maySignBatch(final List<SlashingCheck> checks) {
+    final List<CompletableFuture<Boolean>> results =
+        checks.stream().map(this::maySignAsync).collect(Collectors.toList());
+    return results.stream().map(ReactivePgSlashingProtection::join).collect(Collectors.toList());
+  }
+
+  @Override
+  public CompletableFuture<List<Boolean>> maySignBatchAsync(final List<SlashingCheck> checks) {
+    final List<CompletableFuture<Boolean>> results =
+        checks.stream().map(this::maySignAsync).collect(Collectors.toList());
+    return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+        .thenApply(v -> results.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+  }
+
+  private CompletableFuture<Boolean> maySignAsync(final SlashingCheck check) {
+    return check.getArtifactType() == SlashingCheck.ArtifactType.BLOCK
+        ? maySignBlockAsync(check.getPublicKey(), check.getSigningRoot(), check.getBlockSlot())
+        : maySignAttestationAsync(
+            check.getPublicKey(),
+            check.getSigningRoot(),
+            check.getSourceEpoch(),
+            check.getTargetEpoch());
+  }
+
+  @Override
+  public CompletableFuture<Boolean> maySignAttestationAsync(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch) {
+    final int validatorId;
+    try {
+      validatorId = validatorId(publicKey);
+    } catch (final IllegalStateException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    if (sourceEpoch.compareTo(targetEpoch) > 0) {
+      LOG.warn(
+          "Detected sourceEpoch {} greater than targetEpoch {} for {}",
+          sourceEpoch,
+          targetEpoch,
+          publicKey);
+      return CompletableFuture.completedFuture(false);
+    }
+
+    if (watermarkCache.isAttestationBelowWatermark(validatorId, sourceEpoch, targetEpoch)) {
+      LOG.warn(
+          "Attestation source epoch {} or target epoch {} is below the signed attestation watermark for {}",
+          sourceEpoch,
+          targetEpoch,
+          publicKey);
+      return CompletableFuture.completedFuture(false);
+    }
+
+    final Tuple arguments =
+        Tuple.of(
+            validatorId,
+            bytea(signingRoot),
+            UInt64Encoding.encode(sourceEpoch),
+            UInt64Encoding.encode(targetEpoch));
+    return checkAndInsert(CHECK_ATTESTATION_SQL, arguments, attestationCheckDeadlineMillis)
+        .thenApply(
+            result -> {
+              if (!result.isPermitted()) {
+                LOG.warn(
+                    "Attestation signingRoot={} sourceEpoch={} targetEpoch={} publicKey={} rejected by slashing protection: {}",
+                    signingRoot,
+                    sourceEpoch,
+                    targetEpoch,
+                    publicKey,
+                    result);
+                return false;
+              }
+              watermarkCache.attestationSigned(validatorId, sourceEpoch, targetEpoch);
+              return true;
+            });
+  }
+
+  @Override
+  public CompletableFuture<Boolean> maySignBlockAsync(
+      final Bytes publicKey, final Bytes signingRoot, final UInt64 blockSlot) {
+    final int validatorId;
+    try {
+      validatorId = validatorId(publicKey);
+    } catch (final IllegalStateException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    if (watermarkCache.isBlockBelowWatermark(validatorId, blockSlot)) {
+      LOG.warn("Block slot {} is below the signed block watermark for {}", blockSlot, publicKey);
+      return CompletableFuture.completedFuture(false);
+    }
+
+    final Tuple arguments =
+        Tuple.of(validatorId, bytea(signingRoot), UInt64Encoding.encode(blockSlot));
+    return checkAndInsert(CHECK_BLOCK_SQL, arguments, blockCheckDeadlineMillis)
+        .thenApply(
+            result -> {
+              if (!result.isPermitted()) {
+                LOG.warn(
+                    "Block signingRoot={} slot={} publicKey={} rejected by slashing protection: {}",
+                    signingRoot,
+                    blockSlot,
+                    publicKey,
+                    result);
+                return false;
+              }
+              watermarkCache.blockSigned(validatorId, blockSlot);
+              return true;
+            });
+  }
+
+  /**
+   * Sends the check as a prepared query, which the client prepares once per connection and caches,
+   * so each check is a single execution with its arguments bound.
+   */
+  private CompletableFuture<SlashingCheckResult> checkAndInsert(
+      final String sql, final Tuple arguments, final long deadlineMillis) {
+    final CompletableFuture<SlashingCheckResult> check = new CompletableFuture<>();
+    // a check abandoned at its deadline may still complete in the database, which can only cause
+    // a later request for the same artifact to be refused
+    final long timerId =
+        deadlineMillis == 0
+            ? -1
+            : vertx.setTimer(
+                deadlineMillis,
+                id ->
+                    check.completeExceptionally(
+                        new SlashingCheckDeadlineExceededException(
+                            "Slashing check did not complete within " + deadlineMillis + " ms")));
+    pool.preparedQuery(sql)
+        .execute(
+            arguments,
+            result -> {
+              if (timerId != -1) {
+                vertx.cancelTimer(timerId);
+              }
+              completeCheck(check, result);
+            });
+    return check;
+  }
+
+  private void completeCheck(
+      final CompletableFuture<SlashingCheckResult> check, final AsyncResult<RowSet<Row>> result) {
+    if (result.succeeded()) {
+      final Row row = result.result().iterator().next();
+      check.complete(SlashingCheckResult.valueOf(row.getString(0)));
+    } else if (isTimeout(result.cause())) {
+      check.completeExceptionally(
+          new SlashingCheckDeadlineExceededException(
+              "Slashing check exceeded its database timeout", result.cause()));
+    } else {
+      check.completeExceptionally(
+          new SlashingProtectionUnavailableException(
+              "Slashing protection database check failed", result.cause()));
+    }
+  }
+
+  @Override
+  public void registerValidators(final List<Bytes> validators) {
+    delegate.registerValidators(validators);
+  }
+
+  @Override
+  public void export(final OutputStream output) {
+    delegate.export(output);
+  }
+
+  @Override
+  public void importData(final InputStream input) {
+    delegate.importData(input);
+  }
+
+  @Override
+  public void prune() {
+    delegate.prune();
+  }
+
+  @Override
+  public void start() {
+    delegate.start();
+  }
+
+  private static boolean isTimeout(final Throwable cause) {
+    return cause instanceof PgException
+        && (QUERY_CANCELED.equals(((PgException) cause).getCode())
+            || LOCK_NOT_AVAILABLE.equals(((PgException) cause).getCode()));
+  }
+
+  private static Buffer bytea(final Bytes value) {
+    return value == null ? null : Buffer.buffer(value.toArrayUnsafe());
+  }
+
+  private int validatorId(final Bytes publicKey) {
+    final int validatorId = registeredValidators.get(publicKey);
+    if (validatorId == ValidatorRegistry.NOT_REGISTERED) {
+      throw new IllegalStateException("Unregistered validator for " + publicKey);
+    }
+    return validatorId;
+  }
+
+  private static boolean join(final CompletableFuture<Boolean> check) {
+    try {
+      return check.join();
+    } catch (final CompletionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+
+/** A block or attestation to be checked as part of a batch of slashing checks. */
+public class SlashingCheck {
+
+  public enum ArtifactType {
+    BLOCK,
+    ATTESTATION
+  }
+
+  private final ArtifactType artifactType;
+  private final Bytes publicKey;
+  private final Bytes signingRoot;
+  private final UInt64 blockSlot;
+  private final UInt64 sourceEpoch;
+  private final UInt64 targetEpoch;
+
+  private SlashingCheck(
+      final ArtifactType artifactType,
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 blockSlot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch) {
+    this.artifactType = artifactType;
+    this.publicKey = publicKey;
+    this.signingRoot = signingRoot;
+    this.blockSlot = blockSlot;
+    this.sourceEpoch = sourceEpoch;
+    this.targetEpoch = targetEpoch;
+  }
+
+  public static SlashingCheck block(
+      final Bytes publicKey, final Bytes signingRoot, final UInt64 blockSlot) {
+    return new SlashingCheck(ArtifactType.BLOCK, publicKey, signingRoot, blockSlot, null, null);
+  }
+
+  public static SlashingCheck attestation(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch) {
+    return new SlashingCheck(
+        ArtifactType.ATTESTATION, publicKey, signingRoot, null, sourceEpoch, targetEpoch);
+  }
+
+  public ArtifactType getArtifactType() {
+    return artifactType;
+  }
+
+  public Bytes getPublicKey() {
+    return publicKey;
+  }
+
+  public Bytes getSigningRoot() {
+    return signingRoot;
+  }
+
+  public UInt64 getBlockSlot() {
+    checkArgument(artifactType == ArtifactType.BLOCK, "Only a block has a slot");
+    return blockSlot;
+  }
+
+  public UInt64 getSourceEpoch() {
+    checkArgument(artifactType == ArtifactType.ATTESTATION, "Only an attestation has epochs");
+    return sourceEpoch;
+  }
+
+  public UInt64 getTargetEpoch() {
+    checkArgument(artifactType == ArtifactType.ATTESTATION, "Only an attestation has epochs");
+    return targetEpoch;
+  }
+
+  /** Runs this check on its own against the given slashing protection. */
+  boolean checkWith(final SlashingProtection slashingProtection) {
+    return artifactType == ArtifactType.BLOCK
+        ? slashingProtection.maySignBlock(publicKey, signingRoot, blockSlot)
+        : slashingProtection.maySignAttestation(publicKey, signingRoot, sourceEpoch, targetEpoch);
+  }
+}
@@ -12,8 +12,10 @@
  */
 package tech.pegasys.web3signer.slashingprotection;
 
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.units.bigints.UInt64;
@@ -25,7 +27,26 @@ public interface SlashingProtection {
 
   boolean maySignBlock(Bytes publicKey, Bytes signingRoot, UInt64 blockSlot);
 
+  /**
+   * Returns whether each of the blocks and attestations may be signed, in the order of the checks.
+   * Implementations may evaluate the checks together rather than one at a time.
+   */
+  default List<Boolean> maySignBatch(final List<SlashingCheck> checks) {
+    return checks.stream().map(check -> check.checkWith(this)).collect(Collectors.toList());
+  }
+
   void registerValidators(List<Bytes> validators);
 
   void export(OutputStream output);
+
+  void importData(InputStream input);
+
+  void prune();
+
+  /**
+   * Starts the background tasks, batching attestation checks and pruning on an interval when they
+   * are configured. Only a signer serving requests starts them; one-off commands such as import,
+   * export and prune do not, and must not check attestations when batching is configured.
+   */
+  void start();
 }
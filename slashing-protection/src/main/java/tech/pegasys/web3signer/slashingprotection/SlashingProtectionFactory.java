@@ -12,14 +12,141 @@
  */
 package tech.pegasys.web3signer.slashingprotection;
 
+import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
-import tech.pegasys.web3signer.slashingprotection.dao.SignedBlocksDao;
 import tech.pegasys.web3signer.slashingprotection.dao.ValidatorsDao;
 
+import java.util.Optional;
+
+import io.vertx.core.Vertx;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
 import org.jdbi.v3.core.Jdbi;
 
 public class SlashingProtectionFactory {
 
+  public static SlashingProtection createSlashingProtection(
+      final SlashingProtectionParameters slashingProtectionParameters) {
+    return createSlashingProtection(slashingProtectionParameters, new NoOpMetricsSystem());
+  }
+
+  public static SlashingProtection createSlashingProtection(
+      final SlashingProtectionParameters slashingProtectionParameters,
+      final MetricsSystem metricsSystem) {
+    final SlashingProtection slashingProtection =
+        createDbSlashingProtection(
+            slashingProtectionParameters,
+            metricsSystem,
+            new ValidatorRegistry(),
+            new WatermarkCache());
+    final int failureThreshold = slashingProtectionParameters.getCircuitBreakerFailureThreshold();
+    return failureThreshold == 0
+        ? slashingProtection
+        : new CircuitBreakingSlashingProtection(
+            slashingProtection,
+            failureThreshold,
+            slashingProtectionParameters.getCircuitBreakerOpenDurationMillis(),
+            metricsSystem);
+  }
+
+  /**
+   * Creates slashing protection whose checks do not block when the reactive client is enabled,
+   * using a connection pool on the given Vert.x instance, and the blocking slashing protection
+   * otherwise.
+   */
+  public static SlashingProtection createSlashingProtection(
+      final SlashingProtectionParameters slashingProtectionParameters,
+      final MetricsSystem metricsSystem,
+      final Vertx vertx) {
+    if (!slashingProtectionParameters.isReactiveClientEnabled()) {
+      return createSlashingProtection(slashingProtectionParameters, metricsSystem);
+    }
+    final ValidatorRegistry validatorRegistry = new ValidatorRegistry();
+    final WatermarkCache watermarkCache = new WatermarkCache();
+    final DbSlashingProtection dbSlashingProtection =
+        createDbSlashingProtection(
+            slashingProtectionParameters, metricsSystem, validatorRegistry, watermarkCache);
+    return new ReactivePgSlashingProtection(
+        vertx,
+        ReactivePgSlashingProtection.createPool(
+            vertx,
+            slashingProtectionParameters,
+            slashingProtectionParameters.getReactivePoolSize(),
+            slashingProtectionParameters.getReactivePipeliningLimit()),
+        dbSlashingProtection,
+        validatorRegistry,
+        watermarkCache,
+        slashingProtectionParameters.getBlockCheckDeadlineMillis(),
+        slashingProtectionParameters.getAttestationCheckDeadlineMillis());
+  }
+
+  private static DbSlashingProtection createDbSlashingProtection(
+      final SlashingProtectionParameters slashingProtectionParameters,
+      final MetricsSystem metricsSystem,
+      final ValidatorRegistry validatorRegistry,
+      final WatermarkCache watermarkCache) {
+    final Jdbi jdbi = DbConnection.createConnection(slashingProtectionParameters, metricsSystem);
+    final ValidatorLockStrategy lockStrategy = slashingProtectionParameters.getLockStrategy();
+    final ValidatorLocks validatorLocks = new ValidatorLocks(lockStrategy, metricsSystem);
+    final Optional<ValidatorLockWaiterSampler> lockWaiterSampler =
+        lockStrategy == ValidatorLockStrategy.IN_PROCESS
+            ? Optional.empty()
+            : Optional.of(
+                new ValidatorLockWaiterSampler(
+                    DbConnection.createUnpooledConnection(
+                        slashingProtectionParameters.getDbUrl(),
+                        slashingProtectionParameters.getDbUsername(),
+                        slashingProtectionParameters.getDbPassword()),
+                    lockStrategy,
+                    metricsSystem));
+    final Optional<AttestationSpanIndex> attestationSpanIndex =
+        slashingProtectionParameters.isAttestationSpanIndexEnabled()
+            ? Optional.of(
+                new AttestationSpanIndex(
+                    slashingProtectionParameters.getAttestationSpanIndexEpochWindow()))
+            : Optional.empty();
+    final SignedAttestationsDao signedAttestationsDao = new SignedAttestationsDao();
+    final Optional<AttestationCheckBatcher> attestationCheckBatcher =
+        slashingProtectionParameters.isAttestationBatchingEnabled()
+            ? Optional.of(
+                new AttestationCheckBatcher(
+                    jdbi,
+                    signedAttestationsDao,
+                    slashingProtectionParameters.getAttestationBatchWindowMicros(),
+                    slashingProtectionParameters.getAttestationBatchMaxSize(),
+                    metricsSystem))
+            : Optional.empty();
+    final ValidatorsDao validatorsDao = new ValidatorsDao();
+    final SlashingProtectionPruner pruner =
+        new SlashingProtectionPruner(
+            jdbi,
+            validatorsDao,
+            new LowWatermarkDao(),
+            validatorLocks,
+            slashingProtectionParameters.getPruningEpochsToKeep(),
+            slashingProtectionParameters.getPruningSlotsPerEpoch(),
+            metricsSystem);
+    return DbSlashingProtection.builder(jdbi)
+        .validatorsDao(validatorsDao)
+        .signedAttestationsDao(signedAttestationsDao)
+        .validatorRegistry(validatorRegistry)
+        .watermarkCache(watermarkCache)
+        .attestationSpanIndex(attestationSpanIndex)
+        .attestationCheckBatcher(attestationCheckBatcher)
+        .pruner(Optional.of(pruner))
+        .pruningInterval(
+            slashingProtectionParameters.isPruningEnabled()
+                ? slashingProtectionParameters.getPruningInterval()
+                : 0)
+        .validatorLocks(validatorLocks)
+        .lockWaiterSampler(lockWaiterSampler)
+        .metricsSystem(metricsSystem)
+        .checkDeadlines(
+            slashingProtectionParameters.getBlockCheckDeadlineMillis(),
+            slashingProtectionParameters.getAttestationCheckDeadlineMillis())
+        .build();
+  }
+
   public static SlashingProtection createSlashingProtection(
       final String slashingProtectionDbUrl,
       final String slashingProtectionDbUser,
@@ -31,7 +158,6 @@ public class SlashingProtectionFactory {
   }
 
   private static SlashingProtection createSlashingProtection(final Jdbi jdbi) {
-    return new DbSlashingProtection(
-        jdbi, new ValidatorsDao(), new SignedBlocksDao(), new SignedAttestationsDao());
+    return DbSlashingProtection.builder(jdbi).build();
   }
 }
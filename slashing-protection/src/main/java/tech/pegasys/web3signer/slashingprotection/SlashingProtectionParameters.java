@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+public interface SlashingProtectionParameters {
+
+  boolean isEnabled();
+
+  String getDbUrl();
+
+  String getDbUsername();
+
+  String getDbPassword();
+
+  boolean isParallelSigningEnabled();
+
+  boolean isAttestationSpanIndexEnabled();
+
+  int getAttestationSpanIndexEpochWindow();
+
+  boolean isAttestationBatchingEnabled();
+
+  long getAttestationBatchWindowMicros();
+
+  int getAttestationBatchMaxSize();
+
+  boolean isPruningEnabled();
+
+  long getPruningEpochsToKeep();
+
+  long getPruningSlotsPerEpoch();
+
+  long getPruningInterval();
+
+  ValidatorLockStrategy getLockStrategy();
+
+  int getDbPrepareThreshold();
+
+  int getDbStatementCacheQueries();
+
+  int getDbPoolSize();
+
+  int getDbPoolMinimumIdle();
+
+  long getDbPoolConnectionTimeoutMillis();
+
+  long getDbPoolValidationTimeoutMillis();
+
+  long getDbPoolLeakDetectionThresholdMillis();
+
+  long getBlockCheckDeadlineMillis();
+
+  long getAttestationCheckDeadlineMillis();
+
+  int getCircuitBreakerFailureThreshold();
+
+  long getCircuitBreakerOpenDurationMillis();
+
+  boolean isReactiveClientEnabled();
+
+  int getReactivePoolSize();
+
+  int getReactivePipeliningLimit();
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.jdbi.v3.core.transaction.TransactionIsolationLevel.READ_COMMITTED;
+import static tech.pegasys.web3signer.slashingprotection.SlashingMetricCategory.ETH2_SLASHING_PROTECTION;
+
+import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
+import tech.pegasys.web3signer.slashingprotection.dao.Validator;
+import tech.pegasys.web3signer.slashingprotection.dao.ValidatorsDao;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Removes signed blocks and attestations older than a number of epochs behind each validator's
+ * most recent signing, collapsing them into the validator's low watermark. Rows are deleted in
+ * small batches, each in its own transaction holding the same validator lock as the slashing checks
+ * for that validator, so that checks are never blocked for long and never observe deleted rows
+ * without the watermark that replaces them.
+ */
+public class SlashingProtectionPruner {
+
+  private static final Logger LOG = LogManager.getLogger();
+  private static final int PRUNE_BATCH_SIZE = 1_000;
+  // lock types used by the check_and_insert functions
+  private static final int BLOCK_LOCK = 0;
+  private static final int ATTESTATION_LOCK = 1;
+
+  private final Jdbi jdbi;
+  private final ValidatorsDao validatorsDao;
+  private final LowWatermarkDao lowWatermarkDao;
+  private final ValidatorLocks validatorLocks;
+  private final long epochsToKeep;
+  private final long slotsToKeep;
+  private final Counter prunedAttestationsCounter;
+  private final Counter prunedBlocksCounter;
+  private volatile long signedAttestationsTableSize;
+  private volatile long signedBlocksTableSize;
+
+  public SlashingProtectionPruner(
+      final Jdbi jdbi,
+      final ValidatorsDao validatorsDao,
+      final LowWatermarkDao lowWatermarkDao,
+      final long epochsToKeep,
+      final long slotsPerEpoch,
+      final MetricsSystem metricsSystem) {
+    this(
+        jdbi,
+        validatorsDao,
+        lowWatermarkDao,
+        new ValidatorLocks(ValidatorLockStrategy.ADVISORY, metricsSystem),
+        epochsToKeep,
+        slotsPerEpoch,
+        metricsSystem);
+  }
+
+  public SlashingProtectionPruner(
+      final Jdbi jdbi,
+      final ValidatorsDao validatorsDao,
+      final LowWatermarkDao lowWatermarkDao,
+      final ValidatorLocks validatorLocks,
+      final long epochsToKeep,
+      final long slotsPerEpoch,
+      final MetricsSystem metricsSystem) {
+    checkArgument(epochsToKeep > 0, "Epochs to keep must be positive");
+    checkArgument(slotsPerEpoch > 0, "Slots per epoch must be positive");
+    this.jdbi = jdbi;
+    this.validatorsDao = validatorsDao;
+    this.lowWatermarkDao = lowWatermarkDao;
+    this.validatorLocks = validatorLocks;
+    this.epochsToKeep = epochsToKeep;
+    this.slotsToKeep = Math.multiplyExact(epochsToKeep, slotsPerEpoch);
+    this.prunedAttestationsCounter =
+        metricsSystem.createCounter(
+            ETH2_SLASHING_PROTECTION,
+            "pruned_attestations",
+            "Number of signed attestations removed by pruning");
+    this.prunedBlocksCounter =
+        metricsSystem.createCounter(
+            ETH2_SLASHING_PROTECTION,
+            "pruned_blocks",
+            "Number of signed blocks removed by pruning");
+    metricsSystem.createLongGauge(
+        ETH2_SLASHING_PROTECTION,
+        "signed_attestations_table_size_bytes",
+        "Size of the signed attestations table and its indexes as of the last pruning",
+        () -> signedAttestationsTableSize);
+    metricsSystem.createLongGauge(
+        ETH2_SLASHING_PROTECTION,
+        "signed_blocks_table_size_bytes",
+        "Size of the signed blocks table and its indexes as of the last pruning",
+        () -> signedBlocksTableSize);
+  }
+
+  /** Prunes on a background thread every interval, starting immediately. */
+  public void start(final long intervalHours) {
+    checkArgument(intervalHours > 0, "Pruning interval must be positive");
+    final ScheduledExecutorService executor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("slashing-protection-pruner-%d")
+                .setDaemon(true)
+                .build());
+    executor.scheduleWithFixedDelay(this::pruneInBackground, 0, intervalHours, TimeUnit.HOURS);
+  }
+
+  public void prune() {
+    final List<Integer> validatorIds =
+        jdbi.withHandle(
+            h ->
+                validatorsDao
+                    .findAllValidators(h)
+                    .map(Validator::getId)
+                    .collect(Collectors.toList()));
+    LOG.info(
+        "Pruning slashing protection history older than {} epochs for {} validators",
+        epochsToKeep,
+        validatorIds.size());
+    long prunedAttestations = 0;
+    long prunedBlocks = 0;
+    for (final int validatorId : validatorIds) {
+      prunedAttestations += pruneAttestations(validatorId);
+      prunedBlocks += pruneBlocks(validatorId);
+    }
+    updateTableSizes();
+    LOG.info(
+        "Pruned {} attestations and {} blocks, signed attestations table is {} bytes and signed blocks table is {} bytes",
+        prunedAttestations,
+        prunedBlocks,
+        signedAttestationsTableSize,
+        signedBlocksTableSize);
+  }
+
+  private void pruneInBackground() {
+    try {
+      prune();
+    } catch (final RuntimeException e) {
+      // an exception would cancel all later runs
+      LOG.error("Failed to prune slashing protection database", e);
+    }
+  }
+
+  private long pruneAttestations(final int validatorId) {
+    long total = 0;
+    int pruned;
+    do {
+      pruned =
+          validatorLocks.withAttestationLock(
+              validatorId,
+              () ->
+                  jdbi.inTransaction(
+                      READ_COMMITTED,
+                      h -> {
+                        DbConnection.liftStatementTimeout(h);
+                        lockValidator(h, ATTESTATION_LOCK, validatorId);
+                        return lowWatermarkDao.pruneAttestations(
+                            h, validatorId, epochsToKeep, PRUNE_BATCH_SIZE);
+                      }));
+      prunedAttestationsCounter.inc(pruned);
+      total += pruned;
+    } while (pruned == PRUNE_BATCH_SIZE);
+    return total;
+  }
+
+  private long pruneBlocks(final int validatorId) {
+    long total = 0;
+    int pruned;
+    do {
+      pruned =
+          validatorLocks.withBlockLock(
+              validatorId,
+              () ->
+                  jdbi.inTransaction(
+                      READ_COMMITTED,
+                      h -> {
+                        DbConnection.liftStatementTimeout(h);
+                        lockValidator(h, BLOCK_LOCK, validatorId);
+                        return lowWatermarkDao.pruneBlocks(
+                            h, validatorId, slotsToKeep, PRUNE_BATCH_SIZE);
+                      }));
+      prunedBlocksCounter.inc(pruned);
+      total += pruned;
+    } while (pruned == PRUNE_BATCH_SIZE);
+    return total;
+  }
+
+  private void lockValidator(final Handle handle, final int lockType, final int validatorId) {
+    handle.execute("SELECT lock_validator(?, ?)", lockType, validatorId);
+  }
+
+  private void updateTableSizes() {
+    jdbi.useHandle(
+        h -> {
+          signedAttestationsTableSize = tableSize(h, "signed_attestations");
+          signedBlocksTableSize = tableSize(h, "signed_blocks");
+        });
+  }
+
+  private long tableSize(final Handle handle, final String table) {
+    return handle
+        .createQuery("SELECT pg_total_relation_size(CAST(? AS regclass))")
+        .bind(0, table)
+        .mapTo(Long.class)
+        .one();
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import java.util.Arrays;
+
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * The attestation history of a single validator, held as min-span and max-span arrays over a
+ * sliding window of source epochs together with a target epoch to signing root table.
+ *
+ * <p>For an epoch e in the window, minSpan[e] is the smallest (target - e) of any attestation with
+ * a source greater than e, and maxSpan[e] is the largest (target - e) of any attestation with a
+ * source less than e. A new attestation (s, t) surrounds an existing one if minSpan[s] < t - s, and
+ * is surrounded by one if maxSpan[s] > t - s.
+ *
+ * <p>Epochs are unsigned 64 bit values held in longs. All methods must be called while holding
+ * this object's monitor.
+ */
+class ValidatorAttestationSpans {
+
+  // never a real span as the window is narrower, so spans beyond it are not compared against it
+  private static final char NO_MIN_SPAN = Character.MAX_VALUE;
+  private static final char NO_MAX_SPAN = 0;
+
+  private static final byte NOT_SIGNED = 0;
+  private static final byte SIGNED_WITH_ROOT = 1;
+  private static final byte SIGNED_WITHOUT_ROOT = 2;
+  private static final byte SIGNED_WITH_UNINDEXED_ROOT = 3;
+
+  private static final int ROOT_SIZE = 32;
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final int maxEpochWindow;
+
+  private boolean hasAttestations;
+  private long minSourceEpoch;
+  private long minTargetEpoch;
+
+  private long baseEpoch;
+  private char[] minSpans = new char[0];
+  private char[] maxSpans = new char[0];
+  private byte[] targetStates = new byte[0];
+  private byte[] signingRoots = new byte[0];
+
+  ValidatorAttestationSpans(final int maxEpochWindow) {
+    this.maxEpochWindow = maxEpochWindow;
+  }
+
+  AttestationSpanIndex.Verdict check(
+      final long sourceEpoch, final long targetEpoch, final Bytes signingRoot) {
+    if (!hasAttestations) {
+      return AttestationSpanIndex.Verdict.SAFE;
+    }
+    if (Long.compareUnsigned(targetEpoch, minTargetEpoch) < 0) {
+      // nothing has been signed this early so this cannot be a repeat
+      return AttestationSpanIndex.Verdict.REJECT;
+    }
+    if (Long.compareUnsigned(targetEpoch, baseEpoch) < 0) {
+      return AttestationSpanIndex.Verdict.UNKNOWN;
+    }
+
+    // a repeat of an existing attestation is permitted before any of the other rules apply
+    final long capacity = targetStates.length;
+    final long targetOffset = targetEpoch - baseEpoch;
+    if (targetOffset < capacity) {
+      final AttestationSpanIndex.Verdict existing =
+          checkExistingAttestation((int) targetOffset, signingRoot);
+      if (existing != AttestationSpanIndex.Verdict.SAFE) {
+        return existing;
+      }
+    }
+
+    if (Long.compareUnsigned(sourceEpoch, minSourceEpoch) < 0) {
+      return AttestationSpanIndex.Verdict.REJECT;
+    }
+    if (Long.compareUnsigned(sourceEpoch, baseEpoch) < 0) {
+      return AttestationSpanIndex.Verdict.UNKNOWN;
+    }
+
+    // every recorded source epoch is below the end of the window so nothing can be surrounded
+    final long sourceOffset = sourceEpoch - baseEpoch;
+    if (Long.compareUnsigned(sourceOffset, capacity) >= 0) {
+      return AttestationSpanIndex.Verdict.SAFE;
+    }
+    final long span = targetEpoch - sourceEpoch;
+    final int index = (int) sourceOffset;
+    if (Long.compareUnsigned(maxSpans[index], span) > 0
+        || (minSpans[index] != NO_MIN_SPAN && Long.compareUnsigned(span, minSpans[index]) > 0)) {
+      return AttestationSpanIndex.Verdict.REJECT;
+    }
+    return AttestationSpanIndex.Verdict.SAFE;
+  }
+
+  void record(final long sourceEpoch, final long targetEpoch, final Bytes signingRoot) {
+    if (!hasAttestations) {
+      hasAttestations = true;
+      minSourceEpoch = sourceEpoch;
+      minTargetEpoch = targetEpoch;
+      if (targetStates.length == 0) {
+        initialiseWindow(sourceEpoch, targetEpoch);
+      }
+    } else {
+      if (Long.compareUnsigned(sourceEpoch, minSourceEpoch) < 0) {
+        minSourceEpoch = sourceEpoch;
+      }
+      if (Long.compareUnsigned(targetEpoch, minTargetEpoch) < 0) {
+        minTargetEpoch = targetEpoch;
+      }
+    }
+    ensureWindowCovers(targetEpoch);
+    if (Long.compareUnsigned(targetEpoch, baseEpoch) < 0) {
+      // older than anything the window can answer for, checks will defer to the database
+      return;
+    }
+
+    recordSigningRoot((int) (targetEpoch - baseEpoch), signingRoot);
+    updateMinSpans(sourceEpoch, targetEpoch);
+    updateMaxSpans(sourceEpoch, targetEpoch);
+  }
+
+  /**
+   * Positions the window before any history is recorded, so that it starts at the lowest source
+   * epoch but still reaches the highest target epoch.
+   */
+  void initialiseWindow(final long lowestSourceEpoch, final long highestTargetEpoch) {
+    final long windowStart = highestTargetEpoch - maxEpochWindow + 1;
+    baseEpoch =
+        Long.compareUnsigned(highestTargetEpoch, maxEpochWindow) >= 0
+                && Long.compareUnsigned(windowStart, lowestSourceEpoch) > 0
+            ? windowStart
+            : lowestSourceEpoch;
+    resize(requiredCapacity(highestTargetEpoch - baseEpoch + 1));
+  }
+
+  private AttestationSpanIndex.Verdict checkExistingAttestation(
+      final int targetOffset, final Bytes signingRoot) {
+    switch (targetStates[targetOffset]) {
+      case NOT_SIGNED:
+        return AttestationSpanIndex.Verdict.SAFE;
+      case SIGNED_WITH_ROOT:
+        return signingRoot.size() == ROOT_SIZE
+                && Arrays.equals(
+                    signingRoots,
+                    targetOffset * ROOT_SIZE,
+                    (targetOffset + 1) * ROOT_SIZE,
+                    signingRoot.toArrayUnsafe(),
+                    0,
+                    ROOT_SIZE)
+            ? AttestationSpanIndex.Verdict.REPEAT
+            : AttestationSpanIndex.Verdict.REJECT;
+      case SIGNED_WITHOUT_ROOT:
+        return AttestationSpanIndex.Verdict.REJECT;
+      default:
+        return AttestationSpanIndex.Verdict.UNKNOWN;
+    }
+  }
+
+  private void recordSigningRoot(final int targetOffset, final Bytes signingRoot) {
+    if (signingRoot == null) {
+      targetStates[targetOffset] = SIGNED_WITHOUT_ROOT;
+    } else if (signingRoot.size() == ROOT_SIZE) {
+      targetStates[targetOffset] = SIGNED_WITH_ROOT;
+      System.arraycopy(
+          signingRoot.toArrayUnsafe(), 0, signingRoots, targetOffset * ROOT_SIZE, ROOT_SIZE);
+    } else {
+      targetStates[targetOffset] = SIGNED_WITH_UNINDEXED_ROOT;
+    }
+  }
+
+  private void updateMinSpans(final long sourceEpoch, final long targetEpoch) {
+    final long sourceOffset = Math.min(sourceEpoch - baseEpoch, minSpans.length);
+    for (long offset = sourceOffset - 1; offset >= 0; offset--) {
+      final long span = targetEpoch - baseEpoch - offset;
+      if (minSpans[(int) offset] <= span) {
+        // an attestation at least as tight already covers this and every lower epoch
+        break;
+      }
+      minSpans[(int) offset] = (char) span;
+    }
+  }
+
+  private void updateMaxSpans(final long sourceEpoch, final long targetEpoch) {
+    final long targetOffset = targetEpoch - baseEpoch;
+    final long firstOffset =
+        Long.compareUnsigned(sourceEpoch, baseEpoch) < 0 ? 0 : sourceEpoch - baseEpoch + 1;
+    for (long offset = firstOffset; offset < targetOffset; offset++) {
+      final long span = targetOffset - offset;
+      if (maxSpans[(int) offset] >= span) {
+        // an attestation at least as wide already covers this and every higher epoch
+        break;
+      }
+      maxSpans[(int) offset] = (char) span;
+    }
+  }
+
+  private void ensureWindowCovers(final long targetEpoch) {
+    if (Long.compareUnsigned(targetEpoch, baseEpoch) < 0) {
+      return;
+    }
+    final long required = targetEpoch - baseEpoch + 1;
+    if (required <= targetStates.length) {
+      return;
+    }
+    if (required <= maxEpochWindow) {
+      resize(requiredCapacity(required));
+    } else {
+      slideWindow(targetEpoch - maxEpochWindow + 1);
+    }
+  }
+
+  private int requiredCapacity(final long required) {
+    int capacity = Math.max(INITIAL_CAPACITY, targetStates.length);
+    while (capacity < required) {
+      capacity *= 2;
+    }
+    return Math.min(capacity, maxEpochWindow);
+  }
+
+  private void resize(final int capacity) {
+    final int previous = targetStates.length;
+    minSpans = Arrays.copyOf(minSpans, capacity);
+    maxSpans = Arrays.copyOf(maxSpans, capacity);
+    targetStates = Arrays.copyOf(targetStates, capacity);
+    signingRoots = Arrays.copyOf(signingRoots, capacity * ROOT_SIZE);
+    Arrays.fill(minSpans, previous, capacity, NO_MIN_SPAN);
+    Arrays.fill(maxSpans, previous, capacity, NO_MAX_SPAN);
+  }
+
+  private void slideWindow(final long newBaseEpoch) {
+    final int shift = (int) Math.min(newBaseEpoch - baseEpoch, targetStates.length);
+    final int retained = targetStates.length - shift;
+    final char[] newMinSpans = new char[maxEpochWindow];
+    final char[] newMaxSpans = new char[maxEpochWindow];
+    final byte[] newTargetStates = new byte[maxEpochWindow];
+    final byte[] newSigningRoots = new byte[maxEpochWindow * ROOT_SIZE];
+    System.arraycopy(minSpans, shift, newMinSpans, 0, retained);
+    System.arraycopy(maxSpans, shift, newMaxSpans, 0, retained);
+    System.arraycopy(targetStates, shift, newTargetStates, 0, retained);
+    System.arraycopy(
+        signingRoots, shift * ROOT_SIZE, newSigningRoots, 0, retained * ROOT_SIZE);
+    Arrays.fill(newMinSpans, retained, maxEpochWindow, NO_MIN_SPAN);
+    Arrays.fill(newMaxSpans, retained, maxEpochWindow, NO_MAX_SPAN);
+    minSpans = newMinSpans;
+    maxSpans = newMaxSpans;
+    targetStates = newTargetStates;
+    signingRoots = newSigningRoots;
+    baseEpoch = newBaseEpoch;
+  }
+}
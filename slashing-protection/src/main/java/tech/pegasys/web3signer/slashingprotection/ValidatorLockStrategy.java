@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+/** How the slashing checks for each validator are serialised against each other. */
+public enum ValidatorLockStrategy {
+  /** A transaction level advisory lock per validator, taken by the database. */
+  ADVISORY("advisory"),
+  /** A lock on the validator's row, taken by the database. */
+  ROW("row"),
+  /**
+   * A lock held by this process, avoiding any database locking. Only safe when this is the only
+   * process writing to the slashing protection database.
+   */
+  IN_PROCESS("in_process");
+
+  private final String databaseSetting;
+
+  ValidatorLockStrategy(final String databaseSetting) {
+    this.databaseSetting = databaseSetting;
+  }
+
+  /** The value of the web3signer.validator_lock setting read by the lock_validator function. */
+  public String getDatabaseSetting() {
+    return databaseSetting;
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static tech.pegasys.web3signer.slashingprotection.SlashingMetricCategory.ETH2_SLASHING_PROTECTION;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+
+/**
+ * Reports the number of slashing checks waiting for a validator lock taken by the database, for
+ * the advisory and row lock strategies. The waiters are counted from pg_locks in the background on
+ * a connection of its own, so that reading the gauge never waits for the database and a starved
+ * connection pool, when the gauge matters most, does not stop it being sampled.
+ */
+public class ValidatorLockWaiterSampler {
+
+  private static final Logger LOG = LogManager.getLogger();
+  private static final long SAMPLE_INTERVAL_SECONDS = 5;
+
+  private final Jdbi jdbi;
+  private final String waiterCondition;
+  private final AtomicLong waiters = new AtomicLong();
+  private Handle handle;
+
+  /**
+   * @param jdbi a connection that is not shared with the slashing checks, such as one without a
+   *     pool, as the sampler holds a handle open for as long as it runs.
+   */
+  public ValidatorLockWaiterSampler(
+      final Jdbi jdbi, final ValidatorLockStrategy strategy, final MetricsSystem metricsSystem) {
+    checkArgument(
+        strategy != ValidatorLockStrategy.IN_PROCESS,
+        "In-process validator lock waiters are reported by the validator locks");
+    this.jdbi = jdbi;
+    this.waiterCondition =
+        strategy == ValidatorLockStrategy.ROW
+            // a row lock waiter either waits on the locked tuple or on the transaction holding it
+            ? "(relation = CAST('validators' AS regclass) OR locktype = 'transactionid')"
+            // two key advisory locks are reported with objsubid 2 and the lock type as classid
+            : "locktype = 'advisory' AND objsubid = 2 AND classid IN (0, 1)";
+    metricsSystem.createLongGauge(
+        ETH2_SLASHING_PROTECTION,
+        "validator_lock_waiters",
+        "Number of slashing checks waiting for a validator lock when last sampled",
+        waiters::get);
+  }
+
+  public void start() {
+    Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("slashing-protection-lock-sampler-%d")
+                .setDaemon(true)
+                .build())
+        .scheduleWithFixedDelay(this::sample, 0, SAMPLE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+  }
+
+  long sample() {
+    try {
+      if (handle == null) {
+        handle = jdbi.open();
+      }
+      waiters.set(
+          handle
+              .createQuery("SELECT COUNT(*) FROM pg_locks WHERE NOT granted AND " + waiterCondition)
+              .mapTo(Long.class)
+              .one());
+    } catch (final RuntimeException e) {
+      // an exception would cancel all later samples, the connection is opened again next time
+      LOG.debug("Unable to sample validator lock waiters", e);
+      closeHandle();
+    }
+    return waiters.get();
+  }
+
+  private void closeHandle() {
+    if (handle != null) {
+      try {
+        handle.close();
+      } catch (final RuntimeException e) {
+        LOG.debug("Unable to close validator lock sampling connection", e);
+      }
+      handle = null;
+    }
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static tech.pegasys.web3signer.slashingprotection.SlashingMetricCategory.ETH2_SLASHING_PROTECTION;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer.TimingContext;
+
+/**
+ * Serialises the slashing checks for each validator within this process when the in-process lock
+ * strategy is used. Validators share a fixed array of locks indexed by validator id, with separate
+ * locks for blocks and attestations as with the advisory lock keys. With the database strategies
+ * the lock is taken by the check_and_insert functions and actions run without a process lock, and
+ * waits for it are reported by a {@link ValidatorLockWaiterSampler}. The strategy in use is
+ * reported as the label of the validator_lock_strategy metric, so that the waiters of each strategy
+ * can be told apart.
+ */
+public class ValidatorLocks {
+
+  private static final int STRIPE_COUNT = 1024;
+
+  private final ValidatorLockStrategy strategy;
+  private final ReentrantLock[] blockLocks = createLocks();
+  private final ReentrantLock[] attestationLocks = createLocks();
+  private final Counter contendedCounter;
+  private final OperationTimer waitTimer;
+
+  public ValidatorLocks(final ValidatorLockStrategy strategy, final MetricsSystem metricsSystem) {
+    this.strategy = strategy;
+    metricsSystem
+        .createLabelledCounter(
+            ETH2_SLASHING_PROTECTION,
+            "validator_lock_strategy",
+            "Validator lock strategy used by the slashing checks, counted once",
+            "strategy")
+        .labels(strategy.getDatabaseSetting())
+        .inc();
+    this.contendedCounter =
+        metricsSystem.createCounter(
+            ETH2_SLASHING_PROTECTION,
+            "validator_lock_contended",
+            "Number of in-process validator lock acquisitions that had to wait for another check");
+    this.waitTimer =
+        metricsSystem.createTimer(
+            ETH2_SLASHING_PROTECTION,
+            "validator_lock_wait_time",
+            "Time spent waiting for a contended in-process validator lock");
+    if (strategy == ValidatorLockStrategy.IN_PROCESS) {
+      metricsSystem.createLongGauge(
+          ETH2_SLASHING_PROTECTION,
+          "validator_lock_waiters",
+          "Number of slashing checks currently waiting for an in-process validator lock",
+          () -> queueLength(blockLocks) + queueLength(attestationLocks));
+    }
+  }
+
+  public ValidatorLockStrategy getStrategy() {
+    return strategy;
+  }
+
+  public <T> T withBlockLock(final int validatorId, final Supplier<T> action) {
+    return withBlockLock(validatorId, CheckDeadline.NONE, action);
+  }
+
+  public <T> T withAttestationLock(final int validatorId, final Supplier<T> action) {
+    return withAttestationLock(validatorId, CheckDeadline.NONE, action);
+  }
+
+  <T> T withBlockLock(
+      final int validatorId, final CheckDeadline deadline, final Supplier<T> action) {
+    return withLock(blockLocks, validatorId, deadline, action);
+  }
+
+  <T> T withAttestationLock(
+      final int validatorId, final CheckDeadline deadline, final Supplier<T> action) {
+    return withLock(attestationLocks, validatorId, deadline, action);
+  }
+
+  /**
+   * Runs the action holding the block locks and attestation locks of all of the given validators.
+   * The locks are taken in stripe order with blocks before attestations, so that batches sharing
+   * validators cannot deadlock with each other or with single checks.
+   */
+  <T> T withLocks(
+      final Collection<Integer> blockValidatorIds,
+      final Collection<Integer> attestationValidatorIds,
+      final CheckDeadline deadline,
+      final Supplier<T> action) {
+    if (strategy != ValidatorLockStrategy.IN_PROCESS) {
+      return action.get();
+    }
+    final List<ReentrantLock> locks = new ArrayList<>();
+    stripes(blockValidatorIds).forEach(stripe -> locks.add(blockLocks[stripe]));
+    stripes(attestationValidatorIds).forEach(stripe -> locks.add(attestationLocks[stripe]));
+    int held = 0;
+    try {
+      for (final ReentrantLock lock : locks) {
+        acquire(lock, deadline);
+        held++;
+      }
+      return action.get();
+    } finally {
+      for (int i = held - 1; i >= 0; i--) {
+        locks.get(i).unlock();
+      }
+    }
+  }
+
+  private <T> T withLock(
+      final ReentrantLock[] locks,
+      final int validatorId,
+      final CheckDeadline deadline,
+      final Supplier<T> action) {
+    if (strategy != ValidatorLockStrategy.IN_PROCESS) {
+      return action.get();
+    }
+    final ReentrantLock lock = locks[validatorId & (STRIPE_COUNT - 1)];
+    acquire(lock, deadline);
+    try {
+      return action.get();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void acquire(final ReentrantLock lock, final CheckDeadline deadline) {
+    if (!lock.tryLock()) {
+      contendedCounter.inc();
+      final TimingContext waitTime = waitTimer.startTimer();
+      try {
+        deadline.lock(lock);
+      } finally {
+        waitTime.stopTimer();
+      }
+    }
+  }
+
+  private static IntStream stripes(final Collection<Integer> validatorIds) {
+    return validatorIds.stream()
+        .mapToInt(validatorId -> validatorId & (STRIPE_COUNT - 1))
+        .distinct()
+        .sorted();
+  }
+
+  private static long queueLength(final ReentrantLock[] locks) {
+    return Arrays.stream(locks).mapToLong(ReentrantLock::getQueueLength).sum();
+  }
+
+  private static ReentrantLock[] createLocks() {
+    final ReentrantLock[] locks = new ReentrantLock[STRIPE_COUNT];
+    Arrays.setAll(locks, i -> new ReentrantLock());
+    return locks;
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * Maps validator public keys to their database ids using an open addressing table with linear
+ * probing. Keys are copied into a single flat byte array of fixed size slots and ids are held as
+ * primitive ints, avoiding a key wrapper and boxed id per validator.
+ *
+ * <p>Lookups are lock-free and do not allocate. A slot's key is written before its id is published
+ * with a volatile write, so a reader that sees an id also sees the key. Registration is serialised
+ * and the table is replaced by a larger copy when it becomes half full, so a lookup running during
+ * a resize sees the previous table, which is never modified again.
+ */
+public class ValidatorRegistry {
+
+  public static final int NOT_REGISTERED = -1;
+  static final int MAX_KEY_SIZE = 48;
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private volatile Table table = new Table(INITIAL_CAPACITY);
+
+  /** Returns the id registered for the public key, or {@link #NOT_REGISTERED}. */
+  public int get(final Bytes publicKey) {
+    if (publicKey.size() > MAX_KEY_SIZE) {
+      return NOT_REGISTERED;
+    }
+    return table.get(publicKey);
+  }
+
+  /** Registers the public key with the id, replacing any id already registered for it. */
+  public synchronized void put(final Bytes publicKey, final int validatorId) {
+    checkArgument(
+        publicKey.size() <= MAX_KEY_SIZE,
+        "Public key must be at most %s bytes but was %s",
+        MAX_KEY_SIZE,
+        publicKey.size());
+    checkArgument(validatorId >= 0, "Validator id must not be negative");
+    Table current = table;
+    if (current.get(publicKey) == NOT_REGISTERED && (current.size + 1) * 2 > current.capacity) {
+      current = current.resize(current.capacity * 2);
+      table = current;
+    }
+    current.put(publicKey, validatorId);
+  }
+
+  public int size() {
+    return table.size;
+  }
+
+  /** Returns a copy of every registered id. */
+  public Set<Integer> validatorIds() {
+    final Table current = table;
+    final Set<Integer> validatorIds = new HashSet<>(current.size);
+    for (int slot = 0; slot < current.capacity; slot++) {
+      final int validatorId = current.ids.get(slot);
+      if (validatorId != NOT_REGISTERED) {
+        validatorIds.add(validatorId);
+      }
+    }
+    return validatorIds;
+  }
+
+  private static class Table {
+    private final int capacity;
+    private final byte[] keys;
+    private final byte[] keySizes;
+    private final AtomicIntegerArray ids;
+    // only written while holding the registry's monitor
+    private volatile int size;
+
+    private Table(final int capacity) {
+      this.capacity = capacity;
+      this.keys = new byte[capacity * MAX_KEY_SIZE];
+      this.keySizes = new byte[capacity];
+      this.ids = new AtomicIntegerArray(capacity);
+      for (int slot = 0; slot < capacity; slot++) {
+        ids.lazySet(slot, NOT_REGISTERED);
+      }
+    }
+
+    private int get(final Bytes key) {
+      final int mask = capacity - 1;
+      for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+        final int validatorId = ids.get(slot);
+        if (validatorId == NOT_REGISTERED) {
+          return NOT_REGISTERED;
+        }
+        if (keyEquals(slot, key)) {
+          return validatorId;
+        }
+      }
+    }
+
+    private void put(final Bytes key, final int validatorId) {
+      final int mask = capacity - 1;
+      for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+        final int existingId = ids.get(slot);
+        if (existingId == NOT_REGISTERED) {
+          writeKey(slot, key);
+          ids.set(slot, validatorId);
+          size++;
+          return;
+        }
+        if (keyEquals(slot, key)) {
+          ids.set(slot, validatorId);
+          return;
+        }
+      }
+    }
+
+    private Table resize(final int newCapacity) {
+      final Table resized = new Table(newCapacity);
+      for (int slot = 0; slot < capacity; slot++) {
+        final int validatorId = ids.get(slot);
+        if (validatorId != NOT_REGISTERED) {
+          resized.put(Bytes.wrap(keys, slot * MAX_KEY_SIZE, keySizes[slot]), validatorId);
+        }
+      }
+      return resized;
+    }
+
+    private void writeKey(final int slot, final Bytes key) {
+      final int offset = slot * MAX_KEY_SIZE;
+      for (int i = 0; i < key.size(); i++) {
+        keys[offset + i] = key.get(i);
+      }
+      keySizes[slot] = (byte) key.size();
+    }
+
+    private boolean keyEquals(final int slot, final Bytes key) {
+      if (keySizes[slot] != key.size()) {
+        return false;
+      }
+      final int offset = slot * MAX_KEY_SIZE;
+      for (int i = 0; i < key.size(); i++) {
+        if (keys[offset + i] != key.get(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static int hash(final Bytes key) {
+      // public keys are uniformly distributed but short test keys are not, so mix every byte
+      int hash = 0x811c9dc5;
+      for (int i = 0; i < key.size(); i++) {
+        hash = (hash ^ (key.get(i) & 0xff)) * 0x01000193;
+      }
+      return hash ^ (hash >>> 16);
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import tech.pegasys.web3signer.slashingprotection.dao.ValidatorWatermark;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+
+/**
+ * Caches the lowest and highest signed epochs and slots of each validator so that requests below
+ * the low watermark can be rejected without a database round trip. The cache must only be updated
+ * once the transaction recording a signed artifact has committed; it may lag the database but never
+ * runs ahead of it, so a request that is not rejected here must still be checked against the
+ * database.
+ */
+public class WatermarkCache {
+
+  private final Map<Integer, Watermark> watermarks = new ConcurrentHashMap<>();
+
+  public void load(final ValidatorWatermark validatorWatermark) {
+    final Watermark watermark = watermarkFor(validatorWatermark.getValidatorId());
+    if (validatorWatermark.getMinSourceEpoch() != null
+        && validatorWatermark.getMinTargetEpoch() != null
+        && validatorWatermark.getMaxTargetEpoch() != null) {
+      watermark.attestationSigned(
+          toLong(validatorWatermark.getMinSourceEpoch()),
+          toLong(validatorWatermark.getMinTargetEpoch()));
+      watermark.attestationSigned(
+          toLong(validatorWatermark.getMinSourceEpoch()),
+          toLong(validatorWatermark.getMaxTargetEpoch()));
+    }
+    if (validatorWatermark.getMinSlot() != null && validatorWatermark.getMaxSlot() != null) {
+      watermark.blockSigned(toLong(validatorWatermark.getMinSlot()));
+      watermark.blockSigned(toLong(validatorWatermark.getMaxSlot()));
+    }
+  }
+
+  public boolean isAttestationBelowWatermark(
+      final int validatorId, final UInt64 sourceEpoch, final UInt64 targetEpoch) {
+    final Watermark watermark = watermarks.get(validatorId);
+    return watermark != null
+        && watermark.isAttestationBelowWatermark(toLong(sourceEpoch), toLong(targetEpoch));
+  }
+
+  public boolean isBlockBelowWatermark(final int validatorId, final UInt64 slot) {
+    final Watermark watermark = watermarks.get(validatorId);
+    return watermark != null && watermark.isBlockBelowWatermark(toLong(slot));
+  }
+
+  public void attestationSigned(
+      final int validatorId, final UInt64 sourceEpoch, final UInt64 targetEpoch) {
+    watermarkFor(validatorId).attestationSigned(toLong(sourceEpoch), toLong(targetEpoch));
+  }
+
+  public void blockSigned(final int validatorId, final UInt64 slot) {
+    watermarkFor(validatorId).blockSigned(toLong(slot));
+  }
+
+  public Optional<UInt64> maxTargetEpoch(final int validatorId) {
+    final Watermark watermark = watermarks.get(validatorId);
+    return watermark == null ? Optional.empty() : watermark.maxTargetEpoch();
+  }
+
+  public Optional<UInt64> maxSlot(final int validatorId) {
+    final Watermark watermark = watermarks.get(validatorId);
+    return watermark == null ? Optional.empty() : watermark.maxSlot();
+  }
+
+  private Watermark watermarkFor(final int validatorId) {
+    return watermarks.computeIfAbsent(validatorId, id -> new Watermark());
+  }
+
+  private static long toLong(final UInt64 value) {
+    return value.toBytes().toLong();
+  }
+
+  private static UInt64 fromLong(final long value) {
+    return UInt64.fromBytes(Bytes.ofUnsignedLong(value));
+  }
+
+  /** Epochs and slots are unsigned 64 bit values held in longs and compared as unsigned. */
+  private static class Watermark {
+    private boolean hasAttestations;
+    private long minSourceEpoch;
+    private long minTargetEpoch;
+    private long maxTargetEpoch;
+
+    private boolean hasBlocks;
+    private long minSlot;
+    private long maxSlot;
+
+    synchronized boolean isAttestationBelowWatermark(
+        final long sourceEpoch, final long targetEpoch) {
+      return hasAttestations
+          && (Long.compareUnsigned(sourceEpoch, minSourceEpoch) < 0
+              || Long.compareUnsigned(targetEpoch, minTargetEpoch) < 0);
+    }
+
+    synchronized boolean isBlockBelowWatermark(final long slot) {
+      return hasBlocks && Long.compareUnsigned(slot, minSlot) < 0;
+    }
+
+    synchronized void attestationSigned(final long sourceEpoch, final long targetEpoch) {
+      if (!hasAttestations) {
+        hasAttestations = true;
+        minSourceEpoch = sourceEpoch;
+        minTargetEpoch = targetEpoch;
+        maxTargetEpoch = targetEpoch;
+        return;
+      }
+      if (Long.compareUnsigned(sourceEpoch, minSourceEpoch) < 0) {
+        minSourceEpoch = sourceEpoch;
+      }
+      if (Long.compareUnsigned(targetEpoch, minTargetEpoch) < 0) {
+        minTargetEpoch = targetEpoch;
+      }
+      if (Long.compareUnsigned(targetEpoch, maxTargetEpoch) > 0) {
+        maxTargetEpoch = targetEpoch;
+      }
+    }
+
+    synchronized void blockSigned(final long slot) {
+      if (!hasBlocks) {
+        hasBlocks = true;
+        minSlot = slot;
+        maxSlot = slot;
+        return;
+      }
+      if (Long.compareUnsigned(slot, minSlot) < 0) {
+        minSlot = slot;
+      }
+      if (Long.compareUnsigned(slot, maxSlot) > 0) {
+        maxSlot = slot;
+      }
+    }
+
+    synchronized Optional<UInt64> maxTargetEpoch() {
+      return hasAttestations ? Optional.of(fromLong(maxTargetEpoch)) : Optional.empty();
+    }
+
+    synchronized Optional<UInt64> maxSlot() {
+      return hasBlocks ? Optional.of(fromLong(maxSlot)) : Optional.empty();
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import com.google.common.base.MoreObjects;
+import org.apache.tuweni.units.bigints.UInt64;
+
+/**
+ * The highest slot, source epoch and target epoch of a validator's pruned history. Any of them are
+ * null until the corresponding history has been pruned.
+ */
+public class LowWatermark {
+
+  private int validatorId;
+  private UInt64 slot;
+  private UInt64 sourceEpoch;
+  private UInt64 targetEpoch;
+
+  // needed for JDBI bean mapping
+  public LowWatermark() {}
+
+  public LowWatermark(
+      final int validatorId,
+      final UInt64 slot,
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch) {
+    this.validatorId = validatorId;
+    this.slot = slot;
+    this.sourceEpoch = sourceEpoch;
+    this.targetEpoch = targetEpoch;
+  }
+
+  public int getValidatorId() {
+    return validatorId;
+  }
+
+  public void setValidatorId(final int validatorId) {
+    this.validatorId = validatorId;
+  }
+
+  public UInt64 getSlot() {
+    return slot;
+  }
+
+  public void setSlot(final UInt64 slot) {
+    this.slot = slot;
+  }
+
+  public UInt64 getSourceEpoch() {
+    return sourceEpoch;
+  }
+
+  public void setSourceEpoch(final UInt64 sourceEpoch) {
+    this.sourceEpoch = sourceEpoch;
+  }
+
+  public UInt64 getTargetEpoch() {
+    return targetEpoch;
+  }
+
+  public void setTargetEpoch(final UInt64 targetEpoch) {
+    this.targetEpoch = targetEpoch;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("validatorId", validatorId)
+        .add("slot", slot)
+        .add("sourceEpoch", sourceEpoch)
+        .add("targetEpoch", targetEpoch)
+        .toString();
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.tuweni.units.bigints.UInt64;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.mapper.RowMapper;
+
+public class LowWatermarkDao {
+
+  private static final RowMapper<LowWatermark> LOW_WATERMARK_MAPPER = new LowWatermarkRowMapper();
+
+  public Optional<LowWatermark> findLowWatermark(final Handle handle, final int validatorId) {
+    return handle
+        .createQuery(
+            "SELECT validator_id, slot, source_epoch, target_epoch FROM low_watermarks WHERE validator_id = ?")
+        .bind(0, validatorId)
+        .map(LOW_WATERMARK_MAPPER)
+        .findFirst();
+  }
+
+  public List<LowWatermark> findAllLowWatermarks(final Handle handle) {
+    return handle
+        .createQuery("SELECT validator_id, slot, source_epoch, target_epoch FROM low_watermarks")
+        .map(LOW_WATERMARK_MAPPER)
+        .list();
+  }
+
+  /**
+   * Deletes up to limit of the validator's attestations with a target epoch more than epochsToKeep
+   * below its highest target epoch, oldest first, and raises its low watermark to cover them. The
+   * highest target epoch is raised to at least epochsToKeep before subtracting, as the encoded
+   * column value would otherwise underflow.
+   *
+   * @return the number of attestations deleted
+   */
+  public int pruneAttestations(
+      final Handle handle, final int validatorId, final long epochsToKeep, final int limit) {
+    return handle
+        .createQuery(
+            "WITH pruned AS ("
+                + "DELETE FROM signed_attestations WHERE ctid IN ("
+                + "SELECT ctid FROM signed_attestations WHERE validator_id = :validator_id "
+                + "AND target_epoch < (SELECT GREATEST(MAX(target_epoch), :epochs_to_keep_epoch) "
+                + "- :epochs_to_keep FROM signed_attestations WHERE validator_id = :validator_id) "
+                + "ORDER BY target_epoch LIMIT :limit) "
+                + "RETURNING source_epoch, target_epoch), "
+                + "watermark AS ("
+                + "INSERT INTO low_watermarks (validator_id, source_epoch, target_epoch) "
+                + "SELECT :validator_id, MAX(source_epoch), MAX(target_epoch) FROM pruned "
+                + "HAVING COUNT(*) > 0 "
+                + "ON CONFLICT (validator_id) DO UPDATE SET "
+                + "source_epoch = GREATEST(low_watermarks.source_epoch, EXCLUDED.source_epoch), "
+                + "target_epoch = GREATEST(low_watermarks.target_epoch, EXCLUDED.target_epoch)) "
+                + "SELECT COUNT(*) FROM pruned")
+        .bind("validator_id", validatorId)
+        .bind("epochs_to_keep", epochsToKeep)
+        .bind("epochs_to_keep_epoch", UInt64.valueOf(epochsToKeep))
+        .bind("limit", limit)
+        .mapTo(Integer.class)
+        .one();
+  }
+
+  /**
+   * Deletes up to limit of the validator's blocks with a slot more than slotsToKeep below its
+   * highest slot, oldest first, and raises its low watermark to cover them. The highest slot is
+   * raised to at least slotsToKeep before subtracting, as the encoded column value would otherwise
+   * underflow.
+   *
+   * @return the number of blocks deleted
+   */
+  public int pruneBlocks(
+      final Handle handle, final int validatorId, final long slotsToKeep, final int limit) {
+    return handle
+        .createQuery(
+            "WITH pruned AS ("
+                + "DELETE FROM signed_blocks WHERE ctid IN ("
+                + "SELECT ctid FROM signed_blocks WHERE validator_id = :validator_id "
+                + "AND slot < (SELECT GREATEST(MAX(slot), :slots_to_keep_slot) - :slots_to_keep "
+                + "FROM signed_blocks WHERE validator_id = :validator_id) "
+                + "ORDER BY slot LIMIT :limit) "
+                + "RETURNING slot), "
+                + "watermark AS ("
+                + "INSERT INTO low_watermarks (validator_id, slot) "
+                + "SELECT :validator_id, MAX(slot) FROM pruned "
+                + "HAVING COUNT(*) > 0 "
+                + "ON CONFLICT (validator_id) DO UPDATE SET "
+                + "slot = GREATEST(low_watermarks.slot, EXCLUDED.slot)) "
+                + "SELECT COUNT(*) FROM pruned")
+        .bind("validator_id", validatorId)
+        .bind("slots_to_keep", slotsToKeep)
+        .bind("slots_to_keep_slot", UInt64.valueOf(slotsToKeep))
+        .bind("limit", limit)
+        .mapTo(Integer.class)
+        .one();
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import java.util.Optional;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.jdbi.v3.core.Handle;
+
+public class MetadataDao {
+
+  public Optional<Bytes> findGenesisValidatorsRoot(final Handle handle) {
+    return handle
+        .createQuery("SELECT genesis_validators_root FROM metadata")
+        .mapTo(Bytes.class)
+        .findFirst();
+  }
+
+  /**
+   * Records the genesis validators root unless one is already recorded, returning the recorded
+   * root, which differs from the given root when another was recorded first.
+   */
+  public Bytes findOrInsertGenesisValidatorsRoot(
+      final Handle handle, final Bytes genesisValidatorsRoot) {
+    handle
+        .createUpdate(
+            "INSERT INTO metadata (genesis_validators_root) VALUES (?) ON CONFLICT DO NOTHING")
+        .bind(0, genesisValidatorsRoot)
+        .execute();
+    return findGenesisValidatorsRoot(handle).orElseThrow();
+  }
+}
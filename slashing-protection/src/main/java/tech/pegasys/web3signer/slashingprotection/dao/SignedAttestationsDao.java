@@ -12,63 +12,27 @@
  */
 package tech.pegasys.web3signer.slashingprotection.dao;
 
+import static tech.pegasys.web3signer.slashingprotection.dao.SqlArrays.sqlArray;
+import static tech.pegasys.web3signer.slashingprotection.dao.UInt64Encoding.encode;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
 
+import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.units.bigints.UInt64;
 import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.SqlStatement;
 
 public class SignedAttestationsDao {
 
-  public Optional<SignedAttestation> findExistingAttestation(
-      final Handle handle, final int validatorId, final UInt64 targetEpoch) {
-    return handle
-        .createQuery(
-            "SELECT validator_id, source_epoch, target_epoch, signing_root "
-                + "FROM signed_attestations WHERE validator_id = ? AND target_epoch = ?")
-        .bind(0, validatorId)
-        .bind(1, targetEpoch)
-        .mapToBean(SignedAttestation.class)
-        .findFirst();
-  }
-
-  public Optional<SignedAttestation> findSurroundingAttestation(
-      final Handle handle,
-      final int validatorId,
-      final UInt64 sourceEpoch,
-      final UInt64 targetEpoch) {
-    return handle
-        .createQuery(
-            "SELECT validator_id, source_epoch, target_epoch, signing_root "
-                + "FROM signed_attestations "
-                + "WHERE validator_id = ? AND source_epoch < ? AND target_epoch > ? "
-                + "ORDER BY target_epoch DESC "
-                + "LIMIT 1")
-        .bind(0, validatorId)
-        .bind(1, sourceEpoch)
-        .bind(2, targetEpoch)
-        .mapToBean(SignedAttestation.class)
-        .findFirst();
-  }
-
-  public Optional<SignedAttestation> findSurroundedAttestation(
-      final Handle handle,
-      final int validatorId,
-      final UInt64 sourceEpoch,
-      final UInt64 targetEpoch) {
-    return handle
-        .createQuery(
-            "SELECT validator_id, source_epoch, target_epoch, signing_root "
-                + "FROM signed_attestations "
-                + "WHERE validator_id = ? AND source_epoch > ? AND target_epoch < ? "
-                + "ORDER BY target_epoch DESC "
-                + "LIMIT 1")
-        .bind(0, validatorId)
-        .bind(1, sourceEpoch)
-        .bind(2, targetEpoch)
-        .mapToBean(SignedAttestation.class)
-        .findFirst();
-  }
+  private static final RowMapper<SignedAttestation> ATTESTATION_MAPPER =
+      new SignedAttestationRowMapper();
+  private static final RowMapper<SlashingCheckResult> CHECK_RESULT_MAPPER =
+      new SlashingCheckResultRowMapper();
 
   public void insertAttestation(final Handle handle, final SignedAttestation signedAttestation) {
     handle
@@ -81,13 +45,111 @@ public class SignedAttestationsDao {
         .execute();
   }
 
+  public SlashingCheckResult checkAndInsertAttestation(
+      final Handle handle, final SignedAttestation signedAttestation) {
+    return handle
+        .createQuery("SELECT check_and_insert_attestation(?, ?, ?, ?)")
+        .bind(0, signedAttestation.getValidatorId())
+        .bind(1, signedAttestation.getSigningRoot())
+        .bind(2, signedAttestation.getSourceEpoch())
+        .bind(3, signedAttestation.getTargetEpoch())
+        .map(CHECK_RESULT_MAPPER)
+        .one();
+  }
+
+  /**
+   * Checks and conditionally inserts each of the attestations in a single statement, returning the
+   * results in the same order as the attestations.
+   */
+  public List<SlashingCheckResult> checkAndInsertAttestations(
+      final Handle handle, final List<SignedAttestation> signedAttestations) {
+    final SlashingCheckResult[] results = new SlashingCheckResult[signedAttestations.size()];
+    bindAttestations(
+            handle.createQuery(
+                "SELECT request_index, check_result FROM check_and_insert_attestations(?, ?, ?, ?)"),
+            signedAttestations)
+        .map(
+            (rs, ctx) ->
+                Map.entry(
+                    rs.getInt("request_index"),
+                    SlashingCheckResult.valueOf(rs.getString("check_result"))))
+        .forEach(result -> results[result.getKey() - 1] = result.getValue());
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Inserts imported attestations without applying the slashing rules. An attestation that has the
+   * same target epoch as another, but a different source epoch or signing root, is stored with the
+   * lower of the source epochs and without a signing root so that signing at that target epoch is
+   * refused.
+   */
+  public void importAttestations(
+      final Handle handle, final List<SignedAttestation> signedAttestations) {
+    bindAttestations(
+            handle.createUpdate(
+                "INSERT INTO signed_attestations "
+                    + "(validator_id, signing_root, source_epoch, target_epoch) "
+                    + "SELECT validator_id, "
+                    + "CASE WHEN COUNT(signing_root) = COUNT(*) "
+                    + "AND COUNT(DISTINCT signing_root) = 1 AND COUNT(DISTINCT source_epoch) = 1 "
+                    + "THEN (array_agg(signing_root))[1] END, "
+                    + "MIN(source_epoch), target_epoch "
+                    + "FROM unnest(?, ?, ?, ?) "
+                    + "AS a(validator_id, signing_root, source_epoch, target_epoch) "
+                    + "GROUP BY validator_id, target_epoch "
+                    + "ON CONFLICT (validator_id, target_epoch) DO UPDATE SET "
+                    + "source_epoch = LEAST(signed_attestations.source_epoch, EXCLUDED.source_epoch), "
+                    + "signing_root = NULL "
+                    + "WHERE signed_attestations.signing_root IS DISTINCT FROM EXCLUDED.signing_root "
+                    + "OR signed_attestations.source_epoch <> EXCLUDED.source_epoch"),
+            signedAttestations)
+        .execute();
+  }
+
+  private static <T extends SqlStatement<T>> T bindAttestations(
+      final T statement, final List<SignedAttestation> signedAttestations) {
+    final int size = signedAttestations.size();
+    final Integer[] validatorIds = new Integer[size];
+    final byte[][] signingRoots = new byte[size][];
+    final Long[] sourceEpochs = new Long[size];
+    final Long[] targetEpochs = new Long[size];
+    for (int i = 0; i < size; i++) {
+      final SignedAttestation signedAttestation = signedAttestations.get(i);
+      validatorIds[i] = signedAttestation.getValidatorId();
+      signingRoots[i] = signedAttestation.getSigningRoot().map(Bytes::toArrayUnsafe).orElse(null);
+      sourceEpochs[i] = encode(signedAttestation.getSourceEpoch());
+      targetEpochs[i] = encode(signedAttestation.getTargetEpoch());
+    }
+    return statement
+        .bind(0, sqlArray("integer", validatorIds))
+        .bind(1, sqlArray("bytea", signingRoots))
+        .bind(2, sqlArray("bigint", sourceEpochs))
+        .bind(3, sqlArray("bigint", targetEpochs));
+  }
+
   public Stream<SignedAttestation> findAllAttestationsSignedBy(
       final Handle handle, final int validatorId) {
     return handle
         .createQuery(
             "SELECT validator_id, source_epoch, target_epoch, signing_root "
                 + "FROM signed_attestations WHERE validator_id = ?")
-        .bind(0, validatorId).mapToBean(SignedAttestation.class).stream();
+        .bind(0, validatorId)
+        .map(ATTESTATION_MAPPER)
+        .stream();
+  }
+
+  /**
+   * Streams every attestation ordered by validator and target epoch, fetching fetchSize rows at a
+   * time. Must be called within a transaction for the rows to be fetched incrementally.
+   */
+  public Stream<SignedAttestation> findAllAttestations(final Handle handle, final int fetchSize) {
+    return handle
+        .createQuery(
+            "SELECT validator_id, source_epoch, target_epoch, signing_root "
+                + "FROM signed_attestations ORDER BY validator_id, target_epoch")
+        .setFetchSize(fetchSize)
+        .map(ATTESTATION_MAPPER)
+        .stream();
   }
 
   public Optional<UInt64> minimumSourceEpoch(final Handle handle, final int validatorId) {
@@ -12,14 +12,24 @@
  */
 package tech.pegasys.web3signer.slashingprotection.dao;
 
+import static tech.pegasys.web3signer.slashingprotection.dao.SqlArrays.sqlArray;
+import static tech.pegasys.web3signer.slashingprotection.dao.UInt64Encoding.encode;
+
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
+import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.units.bigints.UInt64;
 import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.mapper.RowMapper;
 
 public class SignedBlocksDao {
 
+  private static final RowMapper<SignedBlock> BLOCK_MAPPER = new SignedBlockRowMapper();
+  private static final RowMapper<SlashingCheckResult> CHECK_RESULT_MAPPER =
+      new SlashingCheckResultRowMapper();
+
   public Optional<SignedBlock> findExistingBlock(
       final Handle handle, final int validatorId, final UInt64 slot) {
     return handle
@@ -27,7 +37,7 @@ public class SignedBlocksDao {
             "SELECT validator_id, slot, signing_root FROM signed_blocks WHERE validator_id = ? AND slot = ?")
         .bind(0, validatorId)
         .bind(1, slot)
-        .mapToBean(SignedBlock.class)
+        .map(BLOCK_MAPPER)
         .findFirst();
   }
 
@@ -41,6 +51,49 @@ public class SignedBlocksDao {
         .execute();
   }
 
+  public SlashingCheckResult checkAndInsertBlock(
+      final Handle handle, final SignedBlock signedBlock) {
+    return handle
+        .createQuery("SELECT check_and_insert_block(?, ?, ?)")
+        .bind(0, signedBlock.getValidatorId())
+        .bind(1, signedBlock.getSigningRoot())
+        .bind(2, signedBlock.getSlot())
+        .map(CHECK_RESULT_MAPPER)
+        .one();
+  }
+
+  /**
+   * Inserts imported blocks without applying the slashing rules. A block that has the same slot as
+   * another but a different signing root is stored without a signing root so that signing at that
+   * slot is refused.
+   */
+  public void importBlocks(final Handle handle, final List<SignedBlock> signedBlocks) {
+    final int size = signedBlocks.size();
+    final Integer[] validatorIds = new Integer[size];
+    final Long[] slots = new Long[size];
+    final byte[][] signingRoots = new byte[size][];
+    for (int i = 0; i < size; i++) {
+      final SignedBlock signedBlock = signedBlocks.get(i);
+      validatorIds[i] = signedBlock.getValidatorId();
+      slots[i] = encode(signedBlock.getSlot());
+      signingRoots[i] = signedBlock.getSigningRoot().map(Bytes::toArrayUnsafe).orElse(null);
+    }
+    handle
+        .createUpdate(
+            "INSERT INTO signed_blocks (validator_id, slot, signing_root) "
+                + "SELECT validator_id, slot, "
+                + "CASE WHEN COUNT(signing_root) = COUNT(*) AND COUNT(DISTINCT signing_root) = 1 "
+                + "THEN (array_agg(signing_root))[1] END "
+                + "FROM unnest(?, ?, ?) AS b(validator_id, slot, signing_root) "
+                + "GROUP BY validator_id, slot "
+                + "ON CONFLICT (validator_id, slot) DO UPDATE SET signing_root = NULL "
+                + "WHERE signed_blocks.signing_root IS DISTINCT FROM EXCLUDED.signing_root")
+        .bind(0, sqlArray("integer", validatorIds))
+        .bind(1, sqlArray("bigint", slots))
+        .bind(2, sqlArray("bytea", signingRoots))
+        .execute();
+  }
+
   public Optional<UInt64> minimumSlot(final Handle handle, final int validatorId) {
     return handle
         .createQuery("SELECT MIN(slot) FROM signed_blocks WHERE validator_id = ?")
@@ -49,10 +102,25 @@ public class SignedBlocksDao {
         .findFirst();
   }
 
+  /**
+   * Streams every block ordered by validator and slot, fetching fetchSize rows at a time. Must be
+   * called within a transaction for the rows to be fetched incrementally.
+   */
+  public Stream<SignedBlock> findAllBlocks(final Handle handle, final int fetchSize) {
+    return handle
+        .createQuery(
+            "SELECT validator_id, slot, signing_root FROM signed_blocks ORDER BY validator_id, slot")
+        .setFetchSize(fetchSize)
+        .map(BLOCK_MAPPER)
+        .stream();
+  }
+
   public Stream<SignedBlock> findAllBlockSignedBy(final Handle handle, final int validatorId) {
     return handle
         .createQuery(
             "SELECT validator_id, slot, signing_root FROM signed_blocks WHERE validator_id = ?")
-        .bind(0, validatorId).mapToBean(SignedBlock.class).stream();
+        .bind(0, validatorId)
+        .map(BLOCK_MAPPER)
+        .stream();
   }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import static tech.pegasys.web3signer.slashingprotection.dao.SqlArrays.sqlArray;
+import static tech.pegasys.web3signer.slashingprotection.dao.UInt64Encoding.encode;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.jdbi.v3.core.Handle;
+
+public class SigningChecksDao {
+
+  // the lock types used by the check_and_insert functions
+  private static final int BLOCK = 0;
+  private static final int ATTESTATION = 1;
+
+  /**
+   * Checks and conditionally inserts the blocks and attestations in a single statement, returning
+   * the results of the blocks followed by those of the attestations, each in the order given.
+   */
+  public List<SlashingCheckResult> checkAndInsertSignings(
+      final Handle handle,
+      final List<SignedBlock> signedBlocks,
+      final List<SignedAttestation> signedAttestations) {
+    final int size = signedBlocks.size() + signedAttestations.size();
+    final Integer[] artifactTypes = new Integer[size];
+    final Integer[] validatorIds = new Integer[size];
+    final byte[][] signingRoots = new byte[size][];
+    final Long[] sourceEpochs = new Long[size];
+    final Long[] targetEpochs = new Long[size];
+    int i = 0;
+    for (final SignedBlock signedBlock : signedBlocks) {
+      artifactTypes[i] = BLOCK;
+      validatorIds[i] = signedBlock.getValidatorId();
+      signingRoots[i] = signedBlock.getSigningRoot().map(Bytes::toArrayUnsafe).orElse(null);
+      sourceEpochs[i] = encode(signedBlock.getSlot());
+      i++;
+    }
+    for (final SignedAttestation signedAttestation : signedAttestations) {
+      artifactTypes[i] = ATTESTATION;
+      validatorIds[i] = signedAttestation.getValidatorId();
+      signingRoots[i] = signedAttestation.getSigningRoot().map(Bytes::toArrayUnsafe).orElse(null);
+      sourceEpochs[i] = encode(signedAttestation.getSourceEpoch());
+      targetEpochs[i] = encode(signedAttestation.getTargetEpoch());
+      i++;
+    }
+
+    final SlashingCheckResult[] results = new SlashingCheckResult[size];
+    handle
+        .createQuery(
+            "SELECT request_index, check_result FROM check_and_insert_signings(?, ?, ?, ?, ?)")
+        .bind(0, sqlArray("integer", artifactTypes))
+        .bind(1, sqlArray("integer", validatorIds))
+        .bind(2, sqlArray("bytea", signingRoots))
+        .bind(3, sqlArray("bigint", sourceEpochs))
+        .bind(4, sqlArray("bigint", targetEpochs))
+        .map(
+            (rs, ctx) ->
+                Map.entry(
+                    rs.getInt("request_index"),
+                    SlashingCheckResult.valueOf(rs.getString("check_result"))))
+        .forEach(result -> results[result.getKey() - 1] = result.getValue());
+    return Arrays.asList(results);
+  }
+}
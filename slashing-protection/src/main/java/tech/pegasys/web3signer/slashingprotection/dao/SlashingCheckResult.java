@@ -0,0 +1,33 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+/**
+ * Outcome of checking and conditionally inserting a signed block or attestation in a single
+ * database statement, naming the slashing rule that rejected it where it was not signed.
+ */
+public enum SlashingCheckResult {
+  SIGNED,
+  ALREADY_SIGNED,
+  EXISTING_WITHOUT_SIGNING_ROOT,
+  DOUBLE_SIGNED,
+  SOURCE_EPOCH_BELOW_MINIMUM,
+  TARGET_EPOCH_BELOW_MINIMUM,
+  SURROUNDING_ATTESTATION_EXISTS,
+  SURROUNDED_ATTESTATION_EXISTS,
+  SLOT_BELOW_MINIMUM;
+
+  public boolean isPermitted() {
+    return this == SIGNED || this == ALREADY_SIGNED;
+  }
+}
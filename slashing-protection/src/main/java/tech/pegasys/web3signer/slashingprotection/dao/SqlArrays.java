@@ -0,0 +1,27 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import org.jdbi.v3.core.argument.Argument;
+
+/** Binds java arrays as SQL arrays so that many rows can be sent in a single statement. */
+final class SqlArrays {
+
+  private SqlArrays() {}
+
+  static Argument sqlArray(final String elementType, final Object[] elements) {
+    return (position, statement, ctx) ->
+        statement.setArray(
+            position, statement.getConnection().createArrayOf(elementType, elements));
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+
+/**
+ * Converts between unsigned 64 bit slots and epochs and the signed BIGINT columns that hold them.
+ *
+ * <p>The top bit of the value is flipped so that the full unsigned range maps onto the signed range
+ * in the same order, 0 being stored as -2^63 and 2^64 - 1 as 2^63 - 1. Comparisons, MIN, MAX and
+ * index scans on the column therefore follow the unsigned ordering. The encode_uint64 and
+ * decode_uint64 database functions perform the same conversion in SQL.
+ */
+public final class UInt64Encoding {
+
+  private UInt64Encoding() {}
+
+  public static long encode(final UInt64 value) {
+    final long unsigned = value.fitsLong() ? value.toLong() : value.toBytes().toLong();
+    return unsigned ^ Long.MIN_VALUE;
+  }
+
+  public static UInt64 decode(final long value) {
+    final long unsigned = value ^ Long.MIN_VALUE;
+    return unsigned >= 0
+        ? UInt64.valueOf(unsigned)
+        : UInt64.fromBytes(Bytes.ofUnsignedLong(unsigned));
+  }
+
+  /** Reads a nullable slot or epoch column, returning null where the column is null. */
+  static UInt64 decodeNullable(final ResultSet rs, final String column) throws SQLException {
+    final long value = rs.getLong(column);
+    return rs.wasNull() ? null : decode(value);
+  }
+}
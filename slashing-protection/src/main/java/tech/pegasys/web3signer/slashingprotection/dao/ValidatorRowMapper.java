@@ -0,0 +1,29 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+
+/** Maps validators rows directly, without the reflection used by bean mapping. */
+class ValidatorRowMapper implements RowMapper<Validator> {
+
+  @Override
+  public Validator map(final ResultSet rs, final StatementContext ctx) throws SQLException {
+    return new Validator(rs.getInt("id"), Bytes.wrap(rs.getBytes("public_key")));
+  }
+}
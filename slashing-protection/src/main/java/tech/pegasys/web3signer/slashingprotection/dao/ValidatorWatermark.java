@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import com.google.common.base.MoreObjects;
+import org.apache.tuweni.units.bigints.UInt64;
+
+public class ValidatorWatermark {
+
+  private int validatorId;
+  private UInt64 minSourceEpoch;
+  private UInt64 minTargetEpoch;
+  private UInt64 maxTargetEpoch;
+  private UInt64 minSlot;
+  private UInt64 maxSlot;
+  private UInt64 lowWatermarkSourceEpoch;
+  private UInt64 lowWatermarkTargetEpoch;
+
+  // needed for JDBI bean mapping
+  public ValidatorWatermark() {}
+
+  public ValidatorWatermark(
+      final int validatorId,
+      final UInt64 minSourceEpoch,
+      final UInt64 minTargetEpoch,
+      final UInt64 maxTargetEpoch,
+      final UInt64 minSlot,
+      final UInt64 maxSlot) {
+    this.validatorId = validatorId;
+    this.minSourceEpoch = minSourceEpoch;
+    this.minTargetEpoch = minTargetEpoch;
+    this.maxTargetEpoch = maxTargetEpoch;
+    this.minSlot = minSlot;
+    this.maxSlot = maxSlot;
+  }
+
+  public int getValidatorId() {
+    return validatorId;
+  }
+
+  public void setValidatorId(final int validatorId) {
+    this.validatorId = validatorId;
+  }
+
+  public UInt64 getMinSourceEpoch() {
+    return minSourceEpoch;
+  }
+
+  public void setMinSourceEpoch(final UInt64 minSourceEpoch) {
+    this.minSourceEpoch = minSourceEpoch;
+  }
+
+  public UInt64 getMinTargetEpoch() {
+    return minTargetEpoch;
+  }
+
+  public void setMinTargetEpoch(final UInt64 minTargetEpoch) {
+    this.minTargetEpoch = minTargetEpoch;
+  }
+
+  public UInt64 getMaxTargetEpoch() {
+    return maxTargetEpoch;
+  }
+
+  public void setMaxTargetEpoch(final UInt64 maxTargetEpoch) {
+    this.maxTargetEpoch = maxTargetEpoch;
+  }
+
+  public UInt64 getMinSlot() {
+    return minSlot;
+  }
+
+  public void setMinSlot(final UInt64 minSlot) {
+    this.minSlot = minSlot;
+  }
+
+  public UInt64 getMaxSlot() {
+    return maxSlot;
+  }
+
+  public void setMaxSlot(final UInt64 maxSlot) {
+    this.maxSlot = maxSlot;
+  }
+
+  public UInt64 getLowWatermarkSourceEpoch() {
+    return lowWatermarkSourceEpoch;
+  }
+
+  public void setLowWatermarkSourceEpoch(final UInt64 lowWatermarkSourceEpoch) {
+    this.lowWatermarkSourceEpoch = lowWatermarkSourceEpoch;
+  }
+
+  public UInt64 getLowWatermarkTargetEpoch() {
+    return lowWatermarkTargetEpoch;
+  }
+
+  public void setLowWatermarkTargetEpoch(final UInt64 lowWatermarkTargetEpoch) {
+    this.lowWatermarkTargetEpoch = lowWatermarkTargetEpoch;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("validatorId", validatorId)
+        .add("minSourceEpoch", minSourceEpoch)
+        .add("minTargetEpoch", minTargetEpoch)
+        .add("maxTargetEpoch", maxTargetEpoch)
+        .add("minSlot", minSlot)
+        .add("maxSlot", maxSlot)
+        .add("lowWatermarkSourceEpoch", lowWatermarkSourceEpoch)
+        .add("lowWatermarkTargetEpoch", lowWatermarkTargetEpoch)
+        .toString();
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import static tech.pegasys.web3signer.slashingprotection.dao.UInt64Encoding.decodeNullable;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+
+/**
+ * Maps the per validator watermark rows loaded at startup directly, without the reflection used by
+ * bean mapping. Every watermark is null for a validator without the corresponding history.
+ */
+class ValidatorWatermarkRowMapper implements RowMapper<ValidatorWatermark> {
+
+  @Override
+  public ValidatorWatermark map(final ResultSet rs, final StatementContext ctx)
+      throws SQLException {
+    final ValidatorWatermark watermark =
+        new ValidatorWatermark(
+            rs.getInt("validator_id"),
+            decodeNullable(rs, "min_source_epoch"),
+            decodeNullable(rs, "min_target_epoch"),
+            decodeNullable(rs, "max_target_epoch"),
+            decodeNullable(rs, "min_slot"),
+            decodeNullable(rs, "max_slot"));
+    watermark.setLowWatermarkSourceEpoch(decodeNullable(rs, "low_watermark_source_epoch"));
+    watermark.setLowWatermarkTargetEpoch(decodeNullable(rs, "low_watermark_target_epoch"));
+    return watermark;
+  }
+}
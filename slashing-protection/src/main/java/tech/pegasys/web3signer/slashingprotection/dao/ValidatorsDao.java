@@ -12,35 +12,95 @@
  */
 package tech.pegasys.web3signer.slashingprotection.dao;
 
+import static tech.pegasys.web3signer.slashingprotection.dao.SqlArrays.sqlArray;
+
 import java.util.List;
 import java.util.stream.Stream;
 
 import org.apache.tuweni.bytes.Bytes;
 import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.mapper.RowMapper;
 import org.jdbi.v3.core.statement.PreparedBatch;
-import org.jdbi.v3.sqlobject.customizer.BindList;
 
 public class ValidatorsDao {
 
+  private static final RowMapper<Validator> VALIDATOR_MAPPER = new ValidatorRowMapper();
+  private static final RowMapper<ValidatorWatermark> WATERMARK_MAPPER =
+      new ValidatorWatermarkRowMapper();
+
   public List<Validator> registerValidators(final Handle handle, final List<Bytes> validators) {
     final PreparedBatch batch =
         handle.prepareBatch("INSERT INTO validators (public_key) VALUES (?)");
     validators.forEach(b -> batch.bind(0, b).add());
-    return batch.executeAndReturnGeneratedKeys().mapToBean(Validator.class).list();
+    return batch.executeAndReturnGeneratedKeys().map(VALIDATOR_MAPPER).list();
+  }
+
+  /** Registers any of the validators that are not already registered, returning all of them. */
+  public List<Validator> findOrRegisterValidators(
+      final Handle handle, final List<Bytes> validators) {
+    final byte[][] publicKeys = toArrays(validators);
+    handle
+        .createUpdate(
+            "INSERT INTO validators (public_key) SELECT * FROM unnest(?) "
+                + "ON CONFLICT (public_key) DO NOTHING")
+        .bind(0, sqlArray("bytea", publicKeys))
+        .execute();
+    return handle
+        .createQuery("SELECT id, public_key FROM validators WHERE public_key = ANY(?)")
+        .bind(0, sqlArray("bytea", publicKeys))
+        .map(VALIDATOR_MAPPER)
+        .list();
+  }
+
+  public List<Validator> retrieveValidators(final Handle handle, final List<Bytes> publicKeys) {
+    return handle
+        .createQuery("SELECT id, public_key FROM validators WHERE public_key = ANY(?) ORDER BY id")
+        .bind(0, sqlArray("bytea", toArrays(publicKeys)))
+        .map(VALIDATOR_MAPPER)
+        .list();
   }
 
-  public List<Validator> retrieveValidators(
-      final Handle handle, @BindList("publicKeys") final List<Bytes> publicKeys) {
+  /**
+   * Registers the validators, returning those inserted. Validators that are already registered,
+   * including any registered concurrently by another process, are skipped and not returned.
+   */
+  public List<Validator> registerMissingValidators(
+      final Handle handle, final List<Bytes> publicKeys) {
     return handle
         .createQuery(
-            "SELECT id, public_key FROM validators WHERE public_key IN (<publicKeys>) ORDER BY id")
-        .bindList("publicKeys", publicKeys)
-        .mapToBean(Validator.class)
+            "INSERT INTO validators (public_key) SELECT * FROM unnest(?) "
+                + "ON CONFLICT (public_key) DO NOTHING RETURNING id, public_key")
+        .bind(0, sqlArray("bytea", toArrays(publicKeys)))
+        .map(VALIDATOR_MAPPER)
         .list();
   }
 
   public Stream<Validator> findAllValidators(final Handle handle) {
-    return handle.createQuery("SELECT id, public_key FROM validators").mapToBean(Validator.class)
+    return handle
+        .createQuery("SELECT id, public_key FROM validators ORDER BY id")
+        .map(VALIDATOR_MAPPER)
         .stream();
   }
+
+  public List<ValidatorWatermark> findAllWatermarks(final Handle handle) {
+    return handle
+        .createQuery(
+            "SELECT v.id AS validator_id, a.min_source_epoch, a.min_target_epoch, "
+                + "a.max_target_epoch, b.min_slot, b.max_slot, "
+                + "w.source_epoch AS low_watermark_source_epoch, "
+                + "w.target_epoch AS low_watermark_target_epoch "
+                + "FROM validators v "
+                + "LEFT JOIN (SELECT validator_id, MIN(source_epoch) AS min_source_epoch, "
+                + "MIN(target_epoch) AS min_target_epoch, MAX(target_epoch) AS max_target_epoch "
+                + "FROM signed_attestations GROUP BY validator_id) a ON a.validator_id = v.id "
+                + "LEFT JOIN (SELECT validator_id, MIN(slot) AS min_slot, MAX(slot) AS max_slot "
+                + "FROM signed_blocks GROUP BY validator_id) b ON b.validator_id = v.id "
+                + "LEFT JOIN low_watermarks w ON w.validator_id = v.id")
+        .map(WATERMARK_MAPPER)
+        .list();
+  }
+
+  private static byte[][] toArrays(final List<Bytes> publicKeys) {
+    return publicKeys.stream().map(Bytes::toArrayUnsafe).toArray(byte[][]::new);
+  }
 }
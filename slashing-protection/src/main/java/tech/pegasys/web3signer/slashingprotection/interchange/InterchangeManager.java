@@ -13,9 +13,12 @@
 package tech.pegasys.web3signer.slashingprotection.interchange;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 
 public interface InterchangeManager {
 
   void export(OutputStream out) throws IOException;
+
+  void importData(InputStream in) throws IOException;
 }
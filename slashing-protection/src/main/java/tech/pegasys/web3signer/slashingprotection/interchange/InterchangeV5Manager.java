@@ -12,21 +12,46 @@
  */
 package tech.pegasys.web3signer.slashingprotection.interchange;
 
+import static org.jdbi.v3.core.transaction.TransactionIsolationLevel.REPEATABLE_READ;
+
+import tech.pegasys.web3signer.slashingprotection.DbConnection;
+import tech.pegasys.web3signer.slashingprotection.dao.LowWatermark;
+import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
+import tech.pegasys.web3signer.slashingprotection.dao.MetadataDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedBlocksDao;
 import tech.pegasys.web3signer.slashingprotection.dao.Validator;
 import tech.pegasys.web3signer.slashingprotection.dao.ValidatorsDao;
 import tech.pegasys.web3signer.slashingprotection.interchange.model.Metadata;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.tuweni.bytes.Bytes;
-import org.jdbi.v3.core.Handle;
+import org.apache.tuweni.units.bigints.UInt64;
 import org.jdbi.v3.core.Jdbi;
 
 public class InterchangeV5Manager implements InterchangeManager {
@@ -34,11 +59,17 @@ public class InterchangeV5Manager implements InterchangeManager {
   private static final Logger LOG = LogManager.getLogger();
 
   private static final int FORMAT_VERSION = 5;
+  private static final int IMPORT_BATCH_SIZE = 10_000;
+  private static final int EXPORT_FETCH_SIZE = 10_000;
+  // exported when no interchange has been imported to record the root of the chain
+  private static final Bytes UNKNOWN_GENESIS_VALIDATORS_ROOT = Bytes.fromHexString("FFFFFFFF");
 
   private final Jdbi jdbi;
   private final ValidatorsDao validatorsDao;
   private final SignedBlocksDao signedBlocksDao;
   private final SignedAttestationsDao signedAttestationsDao;
+  private final LowWatermarkDao lowWatermarkDao;
+  private final MetadataDao metadataDao;
   private final ObjectMapper mapper;
 
   public InterchangeV5Manager(
@@ -46,11 +77,15 @@ public class InterchangeV5Manager implements InterchangeManager {
       final ValidatorsDao validatorsDao,
       final SignedBlocksDao signedBlocksDao,
       final SignedAttestationsDao signedAttestationsDao,
+      final LowWatermarkDao lowWatermarkDao,
+      final MetadataDao metadataDao,
       final ObjectMapper mapper) {
     this.jdbi = jdbi;
     this.validatorsDao = validatorsDao;
     this.signedBlocksDao = signedBlocksDao;
     this.signedAttestationsDao = signedAttestationsDao;
+    this.lowWatermarkDao = lowWatermarkDao;
+    this.metadataDao = metadataDao;
     this.mapper = mapper;
   }
 
@@ -59,7 +94,11 @@ public class InterchangeV5Manager implements InterchangeManager {
     try (final JsonGenerator jsonGenerator = mapper.getFactory().createGenerator(out)) {
       jsonGenerator.writeStartObject();
 
-      final Metadata metadata = new Metadata(FORMAT_VERSION, Bytes.fromHexString("FFFFFFFF"));
+      final Metadata metadata =
+          new Metadata(
+              FORMAT_VERSION,
+              jdbi.withHandle(metadataDao::findGenesisValidatorsRoot)
+                  .orElse(UNKNOWN_GENESIS_VALIDATORS_ROOT));
 
       jsonGenerator.writeFieldName("metadata");
       mapper.writeValue(jsonGenerator, metadata);
@@ -72,78 +111,366 @@ public class InterchangeV5Manager implements InterchangeManager {
     }
   }
 
-  private void populateInterchangeData(final JsonGenerator jsonGenerator) {
+  /**
+   * Writes every validator's history from three cursors over validators, blocks and attestations,
+   * each ordered by validator, so that the whole database is read with a fixed number of queries
+   * from a single snapshot.
+   */
+  private void populateInterchangeData(final JsonGenerator jsonGenerator) throws IOException {
     jdbi.useTransaction(
-        h ->
-            validatorsDao
-                .findAllValidators(h)
-                .forEach(
-                    validator -> {
-                      LOG.info(
-                          "Exporting entries for validator {}",
-                          validator.getPublicKey().toHexString());
-                      try {
-                        populateValidatorRecord(h, validator, jsonGenerator);
-                      } catch (IOException e) {
-                        throw new RuntimeException("Failed to construct a validator entry in json");
-                      }
-                    }));
+        REPEATABLE_READ,
+        h -> {
+          DbConnection.liftStatementTimeout(h);
+          final Map<Integer, LowWatermark> lowWatermarks =
+              lowWatermarkDao.findAllLowWatermarks(h).stream()
+                  .collect(Collectors.toMap(LowWatermark::getValidatorId, Function.identity()));
+          try (final Stream<Validator> validators = validatorsDao.findAllValidators(h);
+              final Stream<SignedBlock> blocks =
+                  signedBlocksDao.findAllBlocks(h, EXPORT_FETCH_SIZE);
+              final Stream<SignedAttestation> attestations =
+                  signedAttestationsDao.findAllAttestations(h, EXPORT_FETCH_SIZE)) {
+            final PeekingIterator<SignedBlock> blockIterator =
+                Iterators.peekingIterator(blocks.iterator());
+            final PeekingIterator<SignedAttestation> attestationIterator =
+                Iterators.peekingIterator(attestations.iterator());
+            final Iterator<Validator> validatorIterator = validators.iterator();
+            int validatorCount = 0;
+            while (validatorIterator.hasNext()) {
+              final Validator validator = validatorIterator.next();
+              LOG.debug(
+                  "Exporting entries for validator {}", validator.getPublicKey().toHexString());
+              populateValidatorRecord(
+                  validator,
+                  Optional.ofNullable(lowWatermarks.get(validator.getId())),
+                  blockIterator,
+                  attestationIterator,
+                  jsonGenerator);
+              validatorCount++;
+            }
+            LOG.info("Exported entries for {} validators", validatorCount);
+          }
+        });
   }
 
   private void populateValidatorRecord(
-      final Handle h, final Validator validator, final JsonGenerator jsonGenerator)
+      final Validator validator,
+      final Optional<LowWatermark> lowWatermark,
+      final PeekingIterator<SignedBlock> blocks,
+      final PeekingIterator<SignedAttestation> attestations,
+      final JsonGenerator jsonGenerator)
       throws IOException {
     jsonGenerator.writeStartObject();
     jsonGenerator.writeStringField("pubkey", validator.getPublicKey().toHexString());
-    writeBlocks(h, validator, jsonGenerator);
-    writeAttestations(h, validator, jsonGenerator);
+
+    jsonGenerator.writeArrayFieldStart("signed_blocks");
+    // pruned blocks are represented by a block at the low watermark without a signing root
+    if (lowWatermark.isPresent() && lowWatermark.get().getSlot() != null) {
+      writeBlock(lowWatermark.get().getSlot(), Optional.empty(), jsonGenerator);
+    }
+    while (blocks.hasNext() && blocks.peek().getValidatorId() == validator.getId()) {
+      final SignedBlock block = blocks.next();
+      writeBlock(block.getSlot(), block.getSigningRoot(), jsonGenerator);
+    }
+    jsonGenerator.writeEndArray();
+
+    jsonGenerator.writeArrayFieldStart("signed_attestations");
+    // pruned attestations are represented by an attestation at the low watermark without a
+    // signing root
+    if (lowWatermark.isPresent() && lowWatermark.get().getSourceEpoch() != null) {
+      writeAttestation(
+          lowWatermark.get().getSourceEpoch(),
+          lowWatermark.get().getTargetEpoch(),
+          Optional.empty(),
+          jsonGenerator);
+    }
+    while (attestations.hasNext()
+        && attestations.peek().getValidatorId() == validator.getId()) {
+      final SignedAttestation attestation = attestations.next();
+      writeAttestation(
+          attestation.getSourceEpoch(),
+          attestation.getTargetEpoch(),
+          attestation.getSigningRoot(),
+          jsonGenerator);
+    }
+    jsonGenerator.writeEndArray();
+
     jsonGenerator.writeEndObject();
   }
 
-  private void writeBlocks(
-      final Handle h, final Validator validator, final JsonGenerator jsonGenerator)
+  private void writeBlock(
+      final UInt64 slot, final Optional<Bytes> signingRoot, final JsonGenerator jsonGenerator)
       throws IOException {
-    jsonGenerator.writeArrayFieldStart("signed_blocks");
+    jsonGenerator.writeStartObject();
+    jsonGenerator.writeStringField("slot", slot.toString());
+    if (signingRoot.isPresent()) {
+      jsonGenerator.writeStringField("signing_root", signingRoot.get().toHexString());
+    }
+    jsonGenerator.writeEndObject();
+  }
+
+  private void writeAttestation(
+      final UInt64 sourceEpoch,
+      final UInt64 targetEpoch,
+      final Optional<Bytes> signingRoot,
+      final JsonGenerator jsonGenerator)
+      throws IOException {
+    jsonGenerator.writeStartObject();
+    jsonGenerator.writeStringField("source_epoch", sourceEpoch.toString());
+    jsonGenerator.writeStringField("target_epoch", targetEpoch.toString());
+    if (signingRoot.isPresent()) {
+      jsonGenerator.writeStringField("signing_root", signingRoot.get().toHexString());
+    }
+    jsonGenerator.writeEndObject();
+  }
 
-    signedBlocksDao
-        .findAllBlockSignedBy(h, validator.getId())
-        .forEach(
-            b -> {
-              final tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock
-                  jsonBlock =
-                      new tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock(
-                          b.getSlot(), b.getSigningRoot().orElse(null));
-              try {
-                mapper.writeValue(jsonGenerator, jsonBlock);
-              } catch (IOException e) {
-                throw new RuntimeException("Failed to construct a signed_blocks entry in json");
-              }
-            });
+  /**
+   * Imports an interchange document while parsing it, so memory use does not depend on the size of
+   * the document. Validators, blocks and attestations are written in batches of up to {@value
+   * #IMPORT_BATCH_SIZE} entries, each batch in its own transaction. The pubkey of a data entry is
+   * expected to precede its signed blocks and attestations, otherwise the entry is held in memory
+   * until its pubkey is read.
+   *
+   * <p>The genesis validators root of the document is recorded by the first import and must match
+   * the recorded root for later imports, as blocks and attestations without a signing root act as
+   * low watermarks that would refuse signing on another chain.
+   */
+  @Override
+  public void importData(final InputStream in) throws IOException {
+    try (final JsonParser parser = mapper.getFactory().createParser(in)) {
+      expectToken(parser.nextToken(), JsonToken.START_OBJECT);
+      final ImportBatch batch = new ImportBatch();
+      boolean metadataRead = false;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String fieldName = parser.getCurrentName();
+        parser.nextToken();
+        if (fieldName.equals("metadata")) {
+          checkMetadata(mapper.readValue(parser, Metadata.class));
+          metadataRead = true;
+        } else if (fieldName.equals("data")) {
+          if (!metadataRead) {
+            throw new IllegalArgumentException("Interchange metadata must precede the data");
+          }
+          importValidators(parser, batch);
+        } else {
+          parser.skipChildren();
+        }
+      }
+      writeBatch(batch);
+      batch.progress.logCompletion();
+    }
+  }
 
-    jsonGenerator.writeEndArray();
+  private void checkMetadata(final Metadata metadata) {
+    if (!metadata.getFormatVersionAsString().equals(Integer.toString(FORMAT_VERSION))) {
+      throw new IllegalArgumentException(
+          "Unsupported interchange format version " + metadata.getFormatVersionAsString());
+    }
+    final Bytes genesisValidatorsRoot = metadata.getGenesisValidatorsRoot();
+    if (genesisValidatorsRoot.equals(UNKNOWN_GENESIS_VALIDATORS_ROOT)) {
+      // exported before any root was recorded, so there is nothing to check it against
+      return;
+    }
+    final Bytes recordedGenesisValidatorsRoot =
+        jdbi.inTransaction(
+            h -> metadataDao.findOrInsertGenesisValidatorsRoot(h, genesisValidatorsRoot));
+    if (!recordedGenesisValidatorsRoot.equals(genesisValidatorsRoot)) {
+      throw new IllegalArgumentException(
+          "Interchange genesis validators root "
+              + genesisValidatorsRoot
+              + " does not match the slashing protection database genesis validators root "
+              + recordedGenesisValidatorsRoot);
+    }
   }
 
-  private void writeAttestations(
-      final Handle h, final Validator validator, final JsonGenerator jsonGenerator)
+  private void importValidators(final JsonParser parser, final ImportBatch batch)
       throws IOException {
-    jsonGenerator.writeArrayFieldStart("signed_attestations");
+    expectToken(parser.currentToken(), JsonToken.START_ARRAY);
+    while (parser.nextToken() == JsonToken.START_OBJECT) {
+      final ImportedValidator validator = new ImportedValidator();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String fieldName = parser.getCurrentName();
+        parser.nextToken();
+        switch (fieldName) {
+          case "pubkey":
+            validator.publicKey = Bytes.fromHexString(parser.getValueAsString());
+            batch.validators.add(validator);
+            break;
+          case "signed_blocks":
+            importBlocks(parser, validator, batch);
+            break;
+          case "signed_attestations":
+            importAttestations(parser, validator, batch);
+            break;
+          default:
+            parser.skipChildren();
+        }
+      }
+      if (validator.publicKey == null) {
+        throw new IllegalArgumentException("Interchange data entry is missing a pubkey");
+      }
+      batch.progress.validators++;
+      writeBatchIfFull(batch, validator);
+    }
+  }
 
-    signedAttestationsDao
-        .findAllAttestationsSignedBy(h, validator.getId())
-        .forEach(
-            a -> {
-              final tech.pegasys.web3signer.slashingprotection.interchange.model.SignedAttestation
-                  jsonAttestation =
-                      new tech.pegasys.web3signer.slashingprotection.interchange.model
-                          .SignedAttestation(
-                          a.getSourceEpoch(), a.getTargetEpoch(), a.getSigningRoot().orElse(null));
-              try {
-                mapper.writeValue(jsonGenerator, jsonAttestation);
-              } catch (IOException e) {
-                throw new RuntimeException(
-                    "Failed to construct a signed_attestations entry in json");
-              }
-            });
-    jsonGenerator.writeEndArray();
+  private void importBlocks(
+      final JsonParser parser, final ImportedValidator validator, final ImportBatch batch)
+      throws IOException {
+    expectToken(parser.currentToken(), JsonToken.START_ARRAY);
+    while (parser.nextToken() == JsonToken.START_OBJECT) {
+      final tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock jsonBlock =
+          mapper.readValue(
+              parser,
+              tech.pegasys.web3signer.slashingprotection.interchange.model.SignedBlock.class);
+      batch.validators.add(validator);
+      batch.blocks.add(
+          new ImportedEntry<>(
+              validator, new SignedBlock(0, jsonBlock.getSlot(), jsonBlock.getSigningRoot())));
+      writeBatchIfFull(batch, validator);
+    }
+  }
+
+  private void importAttestations(
+      final JsonParser parser, final ImportedValidator validator, final ImportBatch batch)
+      throws IOException {
+    expectToken(parser.currentToken(), JsonToken.START_ARRAY);
+    while (parser.nextToken() == JsonToken.START_OBJECT) {
+      final tech.pegasys.web3signer.slashingprotection.interchange.model.SignedAttestation
+          jsonAttestation =
+              mapper.readValue(
+                  parser,
+                  tech.pegasys.web3signer.slashingprotection.interchange.model.SignedAttestation
+                      .class);
+      batch.validators.add(validator);
+      batch.attestations.add(
+          new ImportedEntry<>(
+              validator,
+              new SignedAttestation(
+                  0,
+                  jsonAttestation.getSourceEpoch(),
+                  jsonAttestation.getTargetEpoch(),
+                  jsonAttestation.getSigningRoot())));
+      writeBatchIfFull(batch, validator);
+    }
+  }
+
+  private void writeBatchIfFull(final ImportBatch batch, final ImportedValidator validator) {
+    if (batch.size() >= IMPORT_BATCH_SIZE && validator.publicKey != null) {
+      writeBatch(batch);
+    }
+  }
+
+  private void writeBatch(final ImportBatch batch) {
+    if (batch.validators.isEmpty()) {
+      return;
+    }
+    final List<Bytes> publicKeys =
+        batch.validators.stream()
+            .map(validator -> validator.publicKey)
+            .collect(Collectors.toList());
+    jdbi.useTransaction(
+        h -> {
+          DbConnection.liftStatementTimeout(h);
+          final Map<Bytes, Integer> validatorIds =
+              validatorsDao.findOrRegisterValidators(h, publicKeys).stream()
+                  .collect(Collectors.toMap(Validator::getPublicKey, Validator::getId));
+          if (!batch.blocks.isEmpty()) {
+            signedBlocksDao.importBlocks(
+                h, withValidatorIds(batch.blocks, validatorIds, SignedBlock::setValidatorId));
+          }
+          if (!batch.attestations.isEmpty()) {
+            signedAttestationsDao.importAttestations(
+                h,
+                withValidatorIds(
+                    batch.attestations, validatorIds, SignedAttestation::setValidatorId));
+          }
+        });
+    batch.progress.batchWritten(batch.blocks.size(), batch.attestations.size());
+    batch.clear();
+  }
+
+  private static <T> List<T> withValidatorIds(
+      final List<ImportedEntry<T>> entries,
+      final Map<Bytes, Integer> validatorIds,
+      final ObjIntConsumer<T> setValidatorId) {
+    return entries.stream()
+        .map(
+            entry -> {
+              setValidatorId.accept(entry.value, validatorIds.get(entry.validator.publicKey));
+              return entry.value;
+            })
+        .collect(Collectors.toList());
+  }
+
+  private static void expectToken(final JsonToken actual, final JsonToken expected) {
+    if (actual != expected) {
+      throw new IllegalArgumentException(
+          "Invalid interchange document, expected " + expected + " but found " + actual);
+    }
+  }
+
+  private static class ImportedValidator {
+    private Bytes publicKey;
+  }
+
+  private static class ImportedEntry<T> {
+    private final ImportedValidator validator;
+    private final T value;
+
+    private ImportedEntry(final ImportedValidator validator, final T value) {
+      this.validator = validator;
+      this.value = value;
+    }
+  }
+
+  /** Entries read since the last write, along with the validators that they belong to. */
+  private static class ImportBatch {
+    private final Set<ImportedValidator> validators = new LinkedHashSet<>();
+    private final List<ImportedEntry<SignedBlock>> blocks = new ArrayList<>();
+    private final List<ImportedEntry<SignedAttestation>> attestations = new ArrayList<>();
+    private final ImportProgress progress = new ImportProgress();
+
+    private int size() {
+      return validators.size() + blocks.size() + attestations.size();
+    }
+
+    private void clear() {
+      validators.clear();
+      blocks.clear();
+      attestations.clear();
+    }
+  }
+
+  private static class ImportProgress {
+    private final long startTime = System.nanoTime();
+    private long validators;
+    private long blocks;
+    private long attestations;
+
+    private void batchWritten(final int batchBlocks, final int batchAttestations) {
+      blocks += batchBlocks;
+      attestations += batchAttestations;
+      LOG.info(
+          "Imported {} blocks and {} attestations for {} validators ({} rows/s)",
+          blocks,
+          attestations,
+          validators,
+          rowsPerSecond());
+    }
+
+    private void logCompletion() {
+      LOG.info(
+          "Imported a total of {} blocks and {} attestations for {} validators ({} rows/s)",
+          blocks,
+          attestations,
+          validators,
+          rowsPerSecond());
+    }
+
+    private long rowsPerSecond() {
+      final long elapsedMillis =
+          Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+      return (blocks + attestations) * 1000 / elapsedMillis;
+    }
   }
 }
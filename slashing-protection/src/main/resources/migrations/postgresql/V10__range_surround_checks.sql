@@ -0,0 +1,101 @@
+-- Surround checks as epoch range containment probes on a GiST index, created by V11, so that they
+-- stay logarithmic in the size of a validator's history rather than scanning it. btree_gist
+-- provides the GiST operator class for the validator_id column of the composite index and must
+-- be installed by a role permitted to create extensions.
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+-- The inclusive epoch range [source, target] as the half open range [source, target + 1). The
+-- upper bound is clamped at the largest BIGINT so that a target of epoch 2^64-1, encoded as the
+-- largest BIGINT, does not overflow; that range then excludes its own target, which the probes
+-- below tolerate as they only select candidates for the exact epoch comparisons.
+CREATE OR REPLACE FUNCTION epoch_range(p_source_epoch BIGINT, p_target_epoch BIGINT)
+    RETURNS INT8RANGE AS $$
+    SELECT int8range(p_source_epoch, LEAST(p_target_epoch, 9223372036854775806) + 1, '[)')
+$$ LANGUAGE sql IMMUTABLE PARALLEL SAFE;
+
+CREATE OR REPLACE FUNCTION check_and_insert_attestation(
+    p_validator_id INTEGER,
+    p_signing_root BYTEA,
+    p_source_epoch BIGINT,
+    p_target_epoch BIGINT) RETURNS TEXT AS $$
+DECLARE
+    existing_signing_root BYTEA;
+    watermark_source_epoch BIGINT;
+    watermark_target_epoch BIGINT;
+BEGIN
+    PERFORM lock_validator(1, p_validator_id);
+
+    SELECT signing_root INTO existing_signing_root
+    FROM signed_attestations
+    WHERE validator_id = p_validator_id AND target_epoch = p_target_epoch;
+    IF FOUND THEN
+        IF existing_signing_root IS NULL THEN
+            RETURN 'EXISTING_WITHOUT_SIGNING_ROOT';
+        ELSIF existing_signing_root = p_signing_root THEN
+            RETURN 'ALREADY_SIGNED';
+        ELSE
+            RETURN 'DOUBLE_SIGNED';
+        END IF;
+    END IF;
+
+    SELECT source_epoch, target_epoch INTO watermark_source_epoch, watermark_target_epoch
+    FROM low_watermarks
+    WHERE validator_id = p_validator_id;
+
+    IF p_source_epoch < (SELECT MIN(source_epoch) FROM signed_attestations
+                         WHERE validator_id = p_validator_id)
+       OR p_source_epoch < watermark_source_epoch THEN
+        RETURN 'SOURCE_EPOCH_BELOW_MINIMUM';
+    END IF;
+
+    IF p_target_epoch <= (SELECT MIN(target_epoch) FROM signed_attestations
+                          WHERE validator_id = p_validator_id)
+       OR p_target_epoch <= watermark_target_epoch THEN
+        RETURN 'TARGET_EPOCH_BELOW_MINIMUM';
+    END IF;
+
+    IF p_source_epoch > p_target_epoch THEN
+        -- no range can be formed from the requested epochs so fall back to scanning the history
+        IF EXISTS (SELECT 1 FROM signed_attestations
+                   WHERE validator_id = p_validator_id
+                   AND source_epoch < p_source_epoch AND target_epoch > p_target_epoch) THEN
+            RETURN 'SURROUNDING_ATTESTATION_EXISTS';
+        END IF;
+
+        IF EXISTS (SELECT 1 FROM signed_attestations
+                   WHERE validator_id = p_validator_id
+                   AND source_epoch > p_source_epoch AND target_epoch < p_target_epoch) THEN
+            RETURN 'SURROUNDED_ATTESTATION_EXISTS';
+        END IF;
+    ELSE
+        -- the range probes match attestations sharing an epoch with the request, which the
+        -- epoch comparisons then exclude. An existing attestation with its source above its
+        -- target cannot surround the request but can be surrounded by it.
+        IF EXISTS (SELECT 1 FROM signed_attestations
+                   WHERE validator_id = p_validator_id
+                   AND source_epoch <= target_epoch
+                   AND epoch_range(source_epoch, target_epoch)
+                       @> epoch_range(p_source_epoch, p_target_epoch)
+                   AND source_epoch < p_source_epoch AND target_epoch > p_target_epoch) THEN
+            RETURN 'SURROUNDING_ATTESTATION_EXISTS';
+        END IF;
+
+        IF EXISTS (SELECT 1 FROM signed_attestations
+                   WHERE validator_id = p_validator_id
+                   AND source_epoch <= target_epoch
+                   AND epoch_range(source_epoch, target_epoch)
+                       <@ epoch_range(p_source_epoch, p_target_epoch)
+                   AND source_epoch > p_source_epoch AND target_epoch < p_target_epoch)
+           OR EXISTS (SELECT 1 FROM signed_attestations
+                      WHERE validator_id = p_validator_id
+                      AND source_epoch > target_epoch
+                      AND source_epoch > p_source_epoch AND target_epoch < p_target_epoch) THEN
+            RETURN 'SURROUNDED_ATTESTATION_EXISTS';
+        END IF;
+    END IF;
+
+    INSERT INTO signed_attestations (validator_id, signing_root, source_epoch, target_epoch)
+    VALUES (p_validator_id, p_signing_root, p_source_epoch, p_target_epoch);
+    RETURN 'SIGNED';
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,14 @@
+-- Indexes used by the surround checks of V10, built without blocking writes. CREATE INDEX
+-- CONCURRENTLY cannot run inside a transaction so this migration is run without one.
+--
+-- Attestations with a source epoch above their target epoch do not form a range and are indexed
+-- separately. The source epoch index serves the minimum source epoch check, which would otherwise
+-- also scan the validator's history.
+CREATE INDEX CONCURRENTLY signed_attestations_epoch_range_idx
+    ON signed_attestations USING GIST (validator_id, epoch_range(source_epoch, target_epoch))
+    WHERE source_epoch <= target_epoch;
+CREATE INDEX CONCURRENTLY signed_attestations_inverted_epochs_idx
+    ON signed_attestations (validator_id, target_epoch)
+    WHERE source_epoch > target_epoch;
+CREATE INDEX CONCURRENTLY signed_attestations_validator_id_source_epoch_idx
+    ON signed_attestations (validator_id, source_epoch);
@@ -0,0 +1,33 @@
+-- Checks and inserts the blocks and attestations of many validators in a single statement. The
+-- requests are evaluated in validator order with blocks before attestations, the same order that
+-- check_and_insert_attestations takes its locks in, so that concurrent batches cannot deadlock on
+-- the validator locks whichever lock strategy is used. The artifact types are the lock types
+-- passed to lock_validator, 0 for a block and 1 for an attestation, and the slot of a block is
+-- passed as its source epoch.
+CREATE FUNCTION check_and_insert_signings(
+    p_artifact_types INTEGER[],
+    p_validator_ids INTEGER[],
+    p_signing_roots BYTEA[],
+    p_source_epochs BIGINT[],
+    p_target_epochs BIGINT[]) RETURNS TABLE (request_index BIGINT, check_result TEXT) AS $$
+DECLARE
+    request RECORD;
+BEGIN
+    FOR request IN
+        SELECT r.artifact_type, r.validator_id, r.signing_root, r.source_epoch, r.target_epoch, r.idx
+        FROM unnest(p_artifact_types, p_validator_ids, p_signing_roots, p_source_epochs, p_target_epochs)
+            WITH ORDINALITY AS r(artifact_type, validator_id, signing_root, source_epoch, target_epoch, idx)
+        ORDER BY r.validator_id, r.artifact_type, r.idx
+    LOOP
+        request_index := request.idx;
+        IF request.artifact_type = 0 THEN
+            check_result := check_and_insert_block(
+                request.validator_id, request.signing_root, request.source_epoch);
+        ELSE
+            check_result := check_and_insert_attestation(
+                request.validator_id, request.signing_root, request.source_epoch, request.target_epoch);
+        END IF;
+        RETURN NEXT;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,7 @@
+-- The genesis validators root of the chain the signing history belongs to, recorded by the first
+-- interchange import so that the history of another chain, and its low watermarks, cannot be
+-- imported on top of it. The table holds at most a single row.
+CREATE TABLE metadata (
+    id INTEGER PRIMARY KEY DEFAULT 1 CHECK (id = 1),
+    genesis_validators_root BYTEA NOT NULL
+);
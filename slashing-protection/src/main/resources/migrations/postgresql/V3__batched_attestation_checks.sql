@@ -0,0 +1,31 @@
+-- Checks and conditionally inserts a batch of attestations for any number of validators in a single
+-- statement, returning the result of each request against its 1-based position in the arrays.
+-- Requests are evaluated in validator order so that concurrent batches take their advisory locks
+-- in the same order and cannot deadlock. Requests for the same validator are evaluated in the
+-- order given and see the attestations inserted by earlier requests in the batch.
+-- The requests are deliberately evaluated one at a time by check_and_insert_attestation rather
+-- than by a single set-based statement: a request's outcome depends on the attestations inserted
+-- by the requests before it for the same validator, which one INSERT ... SELECT over the batch
+-- cannot see, and the single-request function is the one place the slashing rules are written.
+-- The batch still saves a round trip per request, which is what it is for.
+CREATE FUNCTION check_and_insert_attestations(
+    p_validator_ids INTEGER[],
+    p_signing_roots BYTEA[],
+    p_source_epochs NUMERIC[],
+    p_target_epochs NUMERIC[]) RETURNS TABLE (request_index BIGINT, check_result TEXT) AS $$
+DECLARE
+    request RECORD;
+BEGIN
+    FOR request IN
+        SELECT r.validator_id, r.signing_root, r.source_epoch, r.target_epoch, r.idx
+        FROM unnest(p_validator_ids, p_signing_roots, p_source_epochs, p_target_epochs)
+            WITH ORDINALITY AS r(validator_id, signing_root, source_epoch, target_epoch, idx)
+        ORDER BY r.validator_id, r.idx
+    LOOP
+        request_index := request.idx;
+        check_result := check_and_insert_attestation(
+            request.validator_id, request.signing_root, request.source_epoch, request.target_epoch);
+        RETURN NEXT;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,110 @@
+-- Takes the lock that serialises the slashing checks of a validator, using the strategy given by
+-- the web3signer.validator_lock setting of the connection. 'advisory', the default, takes a
+-- transaction level advisory lock keyed by (0, validator) for blocks and (1, validator) for
+-- attestations. 'row' locks the validator's row, serialising its blocks and attestations together.
+-- 'in_process' takes no lock as the only Web3Signer instance using the database serialises its
+-- checks itself.
+CREATE FUNCTION lock_validator(p_lock_type INTEGER, p_validator_id INTEGER) RETURNS VOID AS $$
+BEGIN
+    CASE COALESCE(current_setting('web3signer.validator_lock', true), '')
+        WHEN 'in_process' THEN
+            NULL;
+        WHEN 'row' THEN
+            PERFORM 1 FROM validators WHERE id = p_validator_id FOR NO KEY UPDATE;
+        ELSE
+            PERFORM pg_advisory_xact_lock(p_lock_type, p_validator_id);
+    END CASE;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION check_and_insert_attestation(
+    p_validator_id INTEGER,
+    p_signing_root BYTEA,
+    p_source_epoch NUMERIC,
+    p_target_epoch NUMERIC) RETURNS TEXT AS $$
+DECLARE
+    existing_signing_root BYTEA;
+    watermark_source_epoch NUMERIC;
+    watermark_target_epoch NUMERIC;
+BEGIN
+    PERFORM lock_validator(1, p_validator_id);
+
+    SELECT signing_root INTO existing_signing_root
+    FROM signed_attestations
+    WHERE validator_id = p_validator_id AND target_epoch = p_target_epoch;
+    IF FOUND THEN
+        IF existing_signing_root IS NULL THEN
+            RETURN 'EXISTING_WITHOUT_SIGNING_ROOT';
+        ELSIF existing_signing_root = p_signing_root THEN
+            RETURN 'ALREADY_SIGNED';
+        ELSE
+            RETURN 'DOUBLE_SIGNED';
+        END IF;
+    END IF;
+
+    SELECT source_epoch, target_epoch INTO watermark_source_epoch, watermark_target_epoch
+    FROM low_watermarks
+    WHERE validator_id = p_validator_id;
+
+    IF p_source_epoch < (SELECT MIN(source_epoch) FROM signed_attestations
+                         WHERE validator_id = p_validator_id)
+       OR p_source_epoch < watermark_source_epoch THEN
+        RETURN 'SOURCE_EPOCH_BELOW_MINIMUM';
+    END IF;
+
+    IF p_target_epoch <= (SELECT MIN(target_epoch) FROM signed_attestations
+                          WHERE validator_id = p_validator_id)
+       OR p_target_epoch <= watermark_target_epoch THEN
+        RETURN 'TARGET_EPOCH_BELOW_MINIMUM';
+    END IF;
+
+    IF EXISTS (SELECT 1 FROM signed_attestations
+               WHERE validator_id = p_validator_id
+               AND source_epoch < p_source_epoch AND target_epoch > p_target_epoch) THEN
+        RETURN 'SURROUNDING_ATTESTATION_EXISTS';
+    END IF;
+
+    IF EXISTS (SELECT 1 FROM signed_attestations
+               WHERE validator_id = p_validator_id
+               AND source_epoch > p_source_epoch AND target_epoch < p_target_epoch) THEN
+        RETURN 'SURROUNDED_ATTESTATION_EXISTS';
+    END IF;
+
+    INSERT INTO signed_attestations (validator_id, signing_root, source_epoch, target_epoch)
+    VALUES (p_validator_id, p_signing_root, p_source_epoch, p_target_epoch);
+    RETURN 'SIGNED';
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION check_and_insert_block(
+    p_validator_id INTEGER,
+    p_signing_root BYTEA,
+    p_slot NUMERIC) RETURNS TEXT AS $$
+DECLARE
+    existing_signing_root BYTEA;
+BEGIN
+    PERFORM lock_validator(0, p_validator_id);
+
+    SELECT signing_root INTO existing_signing_root
+    FROM signed_blocks
+    WHERE validator_id = p_validator_id AND slot = p_slot;
+    IF FOUND THEN
+        IF existing_signing_root IS NULL THEN
+            RETURN 'EXISTING_WITHOUT_SIGNING_ROOT';
+        ELSIF existing_signing_root = p_signing_root THEN
+            RETURN 'ALREADY_SIGNED';
+        ELSE
+            RETURN 'DOUBLE_SIGNED';
+        END IF;
+    END IF;
+
+    IF p_slot <= (SELECT MIN(slot) FROM signed_blocks WHERE validator_id = p_validator_id)
+       OR p_slot <= (SELECT slot FROM low_watermarks WHERE validator_id = p_validator_id) THEN
+        RETURN 'SLOT_BELOW_MINIMUM';
+    END IF;
+
+    INSERT INTO signed_blocks (validator_id, slot, signing_root)
+    VALUES (p_validator_id, p_slot, p_signing_root);
+    RETURN 'SIGNED';
+END;
+$$ LANGUAGE plpgsql;
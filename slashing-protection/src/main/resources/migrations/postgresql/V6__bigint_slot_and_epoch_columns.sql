@@ -0,0 +1,112 @@
+-- First step of converting the NUMERIC(20) slot and epoch columns of signed_blocks and
+-- signed_attestations to BIGINT without rewriting the tables under an exclusive lock. BIGINT
+-- columns are added alongside the existing ones and kept in step by a trigger until they replace
+-- them in V9.
+--
+-- Unsigned 64 bit values are stored in BIGINT with the top bit flipped, so that 0 is stored as
+-- -2^63 and 2^64 - 1 as 2^63 - 1, which keeps the unsigned ordering for comparisons and indexes.
+CREATE FUNCTION encode_uint64(p_value NUMERIC) RETURNS BIGINT AS $$
+    SELECT (p_value - 9223372036854775808)::BIGINT;
+$$ LANGUAGE SQL IMMUTABLE STRICT;
+
+CREATE FUNCTION decode_uint64(p_value BIGINT) RETURNS NUMERIC AS $$
+    SELECT p_value::NUMERIC + 9223372036854775808;
+$$ LANGUAGE SQL IMMUTABLE STRICT;
+
+ALTER TABLE signed_blocks ADD COLUMN slot_bigint BIGINT;
+ALTER TABLE signed_attestations ADD COLUMN source_epoch_bigint BIGINT;
+ALTER TABLE signed_attestations ADD COLUMN target_epoch_bigint BIGINT;
+
+-- NOT VALID so that adding them does not scan the tables, V7 validates them once filled
+ALTER TABLE signed_blocks ADD CONSTRAINT signed_blocks_slot_bigint_not_null
+    CHECK (slot_bigint IS NOT NULL) NOT VALID;
+ALTER TABLE signed_attestations ADD CONSTRAINT signed_attestations_source_epoch_bigint_not_null
+    CHECK (source_epoch_bigint IS NOT NULL) NOT VALID;
+ALTER TABLE signed_attestations ADD CONSTRAINT signed_attestations_target_epoch_bigint_not_null
+    CHECK (target_epoch_bigint IS NOT NULL) NOT VALID;
+
+CREATE FUNCTION signed_blocks_sync_slot_bigint() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.slot_bigint := encode_uint64(NEW.slot);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER signed_blocks_sync_slot_bigint
+    BEFORE INSERT OR UPDATE ON signed_blocks
+    FOR EACH ROW EXECUTE PROCEDURE signed_blocks_sync_slot_bigint();
+
+CREATE FUNCTION signed_attestations_sync_epochs_bigint() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.source_epoch_bigint := encode_uint64(NEW.source_epoch);
+    NEW.target_epoch_bigint := encode_uint64(NEW.target_epoch);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER signed_attestations_sync_epochs_bigint
+    BEFORE INSERT OR UPDATE ON signed_attestations
+    FOR EACH ROW EXECUTE PROCEDURE signed_attestations_sync_epochs_bigint();
+
+-- Fills the BIGINT columns of the rows written before this migration in batches of p_batch_size
+-- rows in key order, committing after each batch so that no long transaction holds row locks or
+-- old row versions on a large table. It commits, so it cannot run inside a Flyway migration and
+-- is run out of band between V6 and V7, outside a transaction block:
+--   CALL backfill_bigint_slot_and_epoch_columns(10000);
+-- It can be interrupted and called again. V7 only validates that every row has been filled.
+CREATE PROCEDURE backfill_bigint_slot_and_epoch_columns(p_batch_size INTEGER) AS $$
+DECLARE
+    last_validator_id INTEGER := -1;
+    last_key NUMERIC := -1;
+    batch_end RECORD;
+BEGIN
+    LOOP
+        SELECT validator_id, slot INTO batch_end
+        FROM (SELECT validator_id, slot FROM signed_blocks
+              WHERE (validator_id, slot) > (last_validator_id, last_key)
+              ORDER BY validator_id, slot
+              LIMIT p_batch_size) AS batch
+        ORDER BY validator_id DESC, slot DESC
+        LIMIT 1;
+        EXIT WHEN NOT FOUND;
+
+        UPDATE signed_blocks SET slot_bigint = encode_uint64(slot)
+        WHERE (validator_id, slot) > (last_validator_id, last_key)
+        AND (validator_id, slot) <= (batch_end.validator_id, batch_end.slot)
+        AND slot_bigint IS NULL;
+        last_validator_id := batch_end.validator_id;
+        last_key := batch_end.slot;
+        COMMIT;
+    END LOOP;
+
+    last_validator_id := -1;
+    last_key := -1;
+    LOOP
+        SELECT validator_id, target_epoch INTO batch_end
+        FROM (SELECT validator_id, target_epoch FROM signed_attestations
+              WHERE (validator_id, target_epoch) > (last_validator_id, last_key)
+              ORDER BY validator_id, target_epoch
+              LIMIT p_batch_size) AS batch
+        ORDER BY validator_id DESC, target_epoch DESC
+        LIMIT 1;
+        EXIT WHEN NOT FOUND;
+
+        UPDATE signed_attestations
+        SET source_epoch_bigint = encode_uint64(source_epoch),
+            target_epoch_bigint = encode_uint64(target_epoch)
+        WHERE (validator_id, target_epoch) > (last_validator_id, last_key)
+        AND (validator_id, target_epoch) <= (batch_end.validator_id, batch_end.target_epoch)
+        AND (source_epoch_bigint IS NULL OR target_epoch_bigint IS NULL);
+        last_validator_id := batch_end.validator_id;
+        last_key := batch_end.target_epoch;
+        COMMIT;
+    END LOOP;
+
+    -- validator_id is nullable in signed_attestations and such rows are outside the key ranges
+    UPDATE signed_attestations
+    SET source_epoch_bigint = encode_uint64(source_epoch),
+        target_epoch_bigint = encode_uint64(target_epoch)
+    WHERE validator_id IS NULL AND (source_epoch_bigint IS NULL OR target_epoch_bigint IS NULL);
+    COMMIT;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,24 @@
+-- Validates the not null checks of the BIGINT columns once the rows written before V6 have been
+-- filled by CALL backfill_bigint_slot_and_epoch_columns(...), run out of band after V6 as the
+-- backfill commits in batches and so cannot run in a migration. Validation only takes a lock that
+-- does not block writes. A new database has no such rows.
+--
+-- Rows that have not been filled yet fail this migration with an error naming the procedure to
+-- run before retrying it, rather than with the violated check constraint.
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM signed_blocks WHERE slot_bigint IS NULL)
+       OR EXISTS (SELECT 1 FROM signed_attestations
+                  WHERE source_epoch_bigint IS NULL OR target_epoch_bigint IS NULL) THEN
+        RAISE EXCEPTION 'Slashing protection rows written before V6 have not been backfilled, '
+            'run CALL backfill_bigint_slot_and_epoch_columns(10000) outside a transaction block '
+            'and then run the migration again';
+    END IF;
+END;
+$$;
+
+ALTER TABLE signed_blocks VALIDATE CONSTRAINT signed_blocks_slot_bigint_not_null;
+ALTER TABLE signed_attestations
+    VALIDATE CONSTRAINT signed_attestations_source_epoch_bigint_not_null;
+ALTER TABLE signed_attestations
+    VALIDATE CONSTRAINT signed_attestations_target_epoch_bigint_not_null;
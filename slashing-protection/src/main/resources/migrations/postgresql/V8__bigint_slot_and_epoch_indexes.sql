@@ -0,0 +1,6 @@
+-- Builds the unique indexes for the BIGINT columns without blocking writes. CREATE INDEX
+-- CONCURRENTLY cannot run inside a transaction so this migration is run without one.
+CREATE UNIQUE INDEX CONCURRENTLY signed_blocks_validator_id_slot_bigint_idx
+    ON signed_blocks (validator_id, slot_bigint);
+CREATE UNIQUE INDEX CONCURRENTLY signed_attestations_validator_id_target_epoch_bigint_idx
+    ON signed_attestations (validator_id, target_epoch_bigint);
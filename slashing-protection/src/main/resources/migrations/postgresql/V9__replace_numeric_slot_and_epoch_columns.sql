@@ -0,0 +1,153 @@
+-- Replaces the NUMERIC(20) slot and epoch columns with the BIGINT columns filled by V6 to V8 and
+-- converts the small low_watermarks table in place. Dropping a column and renaming another only
+-- change the catalog, and the validated check constraints let SET NOT NULL skip its scan of the
+-- table on PostgreSQL 12 and later, so the exclusive locks taken here are brief.
+DROP TRIGGER signed_blocks_sync_slot_bigint ON signed_blocks;
+DROP FUNCTION signed_blocks_sync_slot_bigint();
+DROP TRIGGER signed_attestations_sync_epochs_bigint ON signed_attestations;
+DROP FUNCTION signed_attestations_sync_epochs_bigint();
+DROP PROCEDURE backfill_bigint_slot_and_epoch_columns(INTEGER);
+
+DROP FUNCTION check_and_insert_attestations(INTEGER[], BYTEA[], NUMERIC[], NUMERIC[]);
+DROP FUNCTION check_and_insert_attestation(INTEGER, BYTEA, NUMERIC, NUMERIC);
+DROP FUNCTION check_and_insert_block(INTEGER, BYTEA, NUMERIC);
+
+ALTER TABLE signed_blocks DROP COLUMN slot;
+ALTER TABLE signed_blocks RENAME COLUMN slot_bigint TO slot;
+ALTER TABLE signed_blocks ALTER COLUMN slot SET NOT NULL;
+ALTER TABLE signed_blocks DROP CONSTRAINT signed_blocks_slot_bigint_not_null;
+ALTER TABLE signed_blocks ADD CONSTRAINT signed_blocks_validator_id_slot_key
+    UNIQUE USING INDEX signed_blocks_validator_id_slot_bigint_idx;
+
+ALTER TABLE signed_attestations DROP COLUMN source_epoch;
+ALTER TABLE signed_attestations DROP COLUMN target_epoch;
+ALTER TABLE signed_attestations RENAME COLUMN source_epoch_bigint TO source_epoch;
+ALTER TABLE signed_attestations RENAME COLUMN target_epoch_bigint TO target_epoch;
+ALTER TABLE signed_attestations ALTER COLUMN source_epoch SET NOT NULL;
+ALTER TABLE signed_attestations ALTER COLUMN target_epoch SET NOT NULL;
+ALTER TABLE signed_attestations
+    DROP CONSTRAINT signed_attestations_source_epoch_bigint_not_null;
+ALTER TABLE signed_attestations
+    DROP CONSTRAINT signed_attestations_target_epoch_bigint_not_null;
+ALTER TABLE signed_attestations ADD CONSTRAINT signed_attestations_validator_id_target_epoch_key
+    UNIQUE USING INDEX signed_attestations_validator_id_target_epoch_bigint_idx;
+
+ALTER TABLE low_watermarks
+    ALTER COLUMN slot TYPE BIGINT USING encode_uint64(slot),
+    ALTER COLUMN source_epoch TYPE BIGINT USING encode_uint64(source_epoch),
+    ALTER COLUMN target_epoch TYPE BIGINT USING encode_uint64(target_epoch);
+
+CREATE FUNCTION check_and_insert_attestation(
+    p_validator_id INTEGER,
+    p_signing_root BYTEA,
+    p_source_epoch BIGINT,
+    p_target_epoch BIGINT) RETURNS TEXT AS $$
+DECLARE
+    existing_signing_root BYTEA;
+    watermark_source_epoch BIGINT;
+    watermark_target_epoch BIGINT;
+BEGIN
+    PERFORM lock_validator(1, p_validator_id);
+
+    SELECT signing_root INTO existing_signing_root
+    FROM signed_attestations
+    WHERE validator_id = p_validator_id AND target_epoch = p_target_epoch;
+    IF FOUND THEN
+        IF existing_signing_root IS NULL THEN
+            RETURN 'EXISTING_WITHOUT_SIGNING_ROOT';
+        ELSIF existing_signing_root = p_signing_root THEN
+            RETURN 'ALREADY_SIGNED';
+        ELSE
+            RETURN 'DOUBLE_SIGNED';
+        END IF;
+    END IF;
+
+    SELECT source_epoch, target_epoch INTO watermark_source_epoch, watermark_target_epoch
+    FROM low_watermarks
+    WHERE validator_id = p_validator_id;
+
+    IF p_source_epoch < (SELECT MIN(source_epoch) FROM signed_attestations
+                         WHERE validator_id = p_validator_id)
+       OR p_source_epoch < watermark_source_epoch THEN
+        RETURN 'SOURCE_EPOCH_BELOW_MINIMUM';
+    END IF;
+
+    IF p_target_epoch <= (SELECT MIN(target_epoch) FROM signed_attestations
+                          WHERE validator_id = p_validator_id)
+       OR p_target_epoch <= watermark_target_epoch THEN
+        RETURN 'TARGET_EPOCH_BELOW_MINIMUM';
+    END IF;
+
+    IF EXISTS (SELECT 1 FROM signed_attestations
+               WHERE validator_id = p_validator_id
+               AND source_epoch < p_source_epoch AND target_epoch > p_target_epoch) THEN
+        RETURN 'SURROUNDING_ATTESTATION_EXISTS';
+    END IF;
+
+    IF EXISTS (SELECT 1 FROM signed_attestations
+               WHERE validator_id = p_validator_id
+               AND source_epoch > p_source_epoch AND target_epoch < p_target_epoch) THEN
+        RETURN 'SURROUNDED_ATTESTATION_EXISTS';
+    END IF;
+
+    INSERT INTO signed_attestations (validator_id, signing_root, source_epoch, target_epoch)
+    VALUES (p_validator_id, p_signing_root, p_source_epoch, p_target_epoch);
+    RETURN 'SIGNED';
+END;
+$$ LANGUAGE plpgsql;
+
+-- Evaluates each request in turn for the same reasons as the NUMERIC version it replaces (see V3).
+CREATE FUNCTION check_and_insert_attestations(
+    p_validator_ids INTEGER[],
+    p_signing_roots BYTEA[],
+    p_source_epochs BIGINT[],
+    p_target_epochs BIGINT[]) RETURNS TABLE (request_index BIGINT, check_result TEXT) AS $$
+DECLARE
+    request RECORD;
+BEGIN
+    FOR request IN
+        SELECT r.validator_id, r.signing_root, r.source_epoch, r.target_epoch, r.idx
+        FROM unnest(p_validator_ids, p_signing_roots, p_source_epochs, p_target_epochs)
+            WITH ORDINALITY AS r(validator_id, signing_root, source_epoch, target_epoch, idx)
+        ORDER BY r.validator_id, r.idx
+    LOOP
+        request_index := request.idx;
+        check_result := check_and_insert_attestation(
+            request.validator_id, request.signing_root, request.source_epoch, request.target_epoch);
+        RETURN NEXT;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION check_and_insert_block(
+    p_validator_id INTEGER,
+    p_signing_root BYTEA,
+    p_slot BIGINT) RETURNS TEXT AS $$
+DECLARE
+    existing_signing_root BYTEA;
+BEGIN
+    PERFORM lock_validator(0, p_validator_id);
+
+    SELECT signing_root INTO existing_signing_root
+    FROM signed_blocks
+    WHERE validator_id = p_validator_id AND slot = p_slot;
+    IF FOUND THEN
+        IF existing_signing_root IS NULL THEN
+            RETURN 'EXISTING_WITHOUT_SIGNING_ROOT';
+        ELSIF existing_signing_root = p_signing_root THEN
+            RETURN 'ALREADY_SIGNED';
+        ELSE
+            RETURN 'DOUBLE_SIGNED';
+        END IF;
+    END IF;
+
+    IF p_slot <= (SELECT MIN(slot) FROM signed_blocks WHERE validator_id = p_validator_id)
+       OR p_slot <= (SELECT slot FROM low_watermarks WHERE validator_id = p_validator_id) THEN
+        RETURN 'SLOT_BELOW_MINIMUM';
+    END IF;
+
+    INSERT INTO signed_blocks (validator_id, slot, signing_root)
+    VALUES (p_validator_id, p_slot, p_signing_root);
+    RETURN 'SIGNED';
+END;
+$$ LANGUAGE plpgsql;
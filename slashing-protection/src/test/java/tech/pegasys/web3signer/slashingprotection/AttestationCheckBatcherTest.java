@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SlashingCheckResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.jdbi.v3.testing.JdbiRule;
+import org.jdbi.v3.testing.Migration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+// This must be a junit4 for the JdbiRule to work
+public class AttestationCheckBatcherTest {
+
+  private static final int VALIDATOR_COUNT = 50;
+
+  @Rule
+  public JdbiRule postgres =
+      JdbiRule.embeddedPostgres()
+          .withMigration(Migration.before().withPath("migrations/postgresql"));
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(VALIDATOR_COUNT);
+  private AttestationCheckBatcher batcher;
+
+  @Before
+  public void setup() {
+    DbConnection.configureJdbi(postgres.getJdbi());
+    for (int i = 1; i <= VALIDATOR_COUNT; i++) {
+      final Bytes publicKey = Bytes.random(48);
+      postgres
+          .getJdbi()
+          .useHandle(h -> h.execute("INSERT INTO validators (public_key) VALUES (?)", publicKey));
+    }
+    batcher =
+        new AttestationCheckBatcher(
+            postgres.getJdbi(), new SignedAttestationsDao(), 2_000, 16, new NoOpMetricsSystem());
+    batcher.start();
+  }
+
+  @After
+  public void cleanup() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void concurrentChecksEachReceiveTheirOwnResult() throws Exception {
+    final List<Future<SlashingCheckResult>> firstResults = submitForAllValidators(Bytes.of(1));
+    for (final Future<SlashingCheckResult> result : firstResults) {
+      assertThat(result.get()).isEqualTo(SlashingCheckResult.SIGNED);
+    }
+
+    final List<Future<SlashingCheckResult>> secondResults = submitForAllValidators(Bytes.of(2));
+    for (final Future<SlashingCheckResult> result : secondResults) {
+      assertThat(result.get()).isEqualTo(SlashingCheckResult.DOUBLE_SIGNED);
+    }
+  }
+
+  @Test
+  public void failingCheckOnlyFailsItself() throws Exception {
+    // an unknown validator violates the foreign key and fails the batch statement it is part of
+    final Future<SlashingCheckResult> unknownValidatorResult =
+        submit(VALIDATOR_COUNT + 1, Bytes.of(1));
+    final List<Future<SlashingCheckResult>> results = submitForAllValidators(Bytes.of(1));
+
+    assertThatThrownBy(unknownValidatorResult::get)
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(SlashingProtectionUnavailableException.class);
+    for (final Future<SlashingCheckResult> result : results) {
+      assertThat(result.get()).isEqualTo(SlashingCheckResult.SIGNED);
+    }
+  }
+
+  @Test
+  public void checkIsRefusedWhenBatcherHasNotStarted() {
+    final AttestationCheckBatcher unstartedBatcher =
+        new AttestationCheckBatcher(
+            postgres.getJdbi(), new SignedAttestationsDao(), 2_000, 16, new NoOpMetricsSystem());
+    final SignedAttestation attestation =
+        new SignedAttestation(1, UInt64.valueOf(1), UInt64.valueOf(2), Bytes.of(1));
+
+    assertThatThrownBy(() -> unstartedBatcher.checkAndInsert(attestation))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("Attestation check batcher is not running");
+  }
+
+  private List<Future<SlashingCheckResult>> submitForAllValidators(final Bytes signingRoot) {
+    final List<Future<SlashingCheckResult>> results = new ArrayList<>();
+    for (int validatorId = 1; validatorId <= VALIDATOR_COUNT; validatorId++) {
+      results.add(submit(validatorId, signingRoot));
+    }
+    return results;
+  }
+
+  private Future<SlashingCheckResult> submit(final int validatorId, final Bytes signingRoot) {
+    final SignedAttestation attestation =
+        new SignedAttestation(validatorId, UInt64.valueOf(1), UInt64.valueOf(2), signingRoot);
+    return executor.submit(() -> batcher.checkAndInsert(attestation));
+  }
+}
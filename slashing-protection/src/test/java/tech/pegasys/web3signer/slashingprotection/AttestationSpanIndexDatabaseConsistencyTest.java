@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.testing.JdbiRule;
+import org.jdbi.v3.testing.Migration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+// This must be a junit4 for the JdbiRule to work
+public class AttestationSpanIndexDatabaseConsistencyTest {
+
+  private static final List<Bytes> VALIDATORS = List.of(Bytes.of(1), Bytes.of(2), Bytes.of(3));
+  private static final int EPOCH_WINDOW = 8;
+  private static final int ATTESTATION_COUNT = 2_000;
+
+  @Rule
+  public JdbiRule databaseOnly =
+      JdbiRule.embeddedPostgres()
+          .withMigration(Migration.before().withPath("migrations/postgresql"));
+
+  @Rule
+  public JdbiRule indexed =
+      JdbiRule.embeddedPostgres()
+          .withMigration(Migration.before().withPath("migrations/postgresql"));
+
+  private final Random random = new Random(42);
+  private final Bytes32[] signingRoots = {
+    Bytes32.fromHexStringLenient("0x01"), Bytes32.fromHexStringLenient("0x02")
+  };
+  private SlashingProtection databaseOnlySlashingProtection;
+
+  @Before
+  public void setup() {
+    DbConnection.configureJdbi(databaseOnly.getJdbi());
+    DbConnection.configureJdbi(indexed.getJdbi());
+    databaseOnlySlashingProtection = createSlashingProtection(databaseOnly.getJdbi(), false);
+  }
+
+  @Test
+  public void indexedSlashingProtectionAgreesWithDatabaseForRandomHistories() {
+    final SlashingProtection indexedSlashingProtection =
+        createSlashingProtection(indexed.getJdbi(), true);
+
+    replayRandomAttestations(indexedSlashingProtection, ATTESTATION_COUNT);
+  }
+
+  @Test
+  public void indexLoadedFromDatabaseAgreesWithDatabaseForRandomHistories() {
+    replayRandomAttestations(createSlashingProtection(indexed.getJdbi(), true), ATTESTATION_COUNT);
+
+    replayRandomAttestations(createSlashingProtection(indexed.getJdbi(), true), ATTESTATION_COUNT);
+  }
+
+  @Test
+  public void attestationWithSpanBeyondTheSpanRangeAgreesWithDatabase() {
+    final SlashingProtection indexedSlashingProtection =
+        createSlashingProtection(indexed.getJdbi(), true);
+    final Bytes validator = VALIDATORS.get(0);
+
+    assertAgreesWithDatabase(indexedSlashingProtection, validator, signingRoots[0], 0, 1);
+    // a span of 70000 epochs exceeds any span the index can hold
+    final boolean permitted =
+        assertAgreesWithDatabase(indexedSlashingProtection, validator, signingRoots[0], 1, 70001);
+    assertThat(permitted).isTrue();
+  }
+
+  private void replayRandomAttestations(
+      final SlashingProtection indexedSlashingProtection, final int count) {
+    long headEpoch = 0;
+    for (int i = 0; i < count; i++) {
+      final Bytes validator = VALIDATORS.get(random.nextInt(VALIDATORS.size()));
+      headEpoch += random.nextInt(4) == 0 ? 1 : 0;
+      // mostly recent attestations with occasional stale or wide ones
+      final long targetEpoch = Math.max(0, headEpoch - random.nextInt(3 * EPOCH_WINDOW / 2));
+      final long sourceEpoch = Math.max(0, targetEpoch - random.nextInt(EPOCH_WINDOW));
+      final Bytes32 signingRoot = signingRoots[random.nextInt(signingRoots.length)];
+
+      assertAgreesWithDatabase(
+          indexedSlashingProtection, validator, signingRoot, sourceEpoch, targetEpoch);
+    }
+  }
+
+  private boolean assertAgreesWithDatabase(
+      final SlashingProtection indexedSlashingProtection,
+      final Bytes validator,
+      final Bytes32 signingRoot,
+      final long sourceEpoch,
+      final long targetEpoch) {
+    final boolean expected =
+        databaseOnlySlashingProtection.maySignAttestation(
+            validator, signingRoot, UInt64.valueOf(sourceEpoch), UInt64.valueOf(targetEpoch));
+    final boolean actual =
+        indexedSlashingProtection.maySignAttestation(
+            validator, signingRoot, UInt64.valueOf(sourceEpoch), UInt64.valueOf(targetEpoch));
+    assertThat(actual)
+        .describedAs("attestation for %s source %d target %d", validator, sourceEpoch, targetEpoch)
+        .isEqualTo(expected);
+    return actual;
+  }
+
+  private SlashingProtection createSlashingProtection(final Jdbi jdbi, final boolean indexed) {
+    final SlashingProtection slashingProtection =
+        DbSlashingProtection.builder(jdbi)
+            .attestationSpanIndex(
+                indexed ? Optional.of(new AttestationSpanIndex(EPOCH_WINDOW)) : Optional.empty())
+            .build();
+    slashingProtection.registerValidators(VALIDATORS);
+    return slashingProtection;
+  }
+}
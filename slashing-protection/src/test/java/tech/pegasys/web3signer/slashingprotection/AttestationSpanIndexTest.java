@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.pegasys.web3signer.slashingprotection.AttestationSpanIndex.Verdict.REJECT;
+import static tech.pegasys.web3signer.slashingprotection.AttestationSpanIndex.Verdict.REPEAT;
+import static tech.pegasys.web3signer.slashingprotection.AttestationSpanIndex.Verdict.SAFE;
+import static tech.pegasys.web3signer.slashingprotection.AttestationSpanIndex.Verdict.UNKNOWN;
+
+import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.jupiter.api.Test;
+
+class AttestationSpanIndexTest {
+
+  private static final int VALIDATOR_ID = 1;
+  private static final Bytes32 ROOT = Bytes32.fromHexStringLenient("0x01");
+  private static final Bytes32 OTHER_ROOT = Bytes32.fromHexStringLenient("0x02");
+
+  private final AttestationSpanIndex index = new AttestationSpanIndex(16);
+
+  @Test
+  void anyAttestationIsSafeForValidatorWithNoHistory() {
+    assertThat(check(0, 0, ROOT)).isEqualTo(SAFE);
+    assertThat(check(5, 100, ROOT)).isEqualTo(SAFE);
+  }
+
+  @Test
+  void repeatedAttestationIsPermittedButDoubleVoteIsRejected() {
+    record(3, 4, ROOT);
+
+    assertThat(check(3, 4, ROOT)).isEqualTo(REPEAT);
+    assertThat(check(3, 4, OTHER_ROOT)).isEqualTo(REJECT);
+    assertThat(check(2, 4, ROOT)).isEqualTo(REPEAT);
+  }
+
+  @Test
+  void attestationWithNoSigningRootCannotBeRepeated() {
+    index.load(new SignedAttestation(VALIDATOR_ID, UInt64.valueOf(3), UInt64.valueOf(4), null));
+
+    assertThat(check(3, 4, ROOT)).isEqualTo(REJECT);
+  }
+
+  @Test
+  void surroundingAndSurroundedAttestationsAreRejected() {
+    record(1, 2, ROOT);
+    record(3, 6, ROOT);
+
+    assertThat(check(2, 7, ROOT)).isEqualTo(REJECT);
+    assertThat(check(4, 5, ROOT)).isEqualTo(REJECT);
+    assertThat(check(3, 7, ROOT)).isEqualTo(SAFE);
+    assertThat(check(4, 7, ROOT)).isEqualTo(SAFE);
+    assertThat(check(6, 8, ROOT)).isEqualTo(SAFE);
+  }
+
+  @Test
+  void attestationsBelowMinimumEpochsAreRejected() {
+    record(3, 6, ROOT);
+
+    assertThat(check(2, 8, ROOT)).isEqualTo(REJECT);
+    assertThat(check(3, 5, ROOT)).isEqualTo(REJECT);
+  }
+
+  @Test
+  void attestationsBeforeTheWindowAreUnknown() {
+    record(0, 1, ROOT);
+    for (int epoch = 2; epoch < 40; epoch++) {
+      assertThat(check(epoch - 1, epoch, ROOT)).isEqualTo(SAFE);
+      record(epoch - 1, epoch, ROOT);
+    }
+
+    assertThat(check(5, 6, ROOT)).isEqualTo(UNKNOWN);
+    assertThat(check(10, 40, ROOT)).isEqualTo(UNKNOWN);
+    assertThat(check(30, 39, ROOT)).isEqualTo(REPEAT);
+    assertThat(check(30, 38, OTHER_ROOT)).isEqualTo(REJECT);
+    assertThat(check(37, 40, ROOT)).isEqualTo(REJECT);
+    assertThat(check(39, 40, ROOT)).isEqualTo(SAFE);
+  }
+
+  @Test
+  void loadedHistoryIsIndexedFromItsMostRecentEpochs() {
+    index.prepareForHistory(VALIDATOR_ID, UInt64.valueOf(0), UInt64.valueOf(100));
+    index.load(attestation(0, 10));
+    index.load(attestation(90, 100));
+
+    assertThat(check(0, 10, ROOT)).isEqualTo(UNKNOWN);
+    assertThat(check(90, 100, ROOT)).isEqualTo(REPEAT);
+    assertThat(check(91, 99, ROOT)).isEqualTo(REJECT);
+    assertThat(check(100, 101, ROOT)).isEqualTo(SAFE);
+  }
+
+  @Test
+  void validatorsAreIndexedIndependently() {
+    record(3, 6, ROOT);
+
+    assertThat(index.check(2, UInt64.valueOf(4), UInt64.valueOf(5), ROOT)).isEqualTo(SAFE);
+  }
+
+  @Test
+  void epochWindowMustFitInSpanValues() {
+    assertThatThrownBy(() -> new AttestationSpanIndex(0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new AttestationSpanIndex(AttestationSpanIndex.MAX_EPOCH_WINDOW + 1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private AttestationSpanIndex.Verdict check(
+      final int sourceEpoch, final int targetEpoch, final Bytes signingRoot) {
+    return index.check(
+        VALIDATOR_ID, UInt64.valueOf(sourceEpoch), UInt64.valueOf(targetEpoch), signingRoot);
+  }
+
+  private void record(final int sourceEpoch, final int targetEpoch, final Bytes signingRoot) {
+    index.record(
+        VALIDATOR_ID, UInt64.valueOf(sourceEpoch), UInt64.valueOf(targetEpoch), signingRoot);
+  }
+
+  private SignedAttestation attestation(final int sourceEpoch, final int targetEpoch) {
+    return new SignedAttestation(
+        VALIDATOR_ID, UInt64.valueOf(sourceEpoch), UInt64.valueOf(targetEpoch), ROOT);
+  }
+}
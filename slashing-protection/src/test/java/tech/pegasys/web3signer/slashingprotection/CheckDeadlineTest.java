@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.testing.JdbiRule;
+import org.jdbi.v3.testing.Migration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+// This must be a junit4 for the JdbiRule to work
+public class CheckDeadlineTest {
+
+  @Rule
+  public JdbiRule postgres =
+      JdbiRule.embeddedPostgres()
+          .withMigration(Migration.before().withPath("migrations/postgresql"));
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private Handle lockHolder;
+
+  @Before
+  public void setup() {
+    DbConnection.configureJdbi(postgres.getJdbi());
+    lockHolder = postgres.getJdbi().open();
+  }
+
+  @After
+  public void cleanup() {
+    executor.shutdownNow();
+    lockHolder.close();
+  }
+
+  @Test
+  public void expiredDeadlineFailsBeforeRunningCheck() throws Exception {
+    final CheckDeadline deadline = CheckDeadline.start(1);
+    Thread.sleep(10);
+    final AtomicBoolean checked = new AtomicBoolean();
+
+    assertThatThrownBy(() -> deadline.useHandle(postgres.getJdbi(), h -> checked.set(true)))
+        .isInstanceOf(SlashingCheckDeadlineExceededException.class);
+    assertThat(checked).isFalse();
+  }
+
+  @Test
+  public void databaseLockWaitCancelledByStatementTimeoutFailsCheck() {
+    setConnectionStatementTimeout(300);
+    lockHolder.begin();
+    lockHolder.execute("SELECT pg_advisory_xact_lock(0, 1)");
+
+    assertThatThrownBy(
+            () ->
+                CheckDeadline.start(60_000)
+                    .useHandle(postgres.getJdbi(), h -> h.execute("SELECT lock_validator(0, 1)")))
+        .isInstanceOf(SlashingCheckDeadlineExceededException.class);
+    lockHolder.rollback();
+  }
+
+  @Test
+  public void slowStatementCancelledByStatementTimeoutFailsCheck() {
+    setConnectionStatementTimeout(300);
+
+    assertThatThrownBy(
+            () ->
+                CheckDeadline.start(60_000)
+                    .useHandle(postgres.getJdbi(), h -> h.execute("SELECT pg_sleep(5)")))
+        .isInstanceOf(SlashingCheckDeadlineExceededException.class);
+  }
+
+  @Test
+  public void liftedStatementTimeoutAllowsLongerWork() {
+    setConnectionStatementTimeout(100);
+
+    postgres
+        .getJdbi()
+        .useTransaction(
+            h -> {
+              DbConnection.liftStatementTimeout(h);
+              h.execute("SELECT pg_sleep(0.3)");
+            });
+  }
+
+  @Test
+  public void inProcessLockWaitFailsOnceDeadlineExpires() throws Exception {
+    final ReentrantLock lock = new ReentrantLock();
+    final CountDownLatch locked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    executor.submit(
+        () -> {
+          lock.lock();
+          try {
+            locked.countDown();
+            release.await();
+          } finally {
+            lock.unlock();
+          }
+          return null;
+        });
+    assertThat(locked.await(1, TimeUnit.SECONDS)).isTrue();
+
+    assertThatThrownBy(() -> CheckDeadline.start(300).lock(lock))
+        .isInstanceOf(SlashingCheckDeadlineExceededException.class);
+    release.countDown();
+  }
+
+  private void setConnectionStatementTimeout(final long timeoutMillis) {
+    // as the pool sets it on each of its connections when they are opened
+    lockHolder.execute("ALTER DATABASE postgres SET statement_timeout = " + timeoutMillis);
+  }
+}
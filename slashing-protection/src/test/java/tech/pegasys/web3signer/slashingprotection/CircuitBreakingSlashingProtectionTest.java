@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import tech.pegasys.web3signer.slashingprotection.CircuitBreakingSlashingProtection.State;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.jdbi.v3.core.ConnectionException;
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakingSlashingProtectionTest {
+
+  private static final Bytes PUBLIC_KEY = Bytes.of(1);
+  private static final Bytes SIGNING_ROOT = Bytes.of(2);
+  private static final UInt64 SLOT = UInt64.valueOf(3);
+  private static final int FAILURE_THRESHOLD = 3;
+  private static final long OPEN_DURATION_MILLIS = 1_000;
+
+  private final SlashingProtection delegate = mock(SlashingProtection.class);
+  private final AtomicLong nanoTime = new AtomicLong();
+  private final CircuitBreakingSlashingProtection slashingProtection =
+      new CircuitBreakingSlashingProtection(
+          delegate,
+          FAILURE_THRESHOLD,
+          OPEN_DURATION_MILLIS,
+          new NoOpMetricsSystem(),
+          nanoTime::get);
+
+  @Test
+  void checksArePassedThroughWhileClosed() {
+    when(delegate.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, SLOT)).thenReturn(true);
+
+    assertThat(slashingProtection.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, SLOT)).isTrue();
+    assertThat(slashingProtection.getState()).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  void databaseFailuresAreReportedAsUnavailable() {
+    when(delegate.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, SLOT))
+        .thenThrow(new ConnectionException(new RuntimeException("refused")));
+
+    assertThatThrownBy(() -> slashingProtection.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, SLOT))
+        .isInstanceOf(SlashingProtectionUnavailableException.class)
+        .hasCauseInstanceOf(ConnectionException.class);
+    assertThat(slashingProtection.getState()).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  void opensAfterConsecutiveFailuresAndRejectsWithoutCallingTheDatabase() {
+    tripBreaker();
+
+    assertThatThrownBy(() -> slashingProtection.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, SLOT))
+        .isInstanceOf(SlashingProtectionUnavailableException.class)
+        .hasNoCause();
+    verify(delegate, times(FAILURE_THRESHOLD)).maySignBlock(any(), any(), any());
+  }
+
+  @Test
+  void successResetsTheConsecutiveFailureCount() {
+    when(delegate.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, SLOT))
+        .thenThrow(new SlashingCheckDeadlineExceededException("slow"))
+        .thenThrow(new SlashingCheckDeadlineExceededException("slow"))
+        .thenReturn(true)
+        .thenThrow(new SlashingCheckDeadlineExceededException("slow"));
+
+    for (int i = 0; i < 2; i++) {
+      assertThatThrownBy(() -> slashingProtection.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, SLOT))
+          .isInstanceOf(SlashingProtectionUnavailableException.class);
+    }
+    assertThat(slashingProtection.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, SLOT)).isTrue();
+    assertThatThrownBy(() -> slashingProtection.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, SLOT))
+        .isInstanceOf(SlashingProtectionUnavailableException.class);
+
+    assertThat(slashingProtection.getState()).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  void nonDatabaseFailuresDoNotOpenTheBreaker() {
+    when(delegate.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, SLOT))
+        .thenThrow(new IllegalArgumentException("Unregistered validator"));
+
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+      assertThatThrownBy(() -> slashingProtection.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, SLOT))
+          .isInstanceOf(IllegalArgumentException.class);
+    }
+    assertThat(slashingProtection.getState()).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  void closesWhenTheTrialCheckSucceedsAfterTheOpenDuration() {
+    tripBreaker();
+    when(delegate.maySignAttestation(PUBLIC_KEY, SIGNING_ROOT, SLOT, SLOT)).thenReturn(true);
+
+    nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(OPEN_DURATION_MILLIS));
+
+    assertThat(slashingProtection.maySignAttestation(PUBLIC_KEY, SIGNING_ROOT, SLOT, SLOT))
+        .isTrue();
+    assertThat(slashingProtection.getState()).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  void reopensWhenTheTrialCheckFails() {
+    tripBreaker();
+    nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(OPEN_DURATION_MILLIS));
+
+    assertThatThrownBy(() -> slashingProtection.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, SLOT))
+        .isInstanceOf(SlashingProtectionUnavailableException.class)
+        .hasCauseInstanceOf(SlashingCheckDeadlineExceededException.class);
+    assertThat(slashingProtection.getState()).isEqualTo(State.OPEN);
+
+    // the open duration starts again from the failed trial
+    nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(OPEN_DURATION_MILLIS) - 1);
+    assertThatThrownBy(() -> slashingProtection.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, SLOT))
+        .isInstanceOf(SlashingProtectionUnavailableException.class)
+        .hasNoCause();
+    verify(delegate, times(FAILURE_THRESHOLD + 1)).maySignBlock(any(), any(), any());
+  }
+
+  @Test
+  void nonCheckOperationsAreNotGuarded() {
+    tripBreaker();
+
+    slashingProtection.prune();
+
+    verify(delegate).prune();
+    verify(delegate, never()).maySignAttestation(any(), any(), any(), any());
+  }
+
+  private void tripBreaker() {
+    when(delegate.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, SLOT))
+        .thenThrow(new SlashingCheckDeadlineExceededException("slow"));
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+      assertThatThrownBy(() -> slashingProtection.maySignBlock(PUBLIC_KEY, SIGNING_ROOT, SLOT))
+          .isInstanceOf(SlashingProtectionUnavailableException.class);
+    }
+    assertThat(slashingProtection.getState()).isEqualTo(State.OPEN);
+  }
+}
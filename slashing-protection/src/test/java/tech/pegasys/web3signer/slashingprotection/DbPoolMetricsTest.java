@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DbPoolMetricsTest {
+
+  private final MetricsSystem metricsSystem = mock(MetricsSystem.class);
+  private final Map<String, Counter> waitBuckets = new HashMap<>();
+  private final Counter waitMicros = mock(Counter.class);
+  private final Counter timeouts = mock(Counter.class);
+  private IMetricsTracker tracker;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setup() {
+    final LabelledMetric<Counter> waitBucketCounters = mock(LabelledMetric.class);
+    when(waitBucketCounters.labels(anyString()))
+        .thenAnswer(
+            invocation ->
+                waitBuckets.computeIfAbsent(invocation.getArgument(0), le -> mock(Counter.class)));
+    when(metricsSystem.createLabelledCounter(
+            any(), eq("db_pool_connection_wait_bucket"), anyString(), eq("le")))
+        .thenReturn(waitBucketCounters);
+    when(metricsSystem.createCounter(
+            any(), eq("db_pool_connection_wait_microseconds"), anyString()))
+        .thenReturn(waitMicros);
+    when(metricsSystem.createCounter(any(), eq("db_pool_connection_timeouts"), anyString()))
+        .thenReturn(timeouts);
+
+    tracker = new DbPoolMetrics(metricsSystem).create("pool", mock(PoolStats.class));
+  }
+
+  @Test
+  void connectionWaitIsCountedInEveryBucketThatCoversIt() {
+    tracker.recordConnectionAcquiredNanos(TimeUnit.MILLISECONDS.toNanos(10));
+
+    verify(waitMicros).inc(10_000);
+    verify(waitBuckets.get("1"), never()).inc();
+    verify(waitBuckets.get("5"), never()).inc();
+    verify(waitBuckets.get("10")).inc();
+    verify(waitBuckets.get("25")).inc();
+    verify(waitBuckets.get("5000")).inc();
+    verify(waitBuckets.get("+Inf")).inc();
+  }
+
+  @Test
+  void connectionWaitAboveEveryBucketIsOnlyCountedInTheInfiniteBucket() {
+    tracker.recordConnectionAcquiredNanos(TimeUnit.SECONDS.toNanos(6));
+
+    verify(waitBuckets.get("5000"), never()).inc();
+    verify(waitBuckets.get("+Inf")).inc();
+  }
+
+  @Test
+  void connectionTimeoutIsCounted() {
+    tracker.recordConnectionTimeout();
+
+    verify(timeouts).inc();
+  }
+}
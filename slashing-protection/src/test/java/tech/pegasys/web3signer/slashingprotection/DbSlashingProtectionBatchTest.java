@@ -0,0 +1,174 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.testing.JdbiRule;
+import org.jdbi.v3.testing.Migration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+// This must be a junit4 for the JdbiRule to work
+public class DbSlashingProtectionBatchTest {
+
+  private static final Bytes PUBLIC_KEY_1 = Bytes.of(1);
+  private static final Bytes PUBLIC_KEY_2 = Bytes.of(2);
+  private static final Bytes SIGNING_ROOT_1 = Bytes.of(3);
+  private static final Bytes SIGNING_ROOT_2 = Bytes.of(4);
+
+  @Rule
+  public JdbiRule postgres =
+      JdbiRule.embeddedPostgres()
+          .withMigration(Migration.before().withPath("migrations/postgresql"));
+
+  private Jdbi jdbi;
+  private final ValidatorRegistry validatorRegistry = new ValidatorRegistry();
+  private final WatermarkCache watermarkCache = new WatermarkCache();
+
+  @Before
+  public void setup() {
+    jdbi = postgres.getJdbi();
+    DbConnection.configureJdbi(jdbi);
+  }
+
+  @Test
+  public void resultsAreReturnedInRequestOrder() {
+    final SlashingProtection slashingProtection = createSlashingProtection(Optional.empty());
+
+    final List<Boolean> results =
+        slashingProtection.maySignBatch(
+            List.of(
+                attestation(PUBLIC_KEY_1, SIGNING_ROOT_1, 1, 2),
+                block(PUBLIC_KEY_2, SIGNING_ROOT_1, 5),
+                block(PUBLIC_KEY_2, SIGNING_ROOT_2, 5),
+                attestation(PUBLIC_KEY_1, SIGNING_ROOT_2, 0, 3),
+                block(PUBLIC_KEY_1, SIGNING_ROOT_1, 1)));
+
+    assertThat(results).containsExactly(true, true, false, false, true);
+    assertThat(count("SELECT COUNT(*) FROM signed_blocks")).isEqualTo(2);
+    assertThat(count("SELECT COUNT(*) FROM signed_attestations")).isEqualTo(1);
+  }
+
+  @Test
+  public void duplicateItemsForTheSameValidatorAreCheckedInRequestOrder() {
+    final SlashingProtection slashingProtection = createSlashingProtection(Optional.empty());
+
+    final List<Boolean> results =
+        slashingProtection.maySignBatch(
+            List.of(
+                attestation(PUBLIC_KEY_1, SIGNING_ROOT_1, 1, 2),
+                attestation(PUBLIC_KEY_1, SIGNING_ROOT_1, 1, 2),
+                attestation(PUBLIC_KEY_1, SIGNING_ROOT_2, 1, 2),
+                block(PUBLIC_KEY_1, SIGNING_ROOT_2, 7),
+                block(PUBLIC_KEY_1, SIGNING_ROOT_1, 7),
+                block(PUBLIC_KEY_1, SIGNING_ROOT_2, 7)));
+
+    // repeating a signing root is permitted, another root for the same epoch or slot is not
+    assertThat(results).containsExactly(true, true, false, true, false, true);
+    assertThat(count("SELECT COUNT(*) FROM signed_blocks")).isEqualTo(1);
+    assertThat(count("SELECT COUNT(*) FROM signed_attestations")).isEqualTo(1);
+  }
+
+  @Test
+  public void requestsBelowWatermarkAreRejectedWithoutDatabaseCheck() {
+    final SlashingProtection slashingProtection = createSlashingProtection(Optional.empty());
+    final int validatorId = validatorRegistry.get(PUBLIC_KEY_1);
+    watermarkCache.blockSigned(validatorId, UInt64.valueOf(10));
+    watermarkCache.attestationSigned(validatorId, UInt64.valueOf(5), UInt64.valueOf(6));
+
+    final List<Boolean> results =
+        slashingProtection.maySignBatch(
+            List.of(
+                block(PUBLIC_KEY_1, SIGNING_ROOT_1, 9),
+                attestation(PUBLIC_KEY_1, SIGNING_ROOT_1, 4, 7),
+                attestation(PUBLIC_KEY_1, SIGNING_ROOT_1, 8, 7)));
+
+    assertThat(results).containsExactly(false, false, false);
+    assertThat(count("SELECT COUNT(*) FROM signed_blocks")).isZero();
+    assertThat(count("SELECT COUNT(*) FROM signed_attestations")).isZero();
+  }
+
+  @Test
+  public void requestsAboveWatermarkAreCheckedAlongsideFilteredRequests() {
+    final SlashingProtection slashingProtection = createSlashingProtection(Optional.empty());
+    final int validatorId = validatorRegistry.get(PUBLIC_KEY_1);
+    watermarkCache.blockSigned(validatorId, UInt64.valueOf(10));
+
+    final List<Boolean> results =
+        slashingProtection.maySignBatch(
+            List.of(
+                block(PUBLIC_KEY_1, SIGNING_ROOT_1, 9),
+                block(PUBLIC_KEY_1, SIGNING_ROOT_1, 11),
+                attestation(PUBLIC_KEY_1, SIGNING_ROOT_1, 1, 2)));
+
+    assertThat(results).containsExactly(false, true, true);
+    assertThat(count("SELECT COUNT(*) FROM signed_blocks")).isEqualTo(1);
+    assertThat(count("SELECT COUNT(*) FROM signed_attestations")).isEqualTo(1);
+  }
+
+  @Test
+  public void spanIndexChecksEachRequestInOrder() {
+    final SlashingProtection slashingProtection =
+        createSlashingProtection(Optional.of(new AttestationSpanIndex(256)));
+
+    final List<Boolean> results =
+        slashingProtection.maySignBatch(
+            List.of(
+                attestation(PUBLIC_KEY_1, SIGNING_ROOT_1, 1, 2),
+                attestation(PUBLIC_KEY_1, SIGNING_ROOT_2, 0, 3),
+                block(PUBLIC_KEY_2, SIGNING_ROOT_1, 1),
+                attestation(PUBLIC_KEY_1, SIGNING_ROOT_2, 1, 2)));
+
+    assertThat(results).containsExactly(true, false, true, false);
+    assertThat(count("SELECT COUNT(*) FROM signed_blocks")).isEqualTo(1);
+    assertThat(count("SELECT COUNT(*) FROM signed_attestations")).isEqualTo(1);
+  }
+
+  private SlashingProtection createSlashingProtection(
+      final Optional<AttestationSpanIndex> attestationSpanIndex) {
+    final SlashingProtection slashingProtection =
+        DbSlashingProtection.builder(jdbi)
+            .validatorRegistry(validatorRegistry)
+            .watermarkCache(watermarkCache)
+            .attestationSpanIndex(attestationSpanIndex)
+            .build();
+    slashingProtection.registerValidators(List.of(PUBLIC_KEY_1, PUBLIC_KEY_2));
+    return slashingProtection;
+  }
+
+  private static SlashingCheck block(
+      final Bytes publicKey, final Bytes signingRoot, final int slot) {
+    return SlashingCheck.block(publicKey, signingRoot, UInt64.valueOf(slot));
+  }
+
+  private static SlashingCheck attestation(
+      final Bytes publicKey,
+      final Bytes signingRoot,
+      final int sourceEpoch,
+      final int targetEpoch) {
+    return SlashingCheck.attestation(
+        publicKey, signingRoot, UInt64.valueOf(sourceEpoch), UInt64.valueOf(targetEpoch));
+  }
+
+  private long count(final String query) {
+    return jdbi.withHandle(h -> h.createQuery(query).mapTo(Long.class).one());
+  }
+}
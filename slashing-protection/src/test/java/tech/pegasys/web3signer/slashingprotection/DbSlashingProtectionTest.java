@@ -15,7 +15,7 @@ package tech.pegasys.web3signer.slashingprotection;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.refEq;
 import static org.mockito.Mockito.never;
@@ -27,12 +27,12 @@ import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestation;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedAttestationsDao;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedBlock;
 import tech.pegasys.web3signer.slashingprotection.dao.SignedBlocksDao;
+import tech.pegasys.web3signer.slashingprotection.dao.SlashingCheckResult;
 import tech.pegasys.web3signer.slashingprotection.dao.Validator;
+import tech.pegasys.web3signer.slashingprotection.dao.ValidatorWatermark;
 import tech.pegasys.web3signer.slashingprotection.dao.ValidatorsDao;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 import org.apache.tuweni.bytes.Bytes;
@@ -61,6 +61,8 @@ public class DbSlashingProtectionTest {
   @Mock private ValidatorsDao validatorsDao;
   @Mock private SignedBlocksDao signedBlocksDao;
   @Mock private SignedAttestationsDao signedAttestationsDao;
+  @Mock private AttestationCheckBatcher attestationCheckBatcher;
+  @Mock private SlashingProtectionPruner pruner;
   @Rule public JdbiRule db = JdbiRule.embeddedPostgres();
 
   private DbSlashingProtection dbSlashingProtection;
@@ -68,155 +70,104 @@ public class DbSlashingProtectionTest {
   @Before
   public void setup() {
     dbSlashingProtection =
-        new DbSlashingProtection(
-            db.getJdbi(),
-            validatorsDao,
-            signedBlocksDao,
-            signedAttestationsDao,
-            Map.of(PUBLIC_KEY1, VALIDATOR_ID));
+        daoBackedSlashingProtection()
+            .validatorRegistry(registry(PUBLIC_KEY1, VALIDATOR_ID))
+            .build();
   }
 
   @Test
   public void blockCanSignWhenNoMatchForPublicKey() {
-    when(signedBlocksDao.findExistingBlock(any(), anyInt(), any())).thenReturn(Optional.empty());
+    when(signedBlocksDao.checkAndInsertBlock(any(), any())).thenReturn(SlashingCheckResult.SIGNED);
 
     assertThat(dbSlashingProtection.maySignBlock(PUBLIC_KEY1, SIGNING_ROOT, SLOT)).isTrue();
-    verify(signedBlocksDao).findExistingBlock(any(), eq(VALIDATOR_ID), eq(SLOT));
     verify(signedBlocksDao)
-        .insertBlockProposal(any(), refEq(new SignedBlock(VALIDATOR_ID, SLOT, SIGNING_ROOT)));
+        .checkAndInsertBlock(any(), refEq(new SignedBlock(VALIDATOR_ID, SLOT, SIGNING_ROOT)));
   }
 
   @Test
   public void blockCanSignWhenExactlyMatchesBlock() {
-    final SignedBlock signedBlock = new SignedBlock(VALIDATOR_ID, SLOT, SIGNING_ROOT);
-    when(signedBlocksDao.findExistingBlock(any(), anyInt(), any()))
-        .thenReturn(Optional.of(signedBlock));
+    when(signedBlocksDao.checkAndInsertBlock(any(), any()))
+        .thenReturn(SlashingCheckResult.ALREADY_SIGNED);
 
     assertThat(dbSlashingProtection.maySignBlock(PUBLIC_KEY1, SIGNING_ROOT, SLOT)).isTrue();
-    verify(signedBlocksDao).findExistingBlock(any(), eq(VALIDATOR_ID), eq(SLOT));
-    verify(signedBlocksDao, never()).insertBlockProposal(any(), refEq(signedBlock));
+    verify(signedBlocksDao)
+        .checkAndInsertBlock(any(), refEq(new SignedBlock(VALIDATOR_ID, SLOT, SIGNING_ROOT)));
   }
 
   @Test
   public void blockCannotSignWhenSamePublicKeyAndSlotButDifferentSigningRoot() {
-    final SignedBlock signedBlock = new SignedBlock(VALIDATOR_ID, SLOT, Bytes.of(4));
-    when(signedBlocksDao.findExistingBlock(any(), anyInt(), any()))
-        .thenReturn(Optional.of(signedBlock));
+    when(signedBlocksDao.checkAndInsertBlock(any(), any()))
+        .thenReturn(SlashingCheckResult.DOUBLE_SIGNED);
 
     assertThat(dbSlashingProtection.maySignBlock(PUBLIC_KEY1, SIGNING_ROOT, SLOT)).isFalse();
-    verify(signedBlocksDao).findExistingBlock(any(), eq(VALIDATOR_ID), eq(SLOT));
-    verify(signedBlocksDao, never())
-        .insertBlockProposal(any(), refEq(new SignedBlock(VALIDATOR_ID, SLOT, SIGNING_ROOT)));
+    verify(signedBlocksDao)
+        .checkAndInsertBlock(any(), refEq(new SignedBlock(VALIDATOR_ID, SLOT, SIGNING_ROOT)));
   }
 
   @Test
   public void blockCannotSignWhenNoRegisteredValidator() {
     final DbSlashingProtection dbSlashingProtection =
-        new DbSlashingProtection(
-            db.getJdbi(), validatorsDao, signedBlocksDao, signedAttestationsDao);
+        daoBackedSlashingProtection().build();
 
     assertThatThrownBy(() -> dbSlashingProtection.maySignBlock(PUBLIC_KEY1, SIGNING_ROOT, SLOT))
         .hasMessage("Unregistered validator for " + PUBLIC_KEY1)
         .isInstanceOf(IllegalStateException.class);
 
-    verify(signedBlocksDao, never())
-        .insertBlockProposal(any(), refEq(new SignedBlock(VALIDATOR_ID, SLOT, SIGNING_ROOT)));
+    verify(signedBlocksDao, never()).checkAndInsertBlock(any(), any());
   }
 
   @Test
   public void attestationCanSignWhenExactlyMatchesExistingAttestation() {
-    final SignedAttestation attestation =
-        new SignedAttestation(VALIDATOR_ID, SOURCE_EPOCH, TARGET_EPOCH, SIGNING_ROOT);
-    when(signedAttestationsDao.findExistingAttestation(any(), anyInt(), any()))
-        .thenReturn(Optional.of(attestation));
+    when(signedAttestationsDao.checkAndInsertAttestation(any(), any()))
+        .thenReturn(SlashingCheckResult.ALREADY_SIGNED);
 
     assertThat(
             dbSlashingProtection.maySignAttestation(
                 PUBLIC_KEY1, SIGNING_ROOT, SOURCE_EPOCH, TARGET_EPOCH))
         .isTrue();
-    verify(signedAttestationsDao)
-        .findExistingAttestation(any(), eq(VALIDATOR_ID), eq(TARGET_EPOCH));
-    verify(signedAttestationsDao, never()).insertAttestation(any(), refEq(attestation));
+    verifyAttestationChecked(SOURCE_EPOCH, TARGET_EPOCH);
   }
 
   @Test
   public void attestationCannotSignWhenPreviousIsSurroundingAttestation() {
-    final SignedAttestation attestation =
-        new SignedAttestation(VALIDATOR_ID, SOURCE_EPOCH, TARGET_EPOCH, SIGNING_ROOT);
-    when(signedAttestationsDao.findExistingAttestation(any(), anyInt(), any()))
-        .thenReturn(Optional.empty());
-    final SignedAttestation surroundingAttestation =
-        new SignedAttestation(
-            VALIDATOR_ID, SOURCE_EPOCH.subtract(1), TARGET_EPOCH.subtract(1), SIGNING_ROOT);
-    when(signedAttestationsDao.findSurroundingAttestation(any(), anyInt(), any(), any()))
-        .thenReturn(Optional.of(surroundingAttestation));
+    when(signedAttestationsDao.checkAndInsertAttestation(any(), any()))
+        .thenReturn(SlashingCheckResult.SURROUNDING_ATTESTATION_EXISTS);
 
     assertThat(
             dbSlashingProtection.maySignAttestation(
                 PUBLIC_KEY1, SIGNING_ROOT, SOURCE_EPOCH, TARGET_EPOCH))
         .isFalse();
-    verify(signedAttestationsDao)
-        .findExistingAttestation(any(), eq(VALIDATOR_ID), eq(TARGET_EPOCH));
-    verify(signedAttestationsDao)
-        .findSurroundingAttestation(any(), eq(VALIDATOR_ID), eq(SOURCE_EPOCH), eq(TARGET_EPOCH));
-    verify(signedAttestationsDao, never()).insertAttestation(any(), refEq(attestation));
+    verifyAttestationChecked(SOURCE_EPOCH, TARGET_EPOCH);
   }
 
   @Test
   public void attestationCannotSignWhenPreviousIsSurroundedByAttestation() {
-    final SignedAttestation attestation =
-        new SignedAttestation(VALIDATOR_ID, SOURCE_EPOCH, TARGET_EPOCH, SIGNING_ROOT);
-    when(signedAttestationsDao.findExistingAttestation(any(), anyInt(), any()))
-        .thenReturn(Optional.empty());
-    when(signedAttestationsDao.findSurroundingAttestation(any(), anyInt(), any(), any()))
-        .thenReturn(Optional.empty());
-    final SignedAttestation surroundedAttestation =
-        new SignedAttestation(VALIDATOR_ID, SOURCE_EPOCH.add(1), TARGET_EPOCH.add(1), SIGNING_ROOT);
-    when(signedAttestationsDao.findSurroundedAttestation(any(), anyInt(), any(), any()))
-        .thenReturn(Optional.of(surroundedAttestation));
+    when(signedAttestationsDao.checkAndInsertAttestation(any(), any()))
+        .thenReturn(SlashingCheckResult.SURROUNDED_ATTESTATION_EXISTS);
 
     assertThat(
             dbSlashingProtection.maySignAttestation(
                 PUBLIC_KEY1, SIGNING_ROOT, SOURCE_EPOCH, TARGET_EPOCH))
         .isFalse();
-    verify(signedAttestationsDao)
-        .findExistingAttestation(any(), eq(VALIDATOR_ID), eq(TARGET_EPOCH));
-    verify(signedAttestationsDao)
-        .findSurroundingAttestation(any(), eq(VALIDATOR_ID), eq(SOURCE_EPOCH), eq(TARGET_EPOCH));
-    verify(signedAttestationsDao)
-        .findSurroundedAttestation(any(), eq(VALIDATOR_ID), eq(SOURCE_EPOCH), eq(TARGET_EPOCH));
-    verify(signedAttestationsDao, never()).insertAttestation(any(), refEq(attestation));
+    verifyAttestationChecked(SOURCE_EPOCH, TARGET_EPOCH);
   }
 
   @Test
   public void attestationCanSignWhenNoSurroundingOrSurroundedByAttestation() {
-    final SignedAttestation attestation =
-        new SignedAttestation(VALIDATOR_ID, SOURCE_EPOCH, TARGET_EPOCH, SIGNING_ROOT);
-    when(signedAttestationsDao.findExistingAttestation(any(), anyInt(), any()))
-        .thenReturn(Optional.empty());
-    when(signedAttestationsDao.findSurroundingAttestation(any(), anyInt(), any(), any()))
-        .thenReturn(Optional.empty());
-    when(signedAttestationsDao.findSurroundedAttestation(any(), anyInt(), any(), any()))
-        .thenReturn(Optional.empty());
+    when(signedAttestationsDao.checkAndInsertAttestation(any(), any()))
+        .thenReturn(SlashingCheckResult.SIGNED);
 
     assertThat(
             dbSlashingProtection.maySignAttestation(
                 PUBLIC_KEY1, SIGNING_ROOT, SOURCE_EPOCH, TARGET_EPOCH))
         .isTrue();
-    verify(signedAttestationsDao)
-        .findExistingAttestation(any(), eq(VALIDATOR_ID), eq(TARGET_EPOCH));
-    verify(signedAttestationsDao)
-        .findSurroundingAttestation(any(), eq(VALIDATOR_ID), eq(SOURCE_EPOCH), eq(TARGET_EPOCH));
-    verify(signedAttestationsDao)
-        .findSurroundedAttestation(any(), eq(VALIDATOR_ID), eq(SOURCE_EPOCH), eq(TARGET_EPOCH));
-    verify(signedAttestationsDao).insertAttestation(any(), refEq(attestation));
+    verifyAttestationChecked(SOURCE_EPOCH, TARGET_EPOCH);
   }
 
   @Test
   public void attestationCannotSignWhenNoRegisteredValidator() {
     final DbSlashingProtection dbSlashingProtection =
-        new DbSlashingProtection(
-            db.getJdbi(), validatorsDao, signedBlocksDao, signedAttestationsDao);
+        daoBackedSlashingProtection().build();
 
     assertThatThrownBy(
             () ->
@@ -224,56 +175,45 @@ public class DbSlashingProtectionTest {
                     PUBLIC_KEY1, SIGNING_ROOT, SOURCE_EPOCH, TARGET_EPOCH))
         .hasMessage("Unregistered validator for " + PUBLIC_KEY1)
         .isInstanceOf(IllegalStateException.class);
-    final SignedAttestation attestation =
-        new SignedAttestation(VALIDATOR_ID, SOURCE_EPOCH, TARGET_EPOCH, SIGNING_ROOT);
-    verify(signedAttestationsDao, never()).insertAttestation(any(), refEq(attestation));
+    verify(signedAttestationsDao, never()).checkAndInsertAttestation(any(), any());
   }
 
   @Test
   public void attestationCannotSignWhenSourceEpochGreaterThanTargetEpoch() {
     final UInt64 sourceEpoch = TARGET_EPOCH.add(1);
-    final SignedAttestation attestation =
-        new SignedAttestation(VALIDATOR_ID, sourceEpoch, TARGET_EPOCH, SIGNING_ROOT);
 
     assertThat(
             dbSlashingProtection.maySignAttestation(
                 PUBLIC_KEY1, SIGNING_ROOT, sourceEpoch, TARGET_EPOCH))
         .isFalse();
     verifyNoInteractions(signedAttestationsDao);
-    verify(signedAttestationsDao, never()).insertAttestation(any(), refEq(attestation));
   }
 
   @Test
   public void registersValidatorsThatAreNotAlreadyInDb() {
-    final Map<Bytes, Integer> registeredValidators = new HashMap<>();
-    registeredValidators.put(PUBLIC_KEY1, 1);
+    final ValidatorRegistry registeredValidators = registry(PUBLIC_KEY1, 1);
     final DbSlashingProtection dbSlashingProtection =
-        new DbSlashingProtection(
-            db.getJdbi(),
-            validatorsDao,
-            signedBlocksDao,
-            signedAttestationsDao,
-            registeredValidators);
+        daoBackedSlashingProtection().validatorRegistry(registeredValidators).build();
 
     when(validatorsDao.retrieveValidators(any(), any()))
         .thenReturn(List.of(new Validator(1, PUBLIC_KEY1)));
-    when(validatorsDao.registerValidators(any(), any()))
+    when(validatorsDao.registerMissingValidators(any(), any()))
         .thenReturn(List.of(new Validator(2, PUBLIC_KEY2), new Validator(3, PUBLIC_KEY3)));
     dbSlashingProtection.registerValidators(List.of(PUBLIC_KEY1, PUBLIC_KEY2, PUBLIC_KEY3));
 
-    assertThat(registeredValidators).hasSize(3);
-    assertThat(registeredValidators)
-        .isEqualTo(Map.of(PUBLIC_KEY1, 1, PUBLIC_KEY2, 2, PUBLIC_KEY3, 3));
+    assertThat(registeredValidators.size()).isEqualTo(3);
+    assertThat(registeredValidators.get(PUBLIC_KEY1)).isEqualTo(1);
+    assertThat(registeredValidators.get(PUBLIC_KEY2)).isEqualTo(2);
+    assertThat(registeredValidators.get(PUBLIC_KEY3)).isEqualTo(3);
     verify(validatorsDao)
         .retrieveValidators(any(), eq(List.of(PUBLIC_KEY1, PUBLIC_KEY2, PUBLIC_KEY3)));
-    verify(validatorsDao).registerValidators(any(), eq(List.of(PUBLIC_KEY2, PUBLIC_KEY3)));
+    verify(validatorsDao).registerMissingValidators(any(), eq(List.of(PUBLIC_KEY2, PUBLIC_KEY3)));
   }
 
   @Test
   public void slashingProtectionEnactedIfAttestationWithNullSigningRootExists() {
-    when(signedAttestationsDao.findExistingAttestation(any(), anyInt(), any()))
-        .thenReturn(
-            Optional.of(new SignedAttestation(1, UInt64.valueOf(1), UInt64.valueOf(2), null)));
+    when(signedAttestationsDao.checkAndInsertAttestation(any(), any()))
+        .thenReturn(SlashingCheckResult.EXISTING_WITHOUT_SIGNING_ROOT);
 
     final boolean result =
         dbSlashingProtection.maySignAttestation(
@@ -284,8 +224,8 @@ public class DbSlashingProtectionTest {
 
   @Test
   public void slashingProtectionEnactedIfBlockWithNullSigningRootExists() {
-    when(signedBlocksDao.findExistingBlock(any(), anyInt(), any()))
-        .thenReturn(Optional.of(new SignedBlock(1, UInt64.valueOf(1), null)));
+    when(signedBlocksDao.checkAndInsertBlock(any(), any()))
+        .thenReturn(SlashingCheckResult.EXISTING_WITHOUT_SIGNING_ROOT);
 
     final boolean result = dbSlashingProtection.maySignBlock(PUBLIC_KEY1, SIGNING_ROOT, SLOT);
 
@@ -294,85 +234,162 @@ public class DbSlashingProtectionTest {
 
   @Test
   public void slashingProtectionEnactedIfBlockWithSlotLessThanMinSlot() {
-    when(signedBlocksDao.minimumSlot(any(), anyInt())).thenReturn(Optional.of(UInt64.valueOf(2)));
+    when(signedBlocksDao.checkAndInsertBlock(any(), any()))
+        .thenReturn(SlashingCheckResult.SLOT_BELOW_MINIMUM);
 
     assertThat(dbSlashingProtection.maySignBlock(PUBLIC_KEY1, SIGNING_ROOT, UInt64.ONE)).isFalse();
 
-    verify(signedBlocksDao).minimumSlot(any(), eq(VALIDATOR_ID));
-    verify(signedBlocksDao, never()).insertBlockProposal(any(), any());
-  }
-
-  @Test
-  public void slashingProtectionEnactedIfBlockWithSlotEqualToMinSlot() {
-    when(signedBlocksDao.minimumSlot(any(), anyInt())).thenReturn(Optional.of(SLOT));
-
-    assertThat(dbSlashingProtection.maySignBlock(PUBLIC_KEY1, SIGNING_ROOT, SLOT)).isFalse();
-
-    verify(signedBlocksDao).minimumSlot(any(), eq(VALIDATOR_ID));
-    verify(signedBlocksDao, never()).insertBlockProposal(any(), any());
+    verify(signedBlocksDao)
+        .checkAndInsertBlock(any(), refEq(new SignedBlock(VALIDATOR_ID, UInt64.ONE, SIGNING_ROOT)));
   }
 
   @Test
   public void slashingProtectionEnactedIfAttestationWithSourceEpochLessThanMin() {
-    when(signedAttestationsDao.minimumSourceEpoch(any(), anyInt()))
-        .thenReturn(Optional.of(UInt64.valueOf(2)));
+    when(signedAttestationsDao.checkAndInsertAttestation(any(), any()))
+        .thenReturn(SlashingCheckResult.SOURCE_EPOCH_BELOW_MINIMUM);
 
     assertThat(
             dbSlashingProtection.maySignAttestation(
                 PUBLIC_KEY1, SIGNING_ROOT, UInt64.ZERO, UInt64.ZERO))
         .isFalse();
 
-    verify(signedAttestationsDao).minimumSourceEpoch(any(), eq(VALIDATOR_ID));
-    verify(signedAttestationsDao, never()).insertAttestation(any(), any());
+    verifyAttestationChecked(UInt64.ZERO, UInt64.ZERO);
   }
 
   @Test
-  public void attestationCanBeSignedWithSourceEpochEqualToMin() {
-    when(signedAttestationsDao.minimumSourceEpoch(any(), anyInt()))
-        .thenReturn(Optional.of(SOURCE_EPOCH));
+  public void slashingProtectionEnactedIfAttestationWithTargetEpochLessThanMin() {
+    when(signedAttestationsDao.checkAndInsertAttestation(any(), any()))
+        .thenReturn(SlashingCheckResult.TARGET_EPOCH_BELOW_MINIMUM);
 
     assertThat(
             dbSlashingProtection.maySignAttestation(
-                PUBLIC_KEY1, SIGNING_ROOT, SOURCE_EPOCH, TARGET_EPOCH))
-        .isTrue();
+                PUBLIC_KEY1, SIGNING_ROOT, UInt64.valueOf(3), UInt64.valueOf(4)))
+        .isFalse();
 
-    verify(signedAttestationsDao).minimumSourceEpoch(any(), eq(VALIDATOR_ID));
-    final SignedAttestation attestation =
-        new SignedAttestation(VALIDATOR_ID, SOURCE_EPOCH, TARGET_EPOCH, SIGNING_ROOT);
-    verify(signedAttestationsDao).insertAttestation(any(), refEq(attestation));
+    verifyAttestationChecked(UInt64.valueOf(3), UInt64.valueOf(4));
   }
 
   @Test
-  public void slashingProtectionEnactedIfAttestationWithTargetEpochLessThanMin() {
-    when(signedAttestationsDao.minimumSourceEpoch(any(), anyInt()))
-        .thenReturn(Optional.of(UInt64.valueOf(2)));
-    when(signedAttestationsDao.minimumTargetEpoch(any(), anyInt()))
-        .thenReturn(Optional.of(UInt64.valueOf(5)));
+  public void attestationBelowWatermarkIsRejectedWithoutDatabaseCheck() {
+    final WatermarkCache watermarkCache = new WatermarkCache();
+    watermarkCache.attestationSigned(VALIDATOR_ID, SOURCE_EPOCH, TARGET_EPOCH);
+    final DbSlashingProtection dbSlashingProtection =
+        daoBackedSlashingProtection()
+            .validatorRegistry(registry(PUBLIC_KEY1, VALIDATOR_ID))
+            .watermarkCache(watermarkCache)
+            .build();
 
     assertThat(
             dbSlashingProtection.maySignAttestation(
-                PUBLIC_KEY1, SIGNING_ROOT, UInt64.valueOf(3), UInt64.valueOf(4)))
+                PUBLIC_KEY1, SIGNING_ROOT, SOURCE_EPOCH.subtract(1), TARGET_EPOCH.add(1)))
         .isFalse();
-
-    verify(signedAttestationsDao).minimumSourceEpoch(any(), eq(VALIDATOR_ID));
-    verify(signedAttestationsDao).minimumTargetEpoch(any(), eq(VALIDATOR_ID));
-    verify(signedAttestationsDao, never()).insertAttestation(any(), any());
+    assertThat(
+            dbSlashingProtection.maySignAttestation(
+                PUBLIC_KEY1, SIGNING_ROOT, SOURCE_EPOCH, TARGET_EPOCH.subtract(1)))
+        .isFalse();
+    verifyNoInteractions(signedAttestationsDao);
   }
 
   @Test
-  public void slashingProtectionEnactedIfAttestationWithTargetEpochEqualToMin() {
-    when(signedAttestationsDao.minimumSourceEpoch(any(), anyInt()))
-        .thenReturn(Optional.of(UInt64.valueOf(2)));
-    when(signedAttestationsDao.minimumTargetEpoch(any(), anyInt()))
-        .thenReturn(Optional.of(UInt64.valueOf(4)));
+  public void blockBelowWatermarkIsRejectedWithoutDatabaseCheck() {
+    final WatermarkCache watermarkCache = new WatermarkCache();
+    watermarkCache.blockSigned(VALIDATOR_ID, SLOT);
+    final DbSlashingProtection dbSlashingProtection =
+        daoBackedSlashingProtection()
+            .validatorRegistry(registry(PUBLIC_KEY1, VALIDATOR_ID))
+            .watermarkCache(watermarkCache)
+            .build();
 
-    assertThat(
-            dbSlashingProtection.maySignAttestation(
-                PUBLIC_KEY1, SIGNING_ROOT, UInt64.valueOf(3), UInt64.valueOf(4)))
+    assertThat(dbSlashingProtection.maySignBlock(PUBLIC_KEY1, SIGNING_ROOT, SLOT.subtract(1)))
         .isFalse();
+    verifyNoInteractions(signedBlocksDao);
+  }
+
+  @Test
+  public void watermarkIsUpdatedOnlyWhenSigningIsPermitted() {
+    final WatermarkCache watermarkCache = new WatermarkCache();
+    final DbSlashingProtection dbSlashingProtection =
+        daoBackedSlashingProtection()
+            .validatorRegistry(registry(PUBLIC_KEY1, VALIDATOR_ID))
+            .watermarkCache(watermarkCache)
+            .build();
+    when(signedBlocksDao.checkAndInsertBlock(any(), any()))
+        .thenReturn(SlashingCheckResult.DOUBLE_SIGNED)
+        .thenReturn(SlashingCheckResult.SIGNED);
+
+    assertThat(dbSlashingProtection.maySignBlock(PUBLIC_KEY1, SIGNING_ROOT, SLOT)).isFalse();
+    assertThat(watermarkCache.maxSlot(VALIDATOR_ID)).isEmpty();
+
+    assertThat(dbSlashingProtection.maySignBlock(PUBLIC_KEY1, SIGNING_ROOT, SLOT)).isTrue();
+    assertThat(watermarkCache.maxSlot(VALIDATOR_ID)).contains(SLOT);
+  }
+
+  @Test
+  public void watermarksAreLoadedForRegisteredValidators() {
+    final WatermarkCache watermarkCache = new WatermarkCache();
+    final DbSlashingProtection dbSlashingProtection =
+        daoBackedSlashingProtection().watermarkCache(watermarkCache).build();
+    when(validatorsDao.retrieveValidators(any(), any()))
+        .thenReturn(List.of(new Validator(VALIDATOR_ID, PUBLIC_KEY1)));
+    when(validatorsDao.findAllWatermarks(any()))
+        .thenReturn(
+            List.of(
+                new ValidatorWatermark(VALIDATOR_ID, null, null, null, SLOT, SLOT),
+                new ValidatorWatermark(VALIDATOR_ID + 1, null, null, null, SLOT, SLOT)));
+
+    dbSlashingProtection.registerValidators(List.of(PUBLIC_KEY1));
+
+    assertThat(watermarkCache.maxSlot(VALIDATOR_ID)).contains(SLOT);
+    assertThat(watermarkCache.maxSlot(VALIDATOR_ID + 1)).isEmpty();
+  }
+
+  @Test
+  public void backgroundTasksOnlyRunOnceStarted() {
+    final DbSlashingProtection dbSlashingProtection =
+        daoBackedSlashingProtection()
+            .attestationCheckBatcher(Optional.of(attestationCheckBatcher))
+            .pruner(Optional.of(pruner))
+            .pruningInterval(6)
+            .build();
+    verifyNoInteractions(attestationCheckBatcher, pruner);
+
+    dbSlashingProtection.start();
+
+    verify(attestationCheckBatcher).start();
+    verify(pruner).start(6);
+  }
+
+  @Test
+  public void pruningWithoutIntervalIsNotStarted() {
+    final DbSlashingProtection dbSlashingProtection =
+        daoBackedSlashingProtection()
+            .attestationCheckBatcher(Optional.of(attestationCheckBatcher))
+            .pruner(Optional.of(pruner))
+            .build();
+
+    dbSlashingProtection.start();
+
+    verify(attestationCheckBatcher).start();
+    verify(pruner, never()).start(anyLong());
+  }
+
+  private void verifyAttestationChecked(final UInt64 sourceEpoch, final UInt64 targetEpoch) {
+    verify(signedAttestationsDao)
+        .checkAndInsertAttestation(
+            any(),
+            refEq(new SignedAttestation(VALIDATOR_ID, sourceEpoch, targetEpoch, SIGNING_ROOT)));
+  }
+
+  private DbSlashingProtection.Builder daoBackedSlashingProtection() {
+    return DbSlashingProtection.builder(db.getJdbi())
+        .validatorsDao(validatorsDao)
+        .signedBlocksDao(signedBlocksDao)
+        .signedAttestationsDao(signedAttestationsDao);
+  }
 
-    verify(signedAttestationsDao).minimumSourceEpoch(any(), eq(VALIDATOR_ID));
-    verify(signedAttestationsDao).minimumTargetEpoch(any(), eq(VALIDATOR_ID));
-    verify(signedAttestationsDao, never()).insertAttestation(any(), any());
+  private static ValidatorRegistry registry(final Bytes publicKey, final int validatorId) {
+    final ValidatorRegistry registry = new ValidatorRegistry();
+    registry.put(publicKey, validatorId);
+    return registry;
   }
 }
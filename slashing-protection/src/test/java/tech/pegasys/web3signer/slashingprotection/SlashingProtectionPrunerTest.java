@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.web3signer.slashingprotection.dao.LowWatermark;
+import tech.pegasys.web3signer.slashingprotection.dao.LowWatermarkDao;
+import tech.pegasys.web3signer.slashingprotection.dao.ValidatorsDao;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.testing.JdbiRule;
+import org.jdbi.v3.testing.Migration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+// This must be a junit4 for the JdbiRule to work
+public class SlashingProtectionPrunerTest {
+
+  private static final Bytes PUBLIC_KEY_1 = Bytes.of(1);
+  private static final Bytes PUBLIC_KEY_2 = Bytes.of(2);
+
+  @Rule
+  public JdbiRule postgres =
+      JdbiRule.embeddedPostgres()
+          .withMigration(Migration.before().withPath("migrations/postgresql"));
+
+  private Jdbi jdbi;
+
+  @Before
+  public void setup() {
+    jdbi = postgres.getJdbi();
+    DbConnection.configureJdbi(jdbi);
+    jdbi.useHandle(
+        h -> {
+          h.execute("INSERT INTO validators (id, public_key) VALUES (1, ?)", PUBLIC_KEY_1);
+          h.execute("INSERT INTO validators (id, public_key) VALUES (2, ?)", PUBLIC_KEY_2);
+        });
+  }
+
+  @Test
+  public void prunesHistoryOfEveryValidatorAcrossMultipleBatches() {
+    jdbi.useHandle(
+        h -> {
+          h.execute(
+              "INSERT INTO signed_attestations (validator_id, source_epoch, target_epoch) "
+                  + "SELECT v, encode_uint64(e), encode_uint64(e + 1) "
+                  + "FROM generate_series(1, 2) v, generate_series(0, 2499) e");
+          h.execute(
+              "INSERT INTO signed_blocks (validator_id, slot) "
+                  + "SELECT v, encode_uint64(s) "
+                  + "FROM generate_series(1, 2) v, generate_series(0, 9999) s");
+        });
+
+    createPruner(100).prune();
+
+    // attestations with a target epoch below 2500 - 100 and blocks below slot 9999 - 3200 removed
+    assertThat(count("SELECT COUNT(*) FROM signed_attestations")).isEqualTo(2 * 101);
+    assertThat(count("SELECT COUNT(*) FROM signed_blocks")).isEqualTo(2 * 3201);
+    assertThat(jdbi.withHandle(new LowWatermarkDao()::findAllLowWatermarks))
+        .usingFieldByFieldElementComparator()
+        .containsExactlyInAnyOrder(
+            new LowWatermark(1, UInt64.valueOf(6798), UInt64.valueOf(2398), UInt64.valueOf(2399)),
+            new LowWatermark(2, UInt64.valueOf(6798), UInt64.valueOf(2398), UInt64.valueOf(2399)));
+  }
+
+  @Test
+  public void attestationIndexLoadedAfterPruningRejectsAttestationSurroundingPrunedHistory() {
+    jdbi.useHandle(
+        h ->
+            h.execute(
+                "INSERT INTO signed_attestations (validator_id, source_epoch, target_epoch) "
+                    + "VALUES (1, encode_uint64(5), encode_uint64(6)), "
+                    + "(1, encode_uint64(2), encode_uint64(10))"));
+    createPruner(3).prune();
+
+    final SlashingProtection slashingProtection =
+        DbSlashingProtection.builder(jdbi)
+            .attestationSpanIndex(Optional.of(new AttestationSpanIndex(256)))
+            .build();
+    slashingProtection.registerValidators(List.of(PUBLIC_KEY_1));
+
+    assertThat(
+            slashingProtection.maySignAttestation(
+                PUBLIC_KEY_1, Bytes.of(1), UInt64.valueOf(3), UInt64.valueOf(11)))
+        .isFalse();
+    assertThat(
+            slashingProtection.maySignAttestation(
+                PUBLIC_KEY_1, Bytes.of(1), UInt64.valueOf(5), UInt64.valueOf(11)))
+        .isTrue();
+  }
+
+  private SlashingProtectionPruner createPruner(final long epochsToKeep) {
+    return new SlashingProtectionPruner(
+        jdbi, new ValidatorsDao(), new LowWatermarkDao(), epochsToKeep, 32, new NoOpMetricsSystem());
+  }
+
+  private int count(final String query) {
+    return jdbi.withHandle(h -> h.createQuery(query).mapTo(Integer.class).one());
+  }
+}
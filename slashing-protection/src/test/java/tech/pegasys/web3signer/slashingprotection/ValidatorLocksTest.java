@@ -0,0 +1,271 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.statement.UnableToExecuteStatementException;
+import org.jdbi.v3.testing.JdbiRule;
+import org.jdbi.v3.testing.Migration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+// This must be a junit4 for the JdbiRule to work
+public class ValidatorLocksTest {
+
+  @Rule
+  public JdbiRule postgres =
+      JdbiRule.embeddedPostgres()
+          .withMigration(Migration.before().withPath("migrations/postgresql"));
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final ExecutorService otherExecutor = Executors.newSingleThreadExecutor();
+  private final ExecutorService batchExecutor = Executors.newSingleThreadExecutor();
+  private Handle lockHolder;
+  private Handle checker;
+
+  @Before
+  public void setup() {
+    DbConnection.configureJdbi(postgres.getJdbi());
+    postgres
+        .getJdbi()
+        .useHandle(h -> h.execute("INSERT INTO validators (public_key) VALUES (?)", Bytes.of(1)));
+    lockHolder = postgres.getJdbi().open();
+    checker = postgres.getJdbi().open();
+    checker.execute("SET lock_timeout = '100ms'");
+  }
+
+  @After
+  public void cleanup() {
+    executor.shutdownNow();
+    otherExecutor.shutdownNow();
+    batchExecutor.shutdownNow();
+    lockHolder.close();
+    checker.close();
+  }
+
+  @Test
+  public void inProcessStrategySerialisesChecksForTheSameValidator() throws Exception {
+    final ValidatorLocks validatorLocks = createValidatorLocks(ValidatorLockStrategy.IN_PROCESS);
+
+    final Future<Boolean> waitingCheck =
+        validatorLocks.withBlockLock(
+            1,
+            () -> {
+              final Future<Boolean> check =
+                  executor.submit(() -> validatorLocks.withBlockLock(1, () -> true));
+              // other validators and attestations for the same validator are not blocked
+              assertThat(validatorLocks.withBlockLock(2, () -> true)).isTrue();
+              assertThat(runOnOtherThread(() -> validatorLocks.withAttestationLock(1, () -> true)))
+                  .isTrue();
+              assertThatThrownBy(() -> check.get(100, TimeUnit.MILLISECONDS))
+                  .isInstanceOf(TimeoutException.class);
+              return check;
+            });
+
+    assertThat(waitingCheck.get(1, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void batchHoldsTheLocksOfEveryValidatorInTheBatch() throws Exception {
+    final ValidatorLocks validatorLocks = createValidatorLocks(ValidatorLockStrategy.IN_PROCESS);
+
+    final List<Future<Boolean>> waitingChecks =
+        validatorLocks.withLocks(
+            List.of(1, 2),
+            List.of(3),
+            CheckDeadline.NONE,
+            () -> {
+              final List<Future<Boolean>> checks =
+                  List.of(
+                      executor.submit(() -> validatorLocks.withBlockLock(2, () -> true)),
+                      batchExecutor.submit(
+                          () -> validatorLocks.withAttestationLock(3, () -> true)));
+              // locks of validators and artifact types outside the batch are not held
+              assertThat(runOnOtherThread(() -> validatorLocks.withAttestationLock(1, () -> true)))
+                  .isTrue();
+              assertThat(runOnOtherThread(() -> validatorLocks.withBlockLock(3, () -> true)))
+                  .isTrue();
+              for (final Future<Boolean> check : checks) {
+                assertThatThrownBy(() -> check.get(100, TimeUnit.MILLISECONDS))
+                    .isInstanceOf(TimeoutException.class);
+              }
+              return checks;
+            });
+
+    for (final Future<Boolean> check : waitingChecks) {
+      assertThat(check.get(1, TimeUnit.SECONDS)).isTrue();
+    }
+  }
+
+  @Test
+  public void batchTakesLocksInStripeOrder() throws Exception {
+    final ValidatorLocks validatorLocks = createValidatorLocks(ValidatorLockStrategy.IN_PROCESS);
+
+    final Future<Boolean> waitingBatch =
+        validatorLocks.withBlockLock(
+            1,
+            () -> {
+              final Future<Boolean> batch =
+                  executor.submit(
+                      () ->
+                          validatorLocks.withLocks(
+                              List.of(2, 1), List.of(), CheckDeadline.NONE, () -> true));
+              assertThatThrownBy(() -> batch.get(100, TimeUnit.MILLISECONDS))
+                  .isInstanceOf(TimeoutException.class);
+              // the batch waits for validator 1 before taking the lock of validator 2
+              assertThat(runOnOtherThread(() -> validatorLocks.withBlockLock(2, () -> true)))
+                  .isTrue();
+              return batch;
+            });
+
+    assertThat(waitingBatch.get(1, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void batchWithRepeatedValidatorReleasesItsLocks() {
+    final ValidatorLocks validatorLocks = createValidatorLocks(ValidatorLockStrategy.IN_PROCESS);
+
+    assertThat(
+            validatorLocks.withLocks(
+                List.of(1, 1, 1025), List.of(1, 1), CheckDeadline.NONE, () -> true))
+        .isTrue();
+
+    assertThat(runOnOtherThread(() -> validatorLocks.withBlockLock(1, () -> true))).isTrue();
+    assertThat(runOnOtherThread(() -> validatorLocks.withAttestationLock(1, () -> true))).isTrue();
+  }
+
+  @Test
+  public void databaseStrategiesDoNotTakeAProcessLockForBatches() {
+    final ValidatorLocks validatorLocks = createValidatorLocks(ValidatorLockStrategy.ADVISORY);
+
+    final boolean result =
+        validatorLocks.withLocks(
+            List.of(1),
+            List.of(1),
+            CheckDeadline.NONE,
+            () -> runOnOtherThread(() -> validatorLocks.withBlockLock(1, () -> true)));
+
+    assertThat(result).isTrue();
+  }
+
+  @Test
+  public void databaseStrategiesDoNotTakeAProcessLock() throws Exception {
+    final ValidatorLocks validatorLocks = createValidatorLocks(ValidatorLockStrategy.ADVISORY);
+
+    final boolean result =
+        validatorLocks.withBlockLock(
+            1, () -> runOnOtherThread(() -> validatorLocks.withBlockLock(1, () -> true)));
+
+    assertThat(result).isTrue();
+  }
+
+  @Test
+  public void advisoryStrategyWaitsForAdvisoryLock() {
+    lockHolder.begin();
+    lockHolder.execute("SELECT pg_advisory_xact_lock(0, 1)");
+
+    checker.execute("SET web3signer.validator_lock = 'advisory'");
+
+    assertThatThrownBy(() -> checker.execute("SELECT lock_validator(0, 1)"))
+        .isInstanceOf(UnableToExecuteStatementException.class);
+    // attestations use a separate lock
+    checker.execute("SELECT lock_validator(1, 1)");
+    lockHolder.rollback();
+  }
+
+  @Test
+  public void advisoryStrategyIsUsedWhenNoStrategyIsSet() {
+    lockHolder.begin();
+    lockHolder.execute("SELECT pg_advisory_xact_lock(0, 1)");
+
+    assertThatThrownBy(() -> checker.execute("SELECT lock_validator(0, 1)"))
+        .isInstanceOf(UnableToExecuteStatementException.class);
+    lockHolder.rollback();
+  }
+
+  @Test
+  public void rowStrategyWaitsForValidatorRowLock() {
+    lockHolder.execute("SET web3signer.validator_lock = 'row'");
+    lockHolder.begin();
+    lockHolder.execute("SELECT lock_validator(0, 1)");
+
+    checker.execute("SET web3signer.validator_lock = 'row'");
+
+    // blocks and attestations share the validator's row
+    assertThatThrownBy(() -> checker.execute("SELECT lock_validator(1, 1)"))
+        .isInstanceOf(UnableToExecuteStatementException.class);
+    lockHolder.rollback();
+  }
+
+  @Test
+  public void inProcessStrategyTakesNoDatabaseLock() {
+    lockHolder.begin();
+    lockHolder.execute("SELECT pg_advisory_xact_lock(0, 1)");
+    lockHolder.execute("SELECT 1 FROM validators WHERE id = 1 FOR UPDATE");
+
+    checker.execute("SET web3signer.validator_lock = 'in_process'");
+
+    checker.execute("SELECT lock_validator(0, 1)");
+    lockHolder.rollback();
+  }
+
+  @Test
+  public void samplerCountsChecksWaitingForAdvisoryLock() throws Exception {
+    final ValidatorLockWaiterSampler sampler =
+        new ValidatorLockWaiterSampler(
+            postgres.getJdbi(), ValidatorLockStrategy.ADVISORY, new NoOpMetricsSystem());
+    lockHolder.begin();
+    lockHolder.execute("SELECT pg_advisory_xact_lock(1, 1)");
+    assertThat(sampler.sample()).isZero();
+
+    final Future<?> waitingCheck =
+        executor.submit(
+            () -> postgres.getJdbi().useHandle(h -> h.execute("SELECT lock_validator(1, 1)")));
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (sampler.sample() == 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertThat(sampler.sample()).isEqualTo(1);
+    lockHolder.rollback();
+    waitingCheck.get(1, TimeUnit.SECONDS);
+    assertThat(sampler.sample()).isZero();
+  }
+
+  private ValidatorLocks createValidatorLocks(final ValidatorLockStrategy strategy) {
+    return new ValidatorLocks(strategy, new NoOpMetricsSystem());
+  }
+
+  private <T> T runOnOtherThread(final Callable<T> action) {
+    try {
+      return otherExecutor.submit(action).get(1, TimeUnit.SECONDS);
+    } catch (final Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
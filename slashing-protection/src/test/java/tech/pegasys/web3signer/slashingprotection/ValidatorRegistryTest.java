@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tech.pegasys.web3signer.slashingprotection.ValidatorRegistry.NOT_REGISTERED;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.junit.jupiter.api.Test;
+
+class ValidatorRegistryTest {
+
+  private final ValidatorRegistry registry = new ValidatorRegistry();
+
+  @Test
+  void unregisteredKeyIsNotFound() {
+    registry.put(Bytes.of(1), 1);
+
+    assertThat(registry.get(Bytes.of(2))).isEqualTo(NOT_REGISTERED);
+    assertThat(registry.get(Bytes.of(1, 0))).isEqualTo(NOT_REGISTERED);
+    assertThat(registry.get(Bytes.random(49))).isEqualTo(NOT_REGISTERED);
+  }
+
+  @Test
+  void registeredKeysOfDifferentSizesAreFound() {
+    final Bytes publicKey = Bytes.random(48);
+    registry.put(publicKey, 0);
+    registry.put(Bytes.of(1), 1);
+    registry.put(Bytes.of(1, 0), 2);
+
+    assertThat(registry.get(Bytes.wrap(publicKey.toArray()))).isZero();
+    assertThat(registry.get(Bytes.of(1))).isEqualTo(1);
+    assertThat(registry.get(Bytes.of(1, 0))).isEqualTo(2);
+    assertThat(registry.size()).isEqualTo(3);
+    assertThat(registry.validatorIds()).isEqualTo(Set.of(0, 1, 2));
+  }
+
+  @Test
+  void registeringExistingKeyReplacesId() {
+    registry.put(Bytes.of(1), 1);
+    registry.put(Bytes.of(1), 2);
+
+    assertThat(registry.get(Bytes.of(1))).isEqualTo(2);
+    assertThat(registry.size()).isEqualTo(1);
+  }
+
+  @Test
+  void keysRemainRegisteredAfterTableGrows() {
+    final List<Bytes> publicKeys = randomKeys(10_000);
+    for (int i = 0; i < publicKeys.size(); i++) {
+      registry.put(publicKeys.get(i), i);
+    }
+
+    for (int i = 0; i < publicKeys.size(); i++) {
+      assertThat(registry.get(publicKeys.get(i))).isEqualTo(i);
+    }
+    assertThat(registry.size()).isEqualTo(publicKeys.size());
+  }
+
+  @Test
+  void keysLongerThanPublicKeyCannotBeRegistered() {
+    assertThatThrownBy(() -> registry.put(Bytes.random(49), 1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void negativeIdsCannotBeRegistered() {
+    assertThatThrownBy(() -> registry.put(Bytes.of(1), -1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void lookupsDuringRegistrationFindEveryEarlierKey() throws Exception {
+    final List<Bytes> publicKeys = randomKeys(20_000);
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final Future<?> registration =
+          executor.submit(
+              () -> {
+                for (int i = 0; i < publicKeys.size(); i++) {
+                  registry.put(publicKeys.get(i), i);
+                }
+              });
+      while (!registration.isDone()) {
+        final int registered = registry.size();
+        for (int i = 0; i < registered; i++) {
+          assertThat(registry.get(publicKeys.get(i))).isEqualTo(i);
+        }
+      }
+      registration.get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static List<Bytes> randomKeys(final int count) {
+    final Random random = new Random(1);
+    final List<Bytes> publicKeys = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      final byte[] publicKey = new byte[48];
+      random.nextBytes(publicKey);
+      publicKeys.add(Bytes.wrap(publicKey));
+    }
+    return publicKeys;
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.web3signer.slashingprotection.dao.ValidatorWatermark;
+
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.jupiter.api.Test;
+
+class WatermarkCacheTest {
+
+  private static final int VALIDATOR_ID = 1;
+
+  private final WatermarkCache watermarkCache = new WatermarkCache();
+
+  @Test
+  void nothingIsBelowWatermarkForUnknownValidator() {
+    assertThat(watermarkCache.isAttestationBelowWatermark(VALIDATOR_ID, UInt64.ZERO, UInt64.ZERO))
+        .isFalse();
+    assertThat(watermarkCache.isBlockBelowWatermark(VALIDATOR_ID, UInt64.ZERO)).isFalse();
+    assertThat(watermarkCache.maxTargetEpoch(VALIDATOR_ID)).isEmpty();
+    assertThat(watermarkCache.maxSlot(VALIDATOR_ID)).isEmpty();
+  }
+
+  @Test
+  void attestationBelowMinimumSourceOrTargetEpochIsBelowWatermark() {
+    watermarkCache.attestationSigned(VALIDATOR_ID, UInt64.valueOf(5), UInt64.valueOf(10));
+    watermarkCache.attestationSigned(VALIDATOR_ID, UInt64.valueOf(10), UInt64.valueOf(11));
+
+    assertThat(attestationBelowWatermark(4, 20)).isTrue();
+    assertThat(attestationBelowWatermark(5, 9)).isTrue();
+    // equal to the minimum target could be a repeat of the existing attestation
+    assertThat(attestationBelowWatermark(5, 10)).isFalse();
+    assertThat(attestationBelowWatermark(5, 12)).isFalse();
+    assertThat(watermarkCache.maxTargetEpoch(VALIDATOR_ID)).contains(UInt64.valueOf(11));
+  }
+
+  @Test
+  void blockBelowMinimumSlotIsBelowWatermark() {
+    watermarkCache.blockSigned(VALIDATOR_ID, UInt64.valueOf(10));
+    watermarkCache.blockSigned(VALIDATOR_ID, UInt64.valueOf(15));
+
+    assertThat(watermarkCache.isBlockBelowWatermark(VALIDATOR_ID, UInt64.valueOf(9))).isTrue();
+    assertThat(watermarkCache.isBlockBelowWatermark(VALIDATOR_ID, UInt64.valueOf(10))).isFalse();
+    assertThat(watermarkCache.maxSlot(VALIDATOR_ID)).contains(UInt64.valueOf(15));
+  }
+
+  @Test
+  void watermarksAreComparedAsUnsignedValues() {
+    watermarkCache.blockSigned(VALIDATOR_ID, UInt64.valueOf(Long.MAX_VALUE).add(1));
+
+    assertThat(watermarkCache.isBlockBelowWatermark(VALIDATOR_ID, UInt64.valueOf(Long.MAX_VALUE)))
+        .isTrue();
+    assertThat(watermarkCache.isBlockBelowWatermark(VALIDATOR_ID, UInt64.MAX_VALUE)).isFalse();
+    assertThat(watermarkCache.maxSlot(VALIDATOR_ID))
+        .contains(UInt64.valueOf(Long.MAX_VALUE).add(1));
+  }
+
+  @Test
+  void loadedWatermarksAreUsed() {
+    watermarkCache.load(
+        new ValidatorWatermark(
+            VALIDATOR_ID,
+            UInt64.valueOf(3),
+            UInt64.valueOf(4),
+            UInt64.valueOf(8),
+            UInt64.valueOf(20),
+            UInt64.valueOf(30)));
+
+    assertThat(attestationBelowWatermark(2, 9)).isTrue();
+    assertThat(attestationBelowWatermark(3, 3)).isTrue();
+    assertThat(attestationBelowWatermark(3, 9)).isFalse();
+    assertThat(watermarkCache.isBlockBelowWatermark(VALIDATOR_ID, UInt64.valueOf(19))).isTrue();
+    assertThat(watermarkCache.maxTargetEpoch(VALIDATOR_ID)).contains(UInt64.valueOf(8));
+    assertThat(watermarkCache.maxSlot(VALIDATOR_ID)).contains(UInt64.valueOf(30));
+  }
+
+  @Test
+  void validatorWithoutHistoryIsNotLoaded() {
+    watermarkCache.load(new ValidatorWatermark(VALIDATOR_ID, null, null, null, null, null));
+
+    assertThat(attestationBelowWatermark(0, 0)).isFalse();
+    assertThat(watermarkCache.isBlockBelowWatermark(VALIDATOR_ID, UInt64.ZERO)).isFalse();
+  }
+
+  private boolean attestationBelowWatermark(final int sourceEpoch, final int targetEpoch) {
+    return watermarkCache.isAttestationBelowWatermark(
+        VALIDATOR_ID, UInt64.valueOf(sourceEpoch), UInt64.valueOf(targetEpoch));
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.web3signer.slashingprotection.DbConnection;
+
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.testing.JdbiRule;
+import org.jdbi.v3.testing.Migration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class LowWatermarkDaoTest {
+
+  @Rule
+  public JdbiRule postgres =
+      JdbiRule.embeddedPostgres()
+          .withMigration(Migration.before().withPath("migrations/postgresql"));
+
+  private final LowWatermarkDao lowWatermarkDao = new LowWatermarkDao();
+  private Handle handle;
+
+  @Before
+  public void setup() {
+    DbConnection.configureJdbi(postgres.getJdbi());
+    handle = postgres.getJdbi().open();
+    insertValidator(Bytes.of(100), 1);
+    insertValidator(Bytes.of(101), 2);
+  }
+
+  @After
+  public void cleanup() {
+    handle.close();
+  }
+
+  @Test
+  public void pruningAttestationsDeletesOldestFirstAndRaisesWatermark() {
+    for (int epoch = 1; epoch <= 10; epoch++) {
+      insertAttestation(1, epoch - 1, epoch);
+    }
+    insertAttestation(2, 1, 2);
+
+    assertThat(lowWatermarkDao.pruneAttestations(handle, 1, 3, 4)).isEqualTo(4);
+    assertThat(lowWatermarkDao.findLowWatermark(handle, 1).orElseThrow())
+        .isEqualToComparingFieldByField(
+            new LowWatermark(1, null, UInt64.valueOf(3), UInt64.valueOf(4)));
+
+    assertThat(lowWatermarkDao.pruneAttestations(handle, 1, 3, 4)).isEqualTo(2);
+    assertThat(lowWatermarkDao.pruneAttestations(handle, 1, 3, 4)).isZero();
+    assertThat(lowWatermarkDao.findLowWatermark(handle, 1).orElseThrow())
+        .isEqualToComparingFieldByField(
+            new LowWatermark(1, null, UInt64.valueOf(5), UInt64.valueOf(6)));
+    assertThat(targetEpochs(1)).containsExactly(7, 8, 9, 10);
+    assertThat(targetEpochs(2)).containsExactly(2);
+    assertThat(lowWatermarkDao.findLowWatermark(handle, 2)).isEmpty();
+  }
+
+  @Test
+  public void pruningBlocksDeletesOldestFirstAndRaisesWatermark() {
+    for (int slot = 0; slot < 10; slot++) {
+      insertBlock(1, slot);
+    }
+
+    assertThat(lowWatermarkDao.pruneBlocks(handle, 1, 5, 100)).isEqualTo(4);
+    assertThat(lowWatermarkDao.findLowWatermark(handle, 1).orElseThrow())
+        .isEqualToComparingFieldByField(new LowWatermark(1, UInt64.valueOf(3), null, null));
+    assertThat(
+            handle
+                .createQuery("SELECT decode_uint64(slot) FROM signed_blocks ORDER BY slot")
+                .mapTo(Integer.class)
+                .list())
+        .containsExactly(4, 5, 6, 7, 8, 9);
+  }
+
+  @Test
+  public void watermarkIsNeverLowered() {
+    handle.execute(
+        "INSERT INTO low_watermarks (validator_id, slot, source_epoch, target_epoch) "
+            + "VALUES (1, encode_uint64(100), encode_uint64(20), encode_uint64(30))");
+    insertAttestation(1, 1, 2);
+    insertAttestation(1, 40, 50);
+    insertBlock(1, 10);
+    insertBlock(1, 1000);
+
+    assertThat(lowWatermarkDao.pruneAttestations(handle, 1, 10, 100)).isEqualTo(1);
+    assertThat(lowWatermarkDao.pruneBlocks(handle, 1, 10, 100)).isEqualTo(1);
+
+    assertThat(lowWatermarkDao.findAllLowWatermarks(handle))
+        .usingFieldByFieldElementComparator()
+        .containsExactly(
+            new LowWatermark(1, UInt64.valueOf(100), UInt64.valueOf(20), UInt64.valueOf(30)));
+  }
+
+  @Test
+  public void attestationBelowWatermarkIsRejected() {
+    insertAttestation(1, 5, 6);
+    insertAttestation(1, 2, 10);
+    lowWatermarkDao.pruneAttestations(handle, 1, 3, 100);
+
+    // surrounds the pruned attestation (5, 6) but nothing that remains
+    assertThat(checkAndInsertAttestation(3, 11))
+        .isEqualTo(SlashingCheckResult.SOURCE_EPOCH_BELOW_MINIMUM);
+    assertThat(checkAndInsertAttestation(5, 11)).isEqualTo(SlashingCheckResult.SIGNED);
+  }
+
+  @Test
+  public void attestationAtOrBelowWatermarkTargetIsRejected() {
+    handle.execute(
+        "INSERT INTO low_watermarks (validator_id, source_epoch, target_epoch) "
+            + "VALUES (1, encode_uint64(5), encode_uint64(6))");
+
+    assertThat(checkAndInsertAttestation(5, 6))
+        .isEqualTo(SlashingCheckResult.TARGET_EPOCH_BELOW_MINIMUM);
+    assertThat(checkAndInsertAttestation(5, 7)).isEqualTo(SlashingCheckResult.SIGNED);
+  }
+
+  @Test
+  public void blockAtOrBelowWatermarkIsRejected() {
+    handle.execute(
+        "INSERT INTO low_watermarks (validator_id, slot) VALUES (1, encode_uint64(10))");
+    final SignedBlocksDao signedBlocksDao = new SignedBlocksDao();
+
+    assertThat(
+            signedBlocksDao.checkAndInsertBlock(
+                handle, new SignedBlock(1, UInt64.valueOf(10), Bytes.of(1))))
+        .isEqualTo(SlashingCheckResult.SLOT_BELOW_MINIMUM);
+    assertThat(
+            signedBlocksDao.checkAndInsertBlock(
+                handle, new SignedBlock(1, UInt64.valueOf(11), Bytes.of(1))))
+        .isEqualTo(SlashingCheckResult.SIGNED);
+  }
+
+  private SlashingCheckResult checkAndInsertAttestation(
+      final int sourceEpoch, final int targetEpoch) {
+    return new SignedAttestationsDao()
+        .checkAndInsertAttestation(
+            handle,
+            new SignedAttestation(
+                1, UInt64.valueOf(sourceEpoch), UInt64.valueOf(targetEpoch), Bytes.of(1)));
+  }
+
+  private List<Integer> targetEpochs(final int validatorId) {
+    return handle
+        .createQuery(
+            "SELECT decode_uint64(target_epoch) FROM signed_attestations WHERE validator_id = ? ORDER BY target_epoch")
+        .bind(0, validatorId)
+        .mapTo(Integer.class)
+        .list();
+  }
+
+  private void insertValidator(final Bytes publicKey, final int validatorId) {
+    handle.execute("INSERT INTO validators (id, public_key) VALUES (?, ?)", validatorId, publicKey);
+  }
+
+  private void insertAttestation(
+      final int validatorId, final int sourceEpoch, final int targetEpoch) {
+    handle.execute(
+        "INSERT INTO signed_attestations (validator_id, source_epoch, target_epoch) VALUES (?, ?, ?)",
+        validatorId,
+        UInt64.valueOf(sourceEpoch),
+        UInt64.valueOf(targetEpoch));
+  }
+
+  private void insertBlock(final int validatorId, final int slot) {
+    handle.execute(
+        "INSERT INTO signed_blocks (validator_id, slot) VALUES (?, ?)",
+        validatorId,
+        UInt64.valueOf(slot));
+  }
+}
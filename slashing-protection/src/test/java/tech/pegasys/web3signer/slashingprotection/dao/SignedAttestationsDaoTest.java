@@ -18,6 +18,7 @@ import tech.pegasys.web3signer.slashingprotection.DbConnection;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.units.bigints.UInt64;
@@ -51,27 +52,6 @@ public class SignedAttestationsDaoTest {
     handle.close();
   }
 
-  @Test
-  public void findsExistingAttestationInDb() {
-    insertValidator(Bytes.of(100), 1);
-    insertAttestation(1, Bytes.of(2), UInt64.valueOf(3), UInt64.valueOf(4));
-
-    final Optional<SignedAttestation> existingAttestation =
-        signedAttestationsDao.findExistingAttestation(handle, 1, UInt64.valueOf(4));
-    assertThat(existingAttestation).isNotEmpty();
-    assertThat(existingAttestation.get())
-        .isEqualToComparingFieldByField(
-            new SignedAttestation(1, UInt64.valueOf(3), UInt64.valueOf(4), Bytes.of(2)));
-  }
-
-  @Test
-  public void returnsEmptyForNonExistingAttestationInDb() {
-    assertThat(signedAttestationsDao.findExistingAttestation(handle, 1, UInt64.valueOf(1)))
-        .isEmpty();
-    assertThat(signedAttestationsDao.findExistingAttestation(handle, 2, UInt64.valueOf(2)))
-        .isEmpty();
-  }
-
   @Test
   public void storesAttestationInDb() {
     validatorsDao.registerValidators(handle, List.of(Bytes.of(100)));
@@ -90,80 +70,6 @@ public class SignedAttestationsDaoTest {
     assertThat(attestations.get(0)).isEqualToComparingFieldByField(signedAttestation);
   }
 
-  @Test
-  public void findsSurroundingAttestationInDb() {
-    validatorsDao.registerValidators(handle, List.of(Bytes.of(100)));
-    final SignedAttestation attestation1 =
-        new SignedAttestation(1, UInt64.valueOf(2), UInt64.valueOf(9), Bytes.of(2));
-    final SignedAttestation attestation2 =
-        new SignedAttestation(1, UInt64.valueOf(1), UInt64.valueOf(10), Bytes.of(2));
-    signedAttestationsDao.insertAttestation(handle, attestation1);
-    signedAttestationsDao.insertAttestation(handle, attestation2);
-
-    final Optional<SignedAttestation> attestation =
-        signedAttestationsDao.findSurroundingAttestation(
-            handle, 1, UInt64.valueOf(3), UInt64.valueOf(7));
-    assertThat(attestation).isNotEmpty();
-    // both existing attestations surround these source and target epochs but we expect that the
-    // attestation with the highest target epoch is returned
-    assertThat(attestation.get()).isEqualToComparingFieldByField(attestation2);
-
-    // target epoch is outside of the existing attestations target epoch
-    assertThat(
-            signedAttestationsDao.findSurroundingAttestation(
-                handle, 1, UInt64.valueOf(3), UInt64.valueOf(10)))
-        .isEmpty();
-
-    // source epoch is outside of the existing attestations source epoch
-    assertThat(
-            signedAttestationsDao.findSurroundingAttestation(
-                handle, 1, UInt64.valueOf(1), UInt64.valueOf(7)))
-        .isEmpty();
-
-    // both source and target epochs are outside existing attestations epochs
-    assertThat(
-            signedAttestationsDao.findSurroundingAttestation(
-                handle, 1, UInt64.valueOf(1), UInt64.valueOf(10)))
-        .isEmpty();
-  }
-
-  @Test
-  public void findsSurroundedAttestationInDb() {
-    validatorsDao.registerValidators(handle, List.of(Bytes.of(100)));
-    final SignedAttestation attestation1 =
-        new SignedAttestation(1, UInt64.valueOf(3), UInt64.valueOf(4), Bytes.of(2));
-    final SignedAttestation attestation2 =
-        new SignedAttestation(1, UInt64.valueOf(2), UInt64.valueOf(5), Bytes.of(2));
-    signedAttestationsDao.insertAttestation(handle, attestation1);
-    signedAttestationsDao.insertAttestation(handle, attestation2);
-
-    final Optional<SignedAttestation> attestation =
-        signedAttestationsDao.findSurroundedAttestation(
-            handle, 1, UInt64.valueOf(1), UInt64.valueOf(7));
-    assertThat(attestation).isNotEmpty();
-    // both attestations are surrounded by the source and target epochs but we expect that only the
-    // attestation with the highest target epoch is returned
-    assertThat(attestation.get()).isEqualToComparingFieldByField(attestation2);
-
-    // target epoch is not outside of the existing attestations
-    assertThat(
-            signedAttestationsDao.findSurroundingAttestation(
-                handle, 1, UInt64.valueOf(1), UInt64.valueOf(5)))
-        .isEmpty();
-
-    // source epoch is not outside of the existing attestations
-    assertThat(
-            signedAttestationsDao.findSurroundingAttestation(
-                handle, 1, UInt64.valueOf(2), UInt64.valueOf(7)))
-        .isEmpty();
-
-    // both source and target are within the existing attestation source and target epochs
-    assertThat(
-            signedAttestationsDao.findSurroundingAttestation(
-                handle, 1, UInt64.valueOf(2), UInt64.valueOf(5)))
-        .isEmpty();
-  }
-
   @Test
   public void canCreateAttestationsWithNoSigningRoot() {
     validatorsDao.registerValidators(handle, List.of(Bytes.of(100)));
@@ -171,8 +77,7 @@ public class SignedAttestationsDaoTest {
         new SignedAttestation(1, UInt64.valueOf(3), UInt64.valueOf(4), null);
     signedAttestationsDao.insertAttestation(handle, attestation);
 
-    final Optional<SignedAttestation> existingAttestation =
-        signedAttestationsDao.findExistingAttestation(handle, 1, UInt64.valueOf(4));
+    final Optional<SignedAttestation> existingAttestation = findAttestation(UInt64.valueOf(4));
 
     assertThat(existingAttestation).isNotEmpty();
     assertThat(existingAttestation.get().getSigningRoot()).isEmpty();
@@ -194,6 +99,187 @@ public class SignedAttestationsDaoTest {
     assertThat(signedAttestationsDao.minimumTargetEpoch(handle, 1)).hasValue(UInt64.valueOf(3));
   }
 
+  @Test
+  public void checkAndInsertStoresPermittedAttestation() {
+    insertValidator(Bytes.of(100), 1);
+    insertAttestation(1, Bytes.of(2), UInt64.valueOf(3), UInt64.valueOf(4));
+
+    assertThat(checkAndInsert(Bytes.of(3), 3, 5)).isEqualTo(SlashingCheckResult.SIGNED);
+    assertThat(findAttestation(UInt64.valueOf(5))).isPresent();
+  }
+
+  @Test
+  public void checkAndInsertPermitsRepeatedAttestationWithoutStoringIt() {
+    insertValidator(Bytes.of(100), 1);
+    insertAttestation(1, Bytes.of(2), UInt64.valueOf(3), UInt64.valueOf(4));
+
+    assertThat(checkAndInsert(Bytes.of(2), 3, 4)).isEqualTo(SlashingCheckResult.ALREADY_SIGNED);
+    assertThat(attestationCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void checkAndInsertNamesTheRuleThatRejectedAttestation() {
+    insertValidator(Bytes.of(100), 1);
+    insertAttestation(1, Bytes.of(2), UInt64.valueOf(5), UInt64.valueOf(10));
+    insertAttestation(1, null, UInt64.valueOf(10), UInt64.valueOf(11));
+    insertAttestation(1, Bytes.of(2), UInt64.valueOf(12), UInt64.valueOf(20));
+
+    assertThat(checkAndInsert(Bytes.of(3), 5, 10)).isEqualTo(SlashingCheckResult.DOUBLE_SIGNED);
+    assertThat(checkAndInsert(Bytes.of(2), 10, 11))
+        .isEqualTo(SlashingCheckResult.EXISTING_WITHOUT_SIGNING_ROOT);
+    assertThat(checkAndInsert(Bytes.of(2), 4, 20))
+        .isEqualTo(SlashingCheckResult.SOURCE_EPOCH_BELOW_MINIMUM);
+    assertThat(checkAndInsert(Bytes.of(2), 5, 9))
+        .isEqualTo(SlashingCheckResult.TARGET_EPOCH_BELOW_MINIMUM);
+    assertThat(checkAndInsert(Bytes.of(2), 6, 9))
+        .isEqualTo(SlashingCheckResult.TARGET_EPOCH_BELOW_MINIMUM);
+    assertThat(checkAndInsert(Bytes.of(2), 13, 15))
+        .isEqualTo(SlashingCheckResult.SURROUNDING_ATTESTATION_EXISTS);
+    assertThat(checkAndInsert(Bytes.of(2), 7, 12))
+        .isEqualTo(SlashingCheckResult.SURROUNDED_ATTESTATION_EXISTS);
+    assertThat(attestationCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void checkAndInsertAppliesSurroundRulesWhenSourceIsAboveTarget() {
+    insertValidator(Bytes.of(100), 1);
+    insertAttestation(1, Bytes.of(2), UInt64.valueOf(0), UInt64.valueOf(1));
+    insertAttestation(1, Bytes.of(2), UInt64.valueOf(15), UInt64.valueOf(3));
+    insertAttestation(1, Bytes.of(2), UInt64.valueOf(2), UInt64.valueOf(20));
+
+    assertThat(checkAndInsert(Bytes.of(2), 1, 10))
+        .isEqualTo(SlashingCheckResult.SURROUNDED_ATTESTATION_EXISTS);
+    assertThat(checkAndInsert(Bytes.of(2), 12, 11))
+        .isEqualTo(SlashingCheckResult.SURROUNDING_ATTESTATION_EXISTS);
+    assertThat(checkAndInsert(Bytes.of(2), 16, 2))
+        .isEqualTo(SlashingCheckResult.SURROUNDING_ATTESTATION_EXISTS);
+    assertThat(attestationCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void checkAndInsertComparesEpochsOnEitherSideOfTheSignedLongRange() {
+    final UInt64 maxLong = UInt64.valueOf(Long.MAX_VALUE);
+    insertValidator(Bytes.of(100), 1);
+    insertAttestation(1, Bytes.of(2), maxLong.subtract(3), maxLong);
+
+    final SignedAttestation aboveLongRange =
+        new SignedAttestation(1, maxLong, maxLong.add(1), Bytes.of(2));
+    final SignedAttestation surrounding =
+        new SignedAttestation(1, maxLong.subtract(2), maxLong.add(2), Bytes.of(2));
+
+    assertThat(signedAttestationsDao.checkAndInsertAttestation(handle, aboveLongRange))
+        .isEqualTo(SlashingCheckResult.SIGNED);
+    assertThat(signedAttestationsDao.checkAndInsertAttestation(handle, surrounding))
+        .isEqualTo(SlashingCheckResult.SURROUNDED_ATTESTATION_EXISTS);
+    assertThat(findAttestation(maxLong.add(1)))
+        .hasValueSatisfying(
+            attestation -> assertThat(attestation.getSourceEpoch()).isEqualTo(maxLong));
+  }
+
+  @Test
+  public void checkAndInsertStoresAttestationWithMaximumSourceAndTargetEpochs() {
+    insertValidator(Bytes.of(100), 1);
+    insertAttestation(1, Bytes.of(2), UInt64.valueOf(2), UInt64.valueOf(3));
+
+    assertThat(
+            signedAttestationsDao.checkAndInsertAttestation(
+                handle,
+                new SignedAttestation(1, UInt64.MAX_VALUE, UInt64.MAX_VALUE, Bytes.of(2))))
+        .isEqualTo(SlashingCheckResult.SIGNED);
+    assertThat(
+            signedAttestationsDao.checkAndInsertAttestation(
+                handle,
+                new SignedAttestation(1, UInt64.MAX_VALUE, UInt64.MAX_VALUE, Bytes.of(2))))
+        .isEqualTo(SlashingCheckResult.ALREADY_SIGNED);
+    assertThat(findAttestation(UInt64.MAX_VALUE))
+        .hasValueSatisfying(
+            attestation ->
+                assertThat(attestation)
+                    .isEqualToComparingFieldByField(
+                        new SignedAttestation(
+                            1, UInt64.MAX_VALUE, UInt64.MAX_VALUE, Bytes.of(2))));
+    assertThat(attestationCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void checkAndInsertAppliesSurroundRulesAtMaximumTargetEpoch() {
+    insertValidator(Bytes.of(100), 1);
+    insertAttestation(1, Bytes.of(2), UInt64.valueOf(1), UInt64.valueOf(2));
+    insertAttestation(1, Bytes.of(2), UInt64.valueOf(3), UInt64.MAX_VALUE);
+    insertAttestation(1, Bytes.of(2), UInt64.valueOf(5), UInt64.valueOf(10));
+
+    assertThat(checkAndInsert(Bytes.of(2), 4, 9))
+        .isEqualTo(SlashingCheckResult.SURROUNDING_ATTESTATION_EXISTS);
+    assertThat(
+            signedAttestationsDao.checkAndInsertAttestation(
+                handle,
+                new SignedAttestation(1, UInt64.valueOf(4), UInt64.MAX_VALUE, Bytes.of(3))))
+        .isEqualTo(SlashingCheckResult.DOUBLE_SIGNED);
+    assertThat(attestationCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void checkAndInsertRejectsAttestationSurroundingOthersUpToMaximumTargetEpoch() {
+    insertValidator(Bytes.of(100), 1);
+    insertAttestation(1, Bytes.of(2), UInt64.valueOf(2), UInt64.valueOf(3));
+    insertAttestation(1, Bytes.of(2), UInt64.valueOf(5), UInt64.valueOf(10));
+
+    assertThat(
+            signedAttestationsDao.checkAndInsertAttestation(
+                handle,
+                new SignedAttestation(1, UInt64.valueOf(4), UInt64.MAX_VALUE, Bytes.of(2))))
+        .isEqualTo(SlashingCheckResult.SURROUNDED_ATTESTATION_EXISTS);
+    assertThat(attestationCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void checkAndInsertBatchReturnsResultsInRequestOrder() {
+    insertValidator(Bytes.of(100), 1);
+    insertValidator(Bytes.of(101), 2);
+    insertAttestation(2, Bytes.of(2), UInt64.valueOf(3), UInt64.valueOf(4));
+
+    final List<SlashingCheckResult> results =
+        signedAttestationsDao.checkAndInsertAttestations(
+            handle,
+            List.of(
+                new SignedAttestation(2, UInt64.valueOf(3), UInt64.valueOf(4), Bytes.of(3)),
+                new SignedAttestation(1, UInt64.valueOf(3), UInt64.valueOf(4), Bytes.of(2)),
+                new SignedAttestation(2, UInt64.valueOf(4), UInt64.valueOf(5), Bytes.of(2)),
+                new SignedAttestation(1, UInt64.valueOf(3), UInt64.valueOf(4), Bytes.of(3))));
+
+    assertThat(results)
+        .containsExactly(
+            SlashingCheckResult.DOUBLE_SIGNED,
+            SlashingCheckResult.SIGNED,
+            SlashingCheckResult.SIGNED,
+            SlashingCheckResult.DOUBLE_SIGNED);
+    assertThat(attestationCount()).isEqualTo(3);
+  }
+
+  private Optional<SignedAttestation> findAttestation(final UInt64 targetEpoch) {
+    try (final Stream<SignedAttestation> attestations =
+        signedAttestationsDao.findAllAttestationsSignedBy(handle, 1)) {
+      return attestations
+          .filter(attestation -> attestation.getTargetEpoch().equals(targetEpoch))
+          .findFirst();
+    }
+  }
+
+  private int attestationCount() {
+    return handle
+        .createQuery("SELECT COUNT(*) FROM signed_attestations")
+        .mapTo(Integer.class)
+        .one();
+  }
+
+  private SlashingCheckResult checkAndInsert(
+      final Bytes signingRoot, final int sourceEpoch, final int targetEpoch) {
+    return signedAttestationsDao.checkAndInsertAttestation(
+        handle,
+        new SignedAttestation(
+            1, UInt64.valueOf(sourceEpoch), UInt64.valueOf(targetEpoch), signingRoot));
+  }
+
   private void insertValidator(final Bytes publicKey, final int validatorId) {
     handle.execute("INSERT INTO validators (id, public_key) VALUES (?, ?)", validatorId, publicKey);
   }
@@ -120,11 +120,46 @@ public class SignedBlocksDaoTest {
     assertThat(signedBlocksDao.minimumSlot(handle, 1)).hasValue(UInt64.valueOf(2));
   }
 
+  @Test
+  public void checkAndInsertStoresPermittedBlock() {
+    final SignedBlocksDao signedBlocksDao = new SignedBlocksDao();
+    insertValidator(Bytes.of(100), 1);
+    insertBlock(1, 2, Bytes.of(3));
+
+    assertThat(checkAndInsert(signedBlocksDao, 3, Bytes.of(3)))
+        .isEqualTo(SlashingCheckResult.SIGNED);
+    assertThat(signedBlocksDao.findExistingBlock(handle, 1, UInt64.valueOf(3))).isNotEmpty();
+  }
+
+  @Test
+  public void checkAndInsertNamesTheRuleThatRejectedBlock() {
+    final SignedBlocksDao signedBlocksDao = new SignedBlocksDao();
+    insertValidator(Bytes.of(100), 1);
+    insertBlock(1, 2, Bytes.of(3));
+    insertBlock(1, 4, null);
+
+    assertThat(checkAndInsert(signedBlocksDao, 2, Bytes.of(3)))
+        .isEqualTo(SlashingCheckResult.ALREADY_SIGNED);
+    assertThat(checkAndInsert(signedBlocksDao, 2, Bytes.of(4)))
+        .isEqualTo(SlashingCheckResult.DOUBLE_SIGNED);
+    assertThat(checkAndInsert(signedBlocksDao, 4, Bytes.of(3)))
+        .isEqualTo(SlashingCheckResult.EXISTING_WITHOUT_SIGNING_ROOT);
+    assertThat(checkAndInsert(signedBlocksDao, 1, Bytes.of(3)))
+        .isEqualTo(SlashingCheckResult.SLOT_BELOW_MINIMUM);
+    assertThat(signedBlocksDao.findExistingBlock(handle, 1, UInt64.valueOf(1))).isEmpty();
+  }
+
+  private SlashingCheckResult checkAndInsert(
+      final SignedBlocksDao signedBlocksDao, final int slot, final Bytes signingRoot) {
+    return signedBlocksDao.checkAndInsertBlock(
+        handle, new SignedBlock(1, UInt64.valueOf(slot), signingRoot));
+  }
+
   private void insertBlock(final int validatorId, final int slot, final Bytes signingRoot) {
     handle.execute(
         "INSERT INTO signed_blocks (validator_id, slot, signing_root) VALUES (?, ?, ?)",
         validatorId,
-        slot,
+        UInt64.valueOf(slot),
         signingRoot);
   }
 
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import tech.pegasys.web3signer.slashingprotection.DbConnection;
+
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.testing.JdbiRule;
+import org.jdbi.v3.testing.Migration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class SigningChecksDaoTest {
+
+  @Rule
+  public JdbiRule postgres =
+      JdbiRule.embeddedPostgres()
+          .withMigration(Migration.before().withPath("migrations/postgresql"));
+
+  private final SigningChecksDao signingChecksDao = new SigningChecksDao();
+  private final SignedBlocksDao signedBlocksDao = new SignedBlocksDao();
+  private final SignedAttestationsDao signedAttestationsDao = new SignedAttestationsDao();
+  private Handle handle;
+
+  @Before
+  public void setup() {
+    DbConnection.configureJdbi(postgres.getJdbi());
+    handle = postgres.getJdbi().open();
+    new ValidatorsDao().registerValidators(handle, List.of(Bytes.of(1), Bytes.of(2)));
+  }
+
+  @After
+  public void cleanup() {
+    handle.close();
+  }
+
+  @Test
+  public void returnsResultsOfBlocksThenAttestationsInRequestOrder() {
+    final List<SlashingCheckResult> results =
+        signingChecksDao.checkAndInsertSignings(
+            handle,
+            List.of(
+                new SignedBlock(2, UInt64.valueOf(5), Bytes.of(1)),
+                new SignedBlock(1, UInt64.valueOf(5), Bytes.of(1)),
+                new SignedBlock(2, UInt64.valueOf(5), Bytes.of(2))),
+            List.of(
+                new SignedAttestation(2, UInt64.valueOf(1), UInt64.valueOf(2), Bytes.of(1)),
+                new SignedAttestation(2, UInt64.valueOf(2), UInt64.valueOf(9), Bytes.of(1)),
+                new SignedAttestation(1, UInt64.valueOf(3), UInt64.valueOf(4), Bytes.of(1)),
+                new SignedAttestation(1, UInt64.valueOf(3), UInt64.valueOf(4), Bytes.of(2)),
+                new SignedAttestation(2, UInt64.valueOf(3), UInt64.valueOf(4), Bytes.of(1))));
+
+    assertThat(results)
+        .containsExactly(
+            SlashingCheckResult.SIGNED,
+            SlashingCheckResult.SIGNED,
+            SlashingCheckResult.DOUBLE_SIGNED,
+            SlashingCheckResult.SIGNED,
+            SlashingCheckResult.SIGNED,
+            SlashingCheckResult.SIGNED,
+            SlashingCheckResult.DOUBLE_SIGNED,
+            SlashingCheckResult.SURROUNDING_ATTESTATION_EXISTS);
+    assertThat(count("signed_blocks")).isEqualTo(2);
+    assertThat(count("signed_attestations")).isEqualTo(3);
+  }
+
+  @Test
+  public void checksAgainstPreviouslySignedArtifacts() {
+    signedBlocksDao.checkAndInsertBlock(handle, new SignedBlock(1, UInt64.valueOf(5), Bytes.of(1)));
+    signedAttestationsDao.checkAndInsertAttestation(
+        handle, new SignedAttestation(1, UInt64.valueOf(3), UInt64.valueOf(4), Bytes.of(1)));
+
+    final List<SlashingCheckResult> results =
+        signingChecksDao.checkAndInsertSignings(
+            handle,
+            List.of(
+                new SignedBlock(1, UInt64.valueOf(5), Bytes.of(1)),
+                new SignedBlock(1, UInt64.valueOf(5), Bytes.of(2))),
+            List.of(
+                new SignedAttestation(1, UInt64.valueOf(3), UInt64.valueOf(4), Bytes.of(1)),
+                new SignedAttestation(1, UInt64.valueOf(2), UInt64.valueOf(5), Bytes.of(2))));
+
+    assertThat(results)
+        .containsExactly(
+            SlashingCheckResult.ALREADY_SIGNED,
+            SlashingCheckResult.DOUBLE_SIGNED,
+            SlashingCheckResult.ALREADY_SIGNED,
+            SlashingCheckResult.SOURCE_EPOCH_BELOW_MINIMUM);
+  }
+
+  @Test
+  public void returnsNoResultsForEmptyBatch() {
+    assertThat(signingChecksDao.checkAndInsertSignings(handle, List.of(), List.of())).isEmpty();
+  }
+
+  private int count(final String table) {
+    return handle.createQuery("SELECT COUNT(*) FROM " + table).mapTo(Integer.class).one();
+  }
+}
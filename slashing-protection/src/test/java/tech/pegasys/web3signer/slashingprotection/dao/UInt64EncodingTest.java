@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 ConsenSys AG.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package tech.pegasys.web3signer.slashingprotection.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import org.apache.tuweni.units.bigints.UInt64;
+import org.junit.jupiter.api.Test;
+
+class UInt64EncodingTest {
+
+  private static final List<UInt64> ASCENDING_VALUES =
+      List.of(
+          UInt64.ZERO,
+          UInt64.ONE,
+          UInt64.valueOf(Long.MAX_VALUE - 1),
+          UInt64.valueOf(Long.MAX_VALUE),
+          UInt64.valueOf(BigInteger.ONE.shiftLeft(63)),
+          UInt64.valueOf(BigInteger.ONE.shiftLeft(63).add(BigInteger.ONE)),
+          UInt64.MAX_VALUE);
+
+  @Test
+  void rangeEndsAreEncodedAsSignedRangeEnds() {
+    assertThat(UInt64Encoding.encode(UInt64.ZERO)).isEqualTo(Long.MIN_VALUE);
+    assertThat(UInt64Encoding.encode(UInt64.valueOf(BigInteger.ONE.shiftLeft(63)))).isZero();
+    assertThat(UInt64Encoding.encode(UInt64.MAX_VALUE)).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  void decodingReversesEncoding() {
+    for (final UInt64 value : ASCENDING_VALUES) {
+      assertThat(UInt64Encoding.decode(UInt64Encoding.encode(value))).isEqualTo(value);
+    }
+  }
+
+  @Test
+  void encodingPreservesUnsignedOrder() {
+    for (int i = 1; i < ASCENDING_VALUES.size(); i++) {
+      assertThat(UInt64Encoding.encode(ASCENDING_VALUES.get(i - 1)))
+          .isLessThan(UInt64Encoding.encode(ASCENDING_VALUES.get(i)));
+    }
+  }
+}
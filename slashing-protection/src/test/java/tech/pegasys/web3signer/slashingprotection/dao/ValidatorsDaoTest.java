@@ -17,9 +17,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 import tech.pegasys.web3signer.slashingprotection.DbConnection;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt64;
 import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.testing.JdbiRule;
 import org.jdbi.v3.testing.Migration;
@@ -104,6 +106,62 @@ public class ValidatorsDaoTest {
     assertThat(validators.get(4)).isEqualToComparingFieldByField(new Validator(5, Bytes.of(104)));
   }
 
+  @Test
+  public void registersOnlyMissingValidatorsReturningThoseInserted() {
+    insertValidator(handle, 101);
+
+    final ValidatorsDao validatorsDao = new ValidatorsDao();
+    final List<Validator> newValidators =
+        validatorsDao.registerMissingValidators(
+            handle, List.of(Bytes.of(101), Bytes.of(102), Bytes.of(103)));
+
+    assertThat(newValidators).hasSize(2);
+    assertThat(newValidators.get(0))
+        .isEqualToComparingFieldByField(new Validator(2, Bytes.of(102)));
+    assertThat(newValidators.get(1))
+        .isEqualToComparingFieldByField(new Validator(3, Bytes.of(103)));
+    assertThat(validatorsDao.retrieveValidators(handle, List.of(Bytes.of(101), Bytes.of(103))))
+        .extracting(Validator::getId)
+        .containsExactly(1, 3);
+  }
+
+  @Test
+  public void retrievesWatermarksForAllValidators() {
+    insertValidator(handle, 100);
+    insertValidator(handle, 101);
+    insertValidator(handle, 102);
+    handle.execute(
+        "INSERT INTO signed_attestations (validator_id, source_epoch, target_epoch) "
+            + "SELECT v, encode_uint64(s), encode_uint64(t) "
+            + "FROM (VALUES (1, 2, 3), (1, 4, 7), (2, 5, 6)) AS a(v, s, t)");
+    handle.execute(
+        "INSERT INTO signed_blocks (validator_id, slot) "
+            + "SELECT v, encode_uint64(s) FROM (VALUES (1, 10), (3, 11), (3, 12)) AS b(v, s)");
+
+    final ValidatorsDao validatorsDao = new ValidatorsDao();
+    final List<ValidatorWatermark> watermarks =
+        new ArrayList<>(validatorsDao.findAllWatermarks(handle));
+    watermarks.sort(Comparator.comparingInt(ValidatorWatermark::getValidatorId));
+
+    assertThat(watermarks).hasSize(3);
+    assertThat(watermarks.get(0))
+        .isEqualToComparingFieldByField(
+            new ValidatorWatermark(
+                1,
+                UInt64.valueOf(2),
+                UInt64.valueOf(3),
+                UInt64.valueOf(7),
+                UInt64.valueOf(10),
+                UInt64.valueOf(10)));
+    assertThat(watermarks.get(1))
+        .isEqualToComparingFieldByField(
+            new ValidatorWatermark(
+                2, UInt64.valueOf(5), UInt64.valueOf(6), UInt64.valueOf(6), null, null));
+    assertThat(watermarks.get(2))
+        .isEqualToComparingFieldByField(
+            new ValidatorWatermark(3, null, null, null, UInt64.valueOf(11), UInt64.valueOf(12)));
+  }
+
   private void insertValidator(final Handle h, final int i) {
     final byte[] value = Bytes.of(i).toArrayUnsafe();
     h.execute("INSERT INTO validators (public_key) VALUES (?)", value);